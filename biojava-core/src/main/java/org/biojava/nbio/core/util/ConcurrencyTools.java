@@ -26,6 +26,8 @@ package org.biojava.nbio.core.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 
 /**
@@ -40,6 +42,7 @@ public class ConcurrencyTools {
 
 	private static ThreadPoolExecutor pool;
 	private static int tasks = 0;
+	private static final ConcurrentMap<Integer, ForkJoinPool> forkJoinPools = new ConcurrentHashMap<>();
 	private ConcurrencyTools() { }
 
 	/**
@@ -166,4 +169,97 @@ public class ConcurrencyTools {
 		return submit(task, "");
 	}
 
+	/**
+	 * Returns the shared {@link ForkJoinPool} with the given parallelism, creating it
+	 * the first time. The pools are never shut down: their threads are daemon threads
+	 * that terminate when idle.
+	 *
+	 * @param nThreads parallelism of the pool
+	 * @return shared fork/join pool
+	 * @since 6.0.6
+	 */
+	public static ForkJoinPool getForkJoinPool(int nThreads) {
+		return forkJoinPools.computeIfAbsent(Math.max(1, nThreads), ForkJoinPool::new);
+	}
+
+	/**
+	 * Runs independent tasks and returns their results in the order of the tasks.
+	 * <p>
+	 * With a single thread or a single task, the tasks run in the calling thread and
+	 * stop at the first failure. Otherwise they run on the shared pool of
+	 * {@link #getForkJoinPool(int)}; if the calling thread is itself a worker of a
+	 * fork/join pool, e.g. a task of an enclosing parallel loop, the tasks run in that
+	 * pool instead and the caller helps to run them while it waits, so that nested
+	 * parallel loops neither starve nor deadlock the pool.
+	 *
+	 * @param <T> type returned by the tasks
+	 * @param tasks the tasks
+	 * @param nThreads the number of threads, 1 to run the tasks sequentially
+	 * @return the results of the tasks, in the same order
+	 * @throws ExecutionException with the checked exception of the first failed task,
+	 * in the order of the tasks. Runtime exceptions and errors are rethrown as they are.
+	 * @since 6.0.6
+	 */
+	public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int nThreads)
+			throws ExecutionException {
+		int n = tasks.size();
+		List<T> results = new ArrayList<>(n);
+		if (nThreads <= 1 || n <= 1) {
+			for (Callable<T> task : tasks) {
+				try {
+					results.add(task.call());
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new ExecutionException(e);
+				}
+			}
+			return results;
+		}
+
+		// the tasks never fail, the outcomes are checked in order afterwards
+		Object[] values = new Object[n];
+		Throwable[] errors = new Throwable[n];
+		List<ForkJoinTask<?>> forked = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			Callable<T> task = tasks.get(i);
+			int index = i;
+			forked.add(ForkJoinTask.adapt(() -> {
+				try {
+					values[index] = task.call();
+				} catch (Throwable t) {
+					errors[index] = t;
+				}
+			}));
+		}
+		if (ForkJoinTask.inForkJoinPool()) {
+			for (ForkJoinTask<?> task : forked) {
+				task.fork();
+			}
+		} else {
+			ForkJoinPool forkJoinPool = getForkJoinPool(nThreads);
+			for (ForkJoinTask<?> task : forked) {
+				forkJoinPool.execute(task);
+			}
+		}
+		for (ForkJoinTask<?> task : forked) {
+			task.join();
+		}
+
+		for (int i = 0; i < n; i++) {
+			Throwable error = errors[i];
+			if (error instanceof RuntimeException) {
+				throw (RuntimeException) error;
+			} else if (error instanceof Error) {
+				throw (Error) error;
+			} else if (error != null) {
+				throw new ExecutionException(error);
+			}
+			@SuppressWarnings("unchecked")
+			T value = (T) values[i];
+			results.add(value);
+		}
+		return results;
+	}
+
 }
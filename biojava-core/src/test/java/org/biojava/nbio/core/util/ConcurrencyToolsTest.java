@@ -0,0 +1,97 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.core.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyToolsTest {
+
+	private static List<Callable<Integer>> squares(int n) {
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			int x = i;
+			tasks.add(() -> x * x);
+		}
+		return tasks;
+	}
+
+	@Test
+	void invokeAllKeepsTheOrderOfTheTasks() throws ExecutionException {
+		for (int nThreads : new int[] { 1, 4 }) {
+			List<Integer> results = ConcurrencyTools.invokeAll(squares(100), nThreads);
+			assertEquals(100, results.size());
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(i * i, results.get(i).intValue());
+			}
+		}
+	}
+
+	@Test
+	void nestedInvokeAllDoesNotDeadlock() throws ExecutionException {
+		// more outer tasks than threads, all waiting for their inner tasks
+		List<Callable<Integer>> outer = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			outer.add(() -> {
+				int sum = 0;
+				for (int square : ConcurrencyTools.invokeAll(squares(10), 2)) {
+					sum += square;
+				}
+				return sum;
+			});
+		}
+		for (int sum : ConcurrencyTools.invokeAll(outer, 2)) {
+			assertEquals(285, sum);
+		}
+	}
+
+	@Test
+	void invokeAllReportsTheFirstFailure() {
+		for (int nThreads : new int[] { 1, 4 }) {
+			List<Callable<Integer>> tasks = squares(10);
+			tasks.set(3, () -> {
+				throw new IOException("third");
+			});
+			tasks.set(6, () -> {
+				throw new IOException("sixth");
+			});
+			ExecutionException e = assertThrows(ExecutionException.class,
+					() -> ConcurrencyTools.invokeAll(tasks, nThreads));
+			assertEquals("third", e.getCause().getMessage());
+
+			IllegalStateException bug = new IllegalStateException("bug");
+			tasks.set(1, () -> {
+				throw bug;
+			});
+			assertSame(bug, assertThrows(IllegalStateException.class,
+					() -> ConcurrencyTools.invokeAll(tasks, nThreads)));
+		}
+	}
+}
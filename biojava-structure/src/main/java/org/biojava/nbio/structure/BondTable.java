@@ -0,0 +1,244 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact table of bonds between the atoms of an atom array, stored as pairs of
+ * atom indices plus bond orders in primitive arrays. Compared to {@link BondImpl}
+ * objects referenced from every {@link Atom}, a table takes a few bytes per bond
+ * and can be shared by all threads working on the same atoms.
+ * <p>
+ * Atom indices refer to the array the table was built for, usually
+ * {@link StructureTools#getAllAtomArray(Structure, int)}.
+ * Per-atom neighbour lookups use an adjacency index that is built on first use.
+ * A table must not be modified concurrently, but once filled it can be read by any number of threads.
+ *
+ * @see org.biojava.nbio.structure.io.BondMaker#makeBondTable(int)
+ * @since 6.0.6
+ */
+public class BondTable implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int atomCount;
+
+	private int[] pairs;
+	private byte[] orders;
+	private int size;
+
+	// adjacency index in compressed sparse row form, built lazily
+	private transient int[] adjacencyOffsets;
+	private transient int[] adjacency;
+
+	/**
+	 * Creates an empty table for the given number of atoms.
+	 * @param atomCount the number of atoms that indices can refer to
+	 */
+	public BondTable(int atomCount) {
+		this(atomCount, 16);
+	}
+
+	/**
+	 * Creates an empty table for the given number of atoms.
+	 * @param atomCount the number of atoms that indices can refer to
+	 * @param expectedBonds initial capacity in bonds
+	 */
+	public BondTable(int atomCount, int expectedBonds) {
+		this.atomCount = atomCount;
+		int capacity = Math.max(expectedBonds, 1);
+		pairs = new int[2 * capacity];
+		orders = new byte[capacity];
+	}
+
+	/**
+	 * Add a bond.
+	 * @param atomIndexA index of the first atom
+	 * @param atomIndexB index of the second atom
+	 * @param bondOrder the bond order
+	 */
+	public void add(int atomIndexA, int atomIndexB, int bondOrder) {
+		if (atomIndexA < 0 || atomIndexA >= atomCount || atomIndexB < 0 || atomIndexB >= atomCount) {
+			throw new IndexOutOfBoundsException("Atom index out of range [0," + atomCount + "): "
+					+ atomIndexA + ", " + atomIndexB);
+		}
+		ensureCapacity(size + 1);
+		pairs[2 * size] = atomIndexA;
+		pairs[2 * size + 1] = atomIndexB;
+		orders[size] = (byte) bondOrder;
+		size++;
+		adjacencyOffsets = null;
+		adjacency = null;
+	}
+
+	/**
+	 * Add all bonds of another table, whose atom indices are shifted by the given offset.
+	 * @param other the table to add
+	 * @param atomIndexOffset added to the atom indices of other
+	 */
+	public void addAll(BondTable other, int atomIndexOffset) {
+		if (atomIndexOffset < 0 || atomIndexOffset + other.atomCount > atomCount) {
+			throw new IndexOutOfBoundsException("Table of " + other.atomCount + " atoms at offset "
+					+ atomIndexOffset + " does not fit in " + atomCount + " atoms");
+		}
+		ensureCapacity(size + other.size);
+		for (int i = 0; i < 2 * other.size; i++) {
+			pairs[2 * size + i] = other.pairs[i] + atomIndexOffset;
+		}
+		System.arraycopy(other.orders, 0, orders, size, other.size);
+		size += other.size;
+		adjacencyOffsets = null;
+		adjacency = null;
+	}
+
+	private void ensureCapacity(int bonds) {
+		if (bonds > orders.length) {
+			int capacity = Math.max(bonds, orders.length + (orders.length >> 1));
+			pairs = Arrays.copyOf(pairs, 2 * capacity);
+			orders = Arrays.copyOf(orders, capacity);
+		}
+	}
+
+	/**
+	 * @return the number of atoms that indices can refer to
+	 */
+	public int getAtomCount() {
+		return atomCount;
+	}
+
+	/**
+	 * @return the number of bonds
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param bond the bond index
+	 * @return the index of the first atom of the bond
+	 */
+	public int getAtomIndexA(int bond) {
+		checkBondIndex(bond);
+		return pairs[2 * bond];
+	}
+
+	/**
+	 * @param bond the bond index
+	 * @return the index of the second atom of the bond
+	 */
+	public int getAtomIndexB(int bond) {
+		checkBondIndex(bond);
+		return pairs[2 * bond + 1];
+	}
+
+	/**
+	 * @param bond the bond index
+	 * @return the bond order
+	 */
+	public int getBondOrder(int bond) {
+		checkBondIndex(bond);
+		return orders[bond];
+	}
+
+	private void checkBondIndex(int bond) {
+		if (bond < 0 || bond >= size) {
+			throw new IndexOutOfBoundsException("Bond index " + bond + " out of range [0," + size + ")");
+		}
+	}
+
+	/**
+	 * Returns the number of bonds of an atom.
+	 * @param atomIndex the atom index
+	 * @return the number of bonds the atom takes part in
+	 */
+	public int getBondCount(int atomIndex) {
+		int[] offsets = getAdjacencyOffsets();
+		return offsets[atomIndex + 1] - offsets[atomIndex];
+	}
+
+	/**
+	 * Returns the indices of the bonds of an atom.
+	 * @param atomIndex the atom index
+	 * @return the bond indices, in increasing order
+	 */
+	public int[] getBonds(int atomIndex) {
+		int[] offsets = getAdjacencyOffsets();
+		return Arrays.copyOfRange(adjacency, offsets[atomIndex], offsets[atomIndex + 1]);
+	}
+
+	/**
+	 * Returns the indices of the atoms bonded to an atom.
+	 * @param atomIndex the atom index
+	 * @return the atom indices
+	 */
+	public int[] getBondedAtoms(int atomIndex) {
+		int[] offsets = getAdjacencyOffsets();
+		int[] partners = new int[offsets[atomIndex + 1] - offsets[atomIndex]];
+		for (int k = 0; k < partners.length; k++) {
+			int bond = adjacency[offsets[atomIndex] + k];
+			int a = pairs[2 * bond];
+			partners[k] = a == atomIndex ? pairs[2 * bond + 1] : a;
+		}
+		return partners;
+	}
+
+	private synchronized int[] getAdjacencyOffsets() {
+		if (adjacencyOffsets == null) {
+			int[] offsets = new int[atomCount + 1];
+			for (int i = 0; i < 2 * size; i++) {
+				offsets[pairs[i] + 1]++;
+			}
+			for (int i = 0; i < atomCount; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+			int[] fill = Arrays.copyOf(offsets, atomCount);
+			int[] adj = new int[2 * size];
+			for (int bond = 0; bond < size; bond++) {
+				adj[fill[pairs[2 * bond]]++] = bond;
+				adj[fill[pairs[2 * bond + 1]]++] = bond;
+			}
+			adjacency = adj;
+			adjacencyOffsets = offsets;
+		}
+		return adjacencyOffsets;
+	}
+
+	/**
+	 * Creates {@link Bond} objects for all bonds of this table.
+	 * @param atoms the atoms the table was built for
+	 * @param addToAtoms whether the bonds are also added to the bond lists of their atoms
+	 * @return the bonds
+	 */
+	public List<Bond> toBonds(Atom[] atoms, boolean addToAtoms) {
+		if (atoms.length != atomCount) {
+			throw new IllegalArgumentException("Table is for " + atomCount + " atoms, got " + atoms.length);
+		}
+		List<Bond> bonds = new ArrayList<>(size);
+		for (int bond = 0; bond < size; bond++) {
+			bonds.add(new BondImpl(atoms[pairs[2 * bond]], atoms[pairs[2 * bond + 1]], orders[bond], addToAtoms));
+		}
+		return bonds;
+	}
+}
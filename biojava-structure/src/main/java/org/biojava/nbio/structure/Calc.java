@@ -31,6 +31,7 @@ import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
 
+import org.biojava.nbio.structure.geometry.CalcCoords;
 import org.biojava.nbio.structure.geometry.CalcPoint;
 import org.biojava.nbio.structure.geometry.Matrices;
 import org.biojava.nbio.structure.geometry.SuperPositionSVD;
@@ -44,7 +45,7 @@ import org.slf4j.LoggerFactory;
  * Currently the coordinates of an Atom are stored as an array of size 3
  * (double[3]). It would be more powerful to use Point3d from javax.vecmath.
  * Overloaded methods for Point3d operations exist in the {@link CalcPoint}
- * Class.
+ * Class, and for packed coordinate arrays in the {@link CalcCoords} Class.
  *
  * @author Andreas Prlic
  * @author Aleix Lafita
@@ -521,12 +522,14 @@ public class Calc {
 	 */
 	public static final void transform (Atom atom, Matrix4d m) {
 
-		Point3d p = new Point3d(atom.getX(),atom.getY(),atom.getZ());
-		m.transform(p);
+		// same arithmetic as Matrix4d.transform(Point3d), without the intermediate Point3d
+		double x = atom.getX();
+		double y = atom.getY();
+		double z = atom.getZ();
 
-		atom.setX(p.x);
-		atom.setY(p.y);
-		atom.setZ(p.z);
+		atom.setX(m.m00 * x + m.m01 * y + m.m02 * z + m.m03);
+		atom.setY(m.m10 * x + m.m11 * y + m.m12 * z + m.m13);
+		atom.setZ(m.m20 * x + m.m21 * y + m.m22 * z + m.m23);
 	}
 
 	/**
@@ -1255,7 +1258,7 @@ public class Calc {
 	 * @return RMSD
 	 */
 	public static double rmsd(Atom[] x, Atom[] y) {
-		return CalcPoint.rmsd(atomsToPoints(x), atomsToPoints(y));
+		return CalcCoords.rmsd(CalcCoords.toCoords(x), CalcCoords.toCoords(y));
 	}
 
 	/**
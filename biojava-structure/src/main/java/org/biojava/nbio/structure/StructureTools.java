@@ -468,6 +468,7 @@ public class StructureTools {
 	 * @param cutoff Distance from query atoms to consider, in angstroms
 	 * @return All groups from the target with at least one atom within cutoff of a query atom
 	 * @see StructureTools#DEFAULT_LIGAND_PROXIMITY_CUTOFF
+	 * @see org.biojava.nbio.structure.contact.StructureSpatialIndex#getLigandsByProximity(Atom[], double)
 	 */
 	public static List<Group> getLigandsByProximity(Collection<Group> target, Atom[] query, double cutoff) {
 		// Spatial hashing of the reduced structure
@@ -1477,6 +1478,7 @@ public class StructureTools {
 	 *            these values
 	 * @return A map of Groups within (or partially within) the shell, to their
 	 *         distances in Angstroms
+	 * @see org.biojava.nbio.structure.contact.StructureSpatialIndex#getGroupDistancesWithinShell(Atom, Set, double, boolean, boolean)
 	 */
 	public static Map<Group, Double> getGroupDistancesWithinShell(
 			Structure structure, Atom centroid,
@@ -1513,8 +1515,10 @@ public class StructureTools {
 
 					// if we're the shell
 					if (dist <= radius) {
+						// the sum of the distances starts at 0, the minimum at infinity
 						if (!distances.containsKey(chainGroup))
-							distances.put(chainGroup, Double.POSITIVE_INFINITY);
+							distances.put(chainGroup, useAverageDistance ? 0.0
+									: Double.POSITIVE_INFINITY);
 						if (useAverageDistance) {
 							// sum the distance; we'll divide by the total
 							// number later
@@ -1555,6 +1559,12 @@ public class StructureTools {
 
 	}
 
+	/**
+	 * Finds Groups in {@code structure} that contain at least one Atom that is
+	 * within {@code distance} Angstroms of {@code atom}.
+	 *
+	 * @see org.biojava.nbio.structure.contact.StructureSpatialIndex#getGroupsWithinShell(Atom, Set, double, boolean)
+	 */
 	public static Set<Group> getGroupsWithinShell(Structure structure,
 			Atom atom, Set<ResidueNumber> excludeResidues, double distance,
 			boolean includeWater) {
@@ -1606,6 +1616,7 @@ public class StructureTools {
 	 *            Should water residues be included in the output?
 	 * @return {@link LinkedHashSet} of {@link Group}s within at least one atom
 	 *         with {@code distance} of at least one atom in {@code group}
+	 * @see org.biojava.nbio.structure.contact.StructureSpatialIndex#getGroupsWithinShell(Group, double, boolean)
 	 */
 	public static Set<Group> getGroupsWithinShell(Structure structure,
 			Group group, double distance, boolean includeWater) {
@@ -0,0 +1,317 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.biojava.nbio.core.util.ConcurrencyTools;
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.align.ce.ConfigStrucAligParams;
+import org.biojava.nbio.structure.align.model.AFPChain;
+import org.biojava.nbio.structure.align.util.CaArrayStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Aligns a query structure against all the entries of a {@link CaArrayStore},
+ * e.g. with CE or FATCAT, and reports the hits ordered by TM-score.
+ * <p>
+ * The structures are loaded once into the store, so that every alignment
+ * only builds the atom arrays from memory. The entries whose
+ * {@link CaArrayStore.Descriptor descriptors} are too different from those of
+ * the query (length ratio, radius of gyration ratio, secondary structure
+ * composition) are not aligned. The alignments run on a work-stealing pool;
+ * each alignment is reduced to its {@link AFPChain#toDBSearchResult()} row as
+ * soon as it is finished, and at most {@link #setMaxResults(int) maxResults}
+ * hits are kept, so that the memory does not grow with the database.
+ *
+ * @since 6.0.6
+ */
+public class DatabaseSearch {
+
+	private static final Logger logger = LoggerFactory.getLogger(DatabaseSearch.class);
+
+	/** By default, the shorter of the two structures has at least half the length of the longer */
+	public static final double DEFAULT_MIN_LENGTH_RATIO = 0.5;
+	/** By default, the radii of gyration differ at most by a factor 2 */
+	public static final double DEFAULT_MAX_RG_RATIO = 2.0;
+	/** By default, the secondary structure compositions differ at most by 0.6 (out of 2) */
+	public static final double DEFAULT_MAX_SEC_STRUC_DISTANCE = 0.6;
+
+	private final CaArrayStore database;
+	private final String algorithmName;
+	private final ConfigStrucAligParams params;
+
+	private int nThreads = Runtime.getRuntime().availableProcessors();
+	private int maxResults = Integer.MAX_VALUE;
+	private double minLengthRatio = DEFAULT_MIN_LENGTH_RATIO;
+	private double maxRgRatio = DEFAULT_MAX_RG_RATIO;
+	private double maxSecStrucDistance = DEFAULT_MAX_SEC_STRUC_DISTANCE;
+
+	/**
+	 * @param database the structures to search
+	 * @param algorithmName the name of the alignment algorithm, see {@link StructureAlignmentFactory}.
+	 * A new instance is created for each alignment.
+	 * @param params the parameters of the algorithm, or null for the defaults
+	 */
+	public DatabaseSearch(CaArrayStore database, String algorithmName, ConfigStrucAligParams params) {
+		this.database = database;
+		this.algorithmName = algorithmName;
+		this.params = params;
+	}
+
+	/**
+	 * A hit of a search: an entry of the database and its alignment to the query.
+	 */
+	public static class Hit {
+		private final int index;
+		private final String name;
+		private final double tmScore;
+		private final String result;
+
+		Hit(int index, String name, double tmScore, String result) {
+			this.index = index;
+			this.name = name;
+			this.tmScore = tmScore;
+			this.result = result;
+		}
+
+		/**
+		 * @return the index of the entry in the database
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return the name of the entry
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the TM-score of the alignment
+		 */
+		public double getTMScore() {
+			return tmScore;
+		}
+
+		/**
+		 * @return the result row of the alignment, see {@link AFPChain#toDBSearchResult()}
+		 */
+		public String getResult() {
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return result;
+		}
+	}
+
+	/** Best first: decreasing TM-score, then database order */
+	private static final Comparator<Hit> BEST_FIRST = (a, b) -> {
+		int c = Double.compare(b.tmScore, a.tmScore);
+		return c != 0 ? c : Integer.compare(a.index, b.index);
+	};
+
+	/**
+	 * Finds the entries of the database that pass the descriptor filters for the query.
+	 *
+	 * @param query the descriptors of the query
+	 * @return the indices of the candidate entries, in database order
+	 */
+	public List<Integer> getCandidates(CaArrayStore.Descriptor query) {
+		List<Integer> candidates = new ArrayList<>();
+		for (int i = 0; i < database.size(); i++) {
+			CaArrayStore.Descriptor target = database.getDescriptor(i);
+			int minLength = Math.min(query.getLength(), target.getLength());
+			int maxLength = Math.max(query.getLength(), target.getLength());
+			if (minLength == 0 || minLength < minLengthRatio * maxLength)
+				continue;
+			double minRg = Math.min(query.getRadiusOfGyration(), target.getRadiusOfGyration());
+			double maxRg = Math.max(query.getRadiusOfGyration(), target.getRadiusOfGyration());
+			if (maxRg > maxRgRatio * minRg)
+				continue;
+			if (query.getSecStrucDistance(target) > maxSecStrucDistance)
+				continue;
+			candidates.add(i);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Aligns the query to all candidate entries of the database.
+	 *
+	 * @param query the representative atoms of the query, they are not modified
+	 * @param queryName the name of the query, used as the first name of the alignments
+	 * @return the best {@link #getMaxResults() maxResults} hits, best first
+	 */
+	public List<Hit> search(Atom[] query, String queryName) {
+		List<Integer> candidates = getCandidates(new CaArrayStore.Descriptor(query));
+		logger.info("Aligning {} to {} of {} structures", queryName, candidates.size(), database.size());
+
+		// the worst kept hit is on top
+		PriorityQueue<Hit> hits = new PriorityQueue<>(Collections.reverseOrder(BEST_FIRST));
+
+		// only the best hits are kept while aligning, ties are broken by index
+		List<Callable<Void>> tasks = new ArrayList<>(candidates.size());
+		for (int index : candidates) {
+			tasks.add(() -> {
+				Hit hit = align(query, queryName, index);
+				synchronized (hits) {
+					offer(hits, hit);
+				}
+				return null;
+			});
+		}
+		try {
+			ConcurrencyTools.invokeAll(tasks, nThreads);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error while searching " + queryName, e.getCause());
+		}
+
+		List<Hit> sorted = new ArrayList<>(hits);
+		sorted.sort(BEST_FIRST);
+		return sorted;
+	}
+
+	/**
+	 * Aligns the query to all candidate entries of the database and writes
+	 * the result rows, best first.
+	 *
+	 * @param query the representative atoms of the query, they are not modified
+	 * @param queryName the name of the query
+	 * @param out where to write the rows
+	 * @return the number of rows written
+	 * @throws IOException if the rows can not be written
+	 */
+	public int search(Atom[] query, String queryName, Writer out) throws IOException {
+		List<Hit> hits = search(query, queryName);
+		for (Hit hit : hits) {
+			out.write(hit.getResult());
+		}
+		out.flush();
+		return hits.size();
+	}
+
+	private void offer(PriorityQueue<Hit> hits, Hit hit) {
+		if (hit == null)
+			return;
+		hits.add(hit);
+		if (hits.size() > maxResults)
+			hits.poll();
+	}
+
+	/**
+	 * Aligns the query to one entry; failures are logged and skipped as in
+	 * {@link CallableStructureAlignment}, so that they do not stop the search.
+	 */
+	private Hit align(Atom[] query, String queryName, int index) {
+		String name = database.getName(index);
+		try {
+			StructureAlignment algorithm = StructureAlignmentFactory.getAlgorithm(algorithmName);
+			if (params != null)
+				algorithm.setParameters(params);
+
+			Atom[] ca1 = StructureTools.cloneAtomArray(query);
+			Atom[] ca2 = database.getAtoms(index);
+			AFPChain afpChain = algorithm.align(ca1, ca2);
+			afpChain.setName1(queryName);
+			afpChain.setName2(name);
+			afpChain.setDescription2(database.getDescription(index));
+			return new Hit(index, name, afpChain.getTMScore(), afpChain.toDBSearchResult());
+		} catch (StructureException | RuntimeException e) {
+			logger.error("Could not align {} to {}: {}", queryName, name, e.getMessage());
+			return null;
+		}
+	}
+
+	public int getNThreads() {
+		return nThreads;
+	}
+
+	/**
+	 * @param nThreads the number of alignments to run in parallel. Default: the number of processors
+	 */
+	public void setNThreads(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
+	public int getMaxResults() {
+		return maxResults;
+	}
+
+	/**
+	 * @param maxResults the maximum number of hits to keep. Default: all
+	 */
+	public void setMaxResults(int maxResults) {
+		this.maxResults = maxResults;
+	}
+
+	public double getMinLengthRatio() {
+		return minLengthRatio;
+	}
+
+	/**
+	 * @param minLengthRatio the minimum ratio of the shorter to the longer length,
+	 * 0 to align all lengths. Default {@value #DEFAULT_MIN_LENGTH_RATIO}
+	 */
+	public void setMinLengthRatio(double minLengthRatio) {
+		this.minLengthRatio = minLengthRatio;
+	}
+
+	public double getMaxRgRatio() {
+		return maxRgRatio;
+	}
+
+	/**
+	 * @param maxRgRatio the maximum ratio of the larger to the smaller radius of gyration,
+	 * infinity to disable. Default {@value #DEFAULT_MAX_RG_RATIO}
+	 */
+	public void setMaxRgRatio(double maxRgRatio) {
+		this.maxRgRatio = maxRgRatio;
+	}
+
+	public double getMaxSecStrucDistance() {
+		return maxSecStrucDistance;
+	}
+
+	/**
+	 * @param maxSecStrucDistance the maximum difference of the secondary structure compositions,
+	 * see {@link CaArrayStore.Descriptor#getSecStrucDistance(CaArrayStore.Descriptor)}; 2 or more
+	 * to disable. Default {@value #DEFAULT_MAX_SEC_STRUC_DISTANCE}
+	 */
+	public void setMaxSecStrucDistance(double maxSecStrucDistance) {
+		this.maxSecStrucDistance = maxSecStrucDistance;
+	}
+}
@@ -29,6 +29,7 @@ import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.Structure;
 import org.biojava.nbio.structure.StructureException;
 import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.align.DatabaseSearch;
 import org.biojava.nbio.structure.align.StructureAlignment;
 import org.biojava.nbio.structure.align.model.AFPChain;
 import org.biojava.nbio.structure.align.util.*;
@@ -179,6 +180,11 @@ public abstract class AbstractUserArgumentProcessor implements UserArgumentProce
 
 
 		try {
+			if ((pdb1 != null || file1 != null) && params.getSearchFile() != null){
+				runDbSearch();
+				return;
+			}
+
 			if (pdb1 != null || file1 != null){
 				runPairwise();
 				return;
@@ -282,6 +288,79 @@ public abstract class AbstractUserArgumentProcessor implements UserArgumentProce
 	}
 
 
+	/**
+	 * Aligns the structure given by -pdb1 or -file1 to all the structures
+	 * listed in -searchFile, and writes the results to -outFile, best first.
+	 */
+	private void runDbSearch() throws ConfigurationException{
+
+		String name1 = params.getPdb1();
+		String file1 = params.getFile1();
+		String outFile = params.getOutFile();
+		if ( outFile == null){
+			throw new ConfigurationException("You did not specify the -outFile parameter. Can not write the results of the database search.");
+		}
+
+		String path = params.getPdbFilePath();
+		if ( path == null){
+			UserConfiguration c = new UserConfiguration();
+			path = c.getPdbFilePath();
+			System.err.println("You did not specify the -pdbFilePath parameter. Defaulting to "+path+".");
+		}
+		AtomCache cache = new AtomCache(path, path);
+		if(params.isAutoFetch()) {
+			cache.setFetchBehavior(FetchBehavior.DEFAULT);
+		} else {
+			cache.setFetchBehavior(FetchBehavior.LOCAL_ONLY);
+		}
+
+		Structure structure1 = getStructure(file1 == null ? cache : null, name1, file1);
+		if ( structure1 == null){
+			System.err.println("structure 1 is null, can't run database search.");
+			System.exit(1); return;
+		}
+		if ( name1 == null) {
+			name1 = structure1.getName();
+		}
+		Atom[] ca1 = StructureTools.getRepresentativeAtomArray(structure1);
+
+		try {
+			// load the database once
+			CaArrayStore database = new CaArrayStore();
+			try (BufferedReader is = new BufferedReader(new FileReader(params.getSearchFile()))) {
+				String line;
+				while ( (line = is.readLine()) != null){
+					line = line.trim();
+					if ( line.isEmpty() || line.startsWith("#"))
+						continue;
+					try {
+						database.add(line, cache);
+					} catch (IOException | StructureException e) {
+						System.err.println("unable to load structure " + line + ": " + e.getMessage());
+					}
+				}
+			}
+
+			StructureAlignment algorithm = getAlgorithm();
+			Object jparams = getParameters();
+			DatabaseSearch search = new DatabaseSearch(database, algorithm.getAlgorithmName(),
+					jparams instanceof ConfigStrucAligParams ? (ConfigStrucAligParams) jparams : null);
+			search.setNThreads(params.getNrCPU());
+
+			try (BufferedWriter out = new BufferedWriter(new FileWriter(outFile))) {
+				out.write("# algorithm:" + algorithm.getAlgorithmName());
+				out.write(newline);
+				out.write("#Legend: " + newline );
+				out.write(getDbSearchLegend() + newline );
+				int n = search.search(ca1, name1, out);
+				System.out.println("wrote " + n + " results to " + outFile);
+			}
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(1); return;
+		}
+	}
+
 	private void runPairwise() throws ConfigurationException{
 
 		String name1 = params.getPdb1();
@@ -642,6 +721,13 @@ public abstract class AbstractUserArgumentProcessor implements UserArgumentProce
 		buf.append("   -showMenu displays the menu that allows to run alignments through a user interface.").append(newline);
 		buf.append(newline);
 
+		buf.append("--- database searches ---").append(newline);
+		buf.append("   -pdb1 or -file1 (mandatory) the query structure").append(newline);
+		buf.append("   -searchFile (mandatory) path to a file that contains the names of the structures to search, one per line").append(newline);
+		buf.append("   -outFile (mandatory) a file that will contain the results of the alignments, best first").append(newline);
+		buf.append("   -nrCPU number of alignments to run in parallel").append(newline);
+		buf.append(newline);
+
 		buf.append("--- custom searches ---").append(newline);
 		buf.append("   -alignPairs (mandatory) path to a file that contains a set of pairs to compair").append(newline);
 		buf.append("   -outFile (mandatory) a file that will contain the summary of all the pairwise alignments").append(newline);
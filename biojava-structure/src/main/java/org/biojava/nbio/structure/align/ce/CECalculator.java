@@ -26,6 +26,7 @@ package org.biojava.nbio.structure.align.ce;
 
 import org.biojava.nbio.core.alignment.matrices.ScaledSubstitutionMatrix;
 import org.biojava.nbio.core.alignment.template.SubstitutionMatrix;
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.Calc;
 import org.biojava.nbio.structure.Group;
@@ -35,6 +36,7 @@ import org.biojava.nbio.structure.align.model.AFP;
 import org.biojava.nbio.structure.align.model.AFPChain;
 import org.biojava.nbio.structure.align.util.AFPAlignmentDisplay;
 import org.biojava.nbio.structure.align.util.AFPChainScorer;
+import org.biojava.nbio.structure.geometry.CalcCoords;
 import org.biojava.nbio.structure.geometry.Matrices;
 import org.biojava.nbio.structure.geometry.SuperPositions;
 import org.biojava.nbio.structure.jama.Matrix;
@@ -42,7 +44,10 @@ import org.biojava.nbio.core.sequence.compound.AminoAcidCompound;
 import org.biojava.nbio.core.sequence.compound.AminoAcidCompoundSet;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import javax.vecmath.Matrix4d;
 
@@ -109,6 +114,14 @@ public class CECalculator {
 	protected static final int nIter = 1;
 	private static final boolean distAll = false;
 
+	// rows of the fragment distance matrix per parallel task
+	private static final int ROWS_PER_TASK = 32;
+
+	protected int nThreads = 1;
+
+	// the length of the original chain if ca2 is duplicated (as in CE-CP), or 0
+	protected int duplicatedLength = 0;
+
 	List<MatrixListener> matrixListeners;
 
 
@@ -145,7 +158,10 @@ public class CECalculator {
 		f2 = new int[nse2];
 
 		dist1 = initIntraDistmatrix(ca1, nse1);
-		dist2 = initIntraDistmatrix(ca2, nse2);
+		if (duplicatedLength > 0 && nse2 == 2 * duplicatedLength)
+			dist2 = initDuplicatedIntraDistmatrix(ca2, duplicatedLength);
+		else
+			dist2 = initIntraDistmatrix(ca2, nse2);
 
 
 		if ( debug )
@@ -365,14 +381,20 @@ public class CECalculator {
 	private double[][] initIntraDistmatrix(Atom[] ca, int nse) throws StructureException
 	{
 
+		// the distances are symmetric (with the same arithmetic both ways),
+		// so only the upper half is calculated
+		if ( params.getScoringStrategy() == CeParameters.ScoringStrategy.CA_SCORING)
+			return CalcCoords.distanceMatrix(CalcCoords.toCoords(ca));
 
 		double[][] intraDist = new double[nse][nse];
 
 		//
 		for(int ise1=0; ise1<nse; ise1++)  {
 
-			for(int ise2=0; ise2<nse; ise2++)  {
+			intraDist[ise1][ise1] = getDistanceWithSidechain(ca[ise1], ca[ise1]);
+			for(int ise2=ise1+1; ise2<nse; ise2++)  {
 				intraDist[ise1][ise2] = getDistanceWithSidechain(ca[ise1], ca[ise2]);
+				intraDist[ise2][ise1] = intraDist[ise1][ise2];
 
 			}
 		}
@@ -380,41 +402,154 @@ public class CECalculator {
 	}
 
 
-	public double[][] initSumOfDistances(int nse1, int nse2, int winSize, int  winSizeComb1, Atom[] ca1, Atom[] ca2) {
+	/**
+	 * The intramolecular distance matrix of a chain made of two copies of the
+	 * same atoms. Only the distances of the first copy are calculated, and the
+	 * two copies of an atom share the same row, which holds the distances to
+	 * the first copy followed by the same distances to the second copy. The
+	 * values are the same as the ones of {@link #initIntraDistmatrix}.
+	 *
+	 * @param ca the duplicated atoms
+	 * @param length the length of one copy
+	 * @return the 2*length x 2*length distance matrix
+	 * @throws StructureException
+	 */
+	private double[][] initDuplicatedIntraDistmatrix(Atom[] ca, int length) throws StructureException
+	{
+		double[][] single = initIntraDistmatrix(Arrays.copyOf(ca, length), length);
+		double[][] intraDist = new double[2 * length][];
+		for (int i = 0; i < length; i++) {
+			double[] row = Arrays.copyOf(single[i], 2 * length);
+			System.arraycopy(single[i], 0, row, length, length);
+			intraDist[i] = row;
+			intraDist[i + length] = row;
+		}
+		return intraDist;
+	}
 
-		double d;
 
-		double[][] mat   = new double[nse1][nse2];
+	public double[][] initSumOfDistances(int nse1, int nse2, int winSize, int  winSizeComb1, Atom[] ca1, Atom[] ca2) {
 
 		// init the initial mat[] array.
 		// at this stage mat contains the sum of the distances of fragments of the matrices dist1, dist
-		for(int ise1=0; ise1<nse1; ise1++) {
-			for(int ise2=0; ise2<nse2; ise2++) {
-
-				mat[ise1][ise2]=-1.0;
+		int period = duplicatedLength > 0 && nse2 == 2 * duplicatedLength ? duplicatedLength : 0;
+		return sumOfDistances(dist1, dist2, nse1, nse2, winSize, winSizeComb1, period, nThreads);
+	}
 
-				if(ise1>nse1-winSize || ise2>nse2-winSize) continue;
+	/**
+	 * Calculates the mean difference of the intramolecular distances of all
+	 * pairs of fragments of length winSize: for every pair of fragment starts
+	 * (ise1,ise2), the sum over 0 &lt;= is1, is1+2 &lt;= is2 &lt; winSize of
+	 * |dist1[ise1+is1][ise1+is2]-dist2[ise2+is1][ise2+is2]|, divided by
+	 * winSizeComb1, or -1 if a fragment does not fit.
+	 * <p>
+	 * The distances of dist2 are read from its diagonals, stored as
+	 * contiguous arrays, and each row of the result is accumulated term by
+	 * term over all its cells. The terms of every cell are added in the
+	 * original order, so that the result is identical to the cell by cell
+	 * sum. The rows are independent and are calculated in parallel if
+	 * nThreads &gt; 1.
+	 *
+	 * @param dist1 intramolecular distance matrix of protein 1
+	 * @param dist2 intramolecular distance matrix of protein 2
+	 * @param nse1 length of protein 1
+	 * @param nse2 length of protein 2
+	 * @param winSize the fragment length
+	 * @param winSizeComb1 the number of distances of a fragment
+	 * @param nThreads the number of threads
+	 * @return the nse1 x nse2 matrix of fragment distances
+	 */
+	static double[][] sumOfDistances(double[][] dist1, double[][] dist2, int nse1, int nse2,
+			int winSize, int winSizeComb1, int nThreads) {
+		return sumOfDistances(dist1, dist2, nse1, nse2, winSize, winSizeComb1, 0, nThreads);
+	}
 
-				d=0.0;
-				// this sums up over the distances of the fragments
-				for(int is1=0; is1<winSize-2; is1++)
-					for(int is2=is1+2; is2<winSize; is2++) {
-						//System.out.println("pos1 :" +  (ise1+is1) + " " + (ise1+is2) +  " " + (ise2+is1) + " " + (ise2+is2));
-						// is this abs or floor? check!
-						d+=Math.abs(dist1[ise1+is1][ise1+is2]-dist2[ise2+is1][ise2+is2]);
-					}
-				mat[ise1][ise2]=d/winSizeComb1;
+	/**
+	 * Calculates the fragment distances as
+	 * {@link #sumOfDistances(double[][], double[][], int, int, int, int, int)},
+	 * for a protein 2 whose distances repeat with the given period, e.g. a
+	 * chain duplicated by CE-CP. The fragments of protein 2 starting at or
+	 * after the period are copies of the fragments one period before, so only
+	 * the first period of each row is calculated and the rest is copied.
+	 *
+	 * @param dist1 intramolecular distance matrix of protein 1
+	 * @param dist2 intramolecular distance matrix of protein 2
+	 * @param nse1 length of protein 1
+	 * @param nse2 length of protein 2
+	 * @param winSize the fragment length
+	 * @param winSizeComb1 the number of distances of a fragment
+	 * @param period the period of dist2, or 0 if it does not repeat
+	 * @param nThreads the number of threads
+	 * @return the nse1 x nse2 matrix of fragment distances
+	 */
+	static double[][] sumOfDistances(double[][] dist1, double[][] dist2, int nse1, int nse2,
+			int winSize, int winSizeComb1, int period, int nThreads) {
 
-				//System.out.println("mat ["+ise1+"]["+ise2+"]="+mat[ise1][ise2]);
-			}
+		final double[][] mat = new double[nse1][nse2];
 
+		// the diagonals dist2[i][i+k] for 2 <= k < winSize
+		final double[][] diag2 = new double[Math.max(winSize, 2)][];
+		for (int k = 2; k < winSize; k++) {
+			diag2[k] = new double[Math.max(nse2 - k, 0)];
+			for (int i = 0; i < nse2 - k; i++)
+				diag2[k][i] = dist2[i][i + k];
 		}
 
-		// verified: mat[][] probably ok.
+		if (nThreads <= 1 || nse1 < 2 * ROWS_PER_TASK) {
+			sumOfDistances(dist1, diag2, mat, 0, nse1, nse2, winSize, winSizeComb1, period);
+			return mat;
+		}
 
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int start = 0; start < nse1; start += ROWS_PER_TASK) {
+			final int from = start;
+			final int to = Math.min(start + ROWS_PER_TASK, nse1);
+			tasks.add(() -> {
+				sumOfDistances(dist1, diag2, mat, from, to, nse2, winSize, winSizeComb1, period);
+				return null;
+			});
+		}
+		try {
+			ConcurrencyTools.invokeAll(tasks, nThreads);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error while calculating fragment distances", e.getCause());
+		}
 		return mat;
 	}
 
+	private static void sumOfDistances(double[][] dist1, double[][] diag2, double[][] mat,
+			int from, int to, int nse2, int winSize, int winSizeComb1, int period) {
+
+		int nse1 = mat.length;
+		// number of fragment starts of protein 2
+		int n2 = Math.min(nse2 - winSize + 1, nse2);
+		// number of fragment starts to calculate, the others repeat
+		int calculated = period > 0 ? Math.min(n2, period) : n2;
+		for (int ise1 = from; ise1 < to; ise1++) {
+			double[] row = mat[ise1];
+			if (ise1 > nse1 - winSize || n2 <= 0) {
+				Arrays.fill(row, -1.0);
+				continue;
+			}
+
+			// row is 0.0 here; the terms are added in the order of the cell by cell sum
+			for (int is1 = 0; is1 < winSize - 2; is1++) {
+				double[] d1 = dist1[ise1 + is1];
+				for (int is2 = is1 + 2; is2 < winSize; is2++) {
+					double d = d1[ise1 + is2];
+					double[] d2 = diag2[is2 - is1];
+					for (int ise2 = 0; ise2 < calculated; ise2++)
+						row[ise2] += Math.abs(d - d2[ise2 + is1]);
+				}
+			}
+			for (int ise2 = 0; ise2 < calculated; ise2++)
+				row[ise2] = row[ise2] / winSizeComb1;
+			if (calculated < n2)
+				System.arraycopy(row, 0, row, calculated, n2 - calculated);
+			Arrays.fill(row, n2, nse2, -1.0);
+		}
+	}
+
 
 
 
@@ -2321,5 +2456,44 @@ nBestTrace=nTrace;
 		this.dist2 = dist2;
 	}
 
+	/**
+	 * @return the number of threads used to calculate the fragment distance matrix
+	 * @since 6.0.6
+	 */
+	public int getNThreads() {
+		return nThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to calculate the fragment distance
+	 * matrix in {@link #initSumOfDistances(int, int, int, int, Atom[], Atom[]) initSumOfDistances}.
+	 * The result does not depend on it. Default 1.
+	 * @param nThreads the number of threads
+	 * @since 6.0.6
+	 */
+	public void setNThreads(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
+	/**
+	 * @return the length of the original chain if ca2 is duplicated, or 0
+	 * @since 6.0.6
+	 */
+	public int getDuplicatedLength() {
+		return duplicatedLength;
+	}
+
+	/**
+	 * Declares that ca2 is made of two copies of a chain of the given length,
+	 * as in CE-CP. The intramolecular distances and the fragment distances of
+	 * the second copy are then copied from the first one instead of being
+	 * calculated; the results are the same. Default 0, for no duplication.
+	 * @param duplicatedLength the length of one copy, or 0
+	 * @since 6.0.6
+	 */
+	public void setDuplicatedLength(int duplicatedLength) {
+		this.duplicatedLength = duplicatedLength;
+	}
+
 
 }
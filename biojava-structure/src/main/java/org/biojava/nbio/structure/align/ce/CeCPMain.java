@@ -149,7 +149,9 @@ public class CeCPMain extends CeMain {
 			throws StructureException {
 		long startTime = System.currentTimeMillis();
 
-		Atom[] ca2m = StructureTools.duplicateCA2(ca2);
+		// the second copy holds the same atoms, CeMain clones them anyway
+		Atom[] ca2m = Arrays.copyOf(ca2, 2 * ca2.length);
+		System.arraycopy(ca2, 0, ca2m, ca2.length, ca2.length);
 
 		if(debug) {
 			System.out.format("Duplicating ca2 took %s ms\n",System.currentTimeMillis()-startTime);
@@ -180,6 +182,17 @@ public class CeCPMain extends CeMain {
 
 
 
+	/**
+	 * Creates a calculator which knows that ca2 is duplicated, so that it
+	 * calculates the distances of the second copy only once.
+	 */
+	@Override
+	protected CECalculator createCalculator(Atom[] ca1, Atom[] ca2) {
+		CECalculator calculator = super.createCalculator(ca1, ca2);
+		calculator.setDuplicatedLength(ca2.length / 2);
+		return calculator;
+	}
+
 	/** Circular permutation specific code to be run after the standard CE alignment
 	 *
 	 * @param afpChain The finished alignment
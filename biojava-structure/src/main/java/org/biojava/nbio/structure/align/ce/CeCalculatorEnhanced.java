@@ -30,6 +30,7 @@ import org.biojava.nbio.structure.*;
 import org.biojava.nbio.structure.align.model.AFP;
 import org.biojava.nbio.structure.align.model.AFPChain;
 import org.biojava.nbio.structure.align.util.AFPAlignmentDisplay;
+import org.biojava.nbio.structure.geometry.CalcCoords;
 import org.biojava.nbio.structure.geometry.Matrices;
 import org.biojava.nbio.structure.geometry.SuperPositions;
 import org.biojava.nbio.structure.jama.Matrix;
@@ -106,6 +107,8 @@ public class CeCalculatorEnhanced {
 	protected static final int nIter = 1;
 	private static final boolean distAll = false;
 
+	protected int nThreads = 1;
+
 	List<MatrixListener> matrixListeners;
 
 	public static final boolean GLOBAL_ALIGN1 = false;
@@ -363,14 +366,20 @@ public class CeCalculatorEnhanced {
 	private double[][] initIntraDistmatrix(Atom[] ca, int nse) throws StructureException
 	{
 
+		// the distances are symmetric (with the same arithmetic both ways),
+		// so only the upper half is calculated
+		if ( params.getScoringStrategy() == CeParameters.ScoringStrategy.CA_SCORING)
+			return CalcCoords.distanceMatrix(CalcCoords.toCoords(ca));
 
 		double[][] intraDist = new double[nse][nse];
 
 		//
 		for(int ise1=0; ise1<nse; ise1++)  {
 
-			for(int ise2=0; ise2<nse; ise2++)  {
+			intraDist[ise1][ise1] = getDistanceWithSidechain(ca[ise1], ca[ise1]);
+			for(int ise2=ise1+1; ise2<nse; ise2++)  {
 				intraDist[ise1][ise2] = getDistanceWithSidechain(ca[ise1], ca[ise2]);
+				intraDist[ise2][ise1] = intraDist[ise1][ise2];
 
 			}
 		}
@@ -380,37 +389,9 @@ public class CeCalculatorEnhanced {
 
 	public double[][] initSumOfDistances(int nse1, int nse2, int winSize, int  winSizeComb1, Atom[] ca1, Atom[] ca2) {
 
-		double d;
-
-		double[][] mat   = new double[nse1][nse2];
-
 		// init the initial mat[] array.
 		// at this stage mat contains the sum of the distances of fragments of the matrices dist1, dist
-		for(int ise1=0; ise1<nse1; ise1++) {
-			for(int ise2=0; ise2<nse2; ise2++) {
-
-				mat[ise1][ise2]=-1.0;
-
-				if(ise1>nse1-winSize || ise2>nse2-winSize) continue;
-
-				d=0.0;
-				// this sums up over the distances of the fragments
-				for(int is1=0; is1<winSize-2; is1++)
-					for(int is2=is1+2; is2<winSize; is2++) {
-						//System.out.println("pos1 :" +  (ise1+is1) + " " + (ise1+is2) +  " " + (ise2+is1) + " " + (ise2+is2));
-						// is this abs or floor? check!
-						d+=Math.abs(dist1[ise1+is1][ise1+is2]-dist2[ise2+is1][ise2+is2]);
-					}
-				mat[ise1][ise2]=d/winSizeComb1;
-
-				//System.out.println("mat ["+ise1+"]["+ise2+"]="+mat[ise1][ise2]);
-			}
-
-		}
-
-		// verified: mat[][] probably ok.
-
-		return mat;
+		return CECalculator.sumOfDistances(dist1, dist2, nse1, nse2, winSize, winSizeComb1, nThreads);
 	}
 
 
@@ -2411,5 +2392,24 @@ nBestTrace=nTrace;
 		this.dist2 = dist2;
 	}
 
+	/**
+	 * @return the number of threads used to calculate the fragment distance matrix
+	 * @since 6.0.6
+	 */
+	public int getNThreads() {
+		return nThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to calculate the fragment distance
+	 * matrix in {@link #initSumOfDistances(int, int, int, int, Atom[], Atom[]) initSumOfDistances}.
+	 * The result does not depend on it. Default 1.
+	 * @param nThreads the number of threads
+	 * @since 6.0.6
+	 */
+	public void setNThreads(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
 
 }
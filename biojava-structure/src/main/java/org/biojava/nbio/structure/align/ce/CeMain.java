@@ -102,7 +102,7 @@ public class CeMain extends AbstractStructureAlignment implements StructureAlign
 			pos++;
 		}
 
-		calculator = new CECalculator(params);
+		calculator = createCalculator(ca1, ca2);
 
 		//Build alignment ca1 to ca2-ca2
 		AFPChain afpChain = new AFPChain(algorithmName);
@@ -138,6 +138,19 @@ public class CeMain extends AbstractStructureAlignment implements StructureAlign
 
 
 
+	/**
+	 * Creates the calculator of an alignment, a new {@link CECalculator}
+	 * with the current parameters.
+	 *
+	 * @param ca1 the atoms of the first structure
+	 * @param ca2 the atoms of the second structure
+	 * @return a new calculator
+	 * @since 6.0.6
+	 */
+	protected CECalculator createCalculator(Atom[] ca1, Atom[] ca2) {
+		return new CECalculator(params);
+	}
+
 	@Override
 	public AFPChain align(Atom[] ca1, Atom[] ca2) throws StructureException {
 
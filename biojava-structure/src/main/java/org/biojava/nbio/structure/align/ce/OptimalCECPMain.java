@@ -25,6 +25,7 @@
 package org.biojava.nbio.structure.align.ce;
 
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.StructureException;
 import org.biojava.nbio.structure.StructureTools;
@@ -32,12 +33,16 @@ import org.biojava.nbio.structure.align.model.AFPChain;
 import org.biojava.nbio.structure.align.util.AFPChainScorer;
 import org.biojava.nbio.structure.align.util.AtomCache;
 import org.biojava.nbio.structure.jama.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * A wrapper for {@link CeMain} which sets default parameters to be appropriate for finding
@@ -55,6 +60,8 @@ import java.util.Scanner;
 public class OptimalCECPMain extends CeMain {
 	private static final boolean debug = true;
 
+	private static final Logger logger = LoggerFactory.getLogger(OptimalCECPMain.class);
+
 
 	public static final String algorithmName = "jCE Optimal Circular Permutation";
 
@@ -460,13 +467,20 @@ public class OptimalCECPMain extends CeMain {
 	 * This algorithm performs a CE alignment for each possible CP site. This is
 	 * quite slow. Use {@link #alignHeuristic(Atom[], Atom[], Object)} for a
 	 * faster algorithm.
+	 * <p>
+	 * The CP sites are aligned in parallel if the parameters set more than one
+	 * thread, and the sites whose best fragment trace is too short are
+	 * abandoned if they set a minimum trace ratio (see
+	 * {@link OptimalCECPParameters#setMinTraceRatio(double)}). The parameters
+	 * are taken from <i>param</i> if it is an {@link OptimalCECPParameters},
+	 * from {@link #getParameters()} otherwise.
 	 *
 	 * @param ca1 CA atoms of the first protein
 	 * @param ca2 CA atoms of the second protein
 	 * @param param {@link CeParameters} object
 	 * @param alignments If not null, should be an empty array of the same length as
 	 *  ca2. This will be filled with the alignments from permuting ca2 by
-	 *  0 to n-1 residues.
+	 *  0 to n-1 residues, or null for the abandoned CP sites.
 	 * @return The best-scoring alignment
 	 * @throws StructureException
 	 */
@@ -482,45 +496,68 @@ public class OptimalCECPMain extends CeMain {
 		AFPChain unaligned = super.align(ca1, ca2, param);
 		AFPChain bestAlignment = unaligned;
 
-		if(debug) {
-			// print progress bar header
-			System.out.print("|");
-			for(int cp=1;cp<ca2.length-1;cp++) {
-				System.out.print("=");
-			}
-			System.out.println("|");
-			System.out.print(".");
-		}
-
 		if(alignments != null) {
 			alignments[0] = unaligned;
 		}
 
-		for(int cp=1;cp<ca2.length;cp++) {
-			// clone ca2 to prevent side effects from propegating
-			Atom[] ca2p = StructureTools.cloneAtomArray(ca2);
+		OptimalCECPParameters cpParams = param instanceof OptimalCECPParameters ?
+				(OptimalCECPParameters) param : params;
+		int nThreads = cpParams.getNThreads();
+		// the trace of the unpermuted alignment is the reference of the abandonment
+		int minTrace = (int) Math.ceil(cpParams.getMinTraceRatio() * calculator.nBestTrace);
 
-			//permute one each time. Alters ca2p as a side effect
-			AFPChain currentAlignment = alignPermuted(ca1,ca2p,param,cp);
+		if(nThreads <= 1 && minTrace <= 0) {
+			if(debug) {
+				// print progress bar header
+				System.out.print("|");
+				for(int cp=1;cp<ca2.length-1;cp++) {
+					System.out.print("=");
+				}
+				System.out.println("|");
+				System.out.print(".");
+			}
 
-			// increment progress bar
-			if(debug) System.out.print(".");
+			for(int cp=1;cp<ca2.length;cp++) {
+				// clone ca2 to prevent side effects from propegating
+				Atom[] ca2p = StructureTools.cloneAtomArray(ca2);
 
-			// fix up names, since cloning ca2 wipes it
+				//permute one each time. Alters ca2p as a side effect
+				AFPChain currentAlignment = alignPermuted(ca1,ca2p,param,cp);
 
-			if (ca2.length!=0 && ca2[0].getGroup().getChain()!=null && ca2[0].getGroup().getChain().getStructure()!=null) {
-				currentAlignment.setName2(ca2[0].getGroup().getChain().getStructure().getName()+" CP="+cp);
-			}
+				// increment progress bar
+				if(debug) System.out.print(".");
+
+				// fix up names, since cloning ca2 wipes it
+				setPermutedName(currentAlignment, ca2, cp);
 
-			double currentScore = currentAlignment.getAlignScore();
+				double currentScore = currentAlignment.getAlignScore();
+
+				if(alignments != null) {
+					alignments[cp] = currentAlignment;
+				}
 
-			if(alignments != null) {
-				alignments[cp] = currentAlignment;
+				if(currentScore>bestAlignment.getAlignScore()) {
+					bestAlignment = currentAlignment;
+				}
 			}
+		} else {
+			AFPChain[] permuted = alignCutPoints(ca1, ca2, param, nThreads, minTrace);
+			int abandoned = 0;
+			for(int cp=1;cp<ca2.length;cp++) {
+				AFPChain currentAlignment = permuted[cp];
 
-			if(currentScore>bestAlignment.getAlignScore()) {
-				bestAlignment = currentAlignment;
+				if(alignments != null) {
+					alignments[cp] = currentAlignment;
+				}
+
+				if(currentAlignment == null) {
+					abandoned++;
+				} else if(currentAlignment.getAlignScore()>bestAlignment.getAlignScore()) {
+					bestAlignment = currentAlignment;
+				}
 			}
+			logger.debug("Abandoned {} of {} CP sites with a trace shorter than {}",
+					abandoned, ca2.length - 1, minTrace);
 		}
 		if(debug) {
 			long elapsedTime = System.currentTimeMillis()-startTime;
@@ -537,6 +574,106 @@ public class OptimalCECPMain extends CeMain {
 
 
 
+	/**
+	 * Aligns ca1 with ca2 permuted by each CP site from 1 to n-1, each with
+	 * its own {@link CeMain}. The permuted alignments are the same as the ones
+	 * of {@link #alignPermuted(Atom[], Atom[], Object, int)}.
+	 *
+	 * @param nThreads the number of CP sites aligned at the same time
+	 * @param minTrace the minimum number of fragments of the best trace of a
+	 *  CP site to optimize its alignment, 0 to optimize all of them
+	 * @return the alignments, indexed by the CP site, null for cp=0 and for the
+	 *  abandoned CP sites
+	 */
+	private AFPChain[] alignCutPoints(Atom[] ca1, Atom[] ca2, Object param,
+			int nThreads, int minTrace) throws StructureException {
+
+		List<Callable<AFPChain>> tasks = new ArrayList<>(ca2.length);
+		for(int cp=1;cp<ca2.length;cp++) {
+			final int cutPoint = cp;
+			tasks.add(() -> alignCutPoint(ca1, ca2, param, cutPoint, minTrace));
+		}
+
+		List<AFPChain> results;
+		try {
+			results = ConcurrencyTools.invokeAll(tasks, nThreads);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof StructureException)
+				throw (StructureException) e.getCause();
+			throw new StructureException(e.getCause());
+		}
+		AFPChain[] permuted = new AFPChain[ca2.length];
+		for(int cp=1;cp<ca2.length;cp++) {
+			permuted[cp] = results.get(cp-1);
+		}
+		return permuted;
+	}
+
+	/**
+	 * Aligns ca1 with a copy of ca2 permuted by <i>cp</i> residues.
+	 * @return the alignment, or null if the CP site was abandoned
+	 */
+	private AFPChain alignCutPoint(Atom[] ca1, Atom[] ca2, Object param,
+			int cp, int minTrace) throws StructureException {
+
+		Atom[] ca2p = StructureTools.cloneAtomArray(ca2);
+		permuteArray(ca2p,cp);
+
+		CutPointAligner aligner = new CutPointAligner(minTrace);
+		AFPChain afpChain = aligner.align(ca1, ca2p, param);
+		// the CP sites are aligned in any order, possibly by several threads: no progress bar
+		logger.debug("Aligned CP site {} with a best trace of {} fragments",
+				cp, aligner.getCECalculator().nBestTrace);
+		if(aligner.getCECalculator().nBestTrace < minTrace) {
+			return null;
+		}
+
+		permuteAFPChain(afpChain, -cp);
+		setPermutedName(afpChain, ca2, cp);
+		return afpChain;
+	}
+
+	/**
+	 * Names the second structure of a permuted alignment after the structure
+	 * of the original, unpermuted atoms.
+	 */
+	private static void setPermutedName(AFPChain afpChain, Atom[] ca2, int cp) {
+		if (ca2.length!=0 && ca2[0].getGroup().getChain()!=null && ca2[0].getGroup().getChain().getStructure()!=null) {
+			afpChain.setName2(ca2[0].getGroup().getChain().getStructure().getName()+" CP="+cp);
+		}
+	}
+
+	/**
+	 * The CE alignment of a single CP site, which stops after the trace of
+	 * the fragment pairs if the best trace has less than a minimum number of
+	 * fragments.
+	 */
+	private static class CutPointAligner extends CeMain {
+		private final int minTrace;
+
+		CutPointAligner(int minTrace) {
+			this.minTrace = minTrace;
+		}
+
+		@Override
+		public String getAlgorithmName() {
+			return OptimalCECPMain.algorithmName;
+		}
+
+		@Override
+		protected CECalculator createCalculator(Atom[] ca1, Atom[] ca2) {
+			return new CECalculator(params) {
+				@Override
+				public void nextStep(AFPChain afpChain, Atom[] ca1, Atom[] ca2)
+						throws StructureException {
+					if(nBestTrace >= minTrace) {
+						super.nextStep(afpChain, ca1, ca2);
+					}
+				}
+			};
+		}
+	}
+
 	public static void main(String[] args){
 		try {
 			String name1, name2;
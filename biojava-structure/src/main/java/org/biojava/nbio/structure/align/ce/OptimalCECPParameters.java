@@ -43,6 +43,16 @@ public class OptimalCECPParameters extends CeParameters {
 	 * <p>TODO make this a ResidueNumber
 	 */
 	protected Integer cpPoint;
+	/**
+	 * The number of cut points aligned at the same time
+	 */
+	protected int nThreads;
+	/**
+	 * The minimum length of the best fragment trace of a cut point, relative
+	 * to the one of the alignment without permutation, for the cut point to be
+	 * aligned completely. 0 aligns all the cut points.
+	 */
+	protected double minTraceRatio;
 
 	@Override
 	public String toString() {
@@ -56,6 +66,8 @@ public class OptimalCECPParameters extends CeParameters {
 		+ ", seqWeight=" + seqWeight
 		+ ", tryAllCPs" + tryAllCPs
 		+ ", cpPoint" + cpPoint
+		+ ", nThreads=" + nThreads
+		+ ", minTraceRatio=" + minTraceRatio
 		+ "]";
 	}
 
@@ -65,6 +77,8 @@ public class OptimalCECPParameters extends CeParameters {
 		super.reset();
 		tryAllCPs = true;
 		cpPoint = 0;
+		nThreads = 1;
+		minTraceRatio = 0;
 	}
 
 
@@ -133,6 +147,47 @@ public class OptimalCECPParameters extends CeParameters {
 		this.cpPoint = cpPoint;
 	}
 
+	/**
+	 * @return the number of cut points aligned at the same time
+	 * @since 6.0.6
+	 */
+	public int getNThreads() {
+		return nThreads;
+	}
+
+	/**
+	 * @param nThreads the number of cut points aligned at the same time,
+	 *  1 to align them sequentially
+	 * @since 6.0.6
+	 */
+	public void setNThreads(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
+	/**
+	 * @return the minimum length of the best fragment trace of a cut point,
+	 *  relative to the one of the alignment without permutation
+	 * @since 6.0.6
+	 */
+	public double getMinTraceRatio() {
+		return minTraceRatio;
+	}
+
+	/**
+	 * Cut points whose best trace of aligned fragment pairs is shorter than
+	 * this fraction of the best trace without permutation are abandoned
+	 * before the optimization of their alignment. This is a heuristic: a
+	 * short trace usually gives a low score, but the optimization may still
+	 * extend it.
+	 *
+	 * @param minTraceRatio the minimum relative trace length, 0 (the
+	 *  default) to align all the cut points completely
+	 * @since 6.0.6
+	 */
+	public void setMinTraceRatio(double minTraceRatio) {
+		this.minTraceRatio = minTraceRatio;
+	}
+
 
 
 }
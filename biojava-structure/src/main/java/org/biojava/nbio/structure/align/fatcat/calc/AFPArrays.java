@@ -0,0 +1,152 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.fatcat.calc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.biojava.nbio.structure.align.model.AFP;
+import org.biojava.nbio.structure.jama.Matrix;
+
+/**
+ * The AFPs of an alignment as parallel arrays of primitives, for the hot
+ * loops of the AFP extraction and chaining. The AFPs are in the order of the
+ * AFP list of the {@link org.biojava.nbio.structure.align.model.AFPChain}:
+ * sorted by their position in the first protein, then in the second one.
+ *
+ * @since 6.0.6
+ */
+final class AFPArrays {
+
+	int size;
+	int[] p1;
+	int[] p2;
+	int[] fragLen;
+	double[] rmsd;
+	double[] score;
+
+	/**
+	 * Creates empty arrays.
+	 *
+	 * @param capacity
+	 *            the initial capacity
+	 */
+	AFPArrays(int capacity) {
+		p1 = new int[capacity];
+		p2 = new int[capacity];
+		fragLen = new int[capacity];
+		rmsd = new double[capacity];
+		score = new double[capacity];
+	}
+
+	/**
+	 * Copies the positions, lengths, RMSDs and scores of a list of AFPs.
+	 *
+	 * @param afpSet
+	 *            the AFPs
+	 * @return the AFPs as arrays
+	 */
+	static AFPArrays of(List<AFP> afpSet) {
+		int n = afpSet.size();
+		AFPArrays afps = new AFPArrays(n);
+		afps.size = n;
+		for (int a = 0; a < n; a++) {
+			AFP afp = afpSet.get(a);
+			afps.p1[a] = afp.getP1();
+			afps.p2[a] = afp.getP2();
+			afps.fragLen[a] = afp.getFragLen();
+			afps.rmsd[a] = afp.getRmsd();
+			afps.score[a] = afp.getScore();
+		}
+		return afps;
+	}
+
+	/**
+	 * Concatenates the AFPs of several arrays, in order.
+	 *
+	 * @param parts
+	 *            the arrays to concatenate
+	 * @return the AFPs of all the arrays
+	 */
+	static AFPArrays concat(List<AFPArrays> parts) {
+		int n = 0;
+		for (AFPArrays part : parts)
+			n += part.size;
+		AFPArrays afps = new AFPArrays(n);
+		afps.size = n;
+		int pos = 0;
+		for (AFPArrays part : parts) {
+			System.arraycopy(part.p1, 0, afps.p1, pos, part.size);
+			System.arraycopy(part.p2, 0, afps.p2, pos, part.size);
+			System.arraycopy(part.fragLen, 0, afps.fragLen, pos, part.size);
+			System.arraycopy(part.rmsd, 0, afps.rmsd, pos, part.size);
+			System.arraycopy(part.score, 0, afps.score, pos, part.size);
+			pos += part.size;
+		}
+		return afps;
+	}
+
+	/**
+	 * Appends an AFP, growing the arrays if needed.
+	 */
+	void add(int p1, int p2, int fragLen, double rmsd, double score) {
+		if (size == this.p1.length) {
+			int capacity = Math.max(16, 2 * size);
+			this.p1 = Arrays.copyOf(this.p1, capacity);
+			this.p2 = Arrays.copyOf(this.p2, capacity);
+			this.fragLen = Arrays.copyOf(this.fragLen, capacity);
+			this.rmsd = Arrays.copyOf(this.rmsd, capacity);
+			this.score = Arrays.copyOf(this.score, capacity);
+		}
+		this.p1[size] = p1;
+		this.p2[size] = p2;
+		this.fragLen[size] = fragLen;
+		this.rmsd[size] = rmsd;
+		this.score[size] = score;
+		size++;
+	}
+
+	/**
+	 * Creates the AFP objects, all with the same superposition.
+	 *
+	 * @param m
+	 *            the rotation matrix of the AFPs
+	 * @param t
+	 *            the translation of the AFPs, copied to each AFP
+	 * @return the list of AFPs
+	 */
+	List<AFP> toList(Matrix m, double[] t) {
+		List<AFP> afpSet = new ArrayList<AFP>(size);
+		for (int a = 0; a < size; a++) {
+			AFP afp = new AFP();
+			afp.setP1(p1[a]);
+			afp.setP2(p2[a]);
+			afp.setFragLen(fragLen[a]);
+			afp.setRmsd(rmsd[a]);
+			afp.setM(m);
+			afp.setT(t.clone());
+			afp.setScore(score[a]);
+			afpSet.add(afp);
+		}
+		return afpSet;
+	}
+}
@@ -26,14 +26,20 @@
 
 package org.biojava.nbio.structure.align.fatcat.calc;
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.*;
 import org.biojava.nbio.structure.align.model.AFP;
 import org.biojava.nbio.structure.align.model.AFPChain;
-import org.biojava.nbio.structure.geometry.SuperPositions;
+import org.biojava.nbio.structure.geometry.SuperPosition;
+import org.biojava.nbio.structure.geometry.SuperPositionQuat;
 import org.biojava.nbio.structure.jama.Matrix;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.vecmath.Point3d;
 
 /**
  * A class that performs calculations on AFPChains
@@ -46,6 +52,31 @@ public class AFPCalculator
 	public static final boolean debug = FatCatAligner.debug;
 
 
+	/**
+	 * Minimum number of rows of the AFP search space extracted per parallel
+	 * task.
+	 */
+	private static final int ROWS_PER_TASK = 16;
+
+	/**
+	 * Tolerance of the radius of gyration bound of the fragment RMSD, so that
+	 * rounding errors never prune an AFP below the RMSD cutoff.
+	 */
+	private static final double GYRATION_TOLERANCE = 1e-6;
+
+	/**
+	 * Extracts the aligned fragment pairs (AFPs) of two proteins: the pairs of
+	 * fragments of length {@link FatCatParameters#getFragLen()} that superpose
+	 * with an RMSD below {@link FatCatParameters#getRmsdCut()}.
+	 * <p>
+	 * The points of every fragment are copied once, with their end-to-end
+	 * distance and radius of gyration. The
+	 * difference of the radii of gyration of two fragments is a lower bound of
+	 * their RMSD, so most dissimilar pairs are discarded without a
+	 * superposition. The rows of the search space (the fragments of the first
+	 * protein) are extracted with {@link FatCatParameters#getNThreads()}
+	 * threads, and the resulting AFP list is the same as with a single one.
+	 */
 	public static void extractAFPChains(FatCatParameters params, AFPChain afpChain,Atom[] ca1,Atom[] ca2) throws StructureException {
 
 		List<AFP> afpSet = new ArrayList<AFP>();
@@ -54,84 +85,67 @@ public class AFPCalculator
 		if ( debug )
 			System.err.println("nr of atoms ca1: " + ca1.length + " ca2: " +  ca2.length);
 
-
-
-		int     p1, p2;
-		@SuppressWarnings("unused")
-		int n0, n, n1, n2;
-		double  filter1;
-		double rmsd = 0;
-
 		Matrix r = new Matrix(3,3);
 		Atom   t = new AtomImpl();
 
-
 		int sparse = params.getSparse();
 		int maxTra = params.getMaxTra();
 		int fragLen = params.getFragLen();
-		double disFilter = params.getDisFilter();
-		double rmsdCut = params.getRmsdCut();
-		double badRmsd = params.getBadRmsd();
-		double fragScore = params.getFragScore();
 
 		int     add = sparse + 1; //if add > 1, use sparse sampling
-		n0 = n = n1 = n2 = 0;
-
-		int minLen = 0;
 
 		int prot1Length = ca1.length;
 		int prot2Length = ca2.length;
 
-		if(prot1Length < prot2Length)
-			minLen = prot1Length;
-		else
-			minLen = prot2Length;
+		int minLen = Math.min(prot1Length, prot2Length);
 		afpChain.setMinLen(minLen);
 
 		afpChain.setBlockResList(new int[maxTra+1][2][minLen]);
 		afpChain.setFocusRes1(new int[minLen]);
 		afpChain.setFocusRes2(new int[minLen]);
 
-		for(p1 = 0; p1 < prot1Length - fragLen; p1 += add )    {
-			for(p2 = 0; p2 < prot2Length - fragLen; p2 += add)     {
-				n0 ++;
-				filter1 = getEnd2EndDistance(ca1, ca2, p1, p1 + fragLen - 1, p2, p2 + fragLen - 1);
-				//difference bewteen end-to-end distances
-				if(filter1 > disFilter) { n1 ++; continue; }
-				boolean filter2 = filterTerminal(ca1,ca2, p1, p1 + fragLen - 1, p2, p2 + fragLen - 1, fragLen, minLen);
-				if(filter2)     {
-					n2 ++;
-					continue;
-
-				} //be cautious to use this filter !!
-
-				// here FATCAT does a a jacobi transformation
-				//rmsd = kearsay(fragLen, ca1[p1], ca2[p2], r, t);
-				// we use the BioJava SVD instead...
-
-				//
-				rmsd = getRmsd(ca1,ca2,fragLen, p1,p2,r,t);
-
-				if(rmsd < rmsdCut)      {
-					AFP     afptmp = new AFP();
-					afptmp.setP1(p1);
-					afptmp.setP2(p2);
-					afptmp.setFragLen(fragLen);
-					afptmp.setRmsd(rmsd);
-					afptmp.setM(r);
-					afptmp.setT(t.getCoords());
-					afptmp.setScore(scoreAfp(afptmp,badRmsd,fragScore));
-					afpSet.add(afptmp);
-					n ++;
-				}
-			}
+		Fragments frags1 = new Fragments(ca1, fragLen);
+		Fragments frags2 = new Fragments(ca2, fragLen);
+
+		// the rows p1 of the search space, in blocks for the parallel tasks
+		int rows = prot1Length > fragLen ? (prot1Length - fragLen - 1) / add + 1 : 0;
+		int nThreads = Math.max(1, Math.min(params.getNThreads(), rows / ROWS_PER_TASK));
+		int rowsPerTask = nThreads > 1 ? Math.max(ROWS_PER_TASK, rows / (4 * nThreads)) : Math.max(rows, 1);
+
+		List<Callable<AFPArrays>> tasks = new ArrayList<Callable<AFPArrays>>();
+		int[][] counts = new int[(rows + rowsPerTask - 1) / rowsPerTask][4];
+		for (int task = 0; task < counts.length; task++) {
+			final int first = task * rowsPerTask;
+			final int last = Math.min(rows, first + rowsPerTask);
+			final int[] taskCounts = counts[task];
+			tasks.add(() -> {
+				AFPArrays afps = new AFPArrays(16);
+				// the same algorithm as SuperPositions, which is not thread safe
+				SuperPosition superposer = new SuperPositionQuat(false);
+				for (int row = first; row < last; row++)
+					extractRow(row * add, frags1, frags2, add, minLen, params, superposer, afps, taskCounts);
+				return afps;
+			});
 		}
 
-		int afpNum = afpSet.size();
+		List<AFPArrays> parts;
+		try {
+			parts = ConcurrencyTools.invokeAll(tasks, nThreads);
+		} catch (ExecutionException e) {
+			throw new StructureException(e.getCause());
+		}
+		afpSet.addAll(AFPArrays.concat(parts).toList(r, t.getCoords()));
 
 		if(debug) {
-			String msg = String.format("possible AFP-pairs %d, remain %d after filter 1 remove %d; filter 2 remove %d\n",
-					n0, afpNum, n1, n2);
+			int n0 = 0, n1 = 0, n2 = 0, n3 = 0;
+			for (int[] c : counts) {
+				n0 += c[0];
+				n1 += c[1];
+				n2 += c[2];
+				n3 += c[3];
+			}
+			String msg = String.format("possible AFP-pairs %d, remain %d after filter 1 remove %d; filter 2 remove %d; gyration filter remove %d\n",
+					n0, afpSet.size(), n1, n2, n3);
 			System.err.println(msg);
 		}
 
@@ -139,22 +153,93 @@ public class AFPCalculator
 	}
 
 	/**
-	 * filter 1 for AFP extration: the distance of end-to-end
-	 * @param p1b
-	 * @param p1e
-	 * @param p2b
-	 * @param p2e
-	 * @return
+	 * Extracts the AFPs of a fragment of the first protein with all the
+	 * fragments of the second one.
+	 *
+	 * @param counts
+	 *            the number of pairs considered and removed by each filter
 	 */
-	private static final double getEnd2EndDistance(Atom[] ca1, Atom[] ca2, int p1b, int p1e, int p2b, int p2e)
-	{
+	private static void extractRow(int p1, Fragments frags1, Fragments frags2,
+			int add, int minLen, FatCatParameters params, SuperPosition superposer,
+			AFPArrays afps, int[] counts) {
 
-		double min = 99;
-			double dist1 = Calc.getDistance(ca1[p1b], ca1[p1e]);
-			double dist2 = Calc.getDistance(ca2[p2b], ca2[p2e]);
-			min = dist1 - dist2;
+		int fragLen = frags1.fragLen;
+		double disFilter = params.getDisFilter();
+		double rmsdCut = params.getRmsdCut();
+		double badRmsd = params.getBadRmsd();
+		double fragScore = params.getFragScore();
+
+		for(int p2 = 0; p2 < frags2.length - fragLen; p2 += add)     {
+			counts[0]++;
+			//difference bewteen end-to-end distances
+			double filter1 = Math.abs(frags1.end2end[p1] - frags2.end2end[p2]);
+			if(filter1 > disFilter) { counts[1]++; continue; }
+			boolean filter2 = filterTerminal(frags1.length, frags2.length, p1, p1 + fragLen - 1, p2, p2 + fragLen - 1, fragLen, minLen);
+			if(filter2)     {
+				counts[2]++;
+				continue;
+
+			} //be cautious to use this filter !!
+
+			// the RMSD is at least the difference of the radii of gyration
+			if (Math.abs(frags1.gyration[p1] - frags2.gyration[p2]) >= rmsdCut + GYRATION_TOLERANCE) {
+				counts[3]++;
+				continue;
+			}
+
+			// here FATCAT does a a jacobi transformation
+			//rmsd = kearsay(fragLen, ca1[p1], ca2[p2], r, t);
+			// we use the BioJava superposition instead...
+			double rmsd = superposer.getRmsd(frags1.points[p1], frags2.points[p2]);
 
-		return Math.abs(min);
+			if(rmsd < rmsdCut)
+				afps.add(p1, p2, fragLen, rmsd, scoreAfp(rmsd, badRmsd, fragScore));
+		}
+	}
+
+	/**
+	 * The points, end-to-end distance and radius of gyration of all the
+	 * fragments of a protein.
+	 */
+	private static final class Fragments {
+
+		final int length;
+		final int fragLen;
+		final Point3d[][] points;
+		final double[] end2end;
+		final double[] gyration;
+
+		Fragments(Atom[] ca, int fragLen) {
+			this.length = ca.length;
+			this.fragLen = fragLen;
+			int n = Math.max(0, ca.length - fragLen + 1);
+			points = new Point3d[n][];
+			end2end = new double[n];
+			gyration = new double[n];
+			for (int p = 0; p < n; p++) {
+				Point3d[] frag = new Point3d[fragLen];
+				double cx = 0, cy = 0, cz = 0;
+				for (int i = 0; i < fragLen; i++) {
+					frag[i] = ca[p + i].getCoordsAsPoint3d();
+					cx += frag[i].x;
+					cy += frag[i].y;
+					cz += frag[i].z;
+				}
+				cx /= fragLen;
+				cy /= fragLen;
+				cz /= fragLen;
+				double g = 0;
+				for (Point3d point : frag) {
+					double dx = point.x - cx;
+					double dy = point.y - cy;
+					double dz = point.z - cz;
+					g += dx * dx + dy * dy + dz * dz;
+				}
+				points[p] = frag;
+				end2end[p] = Calc.getDistance(ca[p], ca[p + fragLen - 1]);
+				gyration[p] = Math.sqrt(g / fragLen);
+			}
+		}
 	}
 
 	/**
@@ -166,10 +251,10 @@ public class AFPCalculator
 	 * @return
 	 */
 
-	private static final  boolean filterTerminal(Atom[] ca1, Atom[] ca2, int p1b, int p1e, int p2b, int p2e, int fragLen, int minLen)
+	private static final  boolean filterTerminal(int length1, int length2, int p1b, int p1e, int p2b, int p2e, int fragLen, int minLen)
 	{
 		int     d1 = (p1b < p2b)?p1b:p2b;
-		int     d2 = (ca1.length - p1e) < (ca2.length - p2e)?(ca1.length - p1e):(ca2.length - p2e);
+		int     d2 = (length1 - p1e) < (length2 - p2e)?(length1 - p1e):(length2 - p2e);
 		int     d3 = d1 + d2 + fragLen; //maximum alignment length from current AFP
 
 
@@ -180,66 +265,17 @@ public class AFPCalculator
 
 	}
 
-	private static final double getRmsd(Atom[] ca1, Atom[] ca2, int fragLen,
-			int p1, int p2, Matrix m, Atom t) throws StructureException {
-
-
-		double rmsd = 99.9;
-		Atom[] catmp1 = getFragment(ca1, p1, fragLen,false);
-		Atom[] catmp2 = getFragment(ca2, p2, fragLen,false);
-
-		if ( catmp1 == null) {
-			System.err.println("could not get fragment for ca1 " + p1 + " " + fragLen );
-			return rmsd;
-		}
-
-		if ( catmp2 == null) {
-			System.err.println("could not get fragment for ca2 " + p2 + " " + fragLen );
-			return rmsd;
-		}
-
-		return SuperPositions.getRmsd(Calc.atomsToPoints(catmp1),
-				Calc.atomsToPoints(catmp2));
-	}
-
-	/** get a continue subset of Atoms based by the starting position and the length
-	 *
-	 * @param caall
-	 * @param pos ... the start position
-	 * @param fragmentLength .. the length of the subset to extract.
-	 * @param clone: returns a copy of the atom (in case the coordinate get manipulated...)
-	 * @return an Atom[] array
-	 */
-	private static final Atom[] getFragment(Atom[] caall, int pos, int fragmentLength ,
-			boolean clone){
-
-		if ( pos+fragmentLength > caall.length)
-			return null;
-
-		Atom[] tmp = new Atom[fragmentLength];
-
-		for (int i=0;i< fragmentLength;i++){
-			if (clone){
-				tmp[i] = (Atom)caall[i+pos].clone();
-			} else {
-				tmp[i] = caall[i+pos];
-			}
-		}
-		return tmp;
-
-	}
-
 
 	/**
 	 * Assign score to each AFP
 	 */
 
-	private static final double scoreAfp(AFP afp, double badRmsd, double fragScore)
+	private static final double scoreAfp(double rmsd, double badRmsd, double fragScore)
 	{
 		//longer AFP with low rmsd is better
 		double  s, w;
 		//s = (rmsdCut - afptmp.rmsd) * afptmp.len; //the same scroing strategy as that in the post-processing
-		w = afp.getRmsd() / badRmsd;
+		w = rmsd / badRmsd;
 		w = w * w;
 		s = fragScore * (1.0 - w);
 		return s;
@@ -32,6 +32,7 @@ import org.biojava.nbio.structure.StructureException;
 import org.biojava.nbio.structure.align.AFPTwister;
 import org.biojava.nbio.structure.align.model.AFP;
 import org.biojava.nbio.structure.align.model.AFPChain;
+import org.biojava.nbio.structure.geometry.CalcCoords;
 import org.biojava.nbio.structure.geometry.SuperPositions;
 import org.biojava.nbio.structure.jama.Matrix;
 
@@ -118,25 +119,30 @@ public class AFPChainer
 		afpChain.setDisTable1(disTable1);
 		afpChain.setDisTable2(disTable2);
 
+		// the AFPs and distances as primitives for the dynamic programming
+		AFPArrays afps = AFPArrays.of(afpSet);
+		AFPConnection connection = new AFPConnection(afps, params,
+				disTable1.getArray(), disTable2.getArray());
+
 		for(i = 0; i < afpNum; i ++)    {
-			sco[i] = afpSet.get(i).getScore(); //start from itself
+			sco[i] = afps.score[i]; //start from itself
 			pre[i] = -1;
 			twi[i] = 0;
-			if ( afpSet.get(i).getP1() < fragLen || afpSet.get(i).getP2() < fragLen)
+			if ( afps.p1[i] < fragLen || afps.p2[i] < fragLen)
 				n = 0;
 			else
-				n = getCompatibleAfps(i, list, params, afpChain); //get a compatible list
+				n = getCompatibleAfps(i, list, params, afps, afpChain); //get a compatible list
 			//printf("afp %d, compatible %d\n", i, n);
 			for(j0 = 0; j0 < n; j0 ++)      {
 				j = list[j0];
-				isConnected = afpPairConn(j, i, params,afpChain); //note: j, i
-				Double conn = afpChain.getConn();
+				isConnected = connection.connect(j, i); //note: j, i
+				double conn = connection.conn;
 				int t = 0;
 				if ( isConnected)
 					t=1;
 				if(twi[j] + t > maxTra) continue;
 				//two many transformation are disfavored
-				stmp = sco[j] + afpSet.get(i).getScore() + conn;
+				stmp = sco[j] + afps.score[i] + conn;
 				if(stmp > sco[i])       { //considered all previous compatible AFPs
 					sco[i] = stmp;
 					twi[i] = twi[j] + t;
@@ -148,6 +154,8 @@ public class AFPChainer
 				maxafp = i;
 			}
 		}
+		afpChain.setConn(connection.conn);
+		afpChain.setDVar(connection.dvar);
 
 		int     currafp = maxafp;
 		if(debug)
@@ -228,7 +236,7 @@ public class AFPChainer
 	 *
 	 *
 	 */
-	private  static int getCompatibleAfps(int afp, int[] list, FatCatParameters params, AFPChain afpChain){
+	private  static int getCompatibleAfps(int afp, int[] list, FatCatParameters params, AFPArrays afps, AFPChain afpChain){
 
 		int     i, j, i1, j1, f, G, c, a1, a2, a3, b1, b2, b3, s1, s2;
 
@@ -236,14 +244,13 @@ public class AFPChainer
 		int maxGapFrag = params.getMaxGapFrag();
 		int misCut = params.getMisCut();
 		int maxTra = params.getMaxTra();
-		List<AFP> afpSet = afpChain.getAfpSet();
 
 		f = fragLen;
 		G = maxGapFrag;
 		c = misCut;
 
-		i1 = afpSet.get(afp).getP1();
-		j1 = afpSet.get(afp).getP2();
+		i1 = afps.p1[afp];
+		j1 = afps.p2[afp];
 		a3 = i1 - f;
 		a2 = a3 - c;
 		a1 = i1 - G;
@@ -356,6 +363,109 @@ public class AFPChainer
 		return ch;
 	}
 
+	/**
+	 * The connectivity of AFP pairs as in
+	 * {@link #afpPairConn(int, int, FatCatParameters, AFPChain)}, on the
+	 * primitive arrays of the AFPs and of the distance tables, with the
+	 * parameters read once.
+	 */
+	private static final class AFPConnection {
+
+		private final AFPArrays afps;
+		private final double[][] disTable1;
+		private final double[][] disTable2;
+
+		private final double misScore;
+		private final double maxPenalty;
+		private final double disCut;
+		private final double gapExtend;
+		private final double torsionPenalty;
+		private final double disSmooth;
+		private final int fragLen;
+		private final double afpDisCut;
+		private final double fragLenSq;
+
+		/** The connectivity and distance of the last pair */
+		double conn = 0;
+		double dvar = 0;
+
+		AFPConnection(AFPArrays afps, FatCatParameters params,
+				double[][] disTable1, double[][] disTable2) {
+			this.afps = afps;
+			this.disTable1 = disTable1;
+			this.disTable2 = disTable2;
+			misScore = params.getMisScore();
+			maxPenalty = params.getMaxPenalty();
+			disCut = params.getDisCut();
+			gapExtend = params.getGapExtend();
+			torsionPenalty = params.getTorsionPenalty();
+			disSmooth = params.getDisSmooth();
+			fragLen = params.getFragLen();
+			afpDisCut = params.getAfpDisCut();
+			fragLenSq = params.getFragLenSq();
+		}
+
+		/**
+		 * @param afp1 the previous AFP
+		 * @param afp2 the next AFP
+		 * @return flag if they are connected
+		 */
+		boolean connect(int afp1, int afp2) {
+			int[] p1 = afps.p1;
+			int[] p2 = afps.p2;
+
+			//calcGap(afp2, afp1)
+			int     m = (p1[afp2] - p1[afp1]) - (p2[afp2] - p2[afp1]);
+			if(m < 0)       m = -m;
+			//calcMismatch(afp2, afp1)
+			int     l1 = p1[afp2] - p1[afp1] - afps.fragLen[afp1];
+			int     l2 = p2[afp2] - p2[afp1] - afps.fragLen[afp1];
+			int     g = (l1 > l2?l2:l1);
+
+			double  gp = misScore * m;
+			if(g > 0)       {
+				gp += gapExtend * g;
+			}
+			if(gp < maxPenalty)     gp = maxPenalty; //penalty cut-off
+
+			double  d = distance(afp1, afp2);
+
+			boolean     ch = false;
+			double  tp = 0.0;
+			if(d >= disCut) {
+				tp = torsionPenalty;
+				ch = true;
+			}
+			else  if(d > disCut - disSmooth)        {
+				double  wt = Math.sqrt((d - disCut + disSmooth) / disSmooth);
+				tp = torsionPenalty * wt;
+			}
+
+			dvar = d;
+			conn = tp + gp;
+			return ch;
+		}
+
+		/**
+		 * @see AFPChainer#calAfpDis(int, int, FatCatParameters, AFPChain)
+		 */
+		private double distance(int afp1, int afp2) {
+			int     ai0 = afps.p1[afp1], bi0 = afps.p2[afp1];
+			int     aj0 = afps.p1[afp2], bj0 = afps.p2[afp2];
+			double  rms = 0;
+			for(int i = 0; i < fragLen; i ++)   {
+				int ai = ai0 + i;
+				int bi = bi0 + i;
+				for(int j = 0; j < fragLen; j ++)   {
+					double d = disTable1[aj0 + j][ai] - disTable2[bj0 + j][bi];
+					rms += d * d;
+					if(rms > afpDisCut)     { return (disCut); }
+				}
+			}
+			return (Math.sqrt(rms / fragLenSq));
+		}
+	}
+
 	/**
 	 * return the gaps between this and afp
 	 * requiring afp1 >  afp2
@@ -672,7 +782,7 @@ public class AFPChainer
 
 		for ( int i =0 ; i< focusResn;i++){
 			tmp1[i] =       ca1[focusRes1[i]];
-			tmp2[i] = (Atom)ca2[focusRes2[i]].clone();
+			tmp2[i] =       ca2[focusRes2[i]];
 			if (tmp1[i].getCoords() == null){
 				System.err.println("tmp1 got null: " +i + " pos: " + focusRes1[i]);
 			}
@@ -692,7 +802,8 @@ public class AFPChainer
 		return rmsd;
 
 	}
-	/** Calculate the RMSD for two sets of atoms. Rotates the 2nd atom set so make sure this does not cause problems later
+	/** Calculate the RMSD for two sets of atoms. The 2nd atom set is superposed as a copy
+	 * of its coordinates, the atoms are not modified.
 	 *
 	 *
 	 * @param catmp1
@@ -703,7 +814,9 @@ public class AFPChainer
 		Matrix4d trans = SuperPositions.superpose(Calc.atomsToPoints(catmp1),
 				Calc.atomsToPoints(catmp2));
 
-		Calc.transform(catmp2, trans);
+		double[] coords1 = CalcCoords.toCoords(catmp1);
+		double[] coords2 = CalcCoords.toCoords(catmp2);
+		CalcCoords.transform(trans, coords2);
 
 		//   if ( showAlig) {
 		//      StructureAlignmentJmol jmol = new StructureAlignmentJmol();
@@ -740,7 +853,7 @@ public class AFPChainer
 		//      jmol.evalString("model 0;");
 		//   }
 
-		return Calc.rmsd(catmp1,catmp2);
+		return CalcCoords.rmsd(coords1, coords2);
 	}
 
 }
@@ -60,6 +60,7 @@ public class FatCatParameters implements ConfigStrucAligParams
 	double resScore;
 	double fragScore;
 	int sparse;
+	int nThreads;
 	boolean optimizeAlignment; //whether to do post-processing to improve the alignment
 	public FatCatParameters(){
 		reset();
@@ -91,6 +92,7 @@ public class FatCatParameters implements ConfigStrucAligParams
 		resScore = 3.0; //on average, the score for each well-matched residue pair
 		fragScore = resScore * fragLen; //the score for each well-matched fragment
 		sparse = 0;
+		nThreads = 1;
 		optimizeAlignment = true; //No effect at the moment
 	}
 
@@ -363,6 +365,28 @@ public class FatCatParameters implements ConfigStrucAligParams
 		this.sparse = sparse;
 	}
 
+	/**
+	 * @return the number of threads used to extract the AFPs
+	 * @since 6.0.6
+	 */
+	public int getNThreads()
+	{
+		return nThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to extract the AFPs. The AFPs and the
+	 * alignment do not depend on it. Default 1.
+	 *
+	 * @param nThreads
+	 *            the number of threads
+	 * @since 6.0.6
+	 */
+	public void setNThreads(int nThreads)
+	{
+		this.nThreads = nThreads;
+	}
+
 
 	@Override
 	public List<String> getUserConfigHelp() {
@@ -0,0 +1,210 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.multiple.mc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.biojava.nbio.core.util.ConcurrencyTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs several Monte Carlo chains of an optimization in parallel, as
+ * independent restarts from the same seed, and keeps the best one.
+ * <p>
+ * Each chain has its own stream of random numbers, split from the random seed
+ * with a {@link SplittableRandom}, so that the chains follow different
+ * trajectories. The chains advance in rounds of a fixed number of steps.
+ * Between two rounds, the chain with the lowest score continues from the
+ * state of the best chain, and all the chains stop after the round in which
+ * one of them converges. Since the chains only interact between rounds, the
+ * result does not depend on the thread scheduling and is reproducible for a
+ * given random seed.
+ *
+ * @since 6.0.6
+ */
+public class MonteCarloChains {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(MonteCarloChains.class);
+
+	/**
+	 * A Monte Carlo optimization that can be run step by step.
+	 *
+	 * @param <C>
+	 *            the type of the chain
+	 */
+	public interface Chain<C extends Chain<C>> {
+
+		/**
+		 * Runs at most the given number of steps of the optimization.
+		 *
+		 * @param steps
+		 *            the maximum number of steps
+		 * @return true if the optimization has converged or reached its
+		 *         maximum number of steps
+		 * @throws Exception
+		 *             if the optimization failed
+		 */
+		boolean advance(int steps) throws Exception;
+
+		/**
+		 * @return the score of the chain, higher is better
+		 */
+		double getScore();
+
+		/**
+		 * Continues the optimization from the state of another chain, with
+		 * the own random numbers of this chain.
+		 *
+		 * @param other
+		 *            the chain to copy the state from
+		 */
+		void restartFrom(C other);
+	}
+
+	/** Prevent instantiation **/
+	private MonteCarloChains() {
+	}
+
+	/**
+	 * The random number generator of a chain. The first chain uses the seed
+	 * itself, so that a single chain is the same as the original optimization;
+	 * the others use independent streams split from the seed.
+	 *
+	 * @param seed
+	 *            the random seed of the optimization
+	 * @param chain
+	 *            the index of the chain
+	 * @return a new Random
+	 */
+	public static Random getRandom(long seed, int chain) {
+		if (chain == 0)
+			return new Random(seed);
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom stream = root;
+		for (int c = 0; c < chain; c++)
+			stream = root.split();
+		return new Random(stream.nextLong());
+	}
+
+	/**
+	 * Runs the chains until one of them converges.
+	 *
+	 * @param chains
+	 *            the chains, already initialized with their own random numbers
+	 * @param roundSteps
+	 *            the number of steps of each chain between two exchanges
+	 * @param nThreads
+	 *            the number of chains to run at the same time
+	 * @return the chain with the highest score, the first one if tied
+	 * @throws ExecutionException
+	 *             with the failure of the first chain, if all chains failed
+	 */
+	public static <C extends Chain<C>> C run(List<C> chains, int roundSteps,
+			int nThreads) throws ExecutionException {
+
+		List<C> active = new ArrayList<>(chains);
+		ExecutionException failure = null;
+		int threads = Math.min(nThreads, chains.size());
+
+		boolean converged = false;
+		int round = 0;
+		while (!converged) {
+			boolean[] finished = new boolean[active.size()];
+			ExecutionException[] errors = new ExecutionException[active.size()];
+
+			List<Callable<Void>> tasks = new ArrayList<>(active.size());
+			for (int c = 0; c < active.size(); c++) {
+				C chain = active.get(c);
+				int index = c;
+				tasks.add(() -> {
+					try {
+						finished[index] = chain.advance(roundSteps);
+					} catch (Exception e) {
+						errors[index] = new ExecutionException(e);
+					}
+					return null;
+				});
+			}
+			try {
+				ConcurrencyTools.invokeAll(tasks, threads);
+			} catch (ExecutionException e) {
+				// the tasks catch all the failures of the chains
+				throw new IllegalStateException("Error while running the Monte Carlo chains", e.getCause());
+			}
+
+			// Drop the chains that failed, bugs are not hidden
+			List<C> next = new ArrayList<>(active.size());
+			for (int c = 0; c < active.size(); c++) {
+				if (errors[c] == null) {
+					next.add(active.get(c));
+					converged |= finished[c];
+				} else if (errors[c].getCause() instanceof RuntimeException) {
+					throw (RuntimeException) errors[c].getCause();
+				} else {
+					logger.debug("Monte Carlo chain failed: {}",
+							errors[c].getCause().getMessage());
+					if (failure == null)
+						failure = errors[c];
+				}
+			}
+			active = next;
+			if (active.isEmpty())
+				throw failure;
+
+			round++;
+			if (!converged && active.size() > 1) {
+				C best = getBest(active);
+				C worst = getWorst(active);
+				if (best.getScore() > worst.getScore())
+					worst.restartFrom(best);
+			}
+		}
+		logger.debug("{} Monte Carlo chains converged after {} rounds",
+				active.size(), round);
+
+		return getBest(active);
+	}
+
+	private static <C extends Chain<C>> C getBest(List<C> chains) {
+		C best = chains.get(0);
+		for (C chain : chains) {
+			if (chain.getScore() > best.getScore())
+				best = chain;
+		}
+		return best;
+	}
+
+	private static <C extends Chain<C>> C getWorst(List<C> chains) {
+		C worst = chains.get(chains.size() - 1);
+		for (int c = chains.size() - 1; c >= 0; c--) {
+			if (chains.get(c).getScore() < worst.getScore())
+				worst = chains.get(c);
+		}
+		return worst;
+	}
+}
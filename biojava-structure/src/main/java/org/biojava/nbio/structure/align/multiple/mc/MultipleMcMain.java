@@ -26,13 +26,17 @@ import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.StructureIdentifier;
 import org.biojava.nbio.structure.align.CallableStructureAlignment;
 import org.biojava.nbio.structure.align.MultipleStructureAligner;
 import org.biojava.nbio.structure.align.StructureAlignment;
@@ -88,6 +92,16 @@ public class MultipleMcMain implements MultipleStructureAligner {
 	private StructureAlignment pairwise;
 	private int reference = 0;
 
+	private ExecutorService executor;
+	private PairwiseAlignmentCache cache;
+	private List<StructureIdentifier> identifiers;
+
+	// Progress of the seed generation
+	private volatile int pairsTotal;
+	private final AtomicInteger pairsDone = new AtomicInteger();
+	private volatile int cacheHits;
+	private volatile long seedTime;
+
 	/**
 	 * Default constructor.
 	 * Default parameters are used.
@@ -101,15 +115,97 @@ public class MultipleMcMain implements MultipleStructureAligner {
 		if (pairwise == null) pairwise = new CeCPMain();
 	}
 
+	/**
+	 * Sets the executor used for the all-to-all pairwise alignments, e.g. to
+	 * share one thread pool between several multiple alignments. The executor
+	 * is not shut down. If null (default), a new pool of
+	 * {@link MultipleMcParameters#getNrThreads()} threads is used for each
+	 * alignment.
+	 *
+	 * @param executor
+	 *            the executor, or null
+	 * @since 6.0.6
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets a cache of pairwise alignments, to reuse the alignments of the
+	 * same structures between several multiple alignments. The cache is only
+	 * used if the structures have identifiers, see
+	 * {@link #setStructureIdentifiers(List)}, and if the pairwise algorithm
+	 * has a {@link PairwiseAlignmentCache#getAlgorithmKey(StructureAlignment)
+	 * key}.
+	 *
+	 * @param cache
+	 *            the cache, or null (default) to align all the pairs
+	 * @since 6.0.6
+	 */
+	public void setAlignmentCache(PairwiseAlignmentCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Sets the identifiers of the structures of the next alignment, in the
+	 * order of the atom arrays. They are used as the keys of the
+	 * {@link #setAlignmentCache(PairwiseAlignmentCache) alignment cache} and
+	 * set to the resulting ensemble.
+	 *
+	 * @param identifiers
+	 *            the identifiers, or null
+	 * @since 6.0.6
+	 */
+	public void setStructureIdentifiers(List<StructureIdentifier> identifiers) {
+		this.identifiers = identifiers;
+	}
+
+	/**
+	 * @return the number of pairwise alignments of the seed generation in
+	 *         progress, or of the last one
+	 * @since 6.0.6
+	 */
+	public int getPairsTotal() {
+		return pairsTotal;
+	}
+
+	/**
+	 * @return the number of pairwise alignments finished (or taken from the
+	 *         cache) in the seed generation in progress, or in the last one.
+	 *         It can be polled from another thread to report the progress.
+	 * @since 6.0.6
+	 */
+	public int getPairsDone() {
+		return pairsDone.get();
+	}
+
+	/**
+	 * @return the number of pairwise alignments taken from the cache in the
+	 *         last seed generation
+	 * @since 6.0.6
+	 */
+	public int getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * @return the time of the last seed generation, in milliseconds
+	 * @since 6.0.6
+	 */
+	public long getSeedTime() {
+		return seedTime;
+	}
+
 	/**
 	 * Creates a MultipleAlignment seed for MC optimization from the
 	 * representative Atoms of the structures. If there are N structures:
 	 * <ul><li>Generate (N*(N-1))/2 all-to-all alignments in parallel using
-	 * the Java API.
+	 * the Java API, or take them from the cache.
 	 * <li>Choose the closest structure to all others as the reference.
 	 * <li>Generate a MultipleAlignment by combining all the alignments to
 	 * the reference, that will be used as a seed for the MC optimization.
 	 * </ul>
+	 * The alignments are collected in the order in which they finish.
 	 *
 	 * @param atomArrays List of Atoms to align of the structures
 	 * @return MultipleAlignment seed alignment
@@ -121,75 +217,116 @@ public class MultipleMcMain implements MultipleStructureAligner {
 			throws InterruptedException,
 			ExecutionException, StructureException {
 
+		long start = System.currentTimeMillis();
 		int size = atomArrays.size();
-
-		//List to store the all-to-all alignments
-		List<List<AFPChain>> afpAlignments = new ArrayList<List<AFPChain>>();
-		for (int i=0; i<size; i++){
-			afpAlignments.add(new ArrayList<AFPChain>());
-			for (int j=0; j<size; j++)
-				afpAlignments.get(i).add(null);
+		String algorithm = cache == null ? null
+				: PairwiseAlignmentCache.getAlgorithmKey(pairwise);
+		List<String> names = null;
+		if (algorithm != null && identifiers != null
+				&& identifiers.size() == size) {
+			names = new ArrayList<String>(size);
+			for (StructureIdentifier id : identifiers)
+				names.add(id.getIdentifier());
 		}
 
-		int threads = params.getNrThreads();
-		ExecutorService executor = Executors.newFixedThreadPool(threads);
-		List<Future<AFPChain>> afpFuture = new ArrayList<Future<AFPChain>>();
+		//Matrix to store the all-to-all alignments, both halves are the same
+		AFPChain[][] afpAlignments = new AFPChain[size][size];
+		pairsTotal = size * (size - 1) / 2;
+		pairsDone.set(0);
+		cacheHits = 0;
 
-		//Create all the possible protein pairwise combinations
-		//(N*(N-1)/2) and call the pairwise alignment algorithm
-		for (int i=0; i<size; i++){
-			for (int j=i+1; j<size; j++){
+		ExecutorService pool = executor;
+		if (pool == null)
+			pool = Executors.newFixedThreadPool(params.getNrThreads());
+		CompletionService<int[]> completion =
+				new ExecutorCompletionService<int[]>(pool);
+		List<Future<int[]>> afpFuture = new ArrayList<Future<int[]>>();
 
-				Callable<AFPChain> worker = new CallableStructureAlignment(
-						atomArrays.get(i), atomArrays.get(j),
-						pairwise.getAlgorithmName(), pairwise.getParameters());
+		try {
+			//Create all the possible protein pairwise combinations
+			//(N*(N-1)/2) and call the pairwise alignment algorithm
+			for (int i=0; i<size; i++){
+				for (int j=i+1; j<size; j++){
+
+					if (names != null) {
+						AFPChain afp = cache.get(algorithm,
+								names.get(i), names.get(j));
+						if (afp != null) {
+							afpAlignments[i][j] = afp;
+							afpAlignments[j][i] = afp;
+							cacheHits++;
+							pairsDone.incrementAndGet();
+							continue;
+						}
+					}
 
-				Future<AFPChain> submit = executor.submit(worker);
-				afpFuture.add(submit);
+					Callable<AFPChain> worker = new CallableStructureAlignment(
+							atomArrays.get(i), atomArrays.get(j),
+							pairwise.getAlgorithmName(), pairwise.getParameters());
+
+					final int[] pair = new int[] {i, j};
+					afpFuture.add(completion.submit(() -> {
+						AFPChain afp = worker.call();
+						afpAlignments[pair[0]][pair[1]] = afp;
+						afpAlignments[pair[1]][pair[0]] = afp;
+						return pair;
+					}));
+				}
 			}
-		}
 
-		//Store the resulting AFPChains in the 2D List
-		int index = 0;  //the alignment index
-		for (int i=0; i<size; i++){
-			for (int j=i; j<size; j++){
-				if (i!=j){
-					afpAlignments.get(i).add(j,afpFuture.get(index).get());
-					afpAlignments.get(j).add(i,afpFuture.get(index).get());
-					index++;
+			//Store the resulting AFPChains as they finish
+			for (int n=0; n<afpFuture.size(); n++){
+				int[] pair = completion.take().get();
+				AFPChain afp = afpAlignments[pair[0]][pair[1]];
+				if (afp == null) {
+					throw new StructureException("Could not align structures "
+							+ pair[0] + " and " + pair[1]);
 				}
+				if (names != null)
+					cache.put(algorithm, names.get(pair[0]),
+							names.get(pair[1]), afp);
+				logger.debug("Aligned structures {} and {} ({}/{})", pair[0],
+						pair[1], pairsDone.incrementAndGet(), pairsTotal);
 			}
+		} finally {
+			//Nothing left to do if an alignment failed
+			for (Future<int[]> future : afpFuture)
+				future.cancel(true);
+			if (executor == null)
+				pool.shutdown();
 		}
-		executor.shutdown();
+		seedTime = System.currentTimeMillis() - start;
+		logger.info("Aligned {} pairs of structures ({} from the cache) in {} ms",
+				pairsTotal, cacheHits, seedTime);
 
 		reference = chooseReferenceRMSD(afpAlignments);
 		boolean flexible = false;
 		if (pairwise.getAlgorithmName().contains("flexible"))
 			flexible = true;
 
-		return combineReferenceAlignments(afpAlignments.get(reference),
+		return combineReferenceAlignments(Arrays.asList(afpAlignments[reference]),
 				atomArrays, reference, flexible);
 	}
 
 	/**
 	 * This method takes the all-to-all pairwise alignments Matrix (as a
-	 * double List of AFPChain) and calculates the structure with the
+	 * double array of AFPChain) and calculates the structure with the
 	 * lowest average RMSD against all others.
 	 * The index of this structure is returned.
 	 *
-	 * @param alignments List double containing all-to-all pairwise alignments
+	 * @param afpAlignments all-to-all pairwise alignments
 	 * @return int reference index
 	 */
-	private static int chooseReferenceRMSD(List<List<AFPChain>> afpAlignments){
+	private static int chooseReferenceRMSD(AFPChain[][] afpAlignments){
 
-		int size = afpAlignments.size();
+		int size = afpAlignments.length;
 
 		List<Double> RMSDs = new ArrayList<Double>();
-		for (int i=0; i<afpAlignments.size(); i++){
+		for (int i=0; i<afpAlignments.length; i++){
 			double rmsd=0.0;
 			for (int j=0; j<size; j++){
 				if (i!=j)
-					rmsd += afpAlignments.get(i).get(j).getTotalRmsdOpt();
+					rmsd += afpAlignments[i][j].getTotalRmsdOpt();
 			}
 			RMSDs.add(rmsd);
 		}
@@ -327,6 +464,8 @@ public class MultipleMcMain implements MultipleStructureAligner {
 		MultipleAlignment result = null;
 		ensemble = new MultipleAlignmentEnsembleImpl();
 		ensemble.setAtomArrays(atomArrays);
+		if (identifiers != null && identifiers.size() == atomArrays.size())
+			ensemble.setStructureIdentifiers(identifiers);
 		ensemble.setAlgorithmName(algorithmName);
 		ensemble.setVersion(version);
 		ensemble.setIoTime(System.currentTimeMillis());
@@ -341,49 +480,11 @@ public class MultipleMcMain implements MultipleStructureAligner {
 			logger.warn("Seed generation failed.",e);
 		}
 
-		//Repeat the optimization in parallel - DISALLOWED
-		/*int threads = params.getNrThreads();
-			ExecutorService executor = Executors.newFixedThreadPool(threads);
-			List<Future<MultipleAlignment>> msaFuture =
-					new ArrayList<Future<MultipleAlignment>>();
-
-			for (int i=0; i<params.getNrThreads(); i++){
-				//Change the random seed for each parallelization
-				MultipleMcParameters paramsMC = (MultipleMcParameters) params;
-				paramsMC.setRandomSeed(paramsMC.getRandomSeed()+i);
-
-				Callable<MultipleAlignment> worker =
-						new MultipleMcOptimizer(
-								result, paramsMC, reference);
-
-	  			Future<MultipleAlignment> submit = executor.submit(worker);
-	  			msaFuture.add(submit);
-			}
-
-			double maxScore = Double.NEGATIVE_INFINITY;
-			//Take the one with the best result (best MC-Score)
-			for (int i=0; i<msaFuture.size(); i++){
-				MultipleAlignment align = msaFuture.get(i).get();
-				double s = align.getScore(MultipleAlignmentScorer.MC_SCORE);
-				if (s > maxScore){
-					result = align;
-					maxScore = s;
-				}
-			}
-			Long runtime = System.currentTimeMillis()-ensemble.getIoTime();
-			ensemble.setCalculationTime(runtime);
-
-			result.setEnsemble(ensemble);
-			ensemble.addMultipleAlignment(result);
-			executor.shutdown();*/
-
-		MultipleMcOptimizer optimizer = new MultipleMcOptimizer(
-				result, params, reference);
-
+		//Optimize the seed, with parallel Monte Carlo chains if requested
 		Long runtime = System.currentTimeMillis()-ensemble.getIoTime();
 		ensemble.setCalculationTime(runtime);
 
-		result = optimizer.optimize();
+		result = MultipleMcOptimizer.optimize(result, params, reference);
 		result.setEnsemble(ensemble);
 		ensemble.addMultipleAlignment(result);
 
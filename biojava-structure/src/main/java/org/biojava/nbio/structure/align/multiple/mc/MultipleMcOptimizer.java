@@ -29,6 +29,7 @@ import java.util.Random;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.StructureException;
@@ -56,13 +57,16 @@ import org.slf4j.LoggerFactory;
  * generate the seed multiple alignment.
  * <p>
  * This class implements Callable, because multiple instances of the
- * optimization can be run in parallel.
+ * optimization can be run in parallel. It is also a {@link MonteCarloChains}
+ * chain: {@link #optimize(MultipleAlignment, MultipleMcParameters, int)} runs
+ * {@link MultipleMcParameters#getNrChains()} restarts in parallel.
  *
  * @author Aleix Lafita
  * @since 4.1.0
  *
  */
-public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
+public class MultipleMcOptimizer implements Callable<MultipleAlignment>,
+		MonteCarloChains.Chain<MultipleMcOptimizer> {
 
 	private static final Logger logger = LoggerFactory
 			.getLogger(MultipleMcOptimizer.class);
@@ -91,6 +95,11 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 	private int blockNr; // the number of Blocks in the alignment
 	private double mcScore; // Optimization score, objective function
 
+	// Optimization state
+	private int step; // Number of the next step
+	private int conv; // Number of steps without an alignment improvement
+	private int maxIter; // Maximum number of steps
+
 	// Variables that store the history of the optimization - slower if on
 	private static final boolean history = false;
 	private static final String pathToHistory = "McOptHistory.csv";
@@ -112,13 +121,34 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 	 */
 	public MultipleMcOptimizer(MultipleAlignment seedAln,
 			MultipleMcParameters params, int reference) {
+		this(seedAln, params, reference, 0);
+	}
+
+	/**
+	 * Constructor of one of the chains of a parallel optimization. Each chain
+	 * uses its own random numbers, see
+	 * {@link MonteCarloChains#getRandom(long, int)}; chain 0 is the same as the
+	 * single optimization.
+	 *
+	 * @param seedAln
+	 *            MultipleAlignment to be optimized.
+	 * @param params
+	 *            the parameter beam
+	 * @param reference
+	 *            the index of the most similar structure to all others
+	 * @param chain
+	 *            the index of the chain
+	 * @since 6.0.6
+	 */
+	public MultipleMcOptimizer(MultipleAlignment seedAln,
+			MultipleMcParameters params, int reference, int chain) {
 
 		MultipleAlignmentEnsemble e = seedAln.getEnsemble().clone();
 		msa = e.getMultipleAlignment(0);
 		atomArrays = msa.getAtomArrays();
 		size = seedAln.size();
 
-		rnd = new Random(params.getRandomSeed());
+		rnd = MonteCarloChains.getRandom(params.getRandomSeed(), chain);
 		Gopen = params.getGapOpen();
 		Gextend = params.getGapExtension();
 		dCutoff = params.getDistanceCutoff();
@@ -174,6 +204,68 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 		return optimize();
 	}
 
+	/**
+	 * Optimizes the seed alignment with {@link MultipleMcParameters#getNrChains()}
+	 * Monte Carlo chains, run on {@link MultipleMcParameters#getNrThreads()}
+	 * threads, and returns the best optimized alignment. With a single chain
+	 * it is the same as {@link #optimize()}.
+	 *
+	 * @param seedAln
+	 *            MultipleAlignment to be optimized.
+	 * @param params
+	 *            the parameter beam
+	 * @param reference
+	 *            the index of the most similar structure to all others
+	 * @return the optimized MultipleAlignment with the highest MC score
+	 * @throws StructureException
+	 * @since 6.0.6
+	 */
+	public static MultipleAlignment optimize(MultipleAlignment seedAln,
+			MultipleMcParameters params, int reference)
+			throws StructureException {
+
+		if (params.getNrChains() <= 1)
+			return new MultipleMcOptimizer(seedAln, params, reference).optimize();
+
+		List<MultipleMcOptimizer> chains = new ArrayList<MultipleMcOptimizer>();
+		for (int c = 0; c < params.getNrChains(); c++)
+			chains.add(new MultipleMcOptimizer(seedAln, params, reference, c));
+
+		try {
+			MultipleMcOptimizer best = MonteCarloChains.run(chains,
+					chains.get(0).convergenceSteps, params.getNrThreads());
+			return best.finish();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof StructureException)
+				throw (StructureException) e.getCause();
+			throw new StructureException(e.getCause());
+		}
+	}
+
+	@Override
+	public boolean advance(int steps) throws StructureException {
+		if (freePool == null)
+			initialize();
+		return run(steps);
+	}
+
+	@Override
+	public double getScore() {
+		return mcScore;
+	}
+
+	@Override
+	public void restartFrom(MultipleMcOptimizer other) {
+		MultipleAlignment copy = other.msa.clone();
+		copy.setEnsemble(msa.getEnsemble());
+		msa = copy;
+		freePool = new ArrayList<SortedSet<Integer>>();
+		for (SortedSet<Integer> pool : other.freePool)
+			freePool.add(new TreeSet<Integer>(pool));
+		mcScore = other.mcScore;
+		conv = 0;
+	}
+
 	/**
 	 * Initialize the freePool and all the variables needed for the
 	 * optimization.
@@ -223,6 +315,10 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 			rmsdHistory = new ArrayList<Double>();
 			scoreHistory = new ArrayList<Double>();
 		}
+
+		step = 1;
+		conv = 0;
+		maxIter = convergenceSteps * 100;
 	}
 
 	/**
@@ -240,12 +336,20 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 	public MultipleAlignment optimize() throws StructureException {
 
 		initialize();
+		run(Integer.MAX_VALUE);
+		return finish();
+	}
 
-		int conv = 0; // Number of steps without an alignment improvement
-		int i = 1;
-		int maxIter = convergenceSteps * 100;
+	/**
+	 * Runs at most the given number of steps of the optimization.
+	 *
+	 * @return true if the optimization has converged or reached the maximum
+	 *         number of steps
+	 */
+	private boolean run(int steps) throws StructureException {
 
-		while (i < maxIter && conv < convergenceSteps) {
+		for (int s = 0; s < steps && step < maxIter
+				&& conv < convergenceSteps; s++) {
 
 			// Save the state of the system
 			MultipleAlignment lastMSA = msa.clone();
@@ -290,7 +394,7 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 			if (AS < 0) {
 
 				// Probability of accepting the move
-				prob = probabilityFunction(AS, i, maxIter);
+				prob = probabilityFunction(AS, step, maxIter);
 				double p = rnd.nextDouble();
 				// Reject the move
 				if (p > prob) {
@@ -305,19 +409,26 @@ public class MultipleMcOptimizer implements Callable<MultipleAlignment> {
 			} else
 				conv = 0;
 
-			logger.debug("Step: " + i + ": --prob: " + prob
+			logger.debug("Step: " + step + ": --prob: " + prob
 					+ ", --score change: " + AS + ", --conv: " + conv);
 
 			if (history) {
-				if (i % 100 == 1) {
+				if (step % 100 == 1) {
 					lengthHistory.add(msa.length());
 					rmsdHistory.add(MultipleAlignmentScorer.getRMSD(msa));
 					scoreHistory.add(mcScore);
 				}
 			}
 
-			i++;
+			step++;
 		}
+		return step >= maxIter || conv >= convergenceSteps;
+	}
+
+	/**
+	 * Superimposes and scores the current alignment.
+	 */
+	private MultipleAlignment finish() throws StructureException {
 
 		// Return Multiple Alignment
 		imposer.superimpose(msa);
@@ -43,6 +43,7 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 	private double distanceCutoff;
 	private int convergenceSteps;
 	private int nrThreads;
+	private int nrChains;
 
 	/**
 	 * Constructor with DEFAULT values of the parameters.
@@ -63,6 +64,7 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 		params.add("DistanceCutoff");
 		params.add("ConvergenceSteps");
 		params.add("NrThreads");
+		params.add("NrChains");
 		return params;
 	}
 
@@ -78,6 +80,7 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 		params.add("Distance Cutoff");
 		params.add("Steps to Convergence");
 		params.add("Number of Threads");
+		params.add("Number of Monte Carlo Chains");
 		return params;
 	}
 
@@ -94,6 +97,7 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 		params.add(Double.class);
 		params.add(Integer.class);
 		params.add(Integer.class);
+		params.add(Integer.class);
 		return params;
 	}
 
@@ -123,6 +127,11 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 		String nrThreads =
 				"Number of threads to be used for the seed calculation (all-"
 				+ "to-all pairwise alignments) and the MC optimization.";
+		String nrChains =
+				"Number of Monte Carlo chains of the optimization. The chains "
+				+ "start from the same seed alignment with different random "
+				+ "numbers and run in parallel until one converges; the best "
+				+ "alignment is kept.";
 
 		params.add(randomSeed);
 		params.add(minBlockLen);
@@ -132,6 +141,7 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 		params.add(dCutoff);
 		params.add(convergenceSteps);
 		params.add(nrThreads);
+		params.add(nrChains);
 		return params;
 	}
 
@@ -142,7 +152,7 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 				+ minAlignedStructures + ", gapOpen=" + gapOpen
 				+ ", gapExtension=" + gapExtension + ", distanceCutoff="
 				+ distanceCutoff + ", convergenceSteps=" + convergenceSteps
-				+ ", nrThreads=" + nrThreads + "]";
+				+ ", nrThreads=" + nrThreads + ", nrChains=" + nrChains + "]";
 	}
 
 	@Override
@@ -156,6 +166,7 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 		distanceCutoff = 7.0;
 		convergenceSteps = 0;
 		nrThreads = Runtime.getRuntime().availableProcessors();
+		nrChains = 1;
 	}
 
 	public int getRandomSeed() {
@@ -214,6 +225,24 @@ public class MultipleMcParameters implements ConfigStrucAligParams {
 		this.nrThreads = nrThreads;
 	}
 
+	/**
+	 * @return the number of Monte Carlo chains of the optimization
+	 * @since 6.0.6
+	 */
+	public int getNrChains() {
+		return nrChains;
+	}
+
+	/**
+	 * @param nrChains
+	 *            the number of Monte Carlo chains of the optimization, run in
+	 *            parallel with different random numbers. Default: 1
+	 * @since 6.0.6
+	 */
+	public void setNrChains(Integer nrChains) {
+		this.nrChains = nrChains;
+	}
+
 	public double getDistanceCutoff() {
 		return distanceCutoff;
 	}
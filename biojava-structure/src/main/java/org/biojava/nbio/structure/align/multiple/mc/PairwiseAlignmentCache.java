@@ -0,0 +1,188 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.multiple.mc;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.biojava.nbio.structure.align.StructureAlignment;
+import org.biojava.nbio.structure.align.ce.ConfigStrucAligParams;
+import org.biojava.nbio.structure.align.model.AFPChain;
+
+/**
+ * A bounded, thread-safe cache of pairwise structure alignments, keyed by the
+ * identifiers of the two structures and by the algorithm that aligned them.
+ * <p>
+ * A {@link MultipleMcMain} with a cache reuses the all-to-all alignments of
+ * the structures it has already aligned, e.g. when the same structures are
+ * part of several multiple alignments. The alignments are kept in the order
+ * of the structures: the alignment of B to A is not derived from the one of A
+ * to B.
+ * <p>
+ * Only the residue equivalencies and scores of an alignment are kept: the
+ * distance matrices are dropped when it is cached. When more than
+ * {@link #getMaxSize()} alignments are cached, the least recently used ones
+ * are evicted first.
+ *
+ * @since 6.0.6
+ */
+public class PairwiseAlignmentCache {
+
+	/** The default maximum number of cached alignments */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	private final int maxSize;
+	private final Map<String, AFPChain> alignments;
+
+	/**
+	 * Creates a cache of at most {@link #DEFAULT_MAX_SIZE} alignments.
+	 */
+	public PairwiseAlignmentCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of cached alignments
+	 */
+	public PairwiseAlignmentCache(int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+		this.maxSize = maxSize;
+		this.alignments = Collections.synchronizedMap(
+				new LinkedHashMap<String, AFPChain>(16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, AFPChain> eldest) {
+						return size() > PairwiseAlignmentCache.this.maxSize;
+					}
+				});
+	}
+
+	/**
+	 * Builds the key of a pairwise algorithm from its name, its version and
+	 * the values of its {@link ConfigStrucAligParams#getUserConfigParameters()
+	 * user parameters}, read with their getters.
+	 *
+	 * @param algorithm
+	 *            the pairwise algorithm
+	 * @return the key of the algorithm, or null if a parameter has no getter,
+	 *         in which case its alignments can not be cached
+	 */
+	public static String getAlgorithmKey(StructureAlignment algorithm) {
+		StringBuilder key = new StringBuilder();
+		key.append(algorithm.getAlgorithmName()).append(' ').append(algorithm.getVersion());
+		ConfigStrucAligParams params = algorithm.getParameters();
+		if (params == null)
+			return key.toString();
+
+		key.append(' ').append(params.getClass().getName());
+		for (String name : params.getUserConfigParameters()) {
+			Method getter = getGetter(params.getClass(), name);
+			if (getter == null)
+				return null;
+			Object value;
+			try {
+				value = getter.invoke(params);
+			} catch (ReflectiveOperationException e) {
+				return null;
+			}
+			// deepToString prints the values of arrays as well
+			key.append(' ').append(name).append('=')
+					.append(Arrays.deepToString(new Object[] { value }));
+		}
+		return key.toString();
+	}
+
+	private static Method getGetter(Class<?> c, String name) {
+		for (String prefix : new String[] { "get", "is" }) {
+			try {
+				return c.getMethod(prefix + name);
+			} catch (NoSuchMethodException e) {
+				// try the next prefix
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param algorithm
+	 *            the {@link #getAlgorithmKey(StructureAlignment) key} of the
+	 *            pairwise algorithm
+	 * @param name1
+	 *            the identifier of the first structure
+	 * @param name2
+	 *            the identifier of the second structure
+	 * @return the cached alignment, or null
+	 */
+	public AFPChain get(String algorithm, String name1, String name2) {
+		return alignments.get(getKey(algorithm, name1, name2));
+	}
+
+	/**
+	 * @param algorithm
+	 *            the {@link #getAlgorithmKey(StructureAlignment) key} of the
+	 *            pairwise algorithm
+	 * @param name1
+	 *            the identifier of the first structure
+	 * @param name2
+	 *            the identifier of the second structure
+	 * @param afpChain
+	 *            the alignment of the two structures, not null. Its distance
+	 *            matrices are dropped
+	 */
+	public void put(String algorithm, String name1, String name2,
+			AFPChain afpChain) {
+		afpChain.setDistanceMatrix(null);
+		afpChain.setDisTable1(null);
+		afpChain.setDisTable2(null);
+		alignments.put(getKey(algorithm, name1, name2), afpChain);
+	}
+
+	/**
+	 * @return the maximum number of cached alignments
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of cached alignments
+	 */
+	public int size() {
+		return alignments.size();
+	}
+
+	/**
+	 * Removes all the cached alignments.
+	 */
+	public void clear() {
+		alignments.clear();
+	}
+
+	private static String getKey(String algorithm, String name1, String name2) {
+		return algorithm + '\t' + name1 + '\t' + name2;
+	}
+}
@@ -28,7 +28,6 @@ import javax.vecmath.Matrix4d;
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.Calc;
 import org.biojava.nbio.structure.StructureException;
-import org.biojava.nbio.structure.StructureTools;
 import org.biojava.nbio.structure.align.multiple.Block;
 import org.biojava.nbio.structure.align.multiple.BlockSet;
 import org.biojava.nbio.structure.align.multiple.MultipleAlignment;
@@ -148,8 +147,6 @@ public class ReferenceSuperimposer implements MultipleSuperimposer {
 				Atom[] array1 = atomSet1.toArray(new Atom[atomSet1.size()]);
 				Atom[] array2 = atomSet2.toArray(new Atom[atomSet2.size()]);
 
-				array2 = StructureTools.cloneAtomArray(array2);
-
 				//From the superimposer we obtain the rotation and translation
 				Matrix4d trans = SuperPositions.superpose(Calc.atomsToPoints(array1),
 						Calc.atomsToPoints(array2));
@@ -0,0 +1,172 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.quaternary;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+import org.biojava.nbio.structure.jama.Matrix;
+
+/**
+ * The optimal superposition of a growing set of equivalent points, updated
+ * in time proportional to the number of points added instead of the total.
+ * <p>
+ * Only the number of points, their sums and the sums of their cross products
+ * are kept, which is all the quaternion method of
+ * {@link org.biojava.nbio.structure.geometry.SuperPositionQuat} needs. The
+ * coordinates are accumulated relative to the first points added, to limit
+ * the loss of precision of the sums.
+ *
+ * @since 6.0.6
+ */
+final class IncrementalSuperposition {
+
+	private int n = 0;
+	private final double[] origin1 = new double[3];
+	private final double[] origin2 = new double[3];
+	private final double[] sum1 = new double[3];
+	private final double[] sum2 = new double[3];
+	/** Sums of the products of the moved (row) and fixed (column) coordinates */
+	private final double[][] cross = new double[3][3];
+
+	private Matrix4d transformation = null;
+
+	/**
+	 * Adds equivalent points.
+	 *
+	 * @param fixed
+	 *            the points of the reference
+	 * @param moved
+	 *            the equivalent points to superpose onto the reference
+	 */
+	void add(Point3d[] fixed, Point3d[] moved) {
+		if (fixed.length != moved.length)
+			throw new IllegalArgumentException("Point arrays to superpose are of different lengths.");
+		if (fixed.length == 0)
+			return;
+		if (n == 0) {
+			origin1[0] = fixed[0].x;
+			origin1[1] = fixed[0].y;
+			origin1[2] = fixed[0].z;
+			origin2[0] = moved[0].x;
+			origin2[1] = moved[0].y;
+			origin2[2] = moved[0].z;
+		}
+		double[] f = new double[3];
+		double[] m = new double[3];
+		for (int i = 0; i < fixed.length; i++) {
+			f[0] = fixed[i].x - origin1[0];
+			f[1] = fixed[i].y - origin1[1];
+			f[2] = fixed[i].z - origin1[2];
+			m[0] = moved[i].x - origin2[0];
+			m[1] = moved[i].y - origin2[1];
+			m[2] = moved[i].z - origin2[2];
+			for (int a = 0; a < 3; a++) {
+				sum1[a] += f[a];
+				sum2[a] += m[a];
+				for (int b = 0; b < 3; b++)
+					cross[a][b] += m[a] * f[b];
+			}
+		}
+		n += fixed.length;
+		transformation = null;
+	}
+
+	/**
+	 * @return the number of pairs of equivalent points
+	 */
+	int size() {
+		return n;
+	}
+
+	/**
+	 * The transformation that superposes the moved points onto the fixed
+	 * ones, calculated again only after new points are added.
+	 *
+	 * @return the transformation matrix, not to be modified
+	 */
+	Matrix4d getTransformation() {
+		if (n == 0)
+			throw new IllegalStateException("No points to superpose");
+		if (transformation == null)
+			transformation = calcTransformation();
+		return transformation;
+	}
+
+	private Matrix4d calcTransformation() {
+
+		// Cross products of the centered coordinates
+		double[][] c = new double[3][3];
+		for (int a = 0; a < 3; a++) {
+			for (int b = 0; b < 3; b++)
+				c[a][b] = cross[a][b] - sum2[a] * sum1[b] / n;
+		}
+		double xx = c[0][0], xy = c[0][1], xz = c[0][2];
+		double yx = c[1][0], yy = c[1][1], yz = c[1][2];
+		double zx = c[2][0], zy = c[2][1], zz = c[2][2];
+
+		// The same matrix as CalcPoint.formMatrix(moved, fixed)
+		double[][] f = new double[4][4];
+		f[0][0] = xx + yy + zz;
+		f[0][1] = zy - yz;
+		f[1][0] = f[0][1];
+		f[1][1] = xx - yy - zz;
+		f[0][2] = xz - zx;
+		f[2][0] = f[0][2];
+		f[1][2] = xy + yx;
+		f[2][1] = f[1][2];
+		f[2][2] = yy - zz - xx;
+		f[0][3] = yx - xy;
+		f[3][0] = f[0][3];
+		f[1][3] = zx + xz;
+		f[3][1] = f[1][3];
+		f[2][3] = yz + zy;
+		f[3][2] = f[2][3];
+		f[3][3] = zz - xx - yy;
+
+		// The eigenvector of the largest eigenvalue is the rotation
+		double[][] v = new Matrix(f).eig().getV().getArray();
+		Quat4d q = new Quat4d(v[1][3], v[2][3], v[3][3], v[0][3]);
+		q.normalize();
+		q.conjugate();
+
+		Matrix4d rotTrans = new Matrix4d();
+		rotTrans.set(q);
+
+		// combine with moved -> origin translation
+		Matrix4d trans = new Matrix4d();
+		trans.setIdentity();
+		trans.setTranslation(new Vector3d(-(origin2[0] + sum2[0] / n),
+				-(origin2[1] + sum2[1] / n), -(origin2[2] + sum2[2] / n)));
+		rotTrans.mul(rotTrans, trans);
+
+		// combine with origin -> fixed translation
+		Matrix4d transInverse = new Matrix4d();
+		transInverse.setIdentity();
+		transInverse.setTranslation(new Vector3d(origin1[0] + sum1[0] / n,
+				origin1[1] + sum1[1] / n, origin1[2] + sum1[2] / n));
+		rotTrans.mul(transInverse, rotTrans);
+
+		return rotTrans;
+	}
+}
@@ -22,18 +22,22 @@ package org.biojava.nbio.structure.align.quaternary;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.Calc;
 import org.biojava.nbio.structure.Structure;
 import org.biojava.nbio.structure.StructureException;
-import org.biojava.nbio.structure.StructureTools;
 import org.biojava.nbio.structure.align.multiple.Block;
 import org.biojava.nbio.structure.align.multiple.BlockImpl;
 import org.biojava.nbio.structure.align.multiple.BlockSet;
@@ -48,8 +52,8 @@ import org.biojava.nbio.structure.cluster.SubunitCluster;
 import org.biojava.nbio.structure.cluster.SubunitClusterer;
 import org.biojava.nbio.structure.cluster.SubunitClustererParameters;
 import org.biojava.nbio.structure.cluster.SubunitExtractor;
-import org.biojava.nbio.structure.contact.Pair;
-import org.biojava.nbio.structure.geometry.SuperPositions;
+import org.biojava.nbio.structure.contact.SpatialIndex;
+import org.biojava.nbio.structure.geometry.CalcPoint;
 import org.biojava.nbio.structure.geometry.UnitQuaternions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,6 +72,12 @@ public class QsAlign {
 
 	private static final Logger logger = LoggerFactory.getLogger(QsAlign.class);
 
+	/**
+	 * Margin of the centroid distance cutoff when searching the candidate
+	 * subunits, so that no subunit at the cutoff distance is missed.
+	 */
+	private static final double CANDIDATE_TOLERANCE = 1e-6;
+
 	public static QsAlignResult align(Structure s1, Structure s2,
 			SubunitClustererParameters cParams, QsAlignParameters aParams)
 			throws StructureException {
@@ -113,177 +123,24 @@ public class QsAlign {
 		logger.info("Cluster Map: " + clusterMap.toString());
 		result.setClusters(c1);
 
-		// STEP 3: Align the assemblies for each cluster match O(N^2*L)
-		for (int globalKey : clusterMap.keySet()) {
-
-			// Obtain the clusters
-			SubunitCluster clust1 = c1.get(globalKey);
-			SubunitCluster clust2 = c2.get(clusterMap.get(globalKey));
-
-			// Take a cluster match as reference
-			int index1 = 0;
-			int index2 = clust1.size() - clust2.size();
-			Map<Integer, Integer> subunitMap = new HashMap<Integer, Integer>();
-			subunitMap.put(index1, index2);
-
-			// Map cluster id to their subunit matching
-			Map<Integer, Map<Integer, Integer>> clustSubunitMap = new HashMap<Integer, Map<Integer, Integer>>();
-			clustSubunitMap.put(globalKey, subunitMap);
-
-			// Change order of key set so that globalKey is first
-			List<Integer> keySet = new ArrayList<Integer>(clusterMap.keySet());
-			keySet.remove((Integer) globalKey);
-			keySet.add(0, globalKey);
-
-			for (int key : clusterMap.keySet()) {
-
-				// Recover subunitMap if it is the reference, new one otherwise
-				if (key == globalKey)
-					subunitMap = clustSubunitMap.get(key);
-				else
-					subunitMap = new HashMap<Integer, Integer>();
-
-				// Obtain the clusters of each subunit group
-				clust1 = c1.get(key);
-				clust2 = c2.get(clusterMap.get(key));
-
-				// Get the initial subunit indices of each group
-				index1 = 0;
-				index2 = clust1.size() - clust2.size();
-
-				for (int i = 0; i < index2; i++) {
-					for (int j = index2; j < clust1.size(); j++) {
-
-						if (subunitMap.keySet().contains(i))
-							break;
-						if (subunitMap.values().contains(j))
-							continue;
-
-						// Obtain cumulative transformation matrix
-						Matrix4d transform = getTransformForClusterSubunitMap(
-								c1, clustSubunitMap);
-
-						// Obtain Atom arrays of the subunit pair to match
-						Atom[] atoms1 = clust1.getAlignedAtomsSubunit(i);
-						Atom[] atoms2 = clust1.getAlignedAtomsSubunit(j);
-
-						// Obtain centroids and transform the second
-						Atom centr1 = Calc.getCentroid(atoms1);
-						Atom centr2 = Calc.getCentroid(atoms2);
-						Calc.transform(centr2, transform);
-
-						// 1- Check that the distance fulfills maximum
-						double dCentroid = Calc.getDistance(centr1, centr2);
-						if (dCentroid > aParams.getdCutoff()) {
-							logger.debug(String.format("Subunit matching %d "
-									+ "vs %d of cluster %d could not be "
-									+ "matched, because centroid distance is "
-									+ "%.2f", index1, index2, key, dCentroid));
-							continue;
-						}
-
-						// Transform coordinates of second
-						Atom[] atoms2c = StructureTools.cloneAtomArray(atoms2);
-						Calc.transform(atoms2c, transform);
-
-						// 2- Check the orientation metric condition
-						double qOrient = UnitQuaternions.orientationAngle(
-								Calc.atomsToPoints(atoms1),
-								Calc.atomsToPoints(atoms2c), false);
-						qOrient = Math.min(Math.abs(2*Math.PI - qOrient), qOrient);
-						if (qOrient > aParams.getMaxOrientationAngle()) {
-							logger.debug(String.format("Subunit matching %d "
-									+ "vs %d of cluster %d could not be "
-									+ "matched, because orientation metric is "
-									+ "%.2f", i, j, key, qOrient));
-							continue;
-						}
-
-						// 3- Check the RMSD condition
-						double rmsd = Calc.rmsd(atoms1, atoms2c);
-						if (rmsd > aParams.getMaxRmsd()) {
-							logger.debug(String.format("Subunit matching %d "
-									+ "vs %d of cluster %d could not be "
-									+ "matched, because RMSD is %.2f", i,
-									j, key, rmsd));
-							continue;
-						}
-
-						logger.info(String.format("Subunit matching %d vs %d"
-								+ " of cluster %d with centroid distance %.2f"
-								+ ", orientation metric %.2f and RMSD %.2f",
-								i, j, key, dCentroid, qOrient, rmsd));
-
-						subunitMap.put(i, j);
-					}
-				}
-
-				clustSubunitMap.put(key, subunitMap);
-			}
-
-			logger.info("Cluster Subunit Map: " + clustSubunitMap.toString());
-
-			// Unfold the nested map into subunit map and alignment
-			subunitMap = new HashMap<Integer, Integer>();
-			List<Integer> alignRes1 = new ArrayList<Integer>();
-			List<Integer> alignRes2 = new ArrayList<Integer>();
-			List<Atom> atomArray1 = new ArrayList<Atom>();
-			List<Atom> atomArray2 = new ArrayList<Atom>();
-
-			for (int key : clustSubunitMap.keySet()) {
-
-				// Obtain the cluster and the alignment in it
-				SubunitCluster cluster = c1.get(key);
-				List<List<Integer>> clusterEqrs = cluster
-						.getMultipleAlignment().getBlock(0).getAlignRes();
-
-				for (Entry<Integer, Integer> pair : clustSubunitMap.get(key)
-						.entrySet()) {
-
-					int i = pair.getKey();
-					int j = pair.getValue();
-
-					// Obtain the indices of the original Subunit Lists
-					int orig1 = s1.indexOf(cluster.getSubunits().get(i));
-					int orig2 = s2.indexOf(cluster.getSubunits().get(j));
-
-					// Append rescaled aligned residue indices
-					for (Integer eqr : clusterEqrs.get(i))
-						alignRes1.add(eqr + atomArray1.size());
-					for (Integer eqr : clusterEqrs.get(j))
-						alignRes2.add(eqr + atomArray2.size());
-
-					// Apend atoms to the arrays
-					atomArray1.addAll(Arrays.asList(s1.get(orig1)
-							.getRepresentativeAtoms()));
-					atomArray2.addAll(Arrays.asList(s2.get(orig2)
-							.getRepresentativeAtoms()));
-
-					subunitMap.put(orig1, orig2);
-				}
-			}
-
-			// Evaluate the goodness of the match with an alignment object
-			MultipleAlignment msa = new MultipleAlignmentImpl();
-			msa.setEnsemble(new MultipleAlignmentEnsembleImpl());
-			msa.getEnsemble().setAtomArrays(
-					Arrays.asList(new Atom[][] {
-							atomArray1.toArray(new Atom[atomArray1.size()]),
-							atomArray2.toArray(new Atom[atomArray2.size()]) }));
+		// The geometry of the matched clusters, shared by all the seeds
+		Map<Integer, ClusterGeometry> geometries = new HashMap<Integer, ClusterGeometry>();
+		for (int key : clusterMap.keySet()) {
+			geometries.put(key, new ClusterGeometry(c1.get(key),
+					c2.get(clusterMap.get(key)).size(), aParams.getdCutoff()));
+		}
 
-			// Fill in the alignment information
-			BlockSet bs = new BlockSetImpl(msa);
-			Block b = new BlockImpl(bs);
-			List<List<Integer>> alignRes = new ArrayList<List<Integer>>(2);
-			alignRes.add(alignRes1);
-			alignRes.add(alignRes2);
-			b.setAlignRes(alignRes);
+		// STEP 3: Align the assemblies for each cluster match O(N*L)
+		List<Callable<SeedAlignment>> seeds = new ArrayList<Callable<SeedAlignment>>();
+		for (int globalKey : clusterMap.keySet()) {
+			seeds.add(() -> alignSeed(globalKey, clusterMap.keySet(),
+					geometries, s1, s2, aParams));
+		}
 
-			// Fill in the transformation matrices
-			new ReferenceSuperimposer().superimpose(msa);
+		for (SeedAlignment seed : evaluateSeeds(seeds, aParams.getNThreads())) {
 
-			// Calculate some scores
-			MultipleAlignmentScorer.calculateScores(msa);
+			Map<Integer, Integer> subunitMap = seed.subunitMap;
+			MultipleAlignment msa = seed.msa;
 
 			// If it is the best match found so far store it
 			if (subunitMap.size() > result.getSubunitMap().size()) {
@@ -308,74 +165,275 @@ public class QsAlign {
 	}
 
 	/**
-	 * Returns a pair of Atom arrays corresponding to the alignment of subunit
-	 * matchings, in order of appearance. Superposition of the two Atom sets
-	 * gives the transformation of the complex.
-	 * <p>
-	 * Utility method to cumulative calculate the alignment Atoms.
+	 * Evaluates the seeds, in parallel if more than one thread is requested.
+	 *
+	 * @return the alignments of the seeds, in the same order
+	 */
+	private static List<SeedAlignment> evaluateSeeds(
+			List<Callable<SeedAlignment>> seeds, int nThreads)
+			throws StructureException {
+
+		try {
+			return ConcurrencyTools.invokeAll(seeds, nThreads);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof StructureException)
+				throw (StructureException) e.getCause();
+			throw new StructureException(e.getCause());
+		}
+	}
+
+	/**
+	 * Extends the match of the first subunits of a cluster to all the other
+	 * subunits of the matched clusters, by greedily adding the subunit pairs
+	 * that are consistent with the superposition of the pairs found so far.
 	 *
-	 * @param clusters
-	 *            List of SubunitClusters
-	 * @param clusterSubunitMap
-	 *            map from cluster id to subunit matching
-	 * @return pair of atom arrays to be superposed
+	 * @param globalKey
+	 *            the cluster of the seed
+	 * @param keys
+	 *            the matched clusters, in the order in which they are extended
+	 * @param geometries
+	 *            the geometry of each matched cluster
+	 * @return the subunit map and the alignment of the seed
 	 */
-	private static Pair<Atom[]> getAlignedAtomsForClusterSubunitMap(
-			List<SubunitCluster> clusters,
-			Map<Integer, Map<Integer, Integer>> clusterSubunitMap) {
+	private static SeedAlignment alignSeed(int globalKey,
+			Collection<Integer> keys, Map<Integer, ClusterGeometry> geometries,
+			List<Subunit> s1, List<Subunit> s2, QsAlignParameters aParams)
+			throws StructureException {
+
+		// Take a cluster match as reference
+		ClusterGeometry seed = geometries.get(globalKey);
+		int index1 = 0;
+		int index2 = seed.size1;
+		Map<Integer, Integer> subunitMap = new HashMap<Integer, Integer>();
+		subunitMap.put(index1, index2);
+
+		// Map cluster id to their subunit matching
+		Map<Integer, Map<Integer, Integer>> clustSubunitMap = new HashMap<Integer, Map<Integer, Integer>>();
+		clustSubunitMap.put(globalKey, subunitMap);
+
+		// Superposition of the subunit matchings in clustSubunitMap
+		IncrementalSuperposition superposition = new IncrementalSuperposition();
+		superposition.add(seed.points[index1], seed.points[index2]);
+
+		for (int key : keys) {
+
+			// Recover subunitMap if it is the reference, new one otherwise
+			if (key == globalKey)
+				subunitMap = clustSubunitMap.get(key);
+			else
+				subunitMap = new HashMap<Integer, Integer>();
+
+			// Obtain the cluster geometry and the initial subunit indices
+			ClusterGeometry cluster = geometries.get(key);
+			index2 = cluster.size1;
 
+			for (int i = 0; i < index2; i++) {
+
+				if (subunitMap.keySet().contains(i))
+					continue;
+
+				// Obtain cumulative transformation matrix
+				Matrix4d transform = superposition.getTransformation();
+				Point3d centr1 = cluster.centroids[i];
+
+				// 1- Only the subunits with their centroid close enough
+				for (int j : cluster.getCandidates(centr1, transform,
+						aParams.getdCutoff())) {
+
+					if (subunitMap.values().contains(j))
+						continue;
+
+					// Transform the centroid of the second
+					Point3d centr2 = new Point3d();
+					transform.transform(cluster.centroids[j], centr2);
+
+					// 1- Check that the distance fulfills maximum
+					double dCentroid = centr1.distance(centr2);
+					if (dCentroid > aParams.getdCutoff())
+						continue;
+
+					// Transform coordinates of second
+					Point3d[] points1 = cluster.points[i];
+					Point3d[] points2c = new Point3d[cluster.points[j].length];
+					for (int p = 0; p < points2c.length; p++) {
+						points2c[p] = new Point3d();
+						transform.transform(cluster.points[j][p], points2c[p]);
+					}
+
+					// 2- Check the orientation metric condition
+					double qOrient = UnitQuaternions.orientationAngle(
+							points1, points2c, false);
+					qOrient = Math.min(Math.abs(2*Math.PI - qOrient), qOrient);
+					if (qOrient > aParams.getMaxOrientationAngle()) {
+						logger.debug(String.format("Subunit matching %d "
+								+ "vs %d of cluster %d could not be "
+								+ "matched, because orientation metric is "
+								+ "%.2f", i, j, key, qOrient));
+						continue;
+					}
+
+					// 3- Check the RMSD condition
+					double rmsd = CalcPoint.rmsd(points1, points2c);
+					if (rmsd > aParams.getMaxRmsd()) {
+						logger.debug(String.format("Subunit matching %d "
+								+ "vs %d of cluster %d could not be "
+								+ "matched, because RMSD is %.2f", i,
+								j, key, rmsd));
+						continue;
+					}
+
+					logger.info(String.format("Subunit matching %d vs %d"
+							+ " of cluster %d with centroid distance %.2f"
+							+ ", orientation metric %.2f and RMSD %.2f",
+							i, j, key, dCentroid, qOrient, rmsd));
+
+					subunitMap.put(i, j);
+
+					// The reference matching is part of the superposition
+					if (key == globalKey)
+						superposition.add(points1, cluster.points[j]);
+					break;
+				}
+			}
+
+			// The other matchings are part of it for the next clusters
+			if (key != globalKey) {
+				for (Entry<Integer, Integer> pair : subunitMap.entrySet())
+					superposition.add(cluster.points[pair.getKey()],
+							cluster.points[pair.getValue()]);
+			}
+			clustSubunitMap.put(key, subunitMap);
+		}
+
+		logger.info("Cluster Subunit Map: " + clustSubunitMap.toString());
+
+		// Unfold the nested map into subunit map and alignment
+		subunitMap = new HashMap<Integer, Integer>();
+		List<Integer> alignRes1 = new ArrayList<Integer>();
+		List<Integer> alignRes2 = new ArrayList<Integer>();
 		List<Atom> atomArray1 = new ArrayList<Atom>();
 		List<Atom> atomArray2 = new ArrayList<Atom>();
 
-		// For each cluster of subunits
-		for (int key : clusterSubunitMap.keySet()) {
+		for (int key : clustSubunitMap.keySet()) {
 
 			// Obtain the cluster and the alignment in it
-			SubunitCluster cluster = clusters.get(key);
+			ClusterGeometry cluster = geometries.get(key);
+			List<List<Integer>> clusterEqrs = cluster.eqrs;
 
-			// For each subunit matching in the cluster
-			for (Entry<Integer, Integer> pair : clusterSubunitMap.get(key)
+			for (Entry<Integer, Integer> pair : clustSubunitMap.get(key)
 					.entrySet()) {
 
 				int i = pair.getKey();
 				int j = pair.getValue();
 
+				// Obtain the indices of the original Subunit Lists
+				int orig1 = s1.indexOf(cluster.subunits.get(i));
+				int orig2 = s2.indexOf(cluster.subunits.get(j));
+
+				// Append rescaled aligned residue indices
+				for (Integer eqr : clusterEqrs.get(i))
+					alignRes1.add(eqr + atomArray1.size());
+				for (Integer eqr : clusterEqrs.get(j))
+					alignRes2.add(eqr + atomArray2.size());
+
 				// Apend atoms to the arrays
-				atomArray1.addAll(Arrays.asList(cluster
-						.getAlignedAtomsSubunit(i)));
-				atomArray2.addAll(Arrays.asList(cluster
-						.getAlignedAtomsSubunit(j)));
-			}
+				atomArray1.addAll(Arrays.asList(s1.get(orig1)
+						.getRepresentativeAtoms()));
+				atomArray2.addAll(Arrays.asList(s2.get(orig2)
+						.getRepresentativeAtoms()));
 
+				subunitMap.put(orig1, orig2);
+			}
 		}
-		return new Pair<Atom[]>(
-				atomArray1.toArray(new Atom[atomArray1.size()]),
-				atomArray2.toArray(new Atom[atomArray2.size()]));
+
+		// Evaluate the goodness of the match with an alignment object
+		MultipleAlignment msa = new MultipleAlignmentImpl();
+		msa.setEnsemble(new MultipleAlignmentEnsembleImpl());
+		msa.getEnsemble().setAtomArrays(
+				Arrays.asList(new Atom[][] {
+						atomArray1.toArray(new Atom[atomArray1.size()]),
+						atomArray2.toArray(new Atom[atomArray2.size()]) }));
+
+		// Fill in the alignment information
+		BlockSet bs = new BlockSetImpl(msa);
+		Block b = new BlockImpl(bs);
+		List<List<Integer>> alignRes = new ArrayList<List<Integer>>(2);
+		alignRes.add(alignRes1);
+		alignRes.add(alignRes2);
+		b.setAlignRes(alignRes);
+
+		// Fill in the transformation matrices
+		new ReferenceSuperimposer().superimpose(msa);
+
+		// Calculate some scores
+		MultipleAlignmentScorer.calculateScores(msa);
+
+		return new SeedAlignment(subunitMap, msa);
 	}
 
 	/**
-	 * Returns the transformation matrix corresponding to the alignment of
-	 * subunit matchings.
-	 * <p>
-	 * Utility method to cumulative calculate the alignment transformation.
-	 *
-	 * @param clusters
-	 *            List of SubunitClusters
-	 * @param clusterSubunitMap
-	 *            map from cluster id to subunit matching
-	 * @return transformation matrix
-	 * @throws StructureException
+	 * The subunit map and alignment obtained from a seed.
 	 */
-	private static Matrix4d getTransformForClusterSubunitMap(
-			List<SubunitCluster> clusters,
-			Map<Integer, Map<Integer, Integer>> clusterSubunitMap)
-			throws StructureException {
+	private static final class SeedAlignment {
 
-		Pair<Atom[]> pair = getAlignedAtomsForClusterSubunitMap(clusters,
-				clusterSubunitMap);
+		final Map<Integer, Integer> subunitMap;
+		final MultipleAlignment msa;
 
-		return SuperPositions.superpose(Calc.atomsToPoints(pair.getFirst()),
-				Calc.atomsToPoints(pair.getSecond()));
+		SeedAlignment(Map<Integer, Integer> subunitMap, MultipleAlignment msa) {
+			this.subunitMap = subunitMap;
+			this.msa = msa;
+		}
+	}
 
+	/**
+	 * The aligned points, centroids and aligned residues of the subunits of a
+	 * cluster merged from both groups, calculated once. The centroids of the
+	 * second group are indexed, so that only the subunits close to a subunit
+	 * of the first group are compared with it.
+	 */
+	private static final class ClusterGeometry {
+
+		/** The number of subunits of the first group, the first ones */
+		final int size1;
+		final List<Subunit> subunits;
+		final Point3d[][] points;
+		final Point3d[] centroids;
+		final List<List<Integer>> eqrs;
+		private final SpatialIndex index2;
+
+		ClusterGeometry(SubunitCluster cluster, int size2, double dCutoff)
+				throws StructureException {
+			int size = cluster.size();
+			size1 = size - size2;
+			subunits = cluster.getSubunits();
+			points = new Point3d[size][];
+			centroids = new Point3d[size];
+			for (int s = 0; s < size; s++) {
+				Atom[] atoms = cluster.getAlignedAtomsSubunit(s);
+				points[s] = Calc.atomsToPoints(atoms);
+				centroids[s] = Calc.getCentroid(atoms).getCoordsAsPoint3d();
+			}
+			eqrs = cluster.getMultipleAlignment().getBlock(0).getAlignRes();
+			index2 = SpatialIndex.of(Arrays.copyOfRange(centroids, size1, size),
+					dCutoff);
+		}
+
+		/**
+		 * The subunits of the second group with their centroid, transformed,
+		 * at most at the cutoff distance of the given centroid.
+		 *
+		 * @return the subunit indices, in increasing order
+		 */
+		int[] getCandidates(Point3d centroid, Matrix4d transform, double dCutoff) {
+			int[] candidates = new int[centroids.length - size1];
+			int n = index2.transform(transform).getNeighbors(centroid.x,
+					centroid.y, centroid.z, dCutoff + CANDIDATE_TOLERANCE,
+					candidates, null);
+			candidates = Arrays.copyOf(candidates, n);
+			for (int c = 0; c < n; c++)
+				candidates[c] += size1;
+			Arrays.sort(candidates);
+			return candidates;
+		}
 	}
 }
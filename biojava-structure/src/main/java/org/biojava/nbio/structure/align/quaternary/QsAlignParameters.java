@@ -32,6 +32,7 @@ public class QsAlignParameters {
 	private double dCutoff = 10.0;
 	private double maxRmsd = 10.0;
 	private double maxOrientationAngle = Math.PI / 6; // 30 degree
+	private int nThreads = 1;
 
 	/**
 	 * The maximum allowed distance between the centroids of two equivalent
@@ -92,4 +93,28 @@ public class QsAlignParameters {
 		this.maxOrientationAngle = maxOrientationAngle;
 	}
 
+	/**
+	 * The number of threads used to evaluate the seeds of the alignment, one
+	 * per matched subunit cluster. The result does not depend on it.
+	 *
+	 * @return the number of threads
+	 * @since 6.0.6
+	 */
+	public int getNThreads() {
+		return nThreads;
+	}
+
+	/**
+	 * The number of threads used to evaluate the seeds of the alignment, one
+	 * per matched subunit cluster. The result does not depend on it.
+	 * Default 1.
+	 *
+	 * @param nThreads
+	 *            the number of threads
+	 * @since 6.0.6
+	 */
+	public void setNThreads(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
 }
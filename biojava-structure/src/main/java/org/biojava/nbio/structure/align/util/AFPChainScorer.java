@@ -31,6 +31,7 @@ import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.Calc;
 import org.biojava.nbio.structure.StructureException;
 import org.biojava.nbio.structure.align.model.AFPChain;
+import org.biojava.nbio.structure.geometry.CalcCoords;
 import org.biojava.nbio.structure.geometry.SuperPositions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,7 +70,7 @@ public class AFPChainScorer {
 				int pos1 = optAln[block][0][i];
 				int pos2 = optAln[block][1][i];
 				Atom a1 = ca1[pos1];
-				Atom a2 = (Atom) ca2[pos2].clone();
+				Atom a2 = ca2[pos2];
 
 				ca1aligned[pos] = a1;
 				ca2aligned[pos] = a2;
@@ -88,9 +89,16 @@ public class AFPChainScorer {
 		Matrix4d trans = SuperPositions.superpose(Calc.atomsToPoints(ca1aligned),
 				Calc.atomsToPoints(ca2aligned));
 
-		Calc.transform(ca2aligned, trans);
+		if (ca1aligned.length > ca1.length || ca2aligned.length > ca2.length) {
+			throw new StructureException("The alignment is longer than the structures!");
+		}
+
+		// transform a copy of the coordinates, the atoms are not cloned
+		double[] coords1 = CalcCoords.toCoords(ca1aligned);
+		double[] coords2 = CalcCoords.toCoords(ca2aligned);
+		CalcCoords.transform(trans, coords2);
 
-		return Calc.getTMScore(ca1aligned, ca2aligned, ca1.length, ca2.length, normalizeMin);
+		return CalcCoords.getTMScore(coords1, coords2, ca1.length, ca2.length, normalizeMin);
 	}
 
 	/**
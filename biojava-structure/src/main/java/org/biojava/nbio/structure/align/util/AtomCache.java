@@ -39,6 +39,7 @@ import org.biojava.nbio.structure.io.FileParsingParameters;
 import org.biojava.nbio.structure.io.LocalPDBDirectory.FetchBehavior;
 import org.biojava.nbio.structure.io.LocalPDBDirectory.ObsoleteBehavior;
 import org.biojava.nbio.structure.io.MMTFFileReader;
+import org.biojava.nbio.structure.io.ParsedStructureStore;
 import org.biojava.nbio.structure.io.PDBFileReader;
 import org.biojava.nbio.core.util.FileDownloadUtils;
 import org.biojava.nbio.structure.io.StructureFiletype;
@@ -88,6 +89,8 @@ public class AtomCache {
 
 	private String path;
 	private StructureFiletype filetype = StructureFiletype.BCIF;
+	private ParsedStructureStore parsedStructureStore;
+	private CaArrayStore caArrayStore;
 
 	/**
 	 * Default AtomCache constructor.
@@ -185,6 +188,8 @@ public class AtomCache {
 	/**
 	 * Returns the representative atoms for the provided name.
 	 * See {@link #getStructure(String)} for supported naming conventions.
+	 * If a {@link #setCaArrayStore(CaArrayStore) CA array store} has an entry
+	 * with the same name, the atoms are built from the store instead.
 	 *
 	 * @param name
 	 * @return an array of Atoms.
@@ -199,6 +204,12 @@ public class AtomCache {
 	public Atom[] getRepresentativeAtoms(StructureIdentifier name) throws IOException, StructureException {
 		Atom[] atoms;
 
+		if (caArrayStore != null) {
+			int index = caArrayStore.indexOf(name.getIdentifier());
+			if (index >= 0)
+				return caArrayStore.getAtoms(index);
+		}
+
 		Structure s = getStructure(name);
 		atoms = StructureTools.getRepresentativeAtomArray(s);
 
@@ -742,6 +753,51 @@ public class AtomCache {
 		this.filetype = filetype;
 	}
 
+	/**
+	 * Returns the on-disk store of already parsed structures, or null if structures
+	 * are always parsed from their files (the default).
+	 * @return the store or null
+	 * @since 6.0.6
+	 */
+	public ParsedStructureStore getParsedStructureStore() {
+		return parsedStructureStore;
+	}
+
+	/**
+	 * Set an on-disk store of already parsed structures. Structures loaded by PDB id are
+	 * then read from the store if it holds an entry for the same local file and
+	 * {@link FileParsingParameters}, and parsed and added to the store otherwise.
+	 * @param parsedStructureStore the store, or null to disable it
+	 * @since 6.0.6
+	 */
+	public void setParsedStructureStore(ParsedStructureStore parsedStructureStore) {
+		this.parsedStructureStore = parsedStructureStore;
+	}
+
+	/**
+	 * Returns the store of precomputed representative atoms, or null if they
+	 * are always extracted from the structures (the default).
+	 * @return the store or null
+	 * @since 6.0.6
+	 */
+	public CaArrayStore getCaArrayStore() {
+		return caArrayStore;
+	}
+
+	/**
+	 * Set a store of precomputed representative atoms, e.g. one
+	 * {@link CaArrayStore#read(java.io.InputStream) read} from a file.
+	 * {@link #getRepresentativeAtoms(StructureIdentifier)} then returns a new
+	 * copy of the atoms of the entry with the same name as the identifier,
+	 * without loading the structure. The atoms belong to a minimal structure
+	 * that only has the name of the entry, see {@link CaArrayStore#getAtoms(int)}.
+	 * @param caArrayStore the store, or null to disable it
+	 * @since 6.0.6
+	 */
+	public void setCaArrayStore(CaArrayStore caArrayStore) {
+		this.caArrayStore = caArrayStore;
+	}
+
 	private boolean checkLoading(PdbId pdbId) {
 		return currentlyLoading.contains(pdbId.getId());
 	}
@@ -870,6 +926,7 @@ public class AtomCache {
 			reader.setFetchBehavior(fetchBehavior);
 			reader.setObsoleteBehavior(obsoleteBehavior);
 			reader.setFileParsingParameters(params);
+			reader.setParsedStructureStore(parsedStructureStore);
 			s = reader.getStructureById(pdbId);
 		} finally {
 			flagLoadingFinished(pdbId);
@@ -890,6 +947,7 @@ public class AtomCache {
 			reader.setFetchBehavior(fetchBehavior);
 			reader.setObsoleteBehavior(obsoleteBehavior);
 			reader.setFileParsingParameters(params);
+			reader.setParsedStructureStore(parsedStructureStore);
 			s = reader.getStructureById(pdbId);
 		} finally {
 			flagLoadingFinished(pdbId);
@@ -912,6 +970,7 @@ public class AtomCache {
 			reader.setObsoleteBehavior(obsoleteBehavior);
 
 			reader.setFileParsingParameters(params);
+			reader.setParsedStructureStore(parsedStructureStore);
 
 			s = reader.getStructureById(pdbId);
 		} finally {
@@ -0,0 +1,556 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.biojava.nbio.structure.AminoAcidImpl;
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.AtomImpl;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.ChainImpl;
+import org.biojava.nbio.structure.Element;
+import org.biojava.nbio.structure.Group;
+import org.biojava.nbio.structure.GroupType;
+import org.biojava.nbio.structure.HetatomImpl;
+import org.biojava.nbio.structure.NucleotideImpl;
+import org.biojava.nbio.structure.ResidueNumber;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.StructureImpl;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.geometry.CalcCoords;
+
+/**
+ * A compact in-memory store of the representative atoms (CA for amino acids,
+ * P for nucleotides) of many structures, e.g. the database of a one-vs-all
+ * structure search.
+ * <p>
+ * Each entry keeps the coordinates as a packed array, the residue names and
+ * numbers and a few cheap {@link Descriptor descriptors}, instead of the whole
+ * structure. {@link #getAtoms(int)} rebuilds a new Atom array (with its own
+ * groups, chains and a structure named after the entry) every time, so that
+ * the alignment algorithms can use and modify it freely, also from several
+ * threads. The groups only contain the
+ * representative atom, so the scoring strategies that use side chains fall
+ * back to representative atom distances.
+ * <p>
+ * Entries are added with the add methods, which are not thread safe;
+ * the store can be read by several threads once filled.
+ * <p>
+ * A store can be {@link #write(OutputStream) written} to a compact binary
+ * file and {@link #read(InputStream) read} back, e.g. to build the CA arrays
+ * of all the domains or chains of an all-vs-all job once, and to
+ * {@link AtomCache#setCaArrayStore(CaArrayStore) serve} them from an
+ * {@link AtomCache} without parsing the structures again.
+ *
+ * @since 6.0.6
+ */
+public class CaArrayStore {
+
+	private final List<Entry> entries = new ArrayList<>();
+	private final Map<String, Integer> indices = new HashMap<>();
+	// the residue, atom and chain names are shared by all entries
+	private final Map<String, String> names = new HashMap<>();
+
+	/**
+	 * Adds the representative atoms of a structure.
+	 *
+	 * @param name the name of the entry, e.g. the structure identifier
+	 * @param structure the structure
+	 * @return the index of the entry
+	 */
+	public int add(String name, Structure structure) {
+		String description = structure.getPDBHeader() == null ? null : structure.getPDBHeader().getDescription();
+		return add(name, StructureTools.getRepresentativeAtomArray(structure), description);
+	}
+
+	/**
+	 * Loads a structure with the cache and adds its representative atoms.
+	 *
+	 * @param name the name of the structure, as understood by {@link AtomCache#getStructure(String)}
+	 * @param cache the cache to load the structure
+	 * @return the index of the entry
+	 * @throws IOException if the structure can not be read
+	 * @throws StructureException if the name does not denote a structure
+	 */
+	public int add(String name, AtomCache cache) throws IOException, StructureException {
+		return add(name, cache.getStructure(name));
+	}
+
+	/**
+	 * Adds an array of representative atoms. The atoms are copied.
+	 *
+	 * @param name the name of the entry
+	 * @param ca the representative atoms
+	 * @param description the description of the entry, can be null
+	 * @return the index of the entry
+	 */
+	public int add(String name, Atom[] ca, String description) {
+		Entry entry = new Entry(name, description == null ? "" : description, ca.length);
+		CalcCoords.toCoords(ca, entry.coords);
+		for (int i = 0; i < ca.length; i++) {
+			Atom atom = ca[i];
+			Group group = atom.getGroup();
+			entry.atomNames[i] = intern(atom.getName());
+			entry.elements[i] = atom.getElement();
+			entry.serials[i] = atom.getPDBserial();
+			if (group == null)
+				continue;
+			entry.groupNames[i] = intern(group.getPDBName());
+			entry.groupTypes[i] = group.getType();
+			ResidueNumber rn = group.getResidueNumber();
+			if (rn != null) {
+				entry.seqNums[i] = rn.getSeqNum() == null ? Integer.MIN_VALUE : rn.getSeqNum();
+				entry.insCodes[i] = rn.getInsCode() == null ? NO_INS_CODE : rn.getInsCode();
+			}
+			Chain chain = group.getChain();
+			if (chain != null) {
+				entry.chainIds[i] = intern(chain.getId());
+				entry.chainNames[i] = intern(chain.getName());
+			} else if (rn != null) {
+				entry.chainNames[i] = intern(rn.getChainName());
+			}
+		}
+		entry.descriptor = new Descriptor(entry.coords);
+
+		indices.put(name, entries.size());
+		entries.add(entry);
+		return entries.size() - 1;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @param name the name of an entry
+	 * @return the index of the entry, or -1 if there is no entry with that name
+	 */
+	public int indexOf(String name) {
+		Integer index = indices.get(name);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param index the index of an entry
+	 * @return the name of the entry
+	 */
+	public String getName(int index) {
+		return entries.get(index).name;
+	}
+
+	/**
+	 * @param index the index of an entry
+	 * @return the description of the entry, empty if unknown
+	 */
+	public String getDescription(int index) {
+		return entries.get(index).description;
+	}
+
+	/**
+	 * @param index the index of an entry
+	 * @return the number of atoms of the entry
+	 */
+	public int getLength(int index) {
+		return entries.get(index).coords.length / 3;
+	}
+
+	/**
+	 * @param index the index of an entry
+	 * @return the packed coordinates of the atoms of the entry, not a copy
+	 * @see CalcCoords
+	 */
+	public double[] getCoords(int index) {
+		return entries.get(index).coords;
+	}
+
+	/**
+	 * The one letter codes of the residues of an entry, as in
+	 * {@link StructureTools#get1LetterCode(String)}.
+	 *
+	 * @param index the index of an entry
+	 * @return the sequence of the entry
+	 */
+	public String getSequence(int index) {
+		Entry entry = entries.get(index);
+		StringBuilder sequence = new StringBuilder(entry.groupNames.length);
+		for (String groupName : entry.groupNames) {
+			sequence.append(groupName == null ? StructureTools.UNKNOWN_GROUP_LABEL
+					: StructureTools.get1LetterCode(groupName));
+		}
+		return sequence.toString();
+	}
+
+	/**
+	 * @param index the index of an entry
+	 * @return the descriptors of the entry
+	 */
+	public Descriptor getDescriptor(int index) {
+		return entries.get(index).descriptor;
+	}
+
+	/**
+	 * Builds a new array of the atoms of an entry, each in its own group,
+	 * with the groups in chains as in the original structure. The chains
+	 * belong to a structure with the name of the entry, which the alignment
+	 * algorithms use as the names of the aligned structures.
+	 *
+	 * @param index the index of an entry
+	 * @return the representative atoms of the entry
+	 */
+	public Atom[] getAtoms(int index) {
+		Entry entry = entries.get(index);
+		int n = entry.coords.length / 3;
+		Atom[] atoms = new Atom[n];
+		Structure structure = new StructureImpl();
+		structure.setName(entry.name);
+		Chain chain = null;
+		for (int i = 0; i < n; i++) {
+			Group group;
+			if (entry.groupTypes[i] == GroupType.AMINOACID) {
+				group = new AminoAcidImpl();
+			} else if (entry.groupTypes[i] == GroupType.NUCLEOTIDE) {
+				group = new NucleotideImpl();
+			} else {
+				group = new HetatomImpl();
+			}
+			group.setPDBName(entry.groupNames[i]);
+			if (entry.seqNums[i] != Integer.MIN_VALUE || entry.chainNames[i] != null) {
+				group.setResidueNumber(entry.chainNames[i],
+						entry.seqNums[i] == Integer.MIN_VALUE ? null : entry.seqNums[i],
+						entry.insCodes[i] == NO_INS_CODE ? null : entry.insCodes[i]);
+			}
+
+			Atom atom = new AtomImpl();
+			atom.setName(entry.atomNames[i]);
+			atom.setElement(entry.elements[i]);
+			atom.setPDBserial(entry.serials[i]);
+			atom.setX(entry.coords[3 * i]);
+			atom.setY(entry.coords[3 * i + 1]);
+			atom.setZ(entry.coords[3 * i + 2]);
+			group.addAtom(atom);
+
+			if (chain == null || !equal(chain.getName(), entry.chainNames[i])
+					|| !equal(chain.getId(), entry.chainIds[i])) {
+				chain = new ChainImpl();
+				chain.setId(entry.chainIds[i]);
+				chain.setName(entry.chainNames[i]);
+				structure.addChain(chain);
+			}
+			chain.addGroup(group);
+			atoms[i] = atom;
+		}
+		return atoms;
+	}
+
+	/**
+	 * Writes all the entries in a binary format, with the names of the
+	 * residues, atoms and chains written only once. The stream is flushed but
+	 * not closed.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if writing fails
+	 * @see #read(InputStream)
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(FILE_MAGIC);
+		data.writeInt(FILE_VERSION);
+		data.writeInt(entries.size());
+		Map<String, Integer> written = new HashMap<>();
+		for (Entry entry : entries) {
+			data.writeUTF(entry.name);
+			data.writeUTF(entry.description);
+			int n = entry.atomNames.length;
+			data.writeInt(n);
+			for (double x : entry.coords)
+				data.writeDouble(x);
+			for (int i = 0; i < n; i++) {
+				writeName(data, entry.atomNames[i], written);
+				writeName(data, entry.elements[i] == null ? null : entry.elements[i].name(), written);
+				data.writeInt(entry.serials[i]);
+				writeName(data, entry.groupNames[i], written);
+				writeName(data, entry.groupTypes[i] == null ? null : entry.groupTypes[i].name(), written);
+				data.writeInt(entry.seqNums[i]);
+				data.writeChar(entry.insCodes[i]);
+				writeName(data, entry.chainIds[i], written);
+				writeName(data, entry.chainNames[i], written);
+			}
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads the entries written by {@link #write(OutputStream)} into a new
+	 * store. The stream is read up to the end of the store and not further,
+	 * so a store can be followed by other data; it is not closed. The stream
+	 * is not buffered here, pass a buffered stream to read a file.
+	 *
+	 * @param in the stream to read from
+	 * @return a new store with the entries
+	 * @throws IOException if reading fails or the stream is not a written store
+	 */
+	public static CaArrayStore read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != FILE_MAGIC)
+			throw new IOException("Not a CA array store");
+		int version = data.readInt();
+		if (version != FILE_VERSION)
+			throw new IOException("Unsupported CA array store version " + version);
+
+		CaArrayStore store = new CaArrayStore();
+		int size = data.readInt();
+		List<String> read = new ArrayList<>();
+		try {
+			for (int e = 0; e < size; e++) {
+				String name = data.readUTF();
+				String description = data.readUTF();
+				int n = data.readInt();
+				Entry entry = new Entry(name, description, n);
+				for (int i = 0; i < entry.coords.length; i++)
+					entry.coords[i] = data.readDouble();
+				for (int i = 0; i < n; i++) {
+					entry.atomNames[i] = store.intern(readName(data, read));
+					String element = readName(data, read);
+					entry.elements[i] = element == null ? null : Element.valueOf(element);
+					entry.serials[i] = data.readInt();
+					entry.groupNames[i] = store.intern(readName(data, read));
+					String groupType = readName(data, read);
+					entry.groupTypes[i] = groupType == null ? null : GroupType.valueOf(groupType);
+					entry.seqNums[i] = data.readInt();
+					entry.insCodes[i] = data.readChar();
+					entry.chainIds[i] = store.intern(readName(data, read));
+					entry.chainNames[i] = store.intern(readName(data, read));
+				}
+				entry.descriptor = new Descriptor(entry.coords);
+				store.indices.put(name, store.entries.size());
+				store.entries.add(entry);
+			}
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Corrupt CA array store", e);
+		}
+		return store;
+	}
+
+	/**
+	 * Writes a name as a reference to an earlier occurrence, or in full the
+	 * first time.
+	 */
+	private static void writeName(DataOutputStream data, String name, Map<String, Integer> written) throws IOException {
+		if (name == null) {
+			data.writeInt(NULL_NAME);
+			return;
+		}
+		Integer reference = written.get(name);
+		if (reference != null) {
+			data.writeInt(reference);
+		} else {
+			data.writeInt(NEW_NAME);
+			data.writeUTF(name);
+			written.put(name, written.size());
+		}
+	}
+
+	private static String readName(DataInputStream data, List<String> read) throws IOException {
+		int reference = data.readInt();
+		if (reference == NULL_NAME)
+			return null;
+		if (reference == NEW_NAME) {
+			String name = data.readUTF();
+			read.add(name);
+			return name;
+		}
+		return read.get(reference);
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	private String intern(String s) {
+		if (s == null)
+			return null;
+		String shared = names.get(s);
+		if (shared == null) {
+			names.put(s, s);
+			shared = s;
+		}
+		return shared;
+	}
+
+	private static final char NO_INS_CODE = '\0';
+
+	/** The first bytes of a written store: "CAAS" */
+	private static final int FILE_MAGIC = 0x43414153;
+	private static final int FILE_VERSION = 1;
+	private static final int NULL_NAME = -1;
+	private static final int NEW_NAME = -2;
+
+	private static class Entry {
+		final String name;
+		final String description;
+		final double[] coords;
+		final String[] atomNames;
+		final Element[] elements;
+		final int[] serials;
+		final String[] groupNames;
+		final GroupType[] groupTypes;
+		final int[] seqNums;
+		final char[] insCodes;
+		final String[] chainIds;
+		final String[] chainNames;
+		Descriptor descriptor;
+
+		Entry(String name, String description, int n) {
+			this.name = name;
+			this.description = description;
+			coords = new double[3 * n];
+			atomNames = new String[n];
+			elements = new Element[n];
+			serials = new int[n];
+			groupNames = new String[n];
+			groupTypes = new GroupType[n];
+			seqNums = new int[n];
+			insCodes = new char[n];
+			chainIds = new String[n];
+			chainNames = new String[n];
+			Arrays.fill(seqNums, Integer.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * Cheap global descriptors of an array of representative atoms, used to
+	 * discard obviously dissimilar pairs before an alignment: the length, the
+	 * radius of gyration and the fractions of helix and strand.
+	 * <p>
+	 * The secondary structure is approximated from the distances between
+	 * CA atoms i,i+2, i,i+3 and i,i+4 alone, with the criteria of P-SEA
+	 * (Labesse et al. 1997), so it does not need the backbone atoms.
+	 */
+	public static class Descriptor {
+
+		private final int length;
+		private final double radiusOfGyration;
+		private final double helixFraction;
+		private final double strandFraction;
+
+		/**
+		 * Calculates the descriptors of an array of representative atoms.
+		 * @param ca the atoms
+		 */
+		public Descriptor(Atom[] ca) {
+			this(CalcCoords.toCoords(ca));
+		}
+
+		/**
+		 * Calculates the descriptors of packed coordinates.
+		 * @param coords the packed coordinates of the representative atoms
+		 */
+		public Descriptor(double[] coords) {
+			length = coords.length / 3;
+			radiusOfGyration = length == 0 ? 0 : CalcCoords.radiusOfGyration(coords);
+
+			int helix = 0;
+			int strand = 0;
+			for (int i = 0; i + 4 < length; i++) {
+				double d2 = distance(coords, i, i + 2);
+				double d3 = distance(coords, i, i + 3);
+				double d4 = distance(coords, i, i + 4);
+				if (Math.abs(d2 - 5.5) <= 0.5 && Math.abs(d3 - 5.3) <= 0.5 && Math.abs(d4 - 6.4) <= 0.6) {
+					helix++;
+				} else if (Math.abs(d2 - 6.4) <= 0.6 && Math.abs(d3 - 9.9) <= 0.9 && Math.abs(d4 - 12.4) <= 1.1) {
+					strand++;
+				}
+			}
+			helixFraction = length == 0 ? 0 : (double) helix / length;
+			strandFraction = length == 0 ? 0 : (double) strand / length;
+		}
+
+		private static double distance(double[] x, int i, int j) {
+			double dx = x[3 * i] - x[3 * j];
+			double dy = x[3 * i + 1] - x[3 * j + 1];
+			double dz = x[3 * i + 2] - x[3 * j + 2];
+			return Math.sqrt(dx * dx + dy * dy + dz * dz);
+		}
+
+		/**
+		 * @return the number of atoms
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * @return the radius of gyration of the atoms, in Angstroms
+		 */
+		public double getRadiusOfGyration() {
+			return radiusOfGyration;
+		}
+
+		/**
+		 * @return the approximate fraction of residues in helices
+		 */
+		public double getHelixFraction() {
+			return helixFraction;
+		}
+
+		/**
+		 * @return the approximate fraction of residues in strands
+		 */
+		public double getStrandFraction() {
+			return strandFraction;
+		}
+
+		/**
+		 * The difference of the secondary structure compositions: the sum of the
+		 * absolute differences of the helix, strand and other fractions, between 0 and 2.
+		 * @param other the descriptors of another atom array
+		 * @return the composition difference
+		 */
+		public double getSecStrucDistance(Descriptor other) {
+			double coil = 1 - helixFraction - strandFraction;
+			double otherCoil = 1 - other.helixFraction - other.strandFraction;
+			return Math.abs(helixFraction - other.helixFraction)
+					+ Math.abs(strandFraction - other.strandFraction)
+					+ Math.abs(coil - otherCoil);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Descriptor [length=%d, Rg=%.2f, helix=%.2f, strand=%.2f]",
+					length, radiusOfGyration, helixFraction, strandFraction);
+		}
+	}
+}
@@ -20,17 +20,18 @@
  */
 package org.biojava.nbio.structure.asa;
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.*;
-import org.biojava.nbio.structure.contact.Contact;
-import org.biojava.nbio.structure.contact.Grid;
+import org.biojava.nbio.structure.contact.SpatialIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.vecmath.Point3d;
-import javax.vecmath.Vector3d;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -85,21 +86,11 @@ public class AsaCalculator {
 
 
 
-	private class AsaCalcWorker implements Runnable {
-
-		private final int i;
-		private final double[] asas;
-
-		private AsaCalcWorker(int i, double[] asas) {
-			this.i = i;
-			this.asas = asas;
-		}
-
-		@Override
-		public void run() {
-			asas[i] = calcSingleAsa(i);
-		}
-	}
+	/**
+	 * Number of atoms per task in the parallel calculation. Chunks are small enough for idle
+	 * threads to take over work from busy ones, and large enough to reuse the scratch buffers.
+	 */
+	private static final int ATOMS_PER_TASK = 128;
 
 	static class IndexAndDistance {
 		final int index;
@@ -110,15 +101,71 @@ public class AsaCalculator {
 		}
 	}
 
+	/**
+	 * The neighbors of all atoms in compressed sparse row form: the neighbors of atom i are
+	 * at positions offsets[i] (inclusive) to offsets[i+1] (exclusive) of indices and dists,
+	 * sorted from closest to farthest.
+	 */
+	static class NeighborList {
+		final int[] offsets;
+		final int[] indices;
+		final double[] dists;
+		final int maxNeighbors;
+
+		NeighborList(int[] offsets, int[] indices, double[] dists) {
+			this.offsets = offsets;
+			this.indices = indices;
+			this.dists = dists;
+
+			int max = 0;
+			for (int i = 0; i < offsets.length - 1; i++) {
+				sortByDistance(offsets[i], offsets[i + 1]);
+				max = Math.max(max, offsets[i + 1] - offsets[i]);
+			}
+			this.maxNeighbors = max;
+		}
+
+		/**
+		 * Stable insertion sort of a segment, neighbor lists are short.
+		 */
+		private void sortByDistance(int from, int to) {
+			for (int k = from + 1; k < to; k++) {
+				int index = indices[k];
+				double dist = dists[k];
+				int l = k - 1;
+				while (l >= from && dists[l] > dist) {
+					indices[l + 1] = indices[l];
+					dists[l + 1] = dists[l];
+					l--;
+				}
+				indices[l + 1] = index;
+				dists[l + 1] = dist;
+			}
+		}
+
+		IndexAndDistance[][] toIndexAndDistance() {
+			IndexAndDistance[][] nbsIndices = new IndexAndDistance[offsets.length - 1][];
+			for (int i = 0; i < nbsIndices.length; i++) {
+				nbsIndices[i] = new IndexAndDistance[offsets[i + 1] - offsets[i]];
+				for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+					nbsIndices[i][k - offsets[i]] = new IndexAndDistance(indices[k], dists[k]);
+				}
+			}
+			return nbsIndices;
+		}
+	}
+
 
 	private final Point3d[] atomCoords;
+	/** the atom coordinates as x,y,z triplets */
+	private final double[] coords;
 	private final Atom[] atoms;
 	private final double[] radii;
 	private final double probe;
 	private final int nThreads;
-	private Vector3d[] spherePoints;
+	/** the sphere points as x,y,z triplets */
+	private double[] spherePoints;
 	private double cons;
-	private IndexAndDistance[][] neighborIndices;
 
 	private boolean useSpatialHashingForNeighbors;
 
@@ -137,6 +184,7 @@ public class AsaCalculator {
 	public AsaCalculator(Structure structure, double probe, int nSpherePoints, int nThreads, boolean hetAtoms) {
 		this.atoms = StructureTools.getAllNonHAtomArray(structure, hetAtoms);
 		this.atomCoords = Calc.atomsToPoints(atoms);
+		this.coords = toCoordArray(atomCoords);
 		this.probe = probe;
 		this.nThreads = nThreads;
 
@@ -164,6 +212,7 @@ public class AsaCalculator {
 	public AsaCalculator(Atom[] atoms, double probe, int nSpherePoints, int nThreads) {
 		this.atoms = atoms;
 		this.atomCoords = Calc.atomsToPoints(atoms);
+		this.coords = toCoordArray(atomCoords);
 		this.probe = probe;
 		this.nThreads = nThreads;
 
@@ -184,7 +233,7 @@ public class AsaCalculator {
 	}
 
 	/**
-	 * Constructs a new AsaCalculator. Subsequently call {@link #calcSingleAsa(int)}
+	 * Constructs a new AsaCalculator. Subsequently call {@link #calculateAsas()}
 	 * to calculate the atom ASAs. The given radius parameter will be taken as the radius for
 	 * all points given. No ASA calculation per group will be possible with this constructor, so
 	 * usage of {@link #getGroupAsas()} will result in a NullPointerException.
@@ -203,6 +252,7 @@ public class AsaCalculator {
 	public AsaCalculator(Point3d[] atomCoords, double probe, int nSpherePoints, int nThreads, double radius) {
 		this.atoms = null;
 		this.atomCoords = atomCoords;
+		this.coords = toCoordArray(atomCoords);
 		this.probe = probe;
 		this.nThreads = nThreads;
 
@@ -217,6 +267,16 @@ public class AsaCalculator {
 		initSpherePoints(nSpherePoints);
 	}
 
+	private static double[] toCoordArray(Point3d[] points) {
+		double[] coords = new double[3 * points.length];
+		for (int i = 0; i < points.length; i++) {
+			coords[3 * i] = points[i].x;
+			coords[3 * i + 1] = points[i].y;
+			coords[3 * i + 2] = points[i].z;
+		}
+		return coords;
+	}
+
 	private void initSpherePoints(int nSpherePoints) {
 
 		logger.debug("Will use {} sphere points", nSpherePoints);
@@ -257,48 +317,91 @@ public class AsaCalculator {
 
 	/**
 	 * Calculates the Accessible Surface Areas for the atoms given in constructor and with parameters given.
-	 * Beware that the parallel implementation is quite memory hungry. It scales well as long as there is
-	 * enough memory available.
+	 * If more than 1 thread was requested, the atoms are processed in chunks by the shared work-stealing
+	 * pool of that many threads, see {@link ConcurrencyTools#getForkJoinPool(int)}.
 	 * @return an array with asa values corresponding to each atom of the input array
+	 * @see #calculateAsas(ExecutorService)
 	 */
 	public double[] calculateAsas() {
+		if (nThreads<=1) { // (i.e. it will also be 1 thread if 0 or negative number specified)
+			return calculateAsas(null);
+		}
+
+		return calculateAsas(ConcurrencyTools.getForkJoinPool(nThreads));
+	}
+
+	/**
+	 * Calculates the Accessible Surface Areas for the atoms given in constructor and with parameters given,
+	 * running chunks of atoms as tasks of the given executor. The executor is not shut down, so it can be
+	 * shared by many calculations, e.g. the ones of all interfaces of a crystal.
+	 * @param executor the executor to run the calculation, or null to run it in the calling thread
+	 * @return an array with asa values corresponding to each atom of the input array
+	 * @since 6.0.6
+	 */
+	public double[] calculateAsas(ExecutorService executor) {
+		return calculateAsas(null, executor);
+	}
+
+	/**
+	 * Calculates the Accessible Surface Areas of a subset of the atoms given in constructor. All atoms are
+	 * taken into account as occluding neighbors, but the (costly) sphere point sampling is only done for the
+	 * given atoms. This allows to update the ASAs of a complex where only some atoms are affected,
+	 * see {@link org.biojava.nbio.structure.contact.StructureInterfaceList#calcAsas(int, int, int, boolean)}.
+	 * @param atomIndices the indices of the atoms to calculate the ASAs of, or null for all atoms
+	 * @param executor the executor to run the calculation, or null to run it in the calling thread
+	 * @return an array with asa values corresponding to each of the atom indices
+	 * @since 6.0.6
+	 */
+	public double[] calculateAsas(int[] atomIndices, ExecutorService executor) {
 
-		double[] asas = new double[atomCoords.length];
+		int nAtoms = atomIndices == null ? atomCoords.length : atomIndices.length;
+		double[] asas = new double[nAtoms];
 
 		long start = System.currentTimeMillis();
+		NeighborList neighbors;
 		if (useSpatialHashingForNeighbors) {
 			logger.debug("Will use spatial hashing to find neighbors");
-			neighborIndices = findNeighborIndicesSpatialHashing();
+			neighbors = calcNeighborsSpatialHashing();
 		} else {
 			logger.debug("Will not use spatial hashing to find neighbors");
-			neighborIndices = findNeighborIndices();
+			neighbors = calcNeighborsAllToAll();
 		}
 		long end = System.currentTimeMillis();
 		logger.debug("Took {} s to find neighbors", (end-start)/1000.0);
 
 		start = System.currentTimeMillis();
-		if (nThreads<=1) { // (i.e. it will also be 1 thread if 0 or negative number specified)
+		if (executor == null || nAtoms <= ATOMS_PER_TASK) {
 			logger.debug("Will use 1 thread for ASA calculation");
-			for (int i=0;i<atomCoords.length;i++) {
-				asas[i] = calcSingleAsa(i);
-			}
-
+			calcAsas(0, nAtoms, atomIndices, neighbors, asas);
 		} else {
-			logger.debug("Will use {} threads for ASA calculation", nThreads);
-
-			ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
-
-			for (int i=0;i<atomCoords.length;i++) {
-				threadPool.submit(new AsaCalcWorker(i,asas));
+			logger.debug("Will use executor {} for ASA calculation", executor);
+
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (int from = 0; from < nAtoms; from += ATOMS_PER_TASK) {
+				int chunkStart = from;
+				int chunkEnd = Math.min(from + ATOMS_PER_TASK, nAtoms);
+				tasks.add(() -> {
+					calcAsas(chunkStart, chunkEnd, atomIndices, neighbors, asas);
+					return null;
+				});
 			}
 
-			threadPool.shutdown();
-
-			while (!threadPool.isTerminated());
-
+			try {
+				for (Future<Void> future : executor.invokeAll(tasks)) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while calculating ASAs", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException("Error while calculating ASAs", e.getCause());
+			}
 		}
 		end = System.currentTimeMillis();
-		logger.debug("Took {} s to calculate all {} atoms ASAs (excluding neighbors calculation)", (end-start)/1000.0, atomCoords.length);
+		logger.debug("Took {} s to calculate {} atoms ASAs (excluding neighbors calculation)", (end-start)/1000.0, nAtoms);
 
 		return asas;
 	}
@@ -317,17 +420,19 @@ public class AsaCalculator {
 	 * Returns list of 3d coordinates of points on a unit sphere using the
 	 * Golden Section Spiral algorithm.
 	 * @param nSpherePoints the number of points to be used in generating the spherical dot-density
-	 * @return the array of points as Vector3d objects
+	 * @return the array of points as x,y,z triplets
 	 */
-	private Vector3d[] generateSpherePoints(int nSpherePoints) {
-		Vector3d[] points = new Vector3d[nSpherePoints];
+	private double[] generateSpherePoints(int nSpherePoints) {
+		double[] points = new double[3 * nSpherePoints];
 		double inc = Math.PI * (3.0 - Math.sqrt(5.0));
 		double offset = 2.0 / nSpherePoints;
 		for (int k=0;k<nSpherePoints;k++) {
 			double y = k * offset - 1.0 + (offset / 2.0);
 			double r = Math.sqrt(1.0 - y*y);
 			double phi = k * inc;
-			points[k] = new Vector3d(Math.cos(phi)*r, y, Math.sin(phi)*r);
+			points[3*k] = Math.cos(phi)*r;
+			points[3*k+1] = y;
+			points[3*k+2] = Math.sin(phi)*r;
 		}
 		return points;
 	}
@@ -337,120 +442,154 @@ public class AsaCalculator {
 	 * @return 2-dimensional array of size: n_atoms x n_neighbors_per_atom
 	 */
 	IndexAndDistance[][] findNeighborIndices() {
+		return calcNeighborsAllToAll().toIndexAndDistance();
+	}
 
-		// looking at a typical protein case, number of neighbours are from ~10 to ~50, with an average of ~30
-		int initialCapacity = 60;
+	/**
+	 * Returns the 2-dimensional array with neighbor indices for every atom,
+	 * using spatial hashing to avoid all to all distance calculation.
+	 * @return 2-dimensional array of size: n_atoms x n_neighbors_per_atom
+	 */
+	IndexAndDistance[][] findNeighborIndicesSpatialHashing() {
+		return calcNeighborsSpatialHashing().toIndexAndDistance();
+	}
 
-		IndexAndDistance[][] nbsIndices = new IndexAndDistance[atomCoords.length][];
+	private NeighborList calcNeighborsAllToAll() {
+
+		// the arrays grow on demand, as for the spatial hashing: a typical protein atom has ~30 neighbours,
+		// but reserving that for all atoms up front would be a large allocation for big inputs
+		int[] offsets = new int[atomCoords.length + 1];
+		int[] indices = new int[1024];
+		double[] dists = new double[1024];
+		int size = 0;
 
 		for (int k=0; k<atomCoords.length; k++) {
 			double radius = radii[k] + probe + probe;
 
-			List<IndexAndDistance> thisNbIndices = new ArrayList<>(initialCapacity);
-
 			for (int i = 0; i < atomCoords.length; i++) {
 				if (i == k) continue;
 
-				double dist = atomCoords[i].distance(atomCoords[k]);
+				double dx = coords[3*i] - coords[3*k];
+				double dy = coords[3*i+1] - coords[3*k+1];
+				double dz = coords[3*i+2] - coords[3*k+2];
+				double dist = Math.sqrt(dx*dx + dy*dy + dz*dz);
 
 				if (dist < radius + radii[i]) {
-					thisNbIndices.add(new IndexAndDistance(i, dist));
+					if (size == indices.length) {
+						indices = Arrays.copyOf(indices, 2 * size);
+						dists = Arrays.copyOf(dists, 2 * size);
+					}
+					indices[size] = i;
+					dists[size] = dist;
+					size++;
 				}
 			}
-
-			IndexAndDistance[] indicesArray = thisNbIndices.toArray(new IndexAndDistance[0]);
-			nbsIndices[k] = indicesArray;
+			offsets[k + 1] = size;
 		}
-		return nbsIndices;
+		return new NeighborList(offsets, Arrays.copyOf(indices, size), Arrays.copyOf(dists, size));
 	}
 
-	/**
-	 * Returns the 2-dimensional array with neighbor indices for every atom,
-	 * using spatial hashing to avoid all to all distance calculation.
-	 * @return 2-dimensional array of size: n_atoms x n_neighbors_per_atom
-	 */
-	IndexAndDistance[][] findNeighborIndicesSpatialHashing() {
+	private NeighborList calcNeighborsSpatialHashing() {
 
-		// looking at a typical protein case, number of neighbours are from ~10 to ~50, with an average of ~30
-		int initialCapacity = 60;
-
-		List<Contact> contactList = calcContacts();
-		Map<Integer, List<IndexAndDistance>> indices = new HashMap<>(atomCoords.length);
-		for (Contact contact : contactList) {
-			// note contacts are stored 1-way only, with j>i
-			int i = contact.getI();
-			int j = contact.getJ();
-
-			List<IndexAndDistance> iIndices;
-			List<IndexAndDistance> jIndices;
-			if (!indices.containsKey(i)) {
-				iIndices = new ArrayList<>(initialCapacity);
-				indices.put(i, iIndices);
-			} else {
-				iIndices = indices.get(i);
-			}
-			if (!indices.containsKey(j)) {
-				jIndices = new ArrayList<>(initialCapacity);
-				indices.put(j, jIndices);
-			} else {
-				jIndices = indices.get(j);
-			}
+		int nAtoms = atomCoords.length;
+		int[] offsets = new int[nAtoms + 1];
+		if (nAtoms == 0)
+			return new NeighborList(offsets, new int[0], new double[0]);
 
-			double radius = radii[i] + probe + probe;
-			double dist = contact.getDistance();
-			if (dist < radius + radii[j]) {
-				iIndices.add(new IndexAndDistance(j, dist));
-				jIndices.add(new IndexAndDistance(i, dist));
-			}
+		double maxRadius = 0;
+		for (double radius : radii)
+			maxRadius = Math.max(maxRadius, radius);
+		double cutoff = maxRadius + maxRadius + probe + probe;
+		logger.debug("Max radius is {}, cutoff is {}", maxRadius, cutoff);
+
+		// first pass: collect the neighbor pairs, stored 1-way only with j>i, and count the neighbors
+		// of every atom. Note that some atoms might have no neighbors at all
+		SpatialIndex index = new SpatialIndex(coords, cutoff);
+		NeighborPairs pairs = new NeighborPairs(offsets);
+		index.forEachContact(cutoff, pairs);
+		for (int i = 0; i < nAtoms; i++) {
+			offsets[i + 1] += offsets[i];
 		}
 
-		// convert map to array for fast access
-		IndexAndDistance[][] nbsIndices = new IndexAndDistance[atomCoords.length][];
-		for (Map.Entry<Integer, List<IndexAndDistance>> entry : indices.entrySet()) {
-			List<IndexAndDistance> list = entry.getValue();
-			IndexAndDistance[] indexAndDistances = list.toArray(new IndexAndDistance[0]);
-			nbsIndices[entry.getKey()] = indexAndDistances;
+		// second pass: fill the neighbors in
+		int[] fill = Arrays.copyOf(offsets, nAtoms);
+		int[] indices = new int[offsets[nAtoms]];
+		double[] dists = new double[offsets[nAtoms]];
+		for (int k = 0; k < pairs.size; k++) {
+			int i = pairs.is[k];
+			int j = pairs.js[k];
+			double dist = pairs.dists[k];
+			indices[fill[i]] = j;
+			dists[fill[i]++] = dist;
+			indices[fill[j]] = i;
+			dists[fill[j]++] = dist;
 		}
 
-		// important: some atoms might have no neighbors at all: we need to initialise to empty arrays
-		for (int i=0; i<nbsIndices.length; i++) {
-			if (nbsIndices[i] == null) {
-				nbsIndices[i] = new IndexAndDistance[0];
-			}
+		return new NeighborList(offsets, indices, dists);
+	}
+
+	/**
+	 * Collects the pairs of atoms within the neighbor distance in primitive arrays, counting the
+	 * neighbors of every atom i at position i+1 of the offsets.
+	 */
+	private class NeighborPairs implements SpatialIndex.PairVisitor {
+		final int[] counts;
+		int[] is = new int[1024];
+		int[] js = new int[1024];
+		double[] dists = new double[1024];
+		int size;
+
+		NeighborPairs(int[] counts) {
+			this.counts = counts;
 		}
 
-		return nbsIndices;
+		@Override
+		public void visit(int i, int j, double dist) {
+			if (dist < radii[i] + probe + probe + radii[j]) {
+				if (size == is.length) {
+					is = Arrays.copyOf(is, 2 * size);
+					js = Arrays.copyOf(js, 2 * size);
+					dists = Arrays.copyOf(dists, 2 * size);
+				}
+				is[size] = i;
+				js[size] = j;
+				dists[size] = dist;
+				size++;
+				counts[i + 1]++;
+				counts[j + 1]++;
+			}
+		}
 	}
 
 	Point3d[] getAtomCoords() {
 		return atomCoords;
 	}
 
-	private List<Contact> calcContacts() {
-		if (atomCoords.length == 0)
-			return new ArrayList<>();
-		double maxRadius = 0;
-		OptionalDouble optionalDouble = Arrays.stream(radii).max();
-		if (optionalDouble.isPresent())
-			maxRadius = optionalDouble.getAsDouble();
-		double cutoff = maxRadius + maxRadius + probe + probe;
-		logger.debug("Max radius is {}, cutoff is {}", maxRadius, cutoff);
-		Grid grid = new Grid(cutoff);
-		grid.addCoords(atomCoords);
-		return grid.getIndicesContacts();
+	/**
+	 * Calculates the ASAs of the atoms at positions from (inclusive) to to (exclusive) of atomIndices
+	 * (or of all atoms if null), sharing the scratch buffers between all atoms of the range.
+	 */
+	private void calcAsas(int from, int to, int[] atomIndices, NeighborList neighbors, double[] asas) {
+		double[] sqRadii = new double[neighbors.maxNeighbors];
+		double[] ajMinusAis = new double[3 * neighbors.maxNeighbors];
+		for (int k = from; k < to; k++) {
+			int i = atomIndices == null ? k : atomIndices[k];
+			asas[k] = calcSingleAsa(i, neighbors, sqRadii, ajMinusAis);
+		}
 	}
 
-	private double calcSingleAsa(int i) {
-		Point3d atom_i = atomCoords[i];
+	private double calcSingleAsa(int i, NeighborList neighbors, double[] sqRadii, double[] ajMinusAis) {
+		double xi = coords[3*i];
+		double yi = coords[3*i+1];
+		double zi = coords[3*i+2];
 
-		int n_neighbor = neighborIndices[i].length;
-		IndexAndDistance[] neighbor_indices = neighborIndices[i];
-		// Sorting by closest to farthest away neighbors achieves faster runtimes when checking for occluded
+		// Neighbors sorted by closest to farthest away achieve faster runtimes when checking for occluded
 		// sphere sample points below. This follows the ideas exposed in
 		// Eisenhaber et al, J Comp Chemistry 1994 (https://onlinelibrary.wiley.com/doi/epdf/10.1002/jcc.540160303)
 		// This is essential for performance. In my tests this brings down the number of occlusion checks in loop below to
 		// an average of n_sphere_points/10 per atom i, producing ~ x4 performance gain overall
-		Arrays.sort(neighbor_indices, Comparator.comparingDouble(o -> o.dist));
+		int firstNeighbor = neighbors.offsets[i];
+		int n_neighbor = neighbors.offsets[i + 1] - firstNeighbor;
 
 		double radius_i = probe + radii[i];
 
@@ -460,20 +599,21 @@ public class AsaCalculator {
 		if (logger.isDebugEnabled()) numDistsCalced = new int[n_neighbor];
 
 		// now we precalculate anything depending only on i,j in equation 3 in Eisenhaber 1994
-		double[] sqRadii = new double[n_neighbor];
-		Vector3d[] aj_minus_ais = new Vector3d[n_neighbor];
 		for (int nbArrayInd =0; nbArrayInd<n_neighbor; nbArrayInd++) {
-			int j = neighbor_indices[nbArrayInd].index;
-			double dist = neighbor_indices[nbArrayInd].dist;
+			int j = neighbors.indices[firstNeighbor + nbArrayInd];
+			double dist = neighbors.dists[firstNeighbor + nbArrayInd];
 			double radius_j = radii[j] + probe;
 			// see equation 3 in Eisenhaber 1994
 			sqRadii[nbArrayInd] = (dist*dist + radius_i*radius_i - radius_j*radius_j)/(2*radius_i);
-			Vector3d aj_minus_ai = new Vector3d(atomCoords[j]);
-			aj_minus_ai.sub(atom_i);
-			aj_minus_ais[nbArrayInd] = aj_minus_ai;
+			ajMinusAis[3*nbArrayInd] = coords[3*j] - xi;
+			ajMinusAis[3*nbArrayInd+1] = coords[3*j+1] - yi;
+			ajMinusAis[3*nbArrayInd+2] = coords[3*j+2] - zi;
 		}
 
-		for (Vector3d point: spherePoints){
+		for (int p = 0; p < spherePoints.length; p += 3) {
+			double px = spherePoints[p];
+			double py = spherePoints[p+1];
+			double pz = spherePoints[p+2];
 			boolean is_accessible = true;
 
 			// note that the neighbors are sorted by distance, achieving optimal performance in this inner loop
@@ -484,7 +624,7 @@ public class AsaCalculator {
 				// see equation 3 in Eisenhaber 1994. This is slightly more efficient than
 				// calculating distances to the actual sphere points on atom_i (which would be obtained with:
 				// Point3d test_point = new Point3d(point.x*radius + atom_i.x,point.y*radius + atom_i.y,point.z*radius + atom_i.z))
-				double dotProd = aj_minus_ais[nbArrayInd].dot(point);
+				double dotProd = ajMinusAis[3*nbArrayInd]*px + ajMinusAis[3*nbArrayInd+1]*py + ajMinusAis[3*nbArrayInd+2]*pz;
 
 				if (numDistsCalced!=null) numDistsCalced[nbArrayInd]++;
 
@@ -0,0 +1,156 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.chem;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe cache of {@link ChemComp} definitions, as used by {@link ChemCompGroupFactory}.
+ * <p>
+ * Lookups of cached components take no lock. A component that is requested by several threads at the
+ * same time is loaded from the provider only once, the other threads wait for that result. Null results
+ * are cached as well. When more than {@link #getMaxSize()} components are cached, the least recently
+ * used entries are evicted first, so that the common components (amino acids, nucleotides, water) stay
+ * cached while many rare ligands come and go.
+ *
+ * @since 6.0.6
+ */
+class ChemCompCache {
+
+    /**
+     * A cached load, with the time of its last use for the eviction.
+     */
+    private static class Entry {
+        final FutureTask<ChemComp> task;
+        volatile long lastUse;
+
+        Entry(FutureTask<ChemComp> task) {
+            this.task = task;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<>();
+
+    /** a logical clock of the uses, for the eviction order */
+    private final AtomicLong clock = new AtomicLong();
+
+    private final int maxSize;
+
+    /**
+     * @param maxSize the maximum number of cached components
+     */
+    ChemCompCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get a component from the cache, loading it from the provider if it is not cached yet.
+     * @param recordName the id of the component
+     * @param provider the provider to load the component from
+     * @return the component, null if the provider returned null
+     */
+    ChemComp get(String recordName, ChemCompProvider provider) {
+        Entry entry = map.get(recordName);
+        boolean loaded = false;
+        if (entry == null) {
+            Entry newEntry = new Entry(new FutureTask<>(() -> provider.getChemComp(recordName)));
+            entry = map.putIfAbsent(recordName, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+                entry.task.run();
+                loaded = true;
+            }
+        }
+        entry.lastUse = clock.incrementAndGet();
+
+        try {
+            ChemComp chemComp = entry.task.get();
+            if (loaded) {
+                evict();
+            }
+            return chemComp;
+        } catch (ExecutionException e) {
+            // don't keep failures, the next request tries again
+            map.remove(recordName, entry);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return provider.getChemComp(recordName);
+        }
+    }
+
+    /**
+     * Removes the least recently used loaded entries until the cache is within its size. A scan is
+     * cheap compared to loading a component from the provider, which is the only time this runs.
+     */
+    private synchronized void evict() {
+        while (map.size() > maxSize) {
+            String oldest = null;
+            Entry oldestEntry = null;
+            for (Map.Entry<String, Entry> e : map.entrySet()) {
+                Entry candidate = e.getValue();
+                if (candidate.task.isDone() && (oldestEntry == null || candidate.lastUse < oldestEntry.lastUse)) {
+                    oldest = e.getKey();
+                    oldestEntry = candidate;
+                }
+            }
+            if (oldestEntry == null) {
+                break;
+            }
+            map.remove(oldest, oldestEntry);
+        }
+    }
+
+    /**
+     * @return the maximum number of cached components
+     */
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of cached components
+     */
+    int size() {
+        return map.size();
+    }
+
+    /**
+     * Remove all components from the cache.
+     */
+    void clear() {
+        map.clear();
+    }
+}
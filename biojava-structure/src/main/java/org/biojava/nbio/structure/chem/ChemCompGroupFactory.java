@@ -1,6 +1,5 @@
 package org.biojava.nbio.structure.chem;
 
-import org.biojava.nbio.core.util.SoftHashMap;
 import org.biojava.nbio.structure.AminoAcid;
 import org.biojava.nbio.structure.AminoAcidImpl;
 import org.biojava.nbio.structure.Group;
@@ -11,26 +10,17 @@ import org.slf4j.LoggerFactory;
 
 public class ChemCompGroupFactory {
     private static final Logger logger = LoggerFactory.getLogger(ChemCompGroupFactory.class);
-    private static ChemCompProvider chemCompProvider = new DownloadChemCompProvider();
-    private static final SoftHashMap<String, ChemComp> cache = new SoftHashMap<>(0);
+    private static volatile ChemCompProvider chemCompProvider = new DownloadChemCompProvider();
+    /** The default maximum number of chem comps kept in the in-memory cache. */
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+    private static volatile ChemCompCache cache = new ChemCompCache(DEFAULT_CACHE_SIZE);
 
     public static ChemComp getChemComp(String recordName) {
         recordName = recordName.toUpperCase().trim();
 
         // we are using the cache, to avoid hitting the file system too often.
-        ChemComp cc = cache.get(recordName);
-        if (cc != null) {
-            logger.debug("Chem comp {} read from cache", cc.getThreeLetterCode());
-            return cc;
-        }
-
-        // not cached, get the chem comp from the provider
-        logger.debug("Chem comp {} read from provider {}", recordName, chemCompProvider.getClass().getCanonicalName());
-        cc = chemCompProvider.getChemComp(recordName);
-
         // Note that this also caches null or empty responses
-        cache.put(recordName, cc);
-        return cc;
+        return cache.get(recordName, chemCompProvider);
     }
 
     /**
@@ -55,6 +45,27 @@ public class ChemCompGroupFactory {
         return chemCompProvider;
     }
 
+    /**
+     * Set the maximum number of chem comps kept in the in-memory cache. This resets the cache.
+     * <p>
+     * Set this to at least the number of distinct components of a typical workload,
+     * to avoid reloading components from the provider.
+     *
+     * @param maxSize the maximum number of cached chem comps
+     * @since 6.0.6
+     */
+    public static void setCacheSize(int maxSize) {
+        cache = new ChemCompCache(maxSize);
+    }
+
+    /**
+     * @return the maximum number of chem comps kept in the in-memory cache
+     * @since 6.0.6
+     */
+    public static int getCacheSize() {
+        return cache.getMaxSize();
+    }
+
     /**
      * Force the in-memory cache to be reset.
      *
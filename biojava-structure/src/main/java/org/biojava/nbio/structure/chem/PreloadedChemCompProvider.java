@@ -0,0 +1,183 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.chem;
+
+import org.biojava.nbio.core.util.InputStreamProvider;
+import org.biojava.nbio.structure.io.cif.ChemCompConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A ChemComp provider that reads a complete chemical components file (e.g. the components.cif.gz file of the
+ * wwPDB, see {@link AllChemCompProvider#downloadFile()}) once from the local file system and keeps all
+ * definitions in memory, without any further file or network access.
+ * <p>
+ * Unlike {@link AllChemCompProvider}, the definitions are not kept as parsed {@link ChemComp} objects: every
+ * definition is stored as an individually compressed block of its mmCIF text, indexed by a sorted array of ids.
+ * This takes a fraction of the memory of the parsed dictionary. A definition is parsed when it is requested,
+ * frequently used ones are kept by the cache of {@link ChemCompGroupFactory}.
+ * <p>
+ * The index is read-only once constructed, so a single instance can be shared by all threads, e.g. via
+ * {@link ChemCompGroupFactory#setChemCompProvider(ChemCompProvider)}.
+ *
+ * @since 6.0.6
+ */
+public class PreloadedChemCompProvider implements ChemCompProvider {
+    private static final Logger logger = LoggerFactory.getLogger(PreloadedChemCompProvider.class);
+
+    private final String[] ids;
+    private final byte[][] blocks;
+    private final ChemCompProvider fallback;
+
+    /**
+     * Load all definitions of the given chemical components file. Components that are not part of the file
+     * are provided by a {@link ReducedChemCompProvider}.
+     *
+     * @param componentsFile the chemical components file, can be compressed
+     * @throws IOException if the file can't be read
+     */
+    public PreloadedChemCompProvider(File componentsFile) throws IOException {
+        this(componentsFile, new ReducedChemCompProvider());
+    }
+
+    /**
+     * Load all definitions of the given chemical components file.
+     *
+     * @param componentsFile the chemical components file, can be compressed
+     * @param fallback provides the components that are not part of the file, null to return null for those
+     * @throws IOException if the file can't be read
+     */
+    public PreloadedChemCompProvider(File componentsFile, ChemCompProvider fallback) throws IOException {
+        this.fallback = fallback;
+
+        long timeS = System.currentTimeMillis();
+        TreeMap<String, byte[]> index = new TreeMap<>();
+        InputStreamProvider prov = new InputStreamProvider();
+
+        try (BufferedReader buf = new BufferedReader(new InputStreamReader(prov.getInputStream(componentsFile),
+                StandardCharsets.UTF_8))) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                StringBuilder block = new StringBuilder();
+                String currentID = null;
+                String line;
+                while ((line = buf.readLine()) != null) {
+                    if (line.startsWith("data_")) {
+                        // a new record found!
+                        if (currentID != null) {
+                            index.put(currentID, compress(block, deflater));
+                        }
+                        currentID = line.substring(5).trim().toUpperCase(Locale.ROOT);
+                        block.setLength(0);
+                    }
+                    block.append(line).append('\n');
+                }
+                // the last record
+                if (currentID != null) {
+                    index.put(currentID, compress(block, deflater));
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+
+        ids = index.keySet().toArray(new String[0]);
+        blocks = index.values().toArray(new byte[0][]);
+
+        long size = 0;
+        for (byte[] b : blocks) {
+            size += b.length;
+        }
+        logger.info("Loaded {} chemical components from {} in {} ms ({} kB compressed)", ids.length, componentsFile,
+                System.currentTimeMillis() - timeS, size / 1024);
+    }
+
+    private static byte[] compress(CharSequence block, Deflater deflater) throws IOException {
+        deflater.reset();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(block.length() / 4);
+        try (Writer out = new OutputStreamWriter(new DeflaterOutputStream(bytes, deflater), StandardCharsets.UTF_8)) {
+            out.append(block);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the number of components of the loaded file
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param recordName the ID of the {@link ChemComp}
+     * @return true if the loaded file contains the component
+     */
+    public boolean contains(String recordName) {
+        return Arrays.binarySearch(ids, recordName.toUpperCase(Locale.ROOT).trim()) >= 0;
+    }
+
+    /**
+     * Returns a new instance of the definition of the given component, parsed from the loaded file.
+     *
+     * @param recordName the ID of the {@link ChemComp}
+     * @return a new {@link ChemComp} definition.
+     */
+    @Override
+    public ChemComp getChemComp(String recordName) {
+        String name = recordName.toUpperCase(Locale.ROOT).trim();
+        int i = Arrays.binarySearch(ids, name);
+        if (i >= 0) {
+            try {
+                ChemicalComponentDictionary dict = ChemCompConverter.fromInputStream(
+                        new InflaterInputStream(new ByteArrayInputStream(blocks[i])));
+                ChemComp chemComp = dict.getChemComp(name);
+                if (chemComp != null) {
+                    return chemComp;
+                }
+            } catch (IOException e) {
+                logger.warn("Could not parse chemical component {}. Error: {}", name, e.getMessage());
+            }
+        }
+
+        if (fallback == null) {
+            return null;
+        }
+        logger.debug("Chemical component {} not found in the loaded file, using {}", name,
+                fallback.getClass().getSimpleName());
+        return fallback.getChemComp(name);
+    }
+}
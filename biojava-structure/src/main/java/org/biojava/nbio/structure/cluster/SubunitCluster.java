@@ -167,6 +167,33 @@ public class SubunitCluster {
 		return Collections.unmodifiableList(subunits);
 	}
 
+	/**
+	 * The representative Subunit of the SubunitCluster, the longest one.
+	 *
+	 * @return the representative Subunit
+	 */
+	Subunit getRepresentative() {
+		return subunits.get(representative);
+	}
+
+	/**
+	 * The residues aligned between the representatives of two SubunitClusters,
+	 * with the scores of the alignment. It only depends on the representatives,
+	 * not on the other Subunits of the clusters.
+	 */
+	static class RepresentativeAlignment {
+		/** Sequence identity or RMSD */
+		final double score;
+		final double coverage;
+		final List<Integer> thisIndices = new ArrayList<>();
+		final List<Integer> otherIndices = new ArrayList<>();
+
+		RepresentativeAlignment(double score, double coverage) {
+			this.score = score;
+			this.coverage = coverage;
+		}
+	}
+
 	/**
 	 * Tells whether the other SubunitCluster contains exactly the same Subunit.
 	 * This is checked by String equality of their residue one-letter sequences.
@@ -388,6 +415,41 @@ public class SubunitCluster {
 		ProteinSequence otherSequence = other.subunits
 				.get(other.representative).getProteinSequence();
 
+		RepresentativeAlignment alignment = alignSequences(thisSequence,
+				otherSequence, params, alignerType, gapPenalty, subsMatrix);
+		return mergeSequence(other, params, alignment);
+	}
+
+	/**
+	 * Aligns the sequences of two representatives with the default aligner of
+	 * {@link #mergeSequence(SubunitCluster, SubunitClustererParameters)}.
+	 *
+	 * @return the aligned residues, or null if the sequences are not similar
+	 * @see #alignSequences(ProteinSequence, ProteinSequence, SubunitClustererParameters, PairwiseSequenceAlignerType, GapPenalty, SubstitutionMatrix)
+	 */
+	static RepresentativeAlignment alignSequences(ProteinSequence thisSequence,
+			ProteinSequence otherSequence, SubunitClustererParameters params) {
+		PairwiseSequenceAlignerType alignerType = PairwiseSequenceAlignerType.LOCAL;
+		if (params.isUseGlobalMetrics()) {
+			alignerType = PairwiseSequenceAlignerType.GLOBAL;
+		}
+		return alignSequences(thisSequence, otherSequence, params, alignerType,
+				new SimpleGapPenalty(), SubstitutionMatrixHelper.getBlosum62());
+	}
+
+	/**
+	 * Aligns the sequences of two representatives and extracts their aligned
+	 * residues if the sequences are similar (according to the criteria in params).
+	 * The result only depends on the two sequences, so that it can be reused for
+	 * all the clusters with the same representative sequences.
+	 *
+	 * @return the aligned residues, or null if the sequences are not similar
+	 */
+	static RepresentativeAlignment alignSequences(ProteinSequence thisSequence,
+			ProteinSequence otherSequence, SubunitClustererParameters params,
+			PairwiseSequenceAlignerType alignerType, GapPenalty gapPenalty,
+			SubstitutionMatrix<AminoAcidCompound> subsMatrix) {
+
 		// Perform the alignment with provided parameters
 		PairwiseSequenceAligner<ProteinSequence, AminoAcidCompound> aligner = Alignments
 				.getPairwiseAligner(thisSequence, otherSequence, alignerType,
@@ -401,7 +463,7 @@ public class SubunitCluster {
 		}
 
 		if (sequenceIdentity < params.getSequenceIdentityThreshold())
-			return false;
+			return null;
 
 		double sequenceCoverage = 0;
 		if(params.isUseSequenceCoverage()) {
@@ -417,18 +479,11 @@ public class SubunitCluster {
 					/ Math.max(lengthThis, lengthOther);
 
 			if (sequenceCoverage < params.getSequenceCoverageThreshold())
-				return false;
+				return null;
 		}
 
-		logger.info(String.format("SubunitClusters %s-%s are similar in sequence "
-						+ "with %.2f sequence identity and %.2f coverage",
-				this.subunits.get(this.representative).getName(),
-				other.subunits.get(other.representative).getName(),
-				sequenceIdentity, sequenceCoverage));
-
-		// If coverage and sequence identity sufficient, merge other and this
-		List<Integer> thisAligned = new ArrayList<>();
-		List<Integer> otherAligned = new ArrayList<>();
+		RepresentativeAlignment alignment = new RepresentativeAlignment(
+				sequenceIdentity, sequenceCoverage);
 
 		// Extract the aligned residues of both Subunit
 		for (int p = 1; p < aligner.getPair().getLength() + 1; p++) {
@@ -439,21 +494,40 @@ public class SubunitCluster {
 			if (aligner.getPair().getAlignedSequence(2).isGap(p))
 				continue;
 
-			int thisIndex = aligner.getPair().getIndexInQueryAt(p) - 1;
-			int otherIndex = aligner.getPair().getIndexInTargetAt(p) - 1;
-
-			// Only consider residues that are part of the SubunitCluster
-			if (this.subunitEQR.get(this.representative).contains(thisIndex)
-					&& other.subunitEQR.get(other.representative).contains(otherIndex)) {
-				thisAligned.add(thisIndex);
-				otherAligned.add(otherIndex);
-			}
+			alignment.thisIndices.add(aligner.getPair().getIndexInQueryAt(p) - 1);
+			alignment.otherIndices.add(aligner.getPair().getIndexInTargetAt(p) - 1);
 		}
 
-		updateEquivResidues(other, thisAligned, otherAligned);
+		return alignment;
+	}
+
+	/**
+	 * Merges the other SubunitCluster into this one with an alignment of their
+	 * representatives sequences, as returned by
+	 * {@link #alignSequences(ProteinSequence, ProteinSequence, SubunitClustererParameters)}.
+	 *
+	 * @param alignment
+	 *            the aligned residues of the representatives of this and the other
+	 *            SubunitCluster, or null if they are not similar
+	 * @return true if the SubunitClusters were merged, false otherwise
+	 */
+	boolean mergeSequence(SubunitCluster other, SubunitClustererParameters params,
+			RepresentativeAlignment alignment) {
+
+		if (alignment == null)
+			return false;
+
+		logger.info(String.format("SubunitClusters %s-%s are similar in sequence "
+						+ "with %.2f sequence identity and %.2f coverage",
+				this.subunits.get(this.representative).getName(),
+				other.subunits.get(other.representative).getName(),
+				alignment.score, alignment.coverage));
+
+		// If coverage and sequence identity sufficient, merge other and this
+		mergeAligned(other, alignment);
 
 		this.method = SubunitClustererMethod.SEQUENCE;
-		pseudoStoichiometric = !params.isHighConfidenceScores(sequenceIdentity,sequenceCoverage);
+		pseudoStoichiometric = !params.isHighConfidenceScores(alignment.score, alignment.coverage);
 
 		return true;
 	}
@@ -474,6 +548,24 @@ public class SubunitCluster {
 
 	public boolean mergeStructure(SubunitCluster other, SubunitClustererParameters params) throws StructureException {
 
+		RepresentativeAlignment alignment = alignStructures(
+				this.subunits.get(this.representative).getRepresentativeAtoms(),
+				other.subunits.get(other.representative).getRepresentativeAtoms(),
+				params);
+		return mergeStructure(other, params, alignment);
+	}
+
+	/**
+	 * Aligns the representative Atoms of two SubunitClusters and extracts their
+	 * aligned residues if they are structurally similar (according to the
+	 * criteria in params). The atoms are not modified.
+	 *
+	 * @return the aligned residues, or null if the structures are not similar
+	 * @throws StructureException
+	 */
+	static RepresentativeAlignment alignStructures(Atom[] thisAtoms,
+			Atom[] otherAtoms, SubunitClustererParameters params) throws StructureException {
+
 		StructureAlignment aligner = StructureAlignmentFactory.getAlgorithm(params.getSuperpositionAlgorithm());
 		ConfigStrucAligParams aligner_params = aligner.getParameters();
 
@@ -491,43 +583,33 @@ public class SubunitCluster {
 			}
 		}
 
-		AFPChain afp = aligner.align(this.subunits.get(this.representative)
-				.getRepresentativeAtoms(),
-				other.subunits.get(other.representative)
-						.getRepresentativeAtoms());
+		AFPChain afp = aligner.align(thisAtoms, otherAtoms);
 
 		// Convert AFPChain to MultipleAlignment for convenience
 		MultipleAlignment msa = new MultipleAlignmentEnsembleImpl(
-				afp,
-				this.subunits.get(this.representative).getRepresentativeAtoms(),
-				other.subunits.get(other.representative)
-						.getRepresentativeAtoms(), false)
+				afp, thisAtoms, otherAtoms, false)
 				.getMultipleAlignment(0);
 
 		double structureCoverage = Math.min(msa.getCoverages().get(0), msa
 				.getCoverages().get(1));
 
 		if(params.isUseStructureCoverage() && structureCoverage < params.getStructureCoverageThreshold()) {
-			return false;
+			return null;
 		}
 
 		double rmsd = afp.getTotalRmsdOpt();
 		if (params.isUseRMSD() && rmsd > params.getRMSDThreshold()) {
-			return false;
+			return null;
 		}
 
 		double tmScore = afp.getTMScore();
 		if (params.isUseTMScore() && tmScore < params.getTMThreshold()) {
-			return false;
+			return null;
 		}
 
-		logger.info(String.format("SubunitClusters are structurally similar with "
-				+ "%.2f RMSD %.2f coverage", rmsd, structureCoverage));
-
-		// Merge clusters
+		RepresentativeAlignment alignment = new RepresentativeAlignment(
+				rmsd, structureCoverage);
 		List<List<Integer>> alignedRes = msa.getBlock(0).getAlignRes();
-		List<Integer> thisAligned = new ArrayList<>();
-		List<Integer> otherAligned = new ArrayList<>();
 
 		// Extract the aligned residues of both Subunit
 		for (int p = 0; p < msa.length(); p++) {
@@ -538,24 +620,62 @@ public class SubunitCluster {
 			if (alignedRes.get(1).get(p) == null)
 				continue;
 
-			int thisIndex = alignedRes.get(0).get(p);
-			int otherIndex = alignedRes.get(1).get(p);
+			alignment.thisIndices.add(alignedRes.get(0).get(p));
+			alignment.otherIndices.add(alignedRes.get(1).get(p));
+		}
+
+		return alignment;
+	}
+
+	/**
+	 * Merges the other SubunitCluster into this one with an alignment of their
+	 * representative Atoms, as returned by
+	 * {@link #alignStructures(Atom[], Atom[], SubunitClustererParameters)}.
+	 *
+	 * @param alignment
+	 *            the aligned residues of the representatives of this and the other
+	 *            SubunitCluster, or null if they are not similar
+	 * @return true if the SubunitClusters were merged, false otherwise
+	 */
+	boolean mergeStructure(SubunitCluster other, SubunitClustererParameters params,
+			RepresentativeAlignment alignment) {
+
+		if (alignment == null)
+			return false;
+
+		logger.info(String.format("SubunitClusters are structurally similar with "
+				+ "%.2f RMSD %.2f coverage", alignment.score, alignment.coverage));
+
+		// Merge clusters
+		mergeAligned(other, alignment);
+
+		this.method = SubunitClustererMethod.STRUCTURE;
+		pseudoStoichiometric = true;
+
+		return true;
+	}
+
+	/**
+	 * Merges the other SubunitCluster into this one, keeping the aligned
+	 * residues of the representatives that are part of both SubunitClusters.
+	 */
+	private void mergeAligned(SubunitCluster other, RepresentativeAlignment alignment) {
+		List<Integer> thisAligned = new ArrayList<>();
+		List<Integer> otherAligned = new ArrayList<>();
+
+		for (int i = 0; i < alignment.thisIndices.size(); i++) {
+			int thisIndex = alignment.thisIndices.get(i);
+			int otherIndex = alignment.otherIndices.get(i);
 
 			// Only consider residues that are part of the SubunitCluster
 			if (this.subunitEQR.get(this.representative).contains(thisIndex)
-					&& other.subunitEQR.get(other.representative).contains(
-							otherIndex)) {
+					&& other.subunitEQR.get(other.representative).contains(otherIndex)) {
 				thisAligned.add(thisIndex);
 				otherAligned.add(otherIndex);
 			}
 		}
 
 		updateEquivResidues(other, thisAligned, otherAligned);
-
-		this.method = SubunitClustererMethod.STRUCTURE;
-		pseudoStoichiometric = true;
-
-		return true;
 	}
 
 	private void updateEquivResidues(SubunitCluster other, List<Integer> thisAligned, List<Integer> otherAligned) {
@@ -21,11 +21,19 @@
 package org.biojava.nbio.structure.cluster;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.biojava.nbio.core.exceptions.CompoundNotFoundException;
+import org.biojava.nbio.core.sequence.ProteinSequence;
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.Structure;
 import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.cluster.SubunitCluster.RepresentativeAlignment;
 import org.biojava.nbio.structure.symmetry.core.Stoichiometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,45 +73,18 @@ public class SubunitClusterer {
 		for (Subunit s : subunits)
 			clusters.add(new SubunitCluster(s));
 
+		int nThreads = subunits.size() > 2 ? params.getNThreads() : 1;
+
 		if (params.getClustererMethod() == SubunitClustererMethod.SEQUENCE ||
 				params.getClustererMethod() == SubunitClustererMethod.SEQUENCE_STRUCTURE) {
 			// Now merge clusters by SEQUENCE
-			for (int c1 = 0; c1 < clusters.size(); c1++) {
-				for (int c2 = clusters.size() - 1; c2 > c1; c2--) {
-					try {
-						if (params.isUseEntityIdForSeqIdentityDetermination() &&
-								clusters.get(c1).mergeIdenticalByEntityId(clusters.get(c2))) {
-							// This we will only do if the switch is for entity id comparison is on.
-							// In some cases it can save enormous amounts of time, e.g. for clustering full
-							// chains of deposited PDB entries. For instance for 6NHJ: with pure alignments it
-							// takes ~ 6 hours, with entity id comparisons it takes 2 minutes.
-							clusters.remove(c2);
-						} else if (clusters.get(c1).mergeSequence(clusters.get(c2), params)) {
-							clusters.remove(c2);
-						}
-
-					} catch (CompoundNotFoundException e) {
-						logger.warn("Could not merge by Sequence. {}",
-								e.getMessage());
-					}
-				}
-			}
+			merge(clusters, params, nThreads, true);
 		}
 
 		if (params.getClustererMethod() == SubunitClustererMethod.STRUCTURE ||
 				params.getClustererMethod() == SubunitClustererMethod.SEQUENCE_STRUCTURE) {
 			// Now merge clusters by STRUCTURE
-			for (int c1 = 0; c1 < clusters.size(); c1++) {
-				for (int c2 = clusters.size() - 1; c2 > c1; c2--) {
-					try {
-						if (clusters.get(c1).mergeStructure(clusters.get(c2), params)) {
-							clusters.remove(c2);
-						}
-					} catch (StructureException e) {
-						logger.warn("Could not merge by Structure. {}", e.getMessage());
-					}
-				}
-			}
+			merge(clusters, params, nThreads, false);
 		}
 
 		if (params.isInternalSymmetry()) {
@@ -119,19 +100,269 @@ public class SubunitClusterer {
 
 			// After internal symmetry merge again by structural similarity
 			// Use case: C8 propeller with 3 chains with 3+3+2 repeats each
-			for (int c1 = 0; c1 < clusters.size(); c1++) {
-				for (int c2 = clusters.size() - 1; c2 > c1; c2--) {
-					try {
-						if (clusters.get(c1).mergeStructure(clusters.get(c2), params))
-							clusters.remove(c2);
-					} catch (StructureException e) {
-						logger.warn("Could not merge by Structure. {}",
-								e.getMessage());
+			merge(clusters, params, nThreads, false);
+		}
+
+		return new Stoichiometry(clusters);
+	}
+
+	/**
+	 * Merges the clusters greedily: each cluster absorbs the following ones
+	 * that are similar to it, from last to first.
+	 * <p>
+	 * A merge only depends on the representatives of the two clusters, so their
+	 * alignments are cached: the clusters with identical representative
+	 * sequences are aligned only once, and the pairs that can not pass the
+	 * thresholds according to their residue composition are not aligned at
+	 * all. With more than 1 thread, the representative of a cluster is aligned to all the
+	 * remaining clusters in parallel before the merges, which are then done in
+	 * the same order as sequentially, so that the clusters are the same.
+	 *
+	 * @param nThreads
+	 *            the number of threads used to align in parallel, 1 to align sequentially
+	 * @param bySequence
+	 *            true to merge by sequence, false to merge by structure
+	 */
+	private static void merge(List<SubunitCluster> clusters,
+			SubunitClustererParameters params, int nThreads, boolean bySequence) {
+
+		boolean byEntityId = bySequence && params.isUseEntityIdForSeqIdentityDetermination();
+		Map<RepresentativePair, RepresentativeAlignment> alignments = new HashMap<>();
+
+		for (int c1 = 0; c1 < clusters.size(); c1++) {
+			Subunit prefetched = null;
+			for (int c2 = clusters.size() - 1; c2 > c1; c2--) {
+				SubunitCluster cluster1 = clusters.get(c1);
+				SubunitCluster cluster2 = clusters.get(c2);
+				try {
+					if (byEntityId && cluster1.mergeIdenticalByEntityId(cluster2)) {
+						// This we will only do if the switch is for entity id comparison is on.
+						// In some cases it can save enormous amounts of time, e.g. for clustering full
+						// chains of deposited PDB entries. For instance for 6NHJ: with pure alignments it
+						// takes ~ 6 hours, with entity id comparisons it takes 2 minutes.
+						clusters.remove(c2);
+						continue;
+					}
+					if (nThreads > 1 && cluster1.getRepresentative() != prefetched) {
+						// A new representative: align it to all the remaining clusters at once
+						prefetched = cluster1.getRepresentative();
+						prefetch(clusters, c1, c2, alignments, params, nThreads, bySequence, byEntityId);
 					}
+
+					RepresentativeAlignment alignment = getAlignment(alignments,
+							cluster1.getRepresentative(), cluster2.getRepresentative(),
+							params, bySequence);
+					boolean merged = bySequence
+							? cluster1.mergeSequence(cluster2, params, alignment)
+							: cluster1.mergeStructure(cluster2, params, alignment);
+					if (merged)
+						clusters.remove(c2);
+
+				} catch (CompoundNotFoundException | StructureException e) {
+					logger.warn("Could not merge by {}. {}",
+							bySequence ? "Sequence" : "Structure", e.getMessage());
 				}
 			}
 		}
+	}
 
-		return new Stoichiometry(clusters);
+	/**
+	 * Aligns the representative of cluster c1 to the representatives of the
+	 * clusters c1+1 to c2 in parallel, and caches the alignments. The
+	 * alignments that fail are left to {@link #getAlignment}, which reports them.
+	 */
+	private static void prefetch(List<SubunitCluster> clusters, int c1, int c2,
+			Map<RepresentativePair, RepresentativeAlignment> alignments,
+			SubunitClustererParameters params, int nThreads,
+			boolean bySequence, boolean byEntityId) {
+
+		Subunit rep1 = clusters.get(c1).getRepresentative();
+		Map<RepresentativePair, Subunit> pending = new LinkedHashMap<>();
+		for (int c = c2; c > c1; c--) {
+			if (byEntityId && clusters.get(c1).isIdenticalByEntityIdTo(clusters.get(c)))
+				continue;
+			Subunit rep2 = clusters.get(c).getRepresentative();
+			RepresentativePair key = new RepresentativePair(rep1, rep2, bySequence);
+			if (alignments.containsKey(key) || pending.containsKey(key))
+				continue;
+			if (bySequence) {
+				try {
+					// Build the lazy sequences before they are shared between threads
+					rep1.getProteinSequence();
+					rep2.getProteinSequence();
+				} catch (CompoundNotFoundException e) {
+					continue;
+				}
+			}
+			pending.put(key, rep2);
+		}
+		if (pending.size() < 2)
+			return;
+
+		List<RepresentativePair> keys = new ArrayList<>(pending.keySet());
+		List<Subunit> reps2 = new ArrayList<>(pending.values());
+
+		// a null alignment is a valid result, so the successful ones are flagged
+		RepresentativeAlignment[] results = new RepresentativeAlignment[keys.size()];
+		boolean[] aligned = new boolean[keys.size()];
+		List<Callable<Void>> tasks = new ArrayList<>(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			int index = i;
+			tasks.add(() -> {
+				try {
+					results[index] = align(rep1, reps2.get(index), params, bySequence);
+					aligned[index] = true;
+				} catch (CompoundNotFoundException | StructureException e) {
+					// left to getAlignment
+				}
+				return null;
+			});
+		}
+		try {
+			ConcurrencyTools.invokeAll(tasks, nThreads);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error while clustering subunits", e.getCause());
+		}
+		for (int i = 0; i < keys.size(); i++) {
+			if (aligned[i])
+				alignments.put(keys.get(i), results[i]);
+		}
+	}
+
+	private static RepresentativeAlignment getAlignment(
+			Map<RepresentativePair, RepresentativeAlignment> alignments,
+			Subunit rep1, Subunit rep2, SubunitClustererParameters params,
+			boolean bySequence) throws CompoundNotFoundException, StructureException {
+
+		RepresentativePair key = new RepresentativePair(rep1, rep2, bySequence);
+		if (alignments.containsKey(key))
+			return alignments.get(key);
+		RepresentativeAlignment alignment = align(rep1, rep2, params, bySequence);
+		alignments.put(key, alignment);
+		return alignment;
+	}
+
+	private static RepresentativeAlignment align(Subunit rep1, Subunit rep2,
+			SubunitClustererParameters params, boolean bySequence)
+			throws CompoundNotFoundException, StructureException {
+
+		if (!bySequence) {
+			return SubunitCluster.alignStructures(rep1.getRepresentativeAtoms(),
+					rep2.getRepresentativeAtoms(), params);
+		}
+		ProteinSequence seq1 = rep1.getProteinSequence();
+		ProteinSequence seq2 = rep2.getProteinSequence();
+		if (!canBeSimilarInSequence(seq1.toString(), seq2.toString(), params))
+			return null;
+		return SubunitCluster.alignSequences(seq1, seq2, params);
+	}
+
+	/**
+	 * Tells whether the alignment of two sequences can pass the sequence
+	 * identity and coverage thresholds, without aligning them.
+	 * <p>
+	 * Each identical pair of an alignment uses one residue of each sequence,
+	 * so the number of identities is at most the number of residues the two
+	 * sequences have in common (the intersection of their compositions). The
+	 * number of aligned pairs is at most the length of the shorter sequence,
+	 * and at least the coverage threshold times the length of the longer one;
+	 * a global alignment is at least as long as the longer sequence. A false
+	 * result thus means that the alignment would be rejected.
+	 *
+	 * @param seq1
+	 *            the one-letter sequence of a representative
+	 * @param seq2
+	 *            the one-letter sequence of the other representative
+	 * @param params
+	 *            the thresholds
+	 * @return false if the sequences are not similar, true if they have to be
+	 *         aligned to know it
+	 */
+	static boolean canBeSimilarInSequence(String seq1, String seq2,
+			SubunitClustererParameters params) {
+
+		int maxLength = Math.max(seq1.length(), seq2.length());
+		int minLength = Math.min(seq1.length(), seq2.length());
+		double identityThreshold = params.getSequenceIdentityThreshold();
+		int common = getCommonResidues(seq1, seq2);
+
+		if (params.isUseGlobalMetrics()
+				&& (double) common / maxLength < identityThreshold)
+			return false;
+
+		if (params.isUseSequenceCoverage()) {
+			// The smallest number of aligned pairs that passes the coverage threshold
+			double coverageThreshold = params.getSequenceCoverageThreshold();
+			int minAligned = Math.max(0, (int) Math.ceil(coverageThreshold * maxLength));
+			while (minAligned > 0 && (double) (minAligned - 1) / maxLength >= coverageThreshold)
+				minAligned--;
+			while ((double) minAligned / maxLength < coverageThreshold)
+				minAligned++;
+
+			if (minAligned > minLength)
+				return false;
+			// The identity is normalised by the aligned pairs, or the alignment length
+			if (minAligned > 0 && (double) common / minAligned < identityThreshold)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The number of residues two sequences have in common, regardless of
+	 * their order: the sum over the residue types of the smaller count.
+	 * All non-letters are counted as one type.
+	 */
+	private static int getCommonResidues(String seq1, String seq2) {
+		int[] counts1 = getComposition(seq1);
+		int[] counts2 = getComposition(seq2);
+		int common = 0;
+		for (int i = 0; i < counts1.length; i++)
+			common += Math.min(counts1[i], counts2[i]);
+		return common;
+	}
+
+	private static int[] getComposition(String seq) {
+		int[] counts = new int[27];
+		for (int i = 0; i < seq.length(); i++) {
+			char c = Character.toUpperCase(seq.charAt(i));
+			if (c >= 'A' && c <= 'Z')
+				counts[c - 'A']++;
+			else
+				counts[26]++;
+		}
+		return counts;
+	}
+
+	/**
+	 * The key of a cached alignment: two representative sequences, or two
+	 * representative Subunits for structure alignments.
+	 */
+	private static final class RepresentativePair {
+		private final Object first;
+		private final Object second;
+
+		RepresentativePair(Subunit rep1, Subunit rep2, boolean bySequence) {
+			if (bySequence) {
+				first = rep1.getProteinSequenceString();
+				second = rep2.getProteinSequenceString();
+			} else {
+				first = rep1;
+				second = rep2;
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof RepresentativePair))
+				return false;
+			RepresentativePair other = (RepresentativePair) o;
+			return first.equals(other.first) && second.equals(other.second);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * first.hashCode() + second.hashCode();
+		}
 	}
 }
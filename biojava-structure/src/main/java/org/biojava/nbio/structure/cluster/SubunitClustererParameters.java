@@ -63,6 +63,8 @@ public class SubunitClustererParameters implements Serializable {
 
 	private boolean internalSymmetry = false;
 
+	private int nThreads = 1;
+
 	/**
 	 * Subunits aligned with these or better scores will be considered "identical".
 	 */
@@ -346,6 +348,30 @@ public class SubunitClustererParameters implements Serializable {
 		this.internalSymmetry = internalSymmetry;
 	}
 
+	/**
+	 * The number of threads used to compare the subunits.
+	 *
+	 * @return nThreads
+	 * @since 6.0.6
+	 */
+	public int getNThreads() {
+		return nThreads;
+	}
+
+	/**
+	 * The number of threads used to compare the subunits. The
+	 * {@link SubunitClusterer} aligns the representative of a cluster to all
+	 * the remaining clusters in parallel; the clusters are the same as with a
+	 * single thread. Default: 1
+	 *
+	 * @param nThreads
+	 *            the number of threads
+	 * @since 6.0.6
+	 */
+	public void setNThreads(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
 	@Override
 	public String toString() {
 		return "SubunitClustererParameters [minimumSequenceLength="
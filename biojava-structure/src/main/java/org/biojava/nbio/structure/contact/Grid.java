@@ -36,7 +36,8 @@ import org.biojava.nbio.structure.Calc;
  * A grid to be used for calculating atom contacts through a spatial hashing algorithm.
  * <p>
  * The grid is composed of cells of size of the cutoff so that the distances that need to be calculated
- * are reduced to those within each cell and to the neighbouring cells.
+ * are reduced to those within each cell and to the neighbouring cells. The cells are kept in a
+ * {@link SpatialIndex}, which can also be used directly to run several queries on the same points.
  * <p>
  * Usage, for generic 3D points:
  * <pre>
@@ -58,15 +59,10 @@ import org.biojava.nbio.structure.Calc;
  */
 public class Grid {
 
-	/**
-	 * The scale: we use units of hundredths of Angstroms (thus cutoffs can be specified with a maximum precision of 0.01A)
-	 */
-	private static final int SCALE=100;
-
-	private GridCell[][][] cells;
+	private SpatialIndex iIndex;
+	private SpatialIndex jIndex;
 
 	private double cutoff;
-	private int cellSize;
 
 	private Point3d[] iAtoms;
 	private Point3d[] jAtoms;
@@ -74,9 +70,6 @@ public class Grid {
 	private Atom[] iAtomObjects;
 	private Atom[] jAtomObjects;
 
-	// the bounds in int grid coordinates
-	private int[] bounds;
-
 	// the i and j bounding boxes in original double coordinates
 	private BoundingBox ibounds;
 	private BoundingBox jbounds;
@@ -85,32 +78,14 @@ public class Grid {
 
 	/**
 	 * Creates a <code>Grid</code>, the cutoff is in the same units as the coordinates
-	 * (Angstroms if they are atom coordinates) and can
-	 * be specified to a precision of 0.01.
+	 * (Angstroms if they are atom coordinates).
 	 * @param cutoff
 	 */
 	public Grid(double cutoff) {
 		this.cutoff = cutoff;
-		this.cellSize = (int) Math.floor(cutoff*SCALE);
 		this.noOverlap = false;
 	}
 
-	private int getFloor(double number) {
-		return (cellSize*((int)Math.floor(number*SCALE/cellSize)));
-	}
-
-	private int xintgrid2xgridindex(int xgridDim) {
-		return (xgridDim-bounds[0])/cellSize;
-	}
-
-	private int yintgrid2ygridindex(int ygridDim) {
-		return (ygridDim-bounds[1])/cellSize;
-	}
-
-	private int zintgrid2zgridindex(int zgridDim) {
-		return (zgridDim-bounds[2])/cellSize;
-	}
-
 	/**
 	 * Adds the i and j atoms and fills the grid. Their bounds will be computed.
 	 * Subsequent call to {@link #getIndicesContacts()} or {@link #getAtomContacts()} will produce the interatomic contacts.
@@ -282,94 +257,22 @@ public class Grid {
 	}
 
 	/**
-	 * Creates the grid based on the boundaries defined by all atoms given (iAtoms and jAtoms)
-	 * and places the atoms in their corresponding grid cells.
-	 * Checks also if the i and j grid overlap, i.e. the enclosing bounds of
-	 * the 2 grids (i and j) are no more than one cell size apart. If they don't
-	 * overlap then they are too far apart so there's nothing to calculate, we set
-	 * the noOverlap flag and then {@link #getIndicesContacts()} will do no calculation at all.
+	 * Places the atoms in the cells of a {@link SpatialIndex}, one per set of atoms.
+	 * Checks also if the i and j sets overlap, i.e. their enclosing bounds are no
+	 * more than the cutoff apart. If they don't overlap then they are too far apart
+	 * so there's nothing to calculate, we set the noOverlap flag and then
+	 * {@link #getIndicesContacts()} will do no calculation at all.
 	 */
 	private void fillGrid() {
 
 		if (jbounds!=null && !ibounds.overlaps(jbounds, cutoff)) {
-			//System.out.print("-");
 			noOverlap = true;
 			return;
 		}
+		noOverlap = false;
 
-		findFullGridIntBounds();
-
-		cells = new GridCell[1+(bounds[3]-bounds[0])/cellSize]
-		                    [1+(bounds[4]-bounds[1])/cellSize]
-		                    [1+(bounds[5]-bounds[2])/cellSize];
-
-		int i = 0;
-		for (Point3d atom:iAtoms) {
-
-			int xind = xintgrid2xgridindex(getFloor(atom.x));
-			int yind = yintgrid2ygridindex(getFloor(atom.y));
-			int zind = zintgrid2zgridindex(getFloor(atom.z));
-			if (cells[xind][yind][zind]==null) {
-				cells[xind][yind][zind] = new GridCell(this);
-			}
-			cells[xind][yind][zind].addIindex(i);
-			i++;
-		}
-
-		if (jAtoms==null) return;
-
-		int j = 0;
-		for (Point3d atom:jAtoms) {
-
-			int xind = xintgrid2xgridindex(getFloor(atom.x));
-			int yind = yintgrid2ygridindex(getFloor(atom.y));
-			int zind = zintgrid2zgridindex(getFloor(atom.z));
-			if (cells[xind][yind][zind]==null) {
-				cells[xind][yind][zind] = new GridCell(this);
-			}
-			cells[xind][yind][zind].addJindex(j);
-			j++;
-		}
-
-	}
-
-	/**
-	 * Calculates an int array of size 6 into member variable bounds:
-	 * - elements 0,1,2: minimum x,y,z of the iAtoms and jAtoms
-	 * - elements 3,4,5: maximum x,y,z of the iAtoms and jAtoms
-	 */
-	private void findFullGridIntBounds() {
-		int[] iIntBounds = getIntBounds(ibounds);
-
-		bounds = new int[6];
-		if (jbounds==null) {
-			bounds = iIntBounds;
-		} else {
-			int[] jIntBounds = getIntBounds(jbounds);
-			bounds[0] = Math.min(iIntBounds[0],jIntBounds[0]);
-			bounds[1] = Math.min(iIntBounds[1],jIntBounds[1]);
-			bounds[2] = Math.min(iIntBounds[2],jIntBounds[2]);
-			bounds[3] = Math.max(iIntBounds[3],jIntBounds[3]);
-			bounds[4] = Math.max(iIntBounds[4],jIntBounds[4]);
-			bounds[5] = Math.max(iIntBounds[5],jIntBounds[5]);
-		}
-	}
-
-	/**
-	 * Returns an int array of size 6 :
-	 * - elements 0,1,2: minimum x,y,z (in grid int coordinates) of the given atoms
-	 * - elements 3,4,5: maximum x,y,z (in grid int coordinates) of the given atoms
-	 * @return
-	 */
-	private int[] getIntBounds(BoundingBox coordbounds) {
-		int[] bs = new int[6];
-		bs[0] = getFloor(coordbounds.xmin);
-		bs[1] = getFloor(coordbounds.ymin);
-		bs[2] = getFloor(coordbounds.zmin);
-		bs[3] = getFloor(coordbounds.xmax);
-		bs[4] = getFloor(coordbounds.ymax);
-		bs[5] = getFloor(coordbounds.zmax);
-		return bs;
+		iIndex = SpatialIndex.of(iAtoms, cutoff);
+		jIndex = jAtoms==null ? null : SpatialIndex.of(jAtoms, cutoff);
 	}
 
 	/**
@@ -424,32 +327,13 @@ public class Grid {
 		// this won't apply if there's only one set of atoms (iAtoms), where we would want all-to-all contacts
 		if (noOverlap) return list;
 
-
-		for (int xind=0;xind<cells.length;xind++) {
-			for (int yind=0;yind<cells[xind].length;yind++) {
-				for (int zind=0;zind<cells[xind][yind].length;zind++) {
-					// distances of points within this cell
-					GridCell thisCell = cells[xind][yind][zind];
-					if (thisCell==null) continue;
-
-					list.addAll(thisCell.getContactsWithinCell());
-
-					// distances of points from this box to all neighbouring boxes: 26 iterations (26 neighbouring boxes)
-					for (int x=xind-1;x<=xind+1;x++) {
-						for (int y=yind-1;y<=yind+1;y++) {
-							for (int z=zind-1;z<=zind+1;z++) {
-								if (x==xind && y==yind && z==zind) continue;
-
-								if (x>=0 && x<cells.length && y>=0 && y<cells[x].length && z>=0 && z<cells[x][y].length) {
-									if (cells[x][y][z] == null) continue;
-
-									list.addAll(thisCell.getContactsToOtherCell(cells[x][y][z]));
-								}
-							}
-						}
-					}
-				}
-			}
+		if (jIndex==null) {
+			iIndex.forEachContact(cutoff, (i, j, distance) -> list.add(new Contact(i, j, distance)));
+		} else if (iAtoms.length<=jAtoms.length) {
+			iIndex.forEachContact(jIndex, cutoff, (i, j, distance) -> list.add(new Contact(i, j, distance)));
+		} else {
+			// querying with the smaller set is faster
+			jIndex.forEachContact(iIndex, cutoff, (j, i, distance) -> list.add(new Contact(i, j, distance)));
 		}
 
 		return list;
@@ -466,27 +350,18 @@ public class Grid {
 		return hasAnyContact(Arrays.asList(atoms));
 	}
 	public boolean hasAnyContact(Collection<Point3d> atoms) {
+		if (noOverlap) {
+			// the two sets were found not to overlap, the cells weren't filled
+			iIndex = SpatialIndex.of(iAtoms, cutoff);
+			jIndex = SpatialIndex.of(jAtoms, cutoff);
+			noOverlap = false;
+		}
 		for(Point3d atom : atoms) {
-			// Calculate Grid cell for the atom
-			int xind = xintgrid2xgridindex(getFloor(atom.x));
-			int yind = yintgrid2ygridindex(getFloor(atom.y));
-			int zind = zintgrid2zgridindex(getFloor(atom.z));
-
-			// Consider 3x3x3 grid of cells around point
-			for (int x=xind-1;x<=xind+1;x++) {
-				if( x<0 || cells.length<=x) continue;
-				for (int y=yind-1;y<=yind+1;y++) {
-					if( y<0 || cells[x].length<=y ) continue;
-					for (int z=zind-1;z<=zind+1;z++) {
-						if( z<0 || cells[x][y].length<=z ) continue;
-
-						GridCell cell = cells[x][y][z];
-						// Check for contacts in this cell
-						if(cell != null && cell.hasContactToAtom(iAtoms, jAtoms, atom, cutoff)) {
-							return true;
-						}
-					}
-				}
+			if (iIndex.hasNeighbor(atom.x, atom.y, atom.z, cutoff)) {
+				return true;
+			}
+			if (jIndex!=null && jIndex.hasNeighbor(atom.x, atom.y, atom.z, cutoff)) {
+				return true;
 			}
 		}
 		return false;
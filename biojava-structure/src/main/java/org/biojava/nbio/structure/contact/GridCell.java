@@ -30,8 +30,9 @@ import javax.vecmath.Point3d;
  * A grid cell to be used in contact calculation via spatial hashing algorithm.
  *
  * @author Jose Duarte
- *
+ * @deprecated {@link Grid} keeps its cells in a {@link SpatialIndex} and doesn't use this class anymore
  */
+@Deprecated
 public class GridCell {
 
 
@@ -0,0 +1,806 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.contact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+
+import org.biojava.nbio.structure.Atom;
+
+/**
+ * A compact cell list of 3D points for neighbour searches, the reusable alternative to {@link Grid}.
+ * <p>
+ * The points are binned into cubic cells of the given cell size. Only the occupied cells are stored:
+ * their keys in a sorted array and the points of every cell as a contiguous range of a single
+ * coordinate array, in compressed sparse row form. The index is built once, e.g. per structure,
+ * and is read-only afterwards: any number of threads can query it at the same time, and none of the
+ * queries allocates memory.
+ * <p>
+ * Queries are most efficient for radii up to the cell size, larger radii are supported by
+ * visiting more cells. Points are reported by their index in the input array, distances are
+ * euclidean and a point is within a radius if its distance is strictly smaller than the radius,
+ * as in {@link Grid}.
+ * <p>
+ * A rigid-body transformation of an index, e.g. for a symmetry mate, is a constant time operation:
+ * the points are not binned again, instead the queries are transformed back into the frame of
+ * the original points.
+ * <p>
+ * Usage:
+ * <pre>
+ *  SpatialIndex index = SpatialIndex.of(atoms, 8.0);
+ *  index.forEachNeighbor(x, y, z, 8.0, (i, distance) -&gt; ...);
+ *  List&lt;Contact&gt; contacts = index.getContacts(8.0);
+ * </pre>
+ *
+ * @since 6.0.6
+ */
+public class SpatialIndex {
+
+	/**
+	 * Receives the points found by a neighbour search.
+	 */
+	@FunctionalInterface
+	public interface NeighborVisitor {
+		/**
+		 * @param index the index of the point in the input of the index
+		 * @param distance the distance of the point to the query
+		 */
+		void visit(int index, double distance);
+	}
+
+	/**
+	 * Receives the pairs of points found by a contact search.
+	 */
+	@FunctionalInterface
+	public interface PairVisitor {
+		/**
+		 * @param i the index of the first point
+		 * @param j the index of the second point
+		 * @param distance the distance between the 2 points
+		 */
+		void visit(int i, int j, double distance);
+	}
+
+	// the cell indices along one axis are kept below 2^21, so that keys fit in a long
+	private static final int MAX_CELLS_PER_AXIS = 1 << 21;
+
+	// relative slack of the squared distance pre-check, so that it never rejects a point whose
+	// (correctly rounded) distance is within the radius
+	private static final double SQ_SLACK = 1.0 + 1e-9;
+
+	private final double cellSize;
+	private final double invCellSize;
+	private final int size;
+
+	// coordinates ordered by cell, 3 per point
+	private final double[] xyz;
+	// index in the input of every point, in cell order
+	private final int[] pointIndices;
+	// position in cell order of every point, by input index
+	private final int[] positions;
+
+	// sorted keys of the occupied cells, and the range of points of every cell
+	private final long[] cellKeys;
+	private final int[] cellOffsets;
+
+	// origin and dimensions of the grid of cells
+	private final double originX;
+	private final double originY;
+	private final double originZ;
+	private final int nx;
+	private final int ny;
+	private final int nz;
+
+	// the rigid-body transformation of this view as a row major 3x4 matrix, and its inverse; null for identity
+	private final double[] transform;
+	private final double[] inverse;
+
+	/**
+	 * Creates an index of the given coordinates.
+	 * @param coords the coordinates, packed as x,y,z for every point
+	 * @param cellSize the size of the cells, usually the largest query radius
+	 * @throws IllegalArgumentException if the cell size is not positive or too small for the extent of the points
+	 */
+	public SpatialIndex(double[] coords, double cellSize) {
+		if (!(cellSize > 0)) {
+			throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+		}
+		if (coords.length % 3 != 0) {
+			throw new IllegalArgumentException("Coordinates must be packed as x,y,z triples, length " + coords.length);
+		}
+		this.cellSize = cellSize;
+		this.invCellSize = 1.0 / cellSize;
+		this.size = coords.length / 3;
+		this.transform = null;
+		this.inverse = null;
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < size; i++) {
+			minX = Math.min(minX, coords[3*i]);
+			minY = Math.min(minY, coords[3*i+1]);
+			minZ = Math.min(minZ, coords[3*i+2]);
+			maxX = Math.max(maxX, coords[3*i]);
+			maxY = Math.max(maxY, coords[3*i+1]);
+			maxZ = Math.max(maxZ, coords[3*i+2]);
+		}
+		if (size == 0) {
+			minX = minY = minZ = maxX = maxY = maxZ = 0;
+		}
+		originX = minX;
+		originY = minY;
+		originZ = minZ;
+		nx = numCells(maxX - minX);
+		ny = numCells(maxY - minY);
+		nz = numCells(maxZ - minZ);
+
+		// the cell of every point
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = key(cellOf(coords[3*i], originX, nx), cellOf(coords[3*i+1], originY, ny), cellOf(coords[3*i+2], originZ, nz));
+		}
+
+		// the occupied cells, sorted
+		long[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		int nCells = 0;
+		for (int i = 0; i < size; i++) {
+			if (i == 0 || sorted[i] != sorted[i-1]) {
+				sorted[nCells++] = sorted[i];
+			}
+		}
+		cellKeys = Arrays.copyOf(sorted, nCells);
+
+		// counting sort of the points by cell, stable so that points keep their input order within a cell
+		int[] cellOfPoint = new int[size];
+		cellOffsets = new int[nCells + 1];
+		for (int i = 0; i < size; i++) {
+			cellOfPoint[i] = Arrays.binarySearch(cellKeys, keys[i]);
+			cellOffsets[cellOfPoint[i] + 1]++;
+		}
+		for (int c = 0; c < nCells; c++) {
+			cellOffsets[c + 1] += cellOffsets[c];
+		}
+		int[] fill = Arrays.copyOf(cellOffsets, nCells);
+		xyz = new double[3 * size];
+		pointIndices = new int[size];
+		positions = new int[size];
+		for (int i = 0; i < size; i++) {
+			int p = fill[cellOfPoint[i]]++;
+			xyz[3*p] = coords[3*i];
+			xyz[3*p+1] = coords[3*i+1];
+			xyz[3*p+2] = coords[3*i+2];
+			pointIndices[p] = i;
+			positions[i] = p;
+		}
+	}
+
+	/**
+	 * Creates a transformed view sharing the cells of the given index.
+	 */
+	private SpatialIndex(SpatialIndex index, double[] transform, double[] inverse) {
+		this.cellSize = index.cellSize;
+		this.invCellSize = index.invCellSize;
+		this.size = index.size;
+		this.xyz = index.xyz;
+		this.pointIndices = index.pointIndices;
+		this.positions = index.positions;
+		this.cellKeys = index.cellKeys;
+		this.cellOffsets = index.cellOffsets;
+		this.originX = index.originX;
+		this.originY = index.originY;
+		this.originZ = index.originZ;
+		this.nx = index.nx;
+		this.ny = index.ny;
+		this.nz = index.nz;
+		this.transform = transform;
+		this.inverse = inverse;
+	}
+
+	/**
+	 * Creates an index of the given points.
+	 * @param points the points
+	 * @param cellSize the size of the cells, usually the largest query radius
+	 * @return the index
+	 */
+	public static SpatialIndex of(Point3d[] points, double cellSize) {
+		double[] coords = new double[3 * points.length];
+		for (int i = 0; i < points.length; i++) {
+			coords[3*i] = points[i].x;
+			coords[3*i+1] = points[i].y;
+			coords[3*i+2] = points[i].z;
+		}
+		return new SpatialIndex(coords, cellSize);
+	}
+
+	/**
+	 * Creates an index of the coordinates of the given atoms.
+	 * @param atoms the atoms
+	 * @param cellSize the size of the cells, usually the largest query radius
+	 * @return the index
+	 */
+	public static SpatialIndex of(Atom[] atoms, double cellSize) {
+		double[] coords = new double[3 * atoms.length];
+		for (int i = 0; i < atoms.length; i++) {
+			coords[3*i] = atoms[i].getX();
+			coords[3*i+1] = atoms[i].getY();
+			coords[3*i+2] = atoms[i].getZ();
+		}
+		return new SpatialIndex(coords, cellSize);
+	}
+
+	private int numCells(double extent) {
+		double n = Math.floor(extent * invCellSize) + 1;
+		if (n > MAX_CELLS_PER_AXIS) {
+			throw new IllegalArgumentException("Cell size " + cellSize + " is too small for an extent of " + extent);
+		}
+		return (int) n;
+	}
+
+	private int cellOf(double coord, double origin, int n) {
+		// clamp against rounding at the upper bound
+		return Math.min((int) Math.floor((coord - origin) * invCellSize), n - 1);
+	}
+
+	private long key(int cx, int cy, int cz) {
+		return ((long) cx * ny + cy) * nz + cz;
+	}
+
+	/**
+	 * @return the number of points
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the size of the cells
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * @return the number of occupied cells
+	 */
+	public int getCellCount() {
+		return cellKeys.length;
+	}
+
+	/**
+	 * @return whether this index is a transformed view of another index
+	 */
+	public boolean isTransformed() {
+		return transform != null;
+	}
+
+	/**
+	 * Returns the coordinates of a point, transformed if this is a transformed view.
+	 * @param index the index of the point
+	 * @param out the array of length at least 3 to write x,y,z to
+	 * @return out
+	 */
+	public double[] getCoords(int index, double[] out) {
+		int p = 3 * positions[index];
+		if (transform == null) {
+			out[0] = xyz[p];
+			out[1] = xyz[p+1];
+			out[2] = xyz[p+2];
+		} else {
+			apply(transform, xyz[p], xyz[p+1], xyz[p+2], out);
+		}
+		return out;
+	}
+
+	/**
+	 * Returns a view of this index with all points transformed by the given rigid-body
+	 * transformation. The view shares the cells with this index, so it takes constant time
+	 * and memory. Transformations that are not rigid (within a tolerance of 1e-6) are
+	 * applied by building a new index.
+	 * @param matrix the transformation, applied after the transformation of this view if any
+	 * @return the transformed index
+	 */
+	public SpatialIndex transform(Matrix4d matrix) {
+		double[] m = {
+				matrix.m00, matrix.m01, matrix.m02, matrix.m03,
+				matrix.m10, matrix.m11, matrix.m12, matrix.m13,
+				matrix.m20, matrix.m21, matrix.m22, matrix.m23 };
+		if (transform != null) {
+			m = compose(m, transform);
+		}
+		if (!isRigid(m)) {
+			double[] coords = new double[3 * size];
+			double[] out = new double[3];
+			for (int i = 0; i < size; i++) {
+				int p = 3 * positions[i];
+				apply(m, xyz[p], xyz[p+1], xyz[p+2], out);
+				coords[3*i] = out[0];
+				coords[3*i+1] = out[1];
+				coords[3*i+2] = out[2];
+			}
+			return new SpatialIndex(coords, cellSize);
+		}
+		// inverse of a rigid-body transformation: transposed rotation and rotated negative translation
+		double[] inv = new double[12];
+		for (int r = 0; r < 3; r++) {
+			for (int c = 0; c < 3; c++) {
+				inv[4*r+c] = m[4*c+r];
+			}
+		}
+		for (int r = 0; r < 3; r++) {
+			inv[4*r+3] = -(inv[4*r]*m[3] + inv[4*r+1]*m[7] + inv[4*r+2]*m[11]);
+		}
+		return new SpatialIndex(this, m, inv);
+	}
+
+	private static double[] compose(double[] a, double[] b) {
+		// a after b
+		double[] m = new double[12];
+		for (int r = 0; r < 3; r++) {
+			for (int c = 0; c < 4; c++) {
+				double v = a[4*r]*b[c] + a[4*r+1]*b[4+c] + a[4*r+2]*b[8+c];
+				m[4*r+c] = c == 3 ? v + a[4*r+3] : v;
+			}
+		}
+		return m;
+	}
+
+	private static boolean isRigid(double[] m) {
+		for (int r = 0; r < 3; r++) {
+			for (int s = r; s < 3; s++) {
+				double dot = m[r]*m[s] + m[4+r]*m[4+s] + m[8+r]*m[8+s];
+				if (Math.abs(dot - (r == s ? 1 : 0)) > 1e-6) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void apply(double[] m, double x, double y, double z, double[] out) {
+		out[0] = m[0]*x + m[1]*y + m[2]*z + m[3];
+		out[1] = m[4]*x + m[5]*y + m[6]*z + m[7];
+		out[2] = m[8]*x + m[9]*y + m[10]*z + m[11];
+	}
+
+	/**
+	 * Calls the visitor for every point within the radius of the query point, in no particular order.
+	 * @param x the x coordinate of the query
+	 * @param y the y coordinate of the query
+	 * @param z the z coordinate of the query
+	 * @param radius the radius
+	 * @param visitor receives the index of every point found and its distance
+	 * @return the number of points found
+	 */
+	public int forEachNeighbor(double x, double y, double z, double radius, NeighborVisitor visitor) {
+		if (inverse != null) {
+			double qx = inverse[0]*x + inverse[1]*y + inverse[2]*z + inverse[3];
+			double qy = inverse[4]*x + inverse[5]*y + inverse[6]*z + inverse[7];
+			double qz = inverse[8]*x + inverse[9]*y + inverse[10]*z + inverse[11];
+			return search(qx, qy, qz, radius, -1, visitor, null, -1, null, null);
+		}
+		return search(x, y, z, radius, -1, visitor, null, -1, null, null);
+	}
+
+	/**
+	 * Finds all points within the radius of the query point, in no particular order.
+	 * If the output arrays are too small, only as many points as they can hold are written,
+	 * the returned count tells the size needed.
+	 * @param x the x coordinate of the query
+	 * @param y the y coordinate of the query
+	 * @param z the z coordinate of the query
+	 * @param radius the radius
+	 * @param indices receives the indices of the points found
+	 * @param distances receives the distances of the points found, can be null
+	 * @return the number of points found
+	 */
+	public int getNeighbors(double x, double y, double z, double radius, int[] indices, double[] distances) {
+		if (inverse != null) {
+			double qx = inverse[0]*x + inverse[1]*y + inverse[2]*z + inverse[3];
+			double qy = inverse[4]*x + inverse[5]*y + inverse[6]*z + inverse[7];
+			double qz = inverse[8]*x + inverse[9]*y + inverse[10]*z + inverse[11];
+			return search(qx, qy, qz, radius, -1, null, null, -1, indices, distances);
+		}
+		return search(x, y, z, radius, -1, null, null, -1, indices, distances);
+	}
+
+	/**
+	 * Tells whether any point is within the radius of the query point.
+	 * @param x the x coordinate of the query
+	 * @param y the y coordinate of the query
+	 * @param z the z coordinate of the query
+	 * @param radius the radius
+	 * @return true if at least one point is within the radius
+	 */
+	public boolean hasNeighbor(double x, double y, double z, double radius) {
+		if (inverse != null) {
+			double qx = inverse[0]*x + inverse[1]*y + inverse[2]*z + inverse[3];
+			double qy = inverse[4]*x + inverse[5]*y + inverse[6]*z + inverse[7];
+			double qz = inverse[8]*x + inverse[9]*y + inverse[10]*z + inverse[11];
+			return search(qx, qy, qz, radius, 1, null, null, -1, null, null) > 0;
+		}
+		return search(x, y, z, radius, 1, null, null, -1, null, null) > 0;
+	}
+
+	/**
+	 * Tells whether any of the given points is within the radius of a point of this index.
+	 * @param coords the query points, packed as x,y,z for every point
+	 * @param radius the radius
+	 * @return true if at least one pair of points is within the radius
+	 */
+	public boolean hasAnyContact(double[] coords, double radius) {
+		for (int i = 0; i + 2 < coords.length; i += 3) {
+			if (hasNeighbor(coords[i], coords[i+1], coords[i+2], radius)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether any point of the other index is within the radius of a point of this index.
+	 * @param other the other index
+	 * @param radius the radius
+	 * @return true if at least one pair of points is within the radius
+	 */
+	public boolean hasAnyContact(SpatialIndex other, double radius) {
+		double[] q = new double[3];
+		for (int i = 0; i < other.size; i++) {
+			other.getCoords(i, q);
+			if (hasNeighbor(q[0], q[1], q[2], radius)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Scans the cells overlapping the cube around the query point (in the frame of the points).
+	 * Stops after limit points if limit is positive. The points found are either passed to one of the
+	 * visitors or written to the output arrays.
+	 */
+	private int search(double x, double y, double z, double radius, int limit,
+			NeighborVisitor visitor, PairVisitor pairVisitor, int queryIndex, int[] indices, double[] distances) {
+		if (size == 0) {
+			return 0;
+		}
+		int x0 = lowerCell(x - radius, originX);
+		int x1 = upperCell(x + radius, originX, nx);
+		int y0 = lowerCell(y - radius, originY);
+		int y1 = upperCell(y + radius, originY, ny);
+		int z0 = lowerCell(z - radius, originZ);
+		int z1 = upperCell(z + radius, originZ, nz);
+		if (x0 > x1 || y0 > y1 || z0 > z1) {
+			return 0;
+		}
+
+		double sqLimit = radius * radius * SQ_SLACK;
+		int count = 0;
+		for (int cx = x0; cx <= x1; cx++) {
+			for (int cy = y0; cy <= y1; cy++) {
+				// the cells along z are contiguous in key order
+				long lastKey = key(cx, cy, z1);
+				int c = lowerBound(key(cx, cy, z0));
+				if (c == cellKeys.length || cellKeys[c] > lastKey) {
+					continue;
+				}
+				int from = cellOffsets[c];
+				while (c < cellKeys.length && cellKeys[c] <= lastKey) {
+					c++;
+				}
+				int to = cellOffsets[c];
+				for (int p = from; p < to; p++) {
+					double dx = x - xyz[3*p];
+					double dy = y - xyz[3*p+1];
+					double dz = z - xyz[3*p+2];
+					double sqDist = dx*dx + dy*dy + dz*dz;
+					if (sqDist > sqLimit) {
+						continue;
+					}
+					double distance = Math.sqrt(sqDist);
+					if (distance < radius) {
+						if (visitor != null) {
+							visitor.visit(pointIndices[p], distance);
+						} else if (pairVisitor != null) {
+							pairVisitor.visit(queryIndex, pointIndices[p], distance);
+						} else if (indices != null && count < indices.length) {
+							indices[count] = pointIndices[p];
+							if (distances != null) {
+								distances[count] = distance;
+							}
+						}
+						count++;
+						if (count == limit) {
+							return count;
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	private int lowerCell(double coord, double origin) {
+		double c = Math.floor((coord - origin) * invCellSize);
+		return c < 0 ? 0 : c >= MAX_CELLS_PER_AXIS ? MAX_CELLS_PER_AXIS : (int) c;
+	}
+
+	private int upperCell(double coord, double origin, int n) {
+		double c = Math.floor((coord - origin) * invCellSize);
+		return c >= n - 1 ? n - 1 : c < 0 ? -1 : (int) c;
+	}
+
+	/**
+	 * @return the index of the first cell with a key not smaller than the given key
+	 */
+	private int lowerBound(long key) {
+		int lo = 0;
+		int hi = cellKeys.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cellKeys[mid] < key) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Finds the k points nearest to the query point, sorted by increasing distance. Ties are
+	 * broken by the index of the points.
+	 * @param x the x coordinate of the query
+	 * @param y the y coordinate of the query
+	 * @param z the z coordinate of the query
+	 * @param k the number of points to find, at most the length of the output arrays
+	 * @param indices receives the indices of the points found
+	 * @param distances receives the distances of the points found
+	 * @return the number of points found, smaller than k only if the index has fewer than k points
+	 */
+	public int getNearest(double x, double y, double z, int k, int[] indices, double[] distances) {
+		if (k > indices.length || k > distances.length) {
+			throw new IllegalArgumentException("Output arrays are too small for " + k + " points");
+		}
+		k = Math.min(k, size);
+		if (k <= 0) {
+			return 0;
+		}
+		if (inverse != null) {
+			double qx = inverse[0]*x + inverse[1]*y + inverse[2]*z + inverse[3];
+			double qy = inverse[4]*x + inverse[5]*y + inverse[6]*z + inverse[7];
+			double qz = inverse[8]*x + inverse[9]*y + inverse[10]*z + inverse[11];
+			x = qx;
+			y = qy;
+			z = qz;
+		}
+
+		// the cell of the query, which can be outside of the grid
+		long qx = (long) Math.max(Math.min(Math.floor((x - originX) * invCellSize), 2L * MAX_CELLS_PER_AXIS), -2L * MAX_CELLS_PER_AXIS);
+		long qy = (long) Math.max(Math.min(Math.floor((y - originY) * invCellSize), 2L * MAX_CELLS_PER_AXIS), -2L * MAX_CELLS_PER_AXIS);
+		long qz = (long) Math.max(Math.min(Math.floor((z - originZ) * invCellSize), 2L * MAX_CELLS_PER_AXIS), -2L * MAX_CELLS_PER_AXIS);
+
+		// rings of cells at increasing Chebyshev distance from the query cell. All points beyond
+		// ring s are at least s cell sizes away from the query
+		long firstRing = Math.max(Math.max(gap(qx, nx), gap(qy, ny)), gap(qz, nz));
+		long lastRing = Math.max(Math.max(reach(qx, nx), reach(qy, ny)), reach(qz, nz));
+		int found = 0;
+		for (long s = firstRing; s <= lastRing; s++) {
+			if (found == k && distances[k-1] < (s - 1) * cellSize) {
+				break;
+			}
+			for (long cx = Math.max(qx - s, 0); cx <= Math.min(qx + s, nx - 1); cx++) {
+				for (long cy = Math.max(qy - s, 0); cy <= Math.min(qy + s, ny - 1); cy++) {
+					boolean onShell = Math.abs(cx - qx) == s || Math.abs(cy - qy) == s;
+					if (onShell) {
+						found = scanNearest((int) cx, (int) cy, qz - s, qz + s, x, y, z, k, found, indices, distances);
+					} else {
+						found = scanNearest((int) cx, (int) cy, qz - s, qz - s, x, y, z, k, found, indices, distances);
+						if (s > 0) {
+							found = scanNearest((int) cx, (int) cy, qz + s, qz + s, x, y, z, k, found, indices, distances);
+						}
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private static long gap(long q, int n) {
+		return q < 0 ? -q : q >= n ? q - n + 1 : 0;
+	}
+
+	private static long reach(long q, int n) {
+		return Math.max(Math.abs(q), Math.abs(n - 1 - q));
+	}
+
+	/**
+	 * Merges the points of the cells cz0 to cz1 at cx,cy into the sorted k nearest points found so far.
+	 */
+	private int scanNearest(int cx, int cy, long cz0, long cz1, double x, double y, double z, int k, int found,
+			int[] indices, double[] distances) {
+		if (cz0 < 0) cz0 = 0;
+		if (cz1 > nz - 1) cz1 = nz - 1;
+		if (cz0 > cz1) {
+			return found;
+		}
+		long lastKey = key(cx, cy, (int) cz1);
+		for (int c = lowerBound(key(cx, cy, (int) cz0)); c < cellKeys.length && cellKeys[c] <= lastKey; c++) {
+			for (int p = cellOffsets[c]; p < cellOffsets[c + 1]; p++) {
+				double dx = x - xyz[3*p];
+				double dy = y - xyz[3*p+1];
+				double dz = z - xyz[3*p+2];
+				double distance = Math.sqrt(dx*dx + dy*dy + dz*dz);
+				int index = pointIndices[p];
+				if (found == k && !closer(distance, index, distances[k-1], indices[k-1])) {
+					continue;
+				}
+				int l = found == k ? k - 1 : found++;
+				while (l > 0 && closer(distance, index, distances[l-1], indices[l-1])) {
+					distances[l] = distances[l-1];
+					indices[l] = indices[l-1];
+					l--;
+				}
+				distances[l] = distance;
+				indices[l] = index;
+			}
+		}
+		return found;
+	}
+
+	private static boolean closer(double distance, int index, double otherDistance, int otherIndex) {
+		return distance < otherDistance || (distance == otherDistance && index < otherIndex);
+	}
+
+	/**
+	 * Calls the visitor for every pair of points of this index within the cutoff, in no particular order.
+	 * Every pair is visited once, with i &lt; j.
+	 * @param cutoff the cutoff distance
+	 * @param visitor receives the pairs
+	 * @return the number of pairs found
+	 */
+	public int forEachContact(double cutoff, PairVisitor visitor) {
+		return forEachContact(0, size, cutoff, visitor);
+	}
+
+	/**
+	 * Calls the visitor for every pair of points of this index within the cutoff, where the first point
+	 * of the pair is one of the points of the given range, in cell order. The ranges of a partition of
+	 * [0,{@link #size()}) visit every pair once, so that they can be processed in parallel.
+	 * @param from the first position in cell order, inclusive
+	 * @param to the last position in cell order, exclusive
+	 * @param cutoff the cutoff distance
+	 * @param visitor receives the pairs, with i &lt; j
+	 * @return the number of pairs found
+	 */
+	public int forEachContact(int from, int to, double cutoff, PairVisitor visitor) {
+		if (size == 0) {
+			return 0;
+		}
+		double sqLimit = cutoff * cutoff * SQ_SLACK;
+		int count = 0;
+		for (int a = from; a < to; a++) {
+			double x = xyz[3*a];
+			double y = xyz[3*a+1];
+			double z = xyz[3*a+2];
+			int ia = pointIndices[a];
+			int x0 = lowerCell(x - cutoff, originX);
+			int x1 = upperCell(x + cutoff, originX, nx);
+			int y0 = lowerCell(y - cutoff, originY);
+			int y1 = upperCell(y + cutoff, originY, ny);
+			int z0 = lowerCell(z - cutoff, originZ);
+			int z1 = upperCell(z + cutoff, originZ, nz);
+			for (int cx = x0; cx <= x1; cx++) {
+				for (int cy = y0; cy <= y1; cy++) {
+					long lastKey = key(cx, cy, z1);
+					int c = lowerBound(key(cx, cy, z0));
+					if (c == cellKeys.length || cellKeys[c] > lastKey) {
+						continue;
+					}
+					int start = cellOffsets[c];
+					while (c < cellKeys.length && cellKeys[c] <= lastKey) {
+						c++;
+					}
+					// points in cell order after a only: every pair once
+					for (int b = Math.max(start, a + 1); b < cellOffsets[c]; b++) {
+						double dx = x - xyz[3*b];
+						double dy = y - xyz[3*b+1];
+						double dz = z - xyz[3*b+2];
+						double sqDist = dx*dx + dy*dy + dz*dz;
+						if (sqDist > sqLimit) {
+							continue;
+						}
+						double distance = Math.sqrt(sqDist);
+						if (distance < cutoff) {
+							int ib = pointIndices[b];
+							if (ia < ib) {
+								visitor.visit(ia, ib, distance);
+							} else {
+								visitor.visit(ib, ia, distance);
+							}
+							count++;
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Calls the visitor for every pair of a point of this index and a point of the other index within
+	 * the cutoff, in no particular order.
+	 * @param other the other index
+	 * @param cutoff the cutoff distance
+	 * @param visitor receives the pairs, i being the index of the point of this index and j of the other
+	 * @return the number of pairs found
+	 */
+	public int forEachContact(SpatialIndex other, double cutoff, PairVisitor visitor) {
+		// the points of this index in the frame of the points of the other
+		double[] m = other.inverse == null ? transform : transform == null ? other.inverse : compose(other.inverse, transform);
+		double[] q = new double[3];
+		int count = 0;
+		for (int p = 0; p < size; p++) {
+			if (m == null) {
+				q[0] = xyz[3*p];
+				q[1] = xyz[3*p+1];
+				q[2] = xyz[3*p+2];
+			} else {
+				apply(m, xyz[3*p], xyz[3*p+1], xyz[3*p+2], q);
+			}
+			count += other.search(q[0], q[1], q[2], cutoff, -1, null, visitor, pointIndices[p], null, null);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns all pairs of points of this index within the cutoff, with i &lt; j.
+	 * @param cutoff the cutoff distance
+	 * @return the contacts
+	 */
+	public List<Contact> getContacts(double cutoff) {
+		List<Contact> list = new ArrayList<>();
+		forEachContact(cutoff, (i, j, distance) -> list.add(new Contact(i, j, distance)));
+		return list;
+	}
+
+	/**
+	 * Returns all pairs of a point of this index (i) and a point of the other index (j) within the cutoff.
+	 * @param other the other index
+	 * @param cutoff the cutoff distance
+	 * @return the contacts
+	 */
+	public List<Contact> getContacts(SpatialIndex other, double cutoff) {
+		List<Contact> list = new ArrayList<>();
+		forEachContact(other, cutoff, (i, j, distance) -> list.add(new Contact(i, j, distance)));
+		return list;
+	}
+
+	@Override
+	public String toString() {
+		return "SpatialIndex [" + size + " points, " + cellKeys.length + " cells of size " + cellSize
+				+ (transform != null ? ", transformed" : "") + "]";
+	}
+}
@@ -48,9 +48,11 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 
 
 /**
@@ -222,6 +224,99 @@ public class StructureInterface implements Serializable, Comparable<StructureInt
 
 		double[] complexAsas = asaCalc.calculateAsas();
 
+		setAsas(atoms, asas1, asas2, complexAsas);
+	}
+
+	/**
+	 * Set ASA annotations by passing the uncomplexed ASA values of the 2 partners.
+	 * This will calculate complexed ASA and set the ASA values in the member variables.
+	 * <p>
+	 * In incremental mode the complexed ASA is only calculated for the atoms that have a neighbor
+	 * in the partner molecule, i.e. an atom at a distance below the sum of both radii and twice the
+	 * probe size. All other atoms have exactly the same neighbors as in the uncomplexed molecule,
+	 * so their uncomplexed ASA values are used as complexed values.
+	 * @param asas1 ASA values for atoms of partner 1
+	 * @param asas2 ASA values for atoms of partner 2
+	 * @param nSpherePoints the number of sphere points to be used for complexed ASA calculation
+	 * @param executor the executor to run the complexed ASA calculation, null to run it in the calling thread
+	 * @param cofactorSizeToUse the minimum size of cofactor molecule (non-chain HET atoms) that will be used in ASA calculation
+	 * @param incremental whether to only recalculate the ASA of atoms in contact with the partner
+	 * @since 6.0.6
+	 */
+	void setAsas(double[] asas1, double[] asas2, int nSpherePoints, ExecutorService executor, int cofactorSizeToUse,
+			boolean incremental) {
+
+		Atom[] atoms1 = getFirstAtomsForAsa(cofactorSizeToUse);
+		Atom[] atoms2 = getSecondAtomsForAsa(cofactorSizeToUse);
+		Atom[] atoms = new Atom[atoms1.length+atoms2.length];
+		System.arraycopy(atoms1, 0, atoms, 0, atoms1.length);
+		System.arraycopy(atoms2, 0, atoms, atoms1.length, atoms2.length);
+
+		// using 1 thread: any parallelism comes from the executor
+		AsaCalculator asaCalc = new AsaCalculator(atoms,
+				AsaCalculator.DEFAULT_PROBE_SIZE, nSpherePoints, 1);
+
+		double[] complexAsas;
+		if (incremental) {
+			if (atoms1.length!=asas1.length || atoms2.length!=asas2.length)
+				throw new IllegalArgumentException("The size of ASAs of complex doesn't match that of ASAs 1 + ASAs 2");
+
+			int[] contactingAtoms = getAsaContactingAtoms(atoms1, atoms2);
+			logger.debug("Calculating complexed ASA for {} of {} atoms of interface {}", contactingAtoms.length, atoms.length, id);
+			double[] contactingAsas = asaCalc.calculateAsas(contactingAtoms, executor);
+
+			complexAsas = new double[atoms.length];
+			System.arraycopy(asas1, 0, complexAsas, 0, asas1.length);
+			System.arraycopy(asas2, 0, complexAsas, asas1.length, asas2.length);
+			for (int k=0;k<contactingAtoms.length;k++) {
+				complexAsas[contactingAtoms[k]] = contactingAsas[k];
+			}
+		} else {
+			complexAsas = asaCalc.calculateAsas(executor);
+		}
+
+		setAsas(atoms, asas1, asas2, complexAsas);
+	}
+
+	/**
+	 * Finds the atoms whose ASA neighbors include atoms of the partner molecule, using the
+	 * same neighbor criterion as {@link AsaCalculator}.
+	 * @return the indices of the atoms in the concatenated array of atoms1 and atoms2, in ascending order
+	 */
+	private static int[] getAsaContactingAtoms(Atom[] atoms1, Atom[] atoms2) {
+		if (atoms1.length==0 || atoms2.length==0) {
+			return new int[0];
+		}
+
+		double probe = AsaCalculator.DEFAULT_PROBE_SIZE;
+		double[] radii1 = new double[atoms1.length];
+		double[] radii2 = new double[atoms2.length];
+		double maxRadius = 0;
+		for (int i=0;i<atoms1.length;i++) {
+			radii1[i] = AsaCalculator.getRadius(atoms1[i]);
+			maxRadius = Math.max(maxRadius, radii1[i]);
+		}
+		for (int j=0;j<atoms2.length;j++) {
+			radii2[j] = AsaCalculator.getRadius(atoms2[j]);
+			maxRadius = Math.max(maxRadius, radii2[j]);
+		}
+
+		double cutoff = maxRadius + maxRadius + probe + probe;
+		SpatialIndex index1 = SpatialIndex.of(atoms1, cutoff);
+		SpatialIndex index2 = SpatialIndex.of(atoms2, cutoff);
+
+		BitSet contacting = new BitSet(atoms1.length+atoms2.length);
+		index1.forEachContact(index2, cutoff, (i, j, distance) -> {
+			if (distance < radii1[i] + probe + probe + radii2[j]) {
+				contacting.set(i);
+				contacting.set(atoms1.length + j);
+			}
+		});
+		return contacting.stream().toArray();
+	}
+
+	private void setAsas(Atom[] atoms, double[] asas1, double[] asas2, double[] complexAsas) {
+
 		if (complexAsas.length!=asas1.length+asas2.length)
 			throw new IllegalArgumentException("The size of ASAs of complex doesn't match that of ASAs 1 + ASAs 2");
 
@@ -23,15 +23,21 @@ package org.biojava.nbio.structure.contact;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.core.util.SingleLinkageClusterer;
 import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Chain;
 import org.biojava.nbio.structure.Structure;
 import org.biojava.nbio.structure.asa.AsaCalculator;
 import org.biojava.nbio.structure.xtal.CrystalBuilder;
@@ -72,6 +78,9 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 	 */
 	public static final double DEFAULT_CONTACT_OVERLAP_SCORE_CLUSTER_CUTOFF = 0.2;
 
+	/** The minimum number of interface pairs scored per task by {@link #getContactOverlapScores(int)} */
+	private static final int PAIRS_PER_TASK = 256;
+
 	private static final long serialVersionUID = 1L;
 
 	private final List<StructureInterface> list;
@@ -129,6 +138,27 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 	 * @param cofactorSizeToUse the minimum size of cofactor molecule (non-chain HET atoms) that will be used
 	 */
 	public void calcAsas(int nSpherePoints, int nThreads, int cofactorSizeToUse) {
+		calcAsas(nSpherePoints, nThreads, cofactorSizeToUse, false);
+	}
+
+	/**
+	 * Calculates ASAs for all interfaces in list, both for the unbound
+	 * chains and for the complex of the two chains together.
+	 * Also sorts the interfaces based on calculated BSA areas (descending).
+	 * <p>
+	 * The unbound chains and the interfaces are calculated in parallel, sharing one pool of nThreads threads.
+	 * In incremental mode the complexed ASA of an interface is only calculated for the atoms that are
+	 * in contact with the partner molecule, the unbound values are used for all other atoms,
+	 * which is much faster for large molecules. The buried surface areas obtained are the same,
+	 * except for very small contributions of non-contacting atoms that stem from the rolling ball sampling
+	 * depending on the orientation of the molecules.
+	 * @param nSpherePoints
+	 * @param nThreads
+	 * @param cofactorSizeToUse the minimum size of cofactor molecule (non-chain HET atoms) that will be used
+	 * @param incremental whether to only recalculate complexed ASAs for atoms in contact with the partner
+	 * @since 6.0.6
+	 */
+	public void calcAsas(int nSpherePoints, int nThreads, int cofactorSizeToUse, boolean incremental) {
 
 		// asa/bsa calculation
 		// NOTE in principle it is more efficient to calculate asas only once per unique chain
@@ -167,19 +197,27 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 
 		long start = System.currentTimeMillis();
 
-		// we only need to calculate ASA for that subset (any translation of those will have same values)
-		for (String molecId:uniqAsaChains.keySet()) {
-
-			logger.debug("Calculating uncomplexed ASA for molecId {}, with {} atoms", molecId, uniqAsaChains.get(molecId).length);
+		// the chains and interfaces are tasks of the shared pool, and so are the ASA calculations within them
+		ExecutorService pool = nThreads > 1 ? ConcurrencyTools.getForkJoinPool(nThreads) : null;
 
-			AsaCalculator asaCalc = new AsaCalculator(uniqAsaChains.get(molecId),
-					AsaCalculator.DEFAULT_PROBE_SIZE, nSpherePoints, nThreads);
-
-			double[] atomAsas = asaCalc.calculateAsas();
+		// we only need to calculate ASA for that subset (any translation of those will have same values)
+		List<String> molecIds = new ArrayList<>(uniqAsaChains.keySet());
+		List<Callable<double[]>> uncomplexedTasks = new ArrayList<>();
+		for (String molecId:molecIds) {
+			uncomplexedTasks.add(() -> {
+				logger.debug("Calculating uncomplexed ASA for molecId {}, with {} atoms", molecId, uniqAsaChains.get(molecId).length);
 
-			chainAsas.put(molecId, atomAsas);
+				AsaCalculator asaCalc = new AsaCalculator(uniqAsaChains.get(molecId),
+						AsaCalculator.DEFAULT_PROBE_SIZE, nSpherePoints, 1);
 
+				return asaCalc.calculateAsas(pool);
+			});
 		}
+		List<double[]> atomAsas = invokeAll(uncomplexedTasks, nThreads, "ASAs");
+		for (int i=0;i<molecIds.size();i++) {
+			chainAsas.put(molecIds.get(i), atomAsas.get(i));
+		}
+
 		long end = System.currentTimeMillis();
 
 		logger.debug("Calculated uncomplexed ASA for {} orientation-unique chains. Time: {} s", uniqAsaChains.size(), ((end-start)/1000.0));
@@ -189,16 +227,19 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 		start = System.currentTimeMillis();
 
 		// now we calculate the ASAs for each of the complexes
+		List<Callable<Void>> complexedTasks = new ArrayList<>();
 		for (StructureInterface interf:redundancyReducedList) {
+			complexedTasks.add(() -> {
+				String molecId1 = interf.getMoleculeIds().getFirst()+interf.getTransforms().getFirst().getTransformId();
+				String molecId2 = interf.getMoleculeIds().getSecond()+interf.getTransforms().getSecond().getTransformId();
 
-			String molecId1 = interf.getMoleculeIds().getFirst()+interf.getTransforms().getFirst().getTransformId();
-			String molecId2 = interf.getMoleculeIds().getSecond()+interf.getTransforms().getSecond().getTransformId();
-
-			logger.debug("Calculating complexed ASAs for interface {} between molecules {} and {}", interf.getId(), molecId1, molecId2);
-
-			interf.setAsas(chainAsas.get(molecId1), chainAsas.get(molecId2), nSpherePoints, nThreads, cofactorSizeToUse);
+				logger.debug("Calculating complexed ASAs for interface {} between molecules {} and {}", interf.getId(), molecId1, molecId2);
 
+				interf.setAsas(chainAsas.get(molecId1), chainAsas.get(molecId2), nSpherePoints, pool, cofactorSizeToUse, incremental);
+				return null;
+			});
 		}
+		invokeAll(complexedTasks, nThreads, "ASAs");
 		end = System.currentTimeMillis();
 
 		logger.debug("Calculated complexes ASA for {} pairwise complexes. Time: {} s", redundancyReducedList.size(), ((end-start)/1000.0));
@@ -232,6 +273,19 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 		sort();
 	}
 
+	/**
+	 * Runs the tasks with {@link ConcurrencyTools#invokeAll(List, int)}.
+	 * @param what the description of the calculation, for error messages
+	 * @return the results in the order of the tasks
+	 */
+	private static <T> List<T> invokeAll(List<Callable<T>> tasks, int nThreads, String what) {
+		try {
+			return ConcurrencyTools.invokeAll(tasks, nThreads);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error while calculating " + what, e.getCause());
+		}
+	}
+
 	private boolean areMolecIdsSameOrder(String refMolecId, String molecId) {
 
 		if (chainOrigNamesMap==null) {
@@ -373,6 +427,22 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 	 * @return
 	 */
 	public List<StructureInterfaceCluster> getClusters(double contactOverlapScoreClusterCutoff) {
+		return getClusters(contactOverlapScoreClusterCutoff, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Calculate the interface clusters for this StructureInterfaceList
+	 * using Jaccard contact set scores to measure the similarity of interfaces,
+	 * with the all-vs-all scores calculated in parallel, see {@link #getContactOverlapScores(int)}.
+	 * Subsequent calls will use the cached value without recomputing the clusters.
+	 * The clusters will be assigned ids by sorting descending by {@link StructureInterfaceCluster#getTotalArea()}
+	 * @param contactOverlapScoreClusterCutoff the contact overlap score above which a pair will be
+	 * clustered
+	 * @param nThreads the number of threads to calculate the scores
+	 * @return
+	 * @since 6.0.6
+	 */
+	public List<StructureInterfaceCluster> getClusters(double contactOverlapScoreClusterCutoff, int nThreads) {
 		if (clusters!=null) {
 			return clusters;
 		}
@@ -383,40 +453,30 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 		if (list.size()==0) return clusters;
 
 		logger.debug("Calculating all-vs-all Jaccard scores for {} interfaces", list.size());
-		double[][] matrix = new double[list.size()][list.size()];
-
-		for (int i=0;i<list.size();i++) {
-			for (int j=i+1;j<list.size();j++) {
-				StructureInterface iInterf = list.get(i);
-				StructureInterface jInterf = list.get(j);
-
-				double scoreDirect = iInterf.getContactOverlapScore(jInterf, false);
-				double scoreInvert = iInterf.getContactOverlapScore(jInterf, true);
-
-				double maxScore = Math.max(scoreDirect, scoreInvert);
-
-				matrix[i][j] = maxScore;
-			}
-
-		}
+		double[][] matrix = getContactOverlapScores(nThreads);
 
 		logger.debug("Will now cluster {} interfaces based on full all-vs-all Jaccard scores matrix", list.size());
 		SingleLinkageClusterer slc = new SingleLinkageClusterer(matrix, true);
 
 		Map<Integer, Set<Integer>> clusteredIndices = slc.getClusters(contactOverlapScoreClusterCutoff);
-		for (int clusterIdx:clusteredIndices.keySet()) {
+		for (Set<Integer> indices:clusteredIndices.values()) {
 			List<StructureInterface> members = new ArrayList<>();
-			for (int idx:clusteredIndices.get(clusterIdx)) {
+			for (int idx:indices) {
 				members.add(list.get(idx));
 			}
 			StructureInterfaceCluster cluster = new StructureInterfaceCluster();
 			cluster.setMembers(members);
+			// the indices are sorted, so all pairs are in the upper half of the matrix
+			int[] idx = new int[indices.size()];
+			int k = 0;
+			for (int i:indices) {
+				idx[k++] = i;
+			}
 			double averageScore = 0.0;
 			int countPairs = 0;
-			for (int i=0;i<members.size();i++) {
-                int iIdx = list.indexOf(members.get(i));
-				for (int j=i+1;j<members.size();j++) {
-					averageScore += matrix[iIdx][list.indexOf(members.get(j))];
+			for (int i=0;i<idx.length;i++) {
+				for (int j=i+1;j<idx.length;j++) {
+					averageScore += matrix[idx[i]][idx[j]];
 					countPairs++;
 				}
 			}
@@ -450,6 +510,167 @@ public class StructureInterfaceList implements Serializable, Iterable<StructureI
 		return clusters;
 	}
 
+	/**
+	 * Calculates the all-vs-all contact overlap scores of the interfaces of this list:
+	 * for each pair the maximum of the direct and inverted
+	 * {@link StructureInterface#getContactOverlapScore(StructureInterface, boolean)}.
+	 * <p>
+	 * The residue contacts of every interface are converted once to bit sets, indexed by the
+	 * contacts of all interfaces between the same pair of entities, so that the score of a pair
+	 * is a bitwise intersection. Blocks of rows are scored in parallel.
+	 * @param nThreads the number of threads
+	 * @return the n x n matrix of scores, with only the upper half (j &gt; i) filled
+	 * @since 6.0.6
+	 */
+	public double[][] getContactOverlapScores(int nThreads) {
+		int n = list.size();
+		ContactBits[] bits = ContactBits.of(list);
+		double[][] matrix = new double[n][n];
+
+		// blocks of consecutive rows with about the same number of pairs
+		List<Callable<Void>> tasks = new ArrayList<>();
+		int from = 0;
+		long pairs = 0;
+		for (int i=0;i<n;i++) {
+			pairs += n - i - 1;
+			if (pairs >= PAIRS_PER_TASK || i == n - 1) {
+				int rowStart = from;
+				int rowEnd = i + 1;
+				tasks.add(() -> {
+					for (int r=rowStart;r<rowEnd;r++) {
+						for (int c=r+1;c<n;c++) {
+							matrix[r][c] = bits[r].getScore(bits[c]);
+						}
+					}
+					return null;
+				});
+				from = i + 1;
+				pairs = 0;
+			}
+		}
+
+		invokeAll(tasks, nThreads, "contact overlap scores");
+		return matrix;
+	}
+
+	/**
+	 * The residue contacts of an interface as bit sets, for fast calculation of
+	 * contact overlap scores.
+	 */
+	private static class ContactBits {
+
+		/** Index of the (unordered) pair of entities, -1 if unknown */
+		private int entityPair = -1;
+		/** The size of the GroupContactSet */
+		private int size;
+		/** The contacts, first to second */
+		private long[] direct;
+		/** The contacts, second to first */
+		private long[] inverted;
+
+		/**
+		 * Calculates the bit sets of all interfaces, indexing the contacts
+		 * per pair of entities.
+		 */
+		static ContactBits[] of(List<StructureInterface> interfaces) {
+			ContactBits[] bits = new ContactBits[interfaces.size()];
+			Map<Long, Integer> entityPairs = new HashMap<>();
+			List<Map<Long, Integer>> contactIndices = new ArrayList<>();
+			List<long[]> directKeys = new ArrayList<>();
+
+			for (int i=0;i<bits.length;i++) {
+				StructureInterface interf = interfaces.get(i);
+				bits[i] = new ContactBits();
+				GroupContactSet contacts = interf.getGroupContacts();
+				bits[i].size = contacts.size();
+
+				Pair<Chain> chains = interf.getParentChains();
+				if (chains == null || chains.getFirst().getEntityInfo() == null || chains.getSecond().getEntityInfo() == null) {
+					// this happens in cases like 2uub
+					logger.warn("Found chains with null compounds for interface {}. Contact overlap scores for it will be 0.", interf.getId());
+					directKeys.add(null);
+					continue;
+				}
+				int molId1 = chains.getFirst().getEntityInfo().getMolId();
+				int molId2 = chains.getSecond().getEntityInfo().getMolId();
+				long entityKey = key(Math.min(molId1, molId2), Math.max(molId1, molId2));
+				Integer entityPair = entityPairs.get(entityKey);
+				if (entityPair == null) {
+					entityPair = entityPairs.size();
+					entityPairs.put(entityKey, entityPair);
+					contactIndices.add(new HashMap<>());
+				}
+				bits[i].entityPair = entityPair;
+
+				// the same residue identifiers as GroupContactSet uses
+				Map<Long, Integer> indices = contactIndices.get(entityPair);
+				long[] keys = new long[contacts.size()];
+				int k = 0;
+				for (GroupContact contact:contacts) {
+					keys[k] = key(new ResidueIdentifier(contact.getPair().getFirst()).getSeqResIndex(),
+							new ResidueIdentifier(contact.getPair().getSecond()).getSeqResIndex());
+					if (!indices.containsKey(keys[k])) {
+						indices.put(keys[k], indices.size());
+					}
+					k++;
+				}
+				directKeys.add(keys);
+			}
+
+			for (int i=0;i<bits.length;i++) {
+				long[] keys = directKeys.get(i);
+				if (keys == null) continue;
+				Map<Long, Integer> indices = contactIndices.get(bits[i].entityPair);
+				bits[i].direct = new long[(indices.size() + 63) >>> 6];
+				bits[i].inverted = new long[bits[i].direct.length];
+				for (long key:keys) {
+					set(bits[i].direct, indices.get(key));
+					// inverted contacts not present in any direct set can't be matched
+					Integer inverted = indices.get(key(second(key), first(key)));
+					if (inverted != null) {
+						set(bits[i].inverted, inverted);
+					}
+				}
+			}
+			return bits;
+		}
+
+		/**
+		 * The same score as the maximum of the direct and inverted
+		 * {@link StructureInterface#getContactOverlapScore(StructureInterface, boolean)}.
+		 */
+		double getScore(ContactBits other) {
+			if (entityPair < 0 || other.entityPair != entityPair) {
+				return 0;
+			}
+			int commonDirect = 0;
+			int commonInverted = 0;
+			for (int w=0;w<direct.length;w++) {
+				commonDirect += Long.bitCount(direct[w] & other.direct[w]);
+				commonInverted += Long.bitCount(inverted[w] & other.direct[w]);
+			}
+			double scoreDirect = (2.0*commonDirect)/(size+other.size);
+			double scoreInvert = (2.0*commonInverted)/(size+other.size);
+			return Math.max(scoreDirect, scoreInvert);
+		}
+
+		private static long key(int first, int second) {
+			return ((long) first << 32) | (second & 0xffffffffL);
+		}
+
+		private static int first(long key) {
+			return (int) (key >> 32);
+		}
+
+		private static int second(long key) {
+			return (int) key;
+		}
+
+		private static void set(long[] words, int bit) {
+			words[bit >>> 6] |= 1L << bit;
+		}
+	}
+
 	@Override
 	public Iterator<StructureInterface> iterator() {
 		return list.iterator();
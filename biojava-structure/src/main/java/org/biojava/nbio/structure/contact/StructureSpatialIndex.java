@@ -0,0 +1,394 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.contact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.biojava.nbio.core.util.ConcurrencyTools;
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Calc;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.Group;
+import org.biojava.nbio.structure.ResidueNumber;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SpatialIndex} of all the atoms of the first model of a structure,
+ * that answers the shell and proximity queries of {@link StructureTools}
+ * repeatedly without scanning all atoms or building a grid for every call.
+ * <p>
+ * The results are the same as those of
+ * {@link StructureTools#getGroupsWithinShell(Structure, Atom, Set, double, boolean)},
+ * {@link StructureTools#getGroupsWithinShell(Structure, Group, double, boolean)},
+ * {@link StructureTools#getGroupDistancesWithinShell(Structure, Atom, Set, double, boolean, boolean)} and
+ * {@link StructureTools#getLigandsByProximity(java.util.Collection, Atom[], double)}
+ * (with all groups of the structure as target), and the groups are returned in the same order.
+ * <p>
+ * The coordinates are copied when the index is built: the caller keeps the index
+ * as long as the coordinates do not change, and builds a new one after moving the
+ * structure, which {@link #isStale()} detects. An index is not modified by queries
+ * and can be shared by threads.
+ *
+ * @since 6.0.6
+ */
+public class StructureSpatialIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(StructureSpatialIndex.class);
+
+	/** The default cell size of the index, about the size of a binding site shell */
+	public static final double DEFAULT_CELL_SIZE = 6.0;
+
+	// relative slack of the search radius, the exact cutoff is applied to the squared distances
+	private static final double RADIUS_SLACK = 1.0 + 1e-9;
+
+	private final Structure structure;
+	private final Group[] groups;
+	private final Atom[] atoms;
+	// index in groups of the group of every atom
+	private final int[] atomGroups;
+	// the coordinates when the index was built
+	private final double[] coords;
+	private final SpatialIndex index;
+
+	/**
+	 * Builds an index of the atoms of the first model of the structure, with the default cell size.
+	 * @param structure the structure
+	 */
+	public StructureSpatialIndex(Structure structure) {
+		this(structure, DEFAULT_CELL_SIZE);
+	}
+
+	/**
+	 * Builds an index of the atoms of the first model of the structure.
+	 * @param structure the structure
+	 * @param cellSize the cell size, usually the most common query radius
+	 */
+	public StructureSpatialIndex(Structure structure, double cellSize) {
+		this.structure = structure;
+
+		List<Group> groupList = new ArrayList<>();
+		List<Atom> atomList = new ArrayList<>();
+		List<Integer> atomGroupList = new ArrayList<>();
+		for (Chain chain : structure.getChains()) {
+			for (Group group : chain.getAtomGroups()) {
+				for (Atom atom : group.getAtoms()) {
+					atomList.add(atom);
+					atomGroupList.add(groupList.size());
+				}
+				groupList.add(group);
+			}
+		}
+		this.groups = groupList.toArray(new Group[0]);
+		this.atoms = atomList.toArray(new Atom[0]);
+		this.atomGroups = new int[atoms.length];
+		this.coords = new double[3 * atoms.length];
+		for (int i = 0; i < atoms.length; i++) {
+			atomGroups[i] = atomGroupList.get(i);
+			coords[3 * i] = atoms[i].getX();
+			coords[3 * i + 1] = atoms[i].getY();
+			coords[3 * i + 2] = atoms[i].getZ();
+		}
+		this.index = new SpatialIndex(coords, cellSize);
+		logger.debug("Indexed {} atoms of {} groups with cell size {}", atoms.length, groups.length, cellSize);
+	}
+
+	/**
+	 * @return the indexed structure
+	 */
+	public Structure getStructure() {
+		return structure;
+	}
+
+	/**
+	 * @return the number of indexed atoms
+	 */
+	public int size() {
+		return atoms.length;
+	}
+
+	/**
+	 * Tells whether the coordinates of any indexed atom changed since the index was built.
+	 * This takes time proportional to the number of atoms.
+	 * @return true if the index must be rebuilt
+	 */
+	public boolean isStale() {
+		for (int i = 0; i < atoms.length; i++) {
+			if (atoms[i].getX() != coords[3 * i] || atoms[i].getY() != coords[3 * i + 1]
+					|| atoms[i].getZ() != coords[3 * i + 2]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds Groups that contain at least one Atom that is within {@code distance} Angstroms
+	 * of {@code atom}.
+	 * @param atom the center of the shell
+	 * @param excludeResidues the ResidueNumbers of the groups to exclude
+	 * @param distance the radius of the shell, in Angstroms
+	 * @param includeWater whether to include water groups
+	 * @return the groups within the shell, in the order of the structure
+	 * @see StructureTools#getGroupsWithinShell(Structure, Atom, Set, double, boolean)
+	 */
+	public Set<Group> getGroupsWithinShell(Atom atom, Set<ResidueNumber> excludeResidues, double distance,
+			boolean includeWater) {
+		Set<Group> groupsWithin = new LinkedHashSet<>();
+		addGroupsWithinShell(atom, excludeResidues, distance, includeWater, new Hits(), groupsWithin);
+		return groupsWithin;
+	}
+
+	/**
+	 * Finds Groups that contain at least one Atom that is within {@code distance} Angstroms
+	 * of an atom of {@code group}, excluding the group itself.
+	 * @param group the query group, e.g. a ligand
+	 * @param distance the cutoff distance, in Angstroms
+	 * @param includeWater whether to include water groups
+	 * @return the groups within the distance
+	 * @see StructureTools#getGroupsWithinShell(Structure, Group, double, boolean)
+	 */
+	public Set<Group> getGroupsWithinShell(Group group, double distance, boolean includeWater) {
+		return getGroupsWithinShell(group, distance, includeWater, new Hits());
+	}
+
+	/**
+	 * Finds the Groups within {@code distance} Angstroms of each of the query groups, as
+	 * {@link #getGroupsWithinShell(Group, double, boolean)}, e.g. the binding sites of all
+	 * ligands of a structure.
+	 * @param queries the query groups
+	 * @param distance the cutoff distance, in Angstroms
+	 * @param includeWater whether to include water groups
+	 * @param nThreads the number of threads
+	 * @return the groups within the distance of every query group, in the order of the queries
+	 */
+	public List<Set<Group>> getGroupsWithinShell(List<Group> queries, double distance, boolean includeWater,
+			int nThreads) {
+		if (nThreads <= 1 || queries.size() <= 1) {
+			List<Set<Group>> results = new ArrayList<>(queries.size());
+			Hits hits = new Hits();
+			for (Group query : queries) {
+				results.add(getGroupsWithinShell(query, distance, includeWater, hits));
+			}
+			return results;
+		}
+
+		List<Callable<Set<Group>>> tasks = new ArrayList<>(queries.size());
+		for (Group query : queries) {
+			tasks.add(() -> getGroupsWithinShell(query, distance, includeWater, new Hits()));
+		}
+		try {
+			return ConcurrencyTools.invokeAll(tasks, nThreads);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error while searching groups within shells", e.getCause());
+		}
+	}
+
+	/**
+	 * Finds Groups that contain at least one Atom that is within {@code radius} Angstroms
+	 * of {@code centroid}, with their distances.
+	 * @param centroid the center of the shell
+	 * @param excludeResidues the ResidueNumbers of the groups to exclude
+	 * @param radius the radius of the shell, in Angstroms
+	 * @param includeWater whether to include water groups
+	 * @param useAverageDistance if true, the distance of a group is the mean of the distances
+	 * of its atoms within the shell, otherwise the minimum
+	 * @return the groups within the shell, with their distances in Angstroms
+	 * @see StructureTools#getGroupDistancesWithinShell(Structure, Atom, Set, double, boolean, boolean)
+	 */
+	public Map<Group, Double> getGroupDistancesWithinShell(Atom centroid, Set<ResidueNumber> excludeResidues,
+			double radius, boolean includeWater, boolean useAverageDistance) {
+		Hits hits = new Hits();
+		findAtoms(centroid, radius, hits);
+
+		Map<Group, Double> distances = new HashMap<>();
+		int i = 0;
+		while (i < hits.size) {
+			// the hits are sorted by atom, thus the atoms of a group are consecutive
+			int groupIndex = atomGroups[hits.atoms[i]];
+			int end = i;
+			while (end < hits.size && atomGroups[hits.atoms[end]] == groupIndex) {
+				end++;
+			}
+			Group group = groups[groupIndex];
+			if (accept(group, excludeResidues, includeWater)) {
+				double distance;
+				if (useAverageDistance) {
+					double sum = 0;
+					for (int k = i; k < end; k++) {
+						sum += Math.sqrt(hits.distSq[k]);
+					}
+					distance = sum / (end - i);
+				} else {
+					double min = Double.POSITIVE_INFINITY;
+					for (int k = i; k < end; k++) {
+						min = Math.min(min, hits.distSq[k]);
+					}
+					distance = Math.sqrt(min);
+				}
+				distances.put(group, distance);
+			}
+			i = end;
+		}
+		return distances;
+	}
+
+	/**
+	 * Finds all ligand groups of the structure (neither water nor polymeric)
+	 * which fall within the cutoff distance of some atom from the query set.
+	 * @param query the query atoms
+	 * @param cutoff distance from query atoms to consider, in Angstroms
+	 * @return all ligand groups with at least one atom within cutoff of a query atom,
+	 * in the order of the structure
+	 * @see StructureTools#getLigandsByProximity(java.util.Collection, Atom[], double)
+	 */
+	public List<Group> getLigandsByProximity(Atom[] query, double cutoff) {
+		Set<Integer> found = new HashSet<>();
+		for (Atom atom : query) {
+			index.forEachNeighbor(atom.getX(), atom.getY(), atom.getZ(), cutoff,
+					(i, distance) -> found.add(atomGroups[i]));
+		}
+		int[] groupIndices = new int[found.size()];
+		int k = 0;
+		for (int groupIndex : found) {
+			groupIndices[k++] = groupIndex;
+		}
+		Arrays.sort(groupIndices);
+
+		List<Group> ligands = new ArrayList<>();
+		for (int groupIndex : groupIndices) {
+			Group group = groups[groupIndex];
+			if (group.isWater() || group.isPolymeric()) {
+				continue;
+			}
+			ligands.add(group);
+		}
+		return ligands;
+	}
+
+	private Set<Group> getGroupsWithinShell(Group group, double distance, boolean includeWater, Hits hits) {
+		Set<ResidueNumber> excludeGroups = new HashSet<>();
+		excludeGroups.add(group.getResidueNumber());
+
+		Set<Group> groupsWithin = new LinkedHashSet<>();
+		for (Atom atom : group.getAtoms()) {
+			addGroupsWithinShell(atom, excludeGroups, distance, includeWater, hits, groupsWithin);
+		}
+		return groupsWithin;
+	}
+
+	private void addGroupsWithinShell(Atom atom, Set<ResidueNumber> excludeResidues, double distance,
+			boolean includeWater, Hits hits, Set<Group> groupsWithin) {
+		findAtoms(atom, distance, hits);
+		int previous = -1;
+		for (int k = 0; k < hits.size; k++) {
+			int groupIndex = atomGroups[hits.atoms[k]];
+			if (groupIndex == previous) {
+				continue;
+			}
+			previous = groupIndex;
+			Group group = groups[groupIndex];
+			if (accept(group, excludeResidues, includeWater)) {
+				groupsWithin.add(group);
+			}
+		}
+	}
+
+	private static boolean accept(Group group, Set<ResidueNumber> excludeResidues, boolean includeWater) {
+		if (!includeWater && group.isWater()) {
+			return false;
+		}
+		for (ResidueNumber rn : excludeResidues) {
+			if (rn.equals(group.getResidueNumber())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the atoms with a squared distance to the query atom of at most the squared radius,
+	 * as {@link Calc#getDistanceFast(Atom, Atom)}, sorted by atom index.
+	 */
+	private void findAtoms(Atom query, double radius, Hits hits) {
+		double x = query.getX();
+		double y = query.getY();
+		double z = query.getZ();
+		double radiusSq = radius * radius;
+		hits.size = 0;
+		index.forEachNeighbor(x, y, z, Math.nextUp(radius * RADIUS_SLACK), (i, distance) -> {
+			double dx = x - coords[3 * i];
+			double dy = y - coords[3 * i + 1];
+			double dz = z - coords[3 * i + 2];
+			double distSq = dx * dx + dy * dy + dz * dz;
+			if (distSq <= radiusSq) {
+				hits.add(i, distSq);
+			}
+		});
+		hits.sort();
+	}
+
+	/**
+	 * A reusable buffer of atoms found by a search, with their squared distances.
+	 */
+	private static class Hits {
+		int[] atoms = new int[64];
+		double[] distSq = new double[64];
+		int size;
+
+		void add(int atom, double d) {
+			if (size == atoms.length) {
+				atoms = Arrays.copyOf(atoms, 2 * size);
+				distSq = Arrays.copyOf(distSq, 2 * size);
+			}
+			atoms[size] = atom;
+			distSq[size] = d;
+			size++;
+		}
+
+		/** Sorts by atom index, with an insertion sort as the hits are few */
+		void sort() {
+			for (int i = 1; i < size; i++) {
+				int atom = atoms[i];
+				double d = distSq[i];
+				int j = i - 1;
+				while (j >= 0 && atoms[j] > atom) {
+					atoms[j + 1] = atoms[j];
+					distSq[j + 1] = distSq[j];
+					j--;
+				}
+				atoms[j + 1] = atom;
+				distSq[j + 1] = d;
+			}
+		}
+	}
+}
@@ -0,0 +1,326 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.ensemble;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.biojava.nbio.core.util.ConcurrencyTools;
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Element;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.asa.AsaCalculator;
+import org.biojava.nbio.structure.contact.SpatialIndex;
+import org.biojava.nbio.structure.geometry.CalcCoords;
+import org.biojava.nbio.structure.geometry.SuperPositionBatch;
+import org.biojava.nbio.structure.geometry.SuperPositionQCP;
+import org.biojava.nbio.structure.secstruc.SecStrucCalc;
+
+/**
+ * Frame-streaming calculations on a {@link StructureEnsemble}. Every method
+ * reads one frame at a time into a reused coordinate buffer, so that the
+ * memory needed does not depend on the number of frames (apart from the
+ * per-frame results).
+ * <p>
+ * Most methods take the indices of the atoms to consider, in the order of
+ * {@link StructureEnsemble#getAtoms()}, see
+ * {@link #getAtomIndices(StructureEnsemble, String...)}. A null array of
+ * indices means all atoms.
+ *
+ * @since 6.0.6
+ */
+public class EnsembleCalc {
+
+	private EnsembleCalc() {
+		// static helpers only
+	}
+
+	/**
+	 * Returns the indices of the atoms of the topology with the given names,
+	 * e.g. "CA" for the alpha carbons.
+	 *
+	 * @param ensemble the ensemble
+	 * @param atomNames the atom names
+	 * @return the indices, in increasing order
+	 */
+	public static int[] getAtomIndices(StructureEnsemble ensemble, String... atomNames) {
+		Set<String> names = new HashSet<>(Arrays.asList(atomNames));
+		Atom[] atoms = ensemble.getAtoms();
+		List<Integer> indices = new ArrayList<>();
+		for (int i = 0; i < atoms.length; i++) {
+			if (names.contains(atoms[i].getName()))
+				indices.add(i);
+		}
+		return toArray(indices);
+	}
+
+	/**
+	 * Calculates the RMSD of every frame to a reference frame, after optimal
+	 * superposition.
+	 *
+	 * @param ensemble the ensemble
+	 * @param reference the index of the reference frame
+	 * @param atomIndices the atoms to superpose, or null for all
+	 * @return the RMSD of every frame
+	 */
+	public static double[] getRmsds(StructureEnsemble ensemble, int reference, int[] atomIndices) {
+		double[] frame = new double[3 * ensemble.getAtomCount()];
+		double[] fixed = select(ensemble.getFrame(reference, frame), atomIndices, null);
+		double[] moved = new double[fixed.length];
+
+		SuperPositionQCP qcp = new SuperPositionQCP(false);
+		double[] rmsds = new double[ensemble.getFrameCount()];
+		for (int f = 0; f < rmsds.length; f++) {
+			select(ensemble.getFrame(f, frame), atomIndices, moved);
+			rmsds[f] = qcp.getRmsd(fixed, moved);
+		}
+		return rmsds;
+	}
+
+	/**
+	 * Calculates the RMSD of all pairs of frames, after optimal
+	 * superposition. The coordinates of the selected atoms of all frames are
+	 * held in memory, so the selection should be small, e.g. the alpha
+	 * carbons.
+	 *
+	 * @param ensemble the ensemble
+	 * @param atomIndices the atoms to superpose, or null for all
+	 * @param nThreads the number of threads
+	 * @return the condensed RMSD matrix, see
+	 * 		{@link SuperPositionBatch#condensedIndex(int, int, int)}
+	 */
+	public static double[] getRmsdMatrix(StructureEnsemble ensemble, int[] atomIndices, int nThreads) {
+		double[] frame = new double[3 * ensemble.getAtomCount()];
+		double[][] coords = new double[ensemble.getFrameCount()][];
+		for (int f = 0; f < coords.length; f++) {
+			coords[f] = select(ensemble.getFrame(f, frame), atomIndices, null);
+		}
+		return SuperPositionBatch.getRmsdMatrix(coords, null, nThreads);
+	}
+
+	/**
+	 * Calculates the root mean square fluctuation (RMSF) of every atom, after
+	 * superposition of every frame on a reference frame.
+	 *
+	 * @param ensemble the ensemble
+	 * @param reference the index of the reference frame
+	 * @param atomIndices the atoms to superpose, or null for all
+	 * @return the RMSF of every selected atom
+	 */
+	public static double[] getRmsf(StructureEnsemble ensemble, int reference, int[] atomIndices) {
+		double[] frame = new double[3 * ensemble.getAtomCount()];
+		double[] fixed = select(ensemble.getFrame(reference, frame), atomIndices, null);
+		double[] moved = new double[fixed.length];
+		int n = fixed.length / 3;
+		int nFrames = ensemble.getFrameCount();
+
+		// sums of the deviations from the reference, which avoid the
+		// cancellation of the sums of the coordinates themselves
+		double[] sum = new double[fixed.length];
+		double[] sumSq = new double[n];
+
+		SuperPositionQCP qcp = new SuperPositionQCP(false);
+		for (int f = 0; f < nFrames; f++) {
+			select(ensemble.getFrame(f, frame), atomIndices, moved);
+			CalcCoords.transform(qcp.superpose(fixed, moved), moved);
+			for (int i = 0; i < n; i++) {
+				double dx = moved[3 * i] - fixed[3 * i];
+				double dy = moved[3 * i + 1] - fixed[3 * i + 1];
+				double dz = moved[3 * i + 2] - fixed[3 * i + 2];
+				sum[3 * i] += dx;
+				sum[3 * i + 1] += dy;
+				sum[3 * i + 2] += dz;
+				sumSq[i] += dx * dx + dy * dy + dz * dz;
+			}
+		}
+
+		double[] rmsf = new double[n];
+		if (nFrames == 0)
+			return rmsf;
+		for (int i = 0; i < n; i++) {
+			double mx = sum[3 * i] / nFrames;
+			double my = sum[3 * i + 1] / nFrames;
+			double mz = sum[3 * i + 2] / nFrames;
+			rmsf[i] = Math.sqrt(Math.max(0, sumSq[i] / nFrames - (mx * mx + my * my + mz * mz)));
+		}
+		return rmsf;
+	}
+
+	/**
+	 * Calculates the centroid of every frame.
+	 *
+	 * @param ensemble the ensemble
+	 * @param atomIndices the atoms, or null for all
+	 * @return the x,y,z coordinates of the centroid of every frame
+	 */
+	public static double[] getCentroids(StructureEnsemble ensemble, int[] atomIndices) {
+		double[] frame = new double[3 * ensemble.getAtomCount()];
+		double[] coords = null;
+		double[] centroids = new double[3 * ensemble.getFrameCount()];
+		for (int f = 0; f < ensemble.getFrameCount(); f++) {
+			coords = select(ensemble.getFrame(f, frame), atomIndices, coords);
+			if (coords.length > 0)
+				System.arraycopy(CalcCoords.centroid(coords), 0, centroids, 3 * f, 3);
+		}
+		return centroids;
+	}
+
+	/**
+	 * Calculates the radius of gyration of every frame: the root mean square
+	 * distance of the atoms to their centroid, without mass weighting.
+	 *
+	 * @param ensemble the ensemble
+	 * @param atomIndices the atoms, or null for all
+	 * @return the radius of gyration of every frame
+	 */
+	public static double[] getRadiiOfGyration(StructureEnsemble ensemble, int[] atomIndices) {
+		double[] frame = new double[3 * ensemble.getAtomCount()];
+		double[] coords = null;
+		double[] radii = new double[ensemble.getFrameCount()];
+		for (int f = 0; f < radii.length; f++) {
+			coords = select(ensemble.getFrame(f, frame), atomIndices, coords);
+			if (coords.length > 0)
+				radii[f] = CalcCoords.radiusOfGyration(coords);
+		}
+		return radii;
+	}
+
+	/**
+	 * Calculates the fraction of frames in which every pair of atoms is
+	 * within the cutoff distance, with a {@link SpatialIndex} per frame.
+	 *
+	 * @param ensemble the ensemble
+	 * @param atomIndices the atoms, or null for all
+	 * @param cutoff the contact distance cutoff
+	 * @return the condensed matrix of the contact frequencies of all pairs of
+	 * 		selected atoms, see
+	 * 		{@link SuperPositionBatch#condensedIndex(int, int, int)}
+	 * @throws IllegalArgumentException if there are too many atoms for a
+	 * 		condensed matrix, see {@link SuperPositionBatch#condensedSize(int)}:
+	 * 		select a subset of the atoms
+	 */
+	public static double[] getContactFrequencies(StructureEnsemble ensemble, int[] atomIndices, double cutoff) {
+		double[] frame = new double[3 * ensemble.getAtomCount()];
+		double[] coords = null;
+		int nFrames = ensemble.getFrameCount();
+		int n = atomIndices == null ? ensemble.getAtomCount() : atomIndices.length;
+		int[] counts = new int[SuperPositionBatch.condensedSize(n)];
+		for (int f = 0; f < nFrames; f++) {
+			coords = select(ensemble.getFrame(f, frame), atomIndices, coords);
+			new SpatialIndex(coords, cutoff).forEachContact(cutoff,
+					(i, j, distance) -> counts[SuperPositionBatch.condensedIndex(n, i, j)]++);
+		}
+		double[] frequencies = new double[counts.length];
+		if (nFrames == 0)
+			return frequencies;
+		for (int k = 0; k < counts.length; k++) {
+			frequencies[k] = (double) counts[k] / nFrames;
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Calculates the secondary structure of every frame, applying the frames
+	 * one by one to the topology.
+	 *
+	 * @param ensemble the ensemble
+	 * @param calc the secondary structure calculator
+	 * @return for every frame, the SS type of every residue of
+	 * 		{@link SecStrucCalc#getBackboneGroups(Structure, int)}
+	 * @throws StructureException if the topology has less than 5 residues
+	 * @see SecStrucCalc#calculateTypes(Structure, int)
+	 */
+	public static char[][] getSecStrucTypes(StructureEnsemble ensemble, SecStrucCalc calc) throws StructureException {
+		char[][] types = new char[ensemble.getFrameCount()][];
+		for (int f = 0; f < types.length; f++) {
+			ensemble.applyFrame(f);
+			types[f] = calc.calculateTypes(ensemble.getTopology(), 0);
+		}
+		return types;
+	}
+
+	/**
+	 * Calculates the accessible surface areas of the atoms of every frame,
+	 * applying the frames one by one to the topology. Hydrogen atoms are
+	 * always excluded.
+	 *
+	 * @param ensemble the ensemble
+	 * @param atomIndices the atoms, or null for all
+	 * @param probe the probe size
+	 * @param nSpherePoints the number of points of the dot-density spheres
+	 * @param nThreads the number of threads used for each frame
+	 * @return for every frame, the ASAs of the selected non-hydrogen atoms
+	 * @see AsaCalculator
+	 */
+	public static float[][] getAsas(StructureEnsemble ensemble, int[] atomIndices, double probe, int nSpherePoints,
+			int nThreads) {
+		Atom[] all = ensemble.getAtoms();
+		List<Atom> selected = new ArrayList<>();
+		for (int k = 0; k < (atomIndices == null ? all.length : atomIndices.length); k++) {
+			Atom atom = all[atomIndices == null ? k : atomIndices[k]];
+			if (atom.getElement() != Element.H && atom.getElement() != Element.D)
+				selected.add(atom);
+		}
+		Atom[] atoms = selected.toArray(new Atom[0]);
+
+		float[][] asas = new float[ensemble.getFrameCount()][];
+		ForkJoinPool pool = nThreads > 1 ? ConcurrencyTools.getForkJoinPool(nThreads) : null;
+		for (int f = 0; f < asas.length; f++) {
+			ensemble.applyFrame(f);
+			double[] frameAsas = new AsaCalculator(atoms, probe, nSpherePoints, 1).calculateAsas(pool);
+			asas[f] = new float[frameAsas.length];
+			for (int i = 0; i < frameAsas.length; i++) {
+				asas[f][i] = (float) frameAsas[i];
+			}
+		}
+		return asas;
+	}
+
+	/**
+	 * Copies the coordinates of the selected atoms.
+	 */
+	private static double[] select(double[] coords, int[] atomIndices, double[] out) {
+		int n = atomIndices == null ? coords.length / 3 : atomIndices.length;
+		if (out == null)
+			out = new double[3 * n];
+		if (atomIndices == null) {
+			System.arraycopy(coords, 0, out, 0, coords.length);
+		} else {
+			for (int k = 0; k < n; k++) {
+				System.arraycopy(coords, 3 * atomIndices[k], out, 3 * k, 3);
+			}
+		}
+		return out;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+}
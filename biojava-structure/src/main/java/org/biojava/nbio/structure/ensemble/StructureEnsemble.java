@@ -0,0 +1,385 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.ensemble;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.StructureTools;
+
+/**
+ * An ensemble of conformations of the same molecule, e.g. the models of an
+ * NMR structure or the frames of a molecular dynamics trajectory.
+ * <p>
+ * The topology (chains, groups, atom names and bonds) is the first model of
+ * a {@link Structure}, shared by all frames. Each frame only stores the x,y,z
+ * coordinates of all atoms of the topology, in the order of
+ * {@link StructureTools#getAllAtomArray(Structure, int)}, as a contiguous
+ * float array. Frames are kept in memory, or memory-mapped from a file
+ * written by {@link #writeFrames(Path)}, so that ensembles of many thousands
+ * of frames can be analysed without a copy of the object hierarchy per frame.
+ * <p>
+ * The frames can be streamed with {@link #forEachFrame(FrameVisitor)}, and
+ * the calculations that need the object hierarchy can be run on the topology
+ * after {@link #applyFrame(int)}. See {@link EnsembleCalc} for the
+ * frame-streaming variants of the geometry calculations.
+ * <p>
+ * Adding frames and applying them to the topology is not thread-safe.
+ *
+ * @since 6.0.6
+ */
+public class StructureEnsemble {
+
+	/** Magic number of the frames file format, "BJEF" */
+	private static final int MAGIC = 0x424A4546;
+	private static final int VERSION = 1;
+	/** Header of the frames file: magic, version, number of atoms and of frames */
+	private static final int HEADER_BYTES = 16;
+
+	/**
+	 * Receives the frames of an ensemble, see
+	 * {@link StructureEnsemble#forEachFrame(FrameVisitor)}.
+	 */
+	public interface FrameVisitor {
+		/**
+		 * @param frame the index of the frame
+		 * @param coords the x,y,z coordinates of all atoms of the frame.
+		 * 		The array is reused for the next frame.
+		 */
+		void visit(int frame, double[] coords);
+	}
+
+	private final Structure topology;
+	private final Atom[] atoms;
+
+	// Frames in memory, or null if memory-mapped
+	private final List<float[]> frames;
+	// Memory-mapped frames: chunks of whole frames, each mapped separately
+	private final FloatBuffer[] chunks;
+	private final int framesPerChunk;
+	private final int mappedFrames;
+
+	/**
+	 * Creates an ensemble without frames, with the first model of the given
+	 * structure as topology.
+	 *
+	 * @param topology the structure defining the atoms of the frames
+	 */
+	public StructureEnsemble(Structure topology) {
+		this.topology = topology;
+		this.atoms = StructureTools.getAllAtomArray(topology, 0);
+		this.frames = new ArrayList<>();
+		this.chunks = null;
+		this.framesPerChunk = 0;
+		this.mappedFrames = 0;
+	}
+
+	private StructureEnsemble(Structure topology, FloatBuffer[] chunks, int framesPerChunk, int mappedFrames) {
+		this.topology = topology;
+		this.atoms = StructureTools.getAllAtomArray(topology, 0);
+		this.frames = null;
+		this.chunks = chunks;
+		this.framesPerChunk = framesPerChunk;
+		this.mappedFrames = mappedFrames;
+	}
+
+	/**
+	 * Creates an ensemble with one frame per model of the given structure.
+	 * All models must have the same atoms, in the same order.
+	 *
+	 * @param s the multi-model structure
+	 * @param removeModels if true, all models but the first are removed from
+	 * 		the structure once their coordinates are extracted, so that their
+	 * 		object hierarchy can be garbage collected
+	 * @return the ensemble, with s as topology
+	 * @throws StructureException if the atoms of a model differ from the
+	 * 		atoms of the first model
+	 */
+	public static StructureEnsemble fromModels(Structure s, boolean removeModels) throws StructureException {
+		StructureEnsemble ensemble = new StructureEnsemble(s);
+		for (int m = 0; m < s.nrModels(); m++) {
+			Atom[] modelAtoms = StructureTools.getAllAtomArray(s, m);
+			if (modelAtoms.length != ensemble.atoms.length) {
+				throw new StructureException("Model " + (m + 1) + " has " + modelAtoms.length
+						+ " atoms, but the first model has " + ensemble.atoms.length);
+			}
+			for (int i = 0; i < modelAtoms.length; i++) {
+				if (!modelAtoms[i].getName().equals(ensemble.atoms[i].getName())) {
+					throw new StructureException("Atom " + (i + 1) + " of model " + (m + 1) + " is "
+							+ modelAtoms[i].getName() + ", but " + ensemble.atoms[i].getName()
+							+ " in the first model");
+				}
+			}
+			ensemble.addFrame(modelAtoms);
+		}
+		if (removeModels && s.nrModels() > 1) {
+			List<Chain> first = s.getModel(0);
+			s.resetModels();
+			s.addModel(first);
+		}
+		return ensemble;
+	}
+
+	/**
+	 * Memory-maps the frames of a file written by {@link #writeFrames(Path)}.
+	 * The frames are read by the operating system on demand, and the
+	 * ensemble is read-only.
+	 *
+	 * @param topology the structure defining the atoms of the frames
+	 * @param file the frames file
+	 * @return the ensemble
+	 * @throws IOException if the file can't be read or doesn't match the
+	 * 		topology
+	 */
+	public static StructureEnsemble map(Structure topology, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0)
+					throw new IOException("Truncated header in frames file " + file);
+			}
+			header.flip();
+			if (header.getInt() != MAGIC)
+				throw new IOException("Not an ensemble frames file: " + file);
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported version " + version + " of frames file " + file);
+			int nAtoms = header.getInt();
+			int nFrames = header.getInt();
+
+			int expected = StructureTools.getAllAtomArray(topology, 0).length;
+			if (nAtoms != expected)
+				throw new IOException("Frames file " + file + " has " + nAtoms + " atoms, but the topology has " + expected);
+
+			long frameBytes = 12L * nAtoms;
+			if (HEADER_BYTES + frameBytes * nFrames > channel.size())
+				throw new IOException("Truncated frames file " + file);
+
+			// a mapped buffer is limited to 2GB, map chunks of whole frames
+			int framesPerChunk = (int) Math.max(1, Math.min(nFrames, Integer.MAX_VALUE / Math.max(1, frameBytes)));
+			int nChunks = nFrames == 0 ? 0 : (nFrames + framesPerChunk - 1) / framesPerChunk;
+			FloatBuffer[] chunks = new FloatBuffer[nChunks];
+			for (int c = 0; c < nChunks; c++) {
+				int chunkFrames = Math.min(framesPerChunk, nFrames - c * framesPerChunk);
+				chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_BYTES + c * framesPerChunk * frameBytes, chunkFrames * frameBytes)
+						.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+			}
+			return new StructureEnsemble(topology, chunks, framesPerChunk, nFrames);
+		}
+	}
+
+	/**
+	 * Writes the frames to a file, as little-endian floats after a short
+	 * header, to be memory-mapped by {@link #map(Structure, Path)}.
+	 *
+	 * @param file the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void writeFrames(Path file) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+			ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER_BYTES, 12 * atoms.length)).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(atoms.length).putInt(getFrameCount());
+			out.write(buffer.array(), 0, HEADER_BYTES);
+
+			float[] frame = new float[3 * atoms.length];
+			for (int f = 0; f < getFrameCount(); f++) {
+				getFrame(f, frame);
+				buffer.clear();
+				buffer.asFloatBuffer().put(frame);
+				out.write(buffer.array(), 0, 4 * frame.length);
+			}
+		}
+	}
+
+	/**
+	 * @return the structure whose first model defines the atoms of the frames
+	 */
+	public Structure getTopology() {
+		return topology;
+	}
+
+	/**
+	 * @return the atoms of the topology, in the order of the frame
+	 * 		coordinates. Their coordinates are the ones of the last frame
+	 * 		applied with {@link #applyFrame(int)}.
+	 */
+	public Atom[] getAtoms() {
+		return atoms;
+	}
+
+	/**
+	 * @return the number of atoms of every frame
+	 */
+	public int getAtomCount() {
+		return atoms.length;
+	}
+
+	/**
+	 * @return the number of frames
+	 */
+	public int getFrameCount() {
+		return frames != null ? frames.size() : mappedFrames;
+	}
+
+	/**
+	 * @return true if the frames are memory-mapped from a file
+	 */
+	public boolean isMapped() {
+		return frames == null;
+	}
+
+	/**
+	 * Adds a frame. The array is stored, not copied.
+	 *
+	 * @param coords the x,y,z coordinates of all atoms
+	 * @throws UnsupportedOperationException if the ensemble is memory-mapped
+	 */
+	public void addFrame(float[] coords) {
+		if (frames == null)
+			throw new UnsupportedOperationException("Can't add frames to a memory-mapped ensemble");
+		if (coords.length != 3 * atoms.length)
+			throw new IllegalArgumentException("Frame has " + coords.length + " coordinates, expected " + 3 * atoms.length);
+		frames.add(coords);
+	}
+
+	/**
+	 * Adds a frame with the current coordinates of the given atoms, which
+	 * must correspond one to one to the atoms of the topology.
+	 *
+	 * @param frameAtoms the atoms
+	 * @throws UnsupportedOperationException if the ensemble is memory-mapped
+	 */
+	public void addFrame(Atom[] frameAtoms) {
+		float[] coords = new float[3 * frameAtoms.length];
+		for (int i = 0; i < frameAtoms.length; i++) {
+			coords[3 * i] = (float) frameAtoms[i].getX();
+			coords[3 * i + 1] = (float) frameAtoms[i].getY();
+			coords[3 * i + 2] = (float) frameAtoms[i].getZ();
+		}
+		addFrame(coords);
+	}
+
+	/**
+	 * Copies the coordinates of a frame.
+	 *
+	 * @param frame the index of the frame
+	 * @param out the array to fill, of length 3 times the number of atoms,
+	 * 		or null to create one
+	 * @return the coordinates
+	 */
+	public float[] getFrame(int frame, float[] out) {
+		if (out == null)
+			out = new float[3 * atoms.length];
+		if (frames != null) {
+			System.arraycopy(frames.get(frame), 0, out, 0, 3 * atoms.length);
+		} else {
+			if (frame < 0 || frame >= mappedFrames)
+				throw new IndexOutOfBoundsException("Frame " + frame + " of " + mappedFrames);
+			// a duplicate has its own position, so that frames can be read concurrently
+			FloatBuffer chunk = chunks[frame / framesPerChunk].duplicate();
+			chunk.position((frame % framesPerChunk) * 3 * atoms.length);
+			chunk.get(out, 0, 3 * atoms.length);
+		}
+		return out;
+	}
+
+	/**
+	 * Copies the coordinates of a frame as doubles, as needed by the packed
+	 * coordinate calculations, e.g. of
+	 * {@link org.biojava.nbio.structure.contact.SpatialIndex} or
+	 * {@link org.biojava.nbio.structure.geometry.SuperPositionQCP}.
+	 *
+	 * @param frame the index of the frame
+	 * @param out the array to fill, of length 3 times the number of atoms,
+	 * 		or null to create one
+	 * @return the coordinates
+	 */
+	public double[] getFrame(int frame, double[] out) {
+		if (out == null)
+			out = new double[3 * atoms.length];
+		if (frames != null) {
+			float[] coords = frames.get(frame);
+			for (int k = 0; k < coords.length; k++) {
+				out[k] = coords[k];
+			}
+		} else {
+			if (frame < 0 || frame >= mappedFrames)
+				throw new IndexOutOfBoundsException("Frame " + frame + " of " + mappedFrames);
+			FloatBuffer chunk = chunks[frame / framesPerChunk];
+			int offset = (frame % framesPerChunk) * 3 * atoms.length;
+			for (int k = 0; k < 3 * atoms.length; k++) {
+				out[k] = chunk.get(offset + k);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Sets the coordinates of the atoms of the topology to the ones of a
+	 * frame, so that calculations on the object hierarchy (e.g.
+	 * {@link org.biojava.nbio.structure.secstruc.SecStrucCalc}) see that
+	 * frame.
+	 *
+	 * @param frame the index of the frame
+	 */
+	public void applyFrame(int frame) {
+		float[] coords = frames != null ? frames.get(frame) : getFrame(frame, (float[]) null);
+		for (int i = 0; i < atoms.length; i++) {
+			atoms[i].setX(coords[3 * i]);
+			atoms[i].setY(coords[3 * i + 1]);
+			atoms[i].setZ(coords[3 * i + 2]);
+		}
+	}
+
+	/**
+	 * Calls the visitor for every frame in order, with a single coordinate
+	 * buffer reused for all frames.
+	 *
+	 * @param visitor receives the frames
+	 */
+	public void forEachFrame(FrameVisitor visitor) {
+		double[] coords = new double[3 * atoms.length];
+		for (int f = 0; f < getFrameCount(); f++) {
+			visitor.visit(f, getFrame(f, coords));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "StructureEnsemble [" + getFrameCount() + " frames of " + atoms.length + " atoms"
+				+ (isMapped() ? ", memory-mapped" : "") + "]";
+	}
+}
@@ -0,0 +1,304 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.geometry;
+
+import javax.vecmath.Matrix4d;
+
+import org.biojava.nbio.structure.Atom;
+
+/**
+ * Utility operations on packed coordinates: a single array with the x,y,z
+ * coordinates of n points, of length 3n. This is the counterpart of
+ * {@link CalcPoint} for coordinates extracted once from an array of Atoms with
+ * {@link #toCoords(Atom[])}, so that repeated transformations and scores do
+ * not allocate an object per point.
+ * <p>
+ * The kernels are plain loops over the arrays, which the JIT compiler can
+ * unroll and vectorize. The transformations, RMSD and TM-score do the
+ * arithmetic in the same order as the equivalent methods on Atoms and
+ * Point3d, so their results are identical. The centroid divides by the number
+ * of points, as {@link org.biojava.nbio.structure.Calc#getCentroid(Atom[])}
+ * does, and may differ in the last bits from {@link CalcPoint#centroid},
+ * which multiplies by its inverse.
+ *
+ * @since 6.0.6
+ */
+public class CalcCoords {
+
+	/** Prevent instantiation */
+	private CalcCoords() {
+	}
+
+	/**
+	 * Extract the coordinates of an array of atoms.
+	 *
+	 * @param atoms
+	 *            array of atoms
+	 * @return the packed coordinates
+	 */
+	public static double[] toCoords(Atom[] atoms) {
+		return toCoords(atoms, new double[3 * atoms.length]);
+	}
+
+	/**
+	 * Extract the coordinates of an array of atoms into the given array.
+	 *
+	 * @param atoms
+	 *            array of atoms
+	 * @param coords
+	 *            array of length at least 3 times the number of atoms
+	 * @return coords
+	 */
+	public static double[] toCoords(Atom[] atoms, double[] coords) {
+		for (int i = 0; i < atoms.length; i++) {
+			coords[3 * i] = atoms[i].getX();
+			coords[3 * i + 1] = atoms[i].getY();
+			coords[3 * i + 2] = atoms[i].getZ();
+		}
+		return coords;
+	}
+
+	/**
+	 * Set the coordinates of an array of atoms.
+	 *
+	 * @param coords
+	 *            the packed coordinates
+	 * @param atoms
+	 *            array of atoms. Atom objects will be modified
+	 */
+	public static void setCoords(double[] coords, Atom[] atoms) {
+		for (int i = 0; i < atoms.length; i++) {
+			atoms[i].setX(coords[3 * i]);
+			atoms[i].setY(coords[3 * i + 1]);
+			atoms[i].setZ(coords[3 * i + 2]);
+		}
+	}
+
+	/**
+	 * Transform all points with a 4x4 transformation matrix, as
+	 * {@link Matrix4d#transform(javax.vecmath.Point3d)} does.
+	 *
+	 * @param rotTrans
+	 *            4x4 transformation matrix
+	 * @param x
+	 *            the packed coordinates, will be modified
+	 */
+	public static void transform(Matrix4d rotTrans, double[] x) {
+		double m00 = rotTrans.m00, m01 = rotTrans.m01, m02 = rotTrans.m02, m03 = rotTrans.m03;
+		double m10 = rotTrans.m10, m11 = rotTrans.m11, m12 = rotTrans.m12, m13 = rotTrans.m13;
+		double m20 = rotTrans.m20, m21 = rotTrans.m21, m22 = rotTrans.m22, m23 = rotTrans.m23;
+		for (int i = 0; i < x.length; i += 3) {
+			double px = x[i];
+			double py = x[i + 1];
+			double pz = x[i + 2];
+			x[i] = m00 * px + m01 * py + m02 * pz + m03;
+			x[i + 1] = m10 * px + m11 * py + m12 * pz + m13;
+			x[i + 2] = m20 * px + m21 * py + m22 * pz + m23;
+		}
+	}
+
+	/**
+	 * Translate all points.
+	 *
+	 * @param tx
+	 *            translation along x
+	 * @param ty
+	 *            translation along y
+	 * @param tz
+	 *            translation along z
+	 * @param x
+	 *            the packed coordinates, will be modified
+	 */
+	public static void translate(double tx, double ty, double tz, double[] x) {
+		for (int i = 0; i < x.length; i += 3) {
+			x[i] += tx;
+			x[i + 1] += ty;
+			x[i + 2] += tz;
+		}
+	}
+
+	/**
+	 * Calculate the centroid of the points, with the same arithmetic as
+	 * {@link org.biojava.nbio.structure.Calc#getCentroid(Atom[])}.
+	 *
+	 * @param x
+	 *            the packed coordinates, will not be modified
+	 * @return the x,y,z coordinates of the centroid
+	 */
+	public static double[] centroid(double[] x) {
+		int n = x.length / 3;
+		double cx = 0, cy = 0, cz = 0;
+		for (int i = 0; i < x.length; i += 3) {
+			cx += x[i];
+			cy += x[i + 1];
+			cz += x[i + 2];
+		}
+		return new double[] { cx / n, cy / n, cz / n };
+	}
+
+	/**
+	 * Center the points, subtracting their {@link #centroid(double[])}.
+	 *
+	 * @param x
+	 *            the packed coordinates, will be modified
+	 * @return the centroid before centering
+	 */
+	public static double[] center(double[] x) {
+		double[] centroid = centroid(x);
+		translate(-centroid[0], -centroid[1], -centroid[2], x);
+		return centroid;
+	}
+
+	/**
+	 * Calculate the RMSD of two sets of points, already superposed.
+	 *
+	 * @param x
+	 *            packed coordinates superposed to y
+	 * @param y
+	 *            packed coordinates superposed to x
+	 * @return RMSD
+	 */
+	public static double rmsd(double[] x, double[] y) {
+		checkLengths(x, y);
+		double sum = 0.0;
+		for (int i = 0; i < x.length; i += 3) {
+			double dx = x[i] - y[i];
+			double dy = x[i + 1] - y[i + 1];
+			double dz = x[i + 2] - y[i + 2];
+			sum += dx * dx + dy * dy + dz * dz;
+		}
+		return Math.sqrt(sum / (x.length / 3));
+	}
+
+	/**
+	 * Calculate the TM-Score of two sets of points, already superposed, as
+	 * {@link org.biojava.nbio.structure.Calc#getTMScore(Atom[], Atom[], int, int, boolean)}
+	 * does for Atoms.
+	 *
+	 * @param x
+	 *            packed coordinates superposed to y
+	 * @param y
+	 *            packed coordinates superposed to x
+	 * @param len1
+	 *            The full length of the protein supplying x
+	 * @param len2
+	 *            The full length of the protein supplying y
+	 * @param normalizeMin
+	 *            Whether to normalize by the minimum or the maximum length
+	 * @return The TM-Score
+	 */
+	public static double getTMScore(double[] x, double[] y, int len1, int len2, boolean normalizeMin) {
+		checkLengths(x, y);
+		int lNorm = normalizeMin ? Math.min(len1, len2) : Math.max(len1, len2);
+
+		double d0 = 1.24 * Math.cbrt(lNorm - 15.) - 1.8;
+		double d0sq = d0 * d0;
+
+		double sum = 0;
+		for (int i = 0; i < x.length; i += 3) {
+			double dx = x[i] - y[i];
+			double dy = x[i + 1] - y[i + 1];
+			double dz = x[i + 2] - y[i + 2];
+			double d = Math.sqrt(dx * dx + dy * dy + dz * dz);
+			sum += 1. / (1 + d * d / d0sq);
+		}
+		return sum / lNorm;
+	}
+
+	/**
+	 * Calculate the radius of gyration of the points: the root mean square
+	 * distance to their centroid, without weights.
+	 *
+	 * @param x
+	 *            the packed coordinates, will not be modified
+	 * @return the radius of gyration
+	 */
+	public static double radiusOfGyration(double[] x) {
+		int n = x.length / 3;
+		double[] c = centroid(x);
+		double sum = 0;
+		for (int i = 0; i < x.length; i += 3) {
+			double dx = x[i] - c[0];
+			double dy = x[i + 1] - c[1];
+			double dz = x[i + 2] - c[2];
+			sum += dx * dx + dy * dy + dz * dz;
+		}
+		return Math.sqrt(sum / n);
+	}
+
+	/**
+	 * Calculate the matrix of the distances of all pairs of points.
+	 *
+	 * @param x
+	 *            the packed coordinates
+	 * @return the symmetric n x n distance matrix
+	 */
+	public static double[][] distanceMatrix(double[] x) {
+		int n = x.length / 3;
+		double[][] dist = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			double xi = x[3 * i], yi = x[3 * i + 1], zi = x[3 * i + 2];
+			double[] row = dist[i];
+			for (int j = i + 1; j < n; j++) {
+				double dx = xi - x[3 * j];
+				double dy = yi - x[3 * j + 1];
+				double dz = zi - x[3 * j + 2];
+				row[j] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+				dist[j][i] = row[j];
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * Calculate the matrix of the distances between the points of two sets.
+	 *
+	 * @param x
+	 *            the packed coordinates of the first set
+	 * @param y
+	 *            the packed coordinates of the second set
+	 * @return the distance matrix, with the distance of point i of x and point
+	 *         j of y at [i][j]
+	 */
+	public static double[][] distanceMatrix(double[] x, double[] y) {
+		int n = x.length / 3;
+		int m = y.length / 3;
+		double[][] dist = new double[n][m];
+		for (int i = 0; i < n; i++) {
+			double xi = x[3 * i], yi = x[3 * i + 1], zi = x[3 * i + 2];
+			double[] row = dist[i];
+			for (int j = 0; j < m; j++) {
+				double dx = xi - y[3 * j];
+				double dy = yi - y[3 * j + 1];
+				double dz = zi - y[3 * j + 2];
+				row[j] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+			}
+		}
+		return dist;
+	}
+
+	private static void checkLengths(double[] x, double[] y) {
+		if (x.length != y.length) {
+			throw new IllegalArgumentException(
+					"Point arrays are not of the same length.");
+		}
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+
+import org.biojava.nbio.core.util.ConcurrencyTools;
+
+/**
+ * Batch superpositions of many point sets with the {@link SuperPositionQCP}
+ * algorithm, for clustering and other workflows that need the RMSDs of all
+ * pairs of a collection of structures.
+ * <p>
+ * Point sets are given as packed x,y,z coordinates, see
+ * {@link #toCoordArray(Point3d[])}, and all sets compared with each other must
+ * have the same number of points. The centroid of every set is calculated
+ * once, and each thread reuses a single {@link SuperPositionQCP} instance as
+ * workspace, so that no coordinates are copied.
+ * <p>
+ * The RMSDs of all pairs of n point sets are returned as a condensed matrix:
+ * the upper triangle without the diagonal, row by row, of length n*(n-1)/2.
+ * Use {@link #condensedIndex(int, int, int)} to look up a pair.
+ *
+ * @since 6.0.6
+ */
+public class SuperPositionBatch {
+
+	/** The minimum number of superpositions run per task by the parallel methods */
+	private static final int PAIRS_PER_TASK = 64;
+
+	private SuperPositionBatch() {
+		// static helpers only
+	}
+
+	/**
+	 * Packs an array of points into a single array of x,y,z coordinates.
+	 *
+	 * @param points
+	 *            the points
+	 * @return the coordinates, 3 per point
+	 */
+	public static double[] toCoordArray(Point3d[] points) {
+		double[] coords = new double[3 * points.length];
+		for (int i = 0; i < points.length; i++) {
+			coords[3 * i] = points[i].x;
+			coords[3 * i + 1] = points[i].y;
+			coords[3 * i + 2] = points[i].z;
+		}
+		return coords;
+	}
+
+	/**
+	 * Returns the length of a condensed matrix of n point sets, n*(n-1)/2.
+	 *
+	 * @param n
+	 *            the number of point sets
+	 * @return the number of pairs of point sets
+	 * @throws IllegalArgumentException
+	 *             if the matrix would be longer than the largest array, i.e.
+	 *             for more than 65536 point sets
+	 */
+	public static int condensedSize(int n) {
+		long size = (long) n * (n - 1) / 2;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The condensed matrix of " + n
+					+ " elements has " + size + " pairs, more than the maximum array length");
+		return (int) Math.max(0, size);
+	}
+
+	/**
+	 * Returns the position of the pair i,j in a condensed matrix of n point
+	 * sets.
+	 *
+	 * @param n
+	 *            the number of point sets
+	 * @param i
+	 *            index of the first point set
+	 * @param j
+	 *            index of the second point set, different from i
+	 * @return the position in the condensed matrix
+	 */
+	public static int condensedIndex(int n, int i, int j) {
+		if (i == j)
+			throw new IllegalArgumentException("The diagonal is not part of a condensed matrix");
+		if (i > j) {
+			int tmp = i;
+			i = j;
+			j = tmp;
+		}
+		return (int) ((long) i * (2 * n - i - 1) / 2) + j - i - 1;
+	}
+
+	/**
+	 * Calculates the RMSDs of the superpositions of many point sets onto a
+	 * reference.
+	 *
+	 * @param fixed
+	 *            packed coordinates of the reference point set
+	 * @param moved
+	 *            packed coordinates of the point sets to superpose
+	 * @param weight
+	 *            array of weigths for each equivalent point position, null
+	 *            for no weighting
+	 * @return the RMSD of every moved point set
+	 */
+	public static double[] getRmsds(double[] fixed, double[][] moved, double[] weight) {
+		SuperPositionQCP qcp = new SuperPositionQCP(false);
+		double[] fixedTrans = SuperPositionQCP.negatedCentroid(fixed, new double[3]);
+		double[] movedTrans = new double[3];
+		double[] rmsds = new double[moved.length];
+		for (int i = 0; i < moved.length; i++) {
+			SuperPositionQCP.negatedCentroid(moved[i], movedTrans);
+			rmsds[i] = qcp.calcRmsd(moved[i], movedTrans, fixed, fixedTrans, weight);
+		}
+		return rmsds;
+	}
+
+	/**
+	 * Superposes many point sets onto a reference.
+	 *
+	 * @param fixed
+	 *            packed coordinates of the reference point set
+	 * @param moved
+	 *            packed coordinates of the point sets to superpose
+	 * @param weight
+	 *            array of weigths for each equivalent point position, null
+	 *            for no weighting
+	 * @param rmsds
+	 *            array to receive the RMSD of every moved point set, can be
+	 *            null
+	 * @return the transformation matrix to superpose every moved point set
+	 *         onto fixed
+	 */
+	public static Matrix4d[] superpose(double[] fixed, double[][] moved, double[] weight, double[] rmsds) {
+		SuperPositionQCP qcp = new SuperPositionQCP(false);
+		double[] fixedTrans = SuperPositionQCP.negatedCentroid(fixed, new double[3]);
+		double[] movedTrans = new double[3];
+		Matrix4d[] transformations = new Matrix4d[moved.length];
+		for (int i = 0; i < moved.length; i++) {
+			SuperPositionQCP.negatedCentroid(moved[i], movedTrans);
+			double rmsd = qcp.calcRmsd(moved[i], movedTrans, fixed, fixedTrans, weight);
+			if (rmsds != null)
+				rmsds[i] = rmsd;
+			transformations[i] = new Matrix4d(qcp.superposeAfterRmsd());
+		}
+		return transformations;
+	}
+
+	/**
+	 * Calculates the RMSDs of the superpositions of all pairs of the given
+	 * point sets, using the shared pool of the given number of threads, see
+	 * {@link ConcurrencyTools#getForkJoinPool(int)}.
+	 *
+	 * @param coords
+	 *            packed coordinates of the point sets
+	 * @param weight
+	 *            array of weigths for each equivalent point position, null
+	 *            for no weighting
+	 * @param nThreads
+	 *            the number of threads
+	 * @return the condensed RMSD matrix, see
+	 *         {@link #condensedIndex(int, int, int)}
+	 */
+	public static double[] getRmsdMatrix(double[][] coords, double[] weight, int nThreads) {
+		if (nThreads <= 1)
+			return getRmsdMatrix(coords, weight, null);
+		return getRmsdMatrix(coords, weight, ConcurrencyTools.getForkJoinPool(nThreads));
+	}
+
+	/**
+	 * Calculates the RMSDs of the superpositions of all pairs of the given
+	 * point sets, running blocks of rows as tasks of the given executor. The
+	 * executor is not shut down.
+	 *
+	 * @param coords
+	 *            packed coordinates of the point sets
+	 * @param weight
+	 *            array of weigths for each equivalent point position, null
+	 *            for no weighting
+	 * @param executor
+	 *            the executor to run the calculation, or null to run it in the
+	 *            calling thread
+	 * @return the condensed RMSD matrix, see
+	 *         {@link #condensedIndex(int, int, int)}
+	 */
+	public static double[] getRmsdMatrix(double[][] coords, double[] weight, ExecutorService executor) {
+		int n = coords.length;
+		double[][] trans = negatedCentroids(coords);
+		double[] rmsds = new double[condensedSize(n)];
+
+		if (executor == null) {
+			calcRows(coords, trans, coords, trans, weight, 0, n, true, rmsds);
+			return rmsds;
+		}
+
+		// blocks of consecutive rows with about the same number of pairs
+		List<Callable<Void>> tasks = new ArrayList<>();
+		int from = 0;
+		int pairs = 0;
+		for (int i = 0; i < n; i++) {
+			pairs += n - i - 1;
+			if (pairs >= PAIRS_PER_TASK || i == n - 1) {
+				int rowStart = from;
+				int rowEnd = i + 1;
+				tasks.add(() -> {
+					calcRows(coords, trans, coords, trans, weight, rowStart, rowEnd, true, rmsds);
+					return null;
+				});
+				from = i + 1;
+				pairs = 0;
+			}
+		}
+		invokeAll(executor, tasks);
+		return rmsds;
+	}
+
+	/**
+	 * Calculates the RMSDs of the superpositions of all pairs of a point set
+	 * of the first and a point set of the second collection, using the shared
+	 * pool of the given number of threads.
+	 *
+	 * @param fixed
+	 *            packed coordinates of the reference point sets
+	 * @param moved
+	 *            packed coordinates of the point sets to superpose
+	 * @param weight
+	 *            array of weigths for each equivalent point position, null
+	 *            for no weighting
+	 * @param nThreads
+	 *            the number of threads
+	 * @return the RMSD matrix in row major order: the RMSD of fixed i and
+	 *         moved j is at position i*moved.length+j
+	 */
+	public static double[] getRmsdMatrix(double[][] fixed, double[][] moved, double[] weight, int nThreads) {
+		if (nThreads <= 1)
+			return getRmsdMatrix(fixed, moved, weight, null);
+		return getRmsdMatrix(fixed, moved, weight, ConcurrencyTools.getForkJoinPool(nThreads));
+	}
+
+	/**
+	 * Calculates the RMSDs of the superpositions of all pairs of a point set
+	 * of the first and a point set of the second collection, running blocks of
+	 * rows as tasks of the given executor. The executor is not shut down.
+	 *
+	 * @param fixed
+	 *            packed coordinates of the reference point sets
+	 * @param moved
+	 *            packed coordinates of the point sets to superpose
+	 * @param weight
+	 *            array of weigths for each equivalent point position, null
+	 *            for no weighting
+	 * @param executor
+	 *            the executor to run the calculation, or null to run it in the
+	 *            calling thread
+	 * @return the RMSD matrix in row major order: the RMSD of fixed i and
+	 *         moved j is at position i*moved.length+j
+	 */
+	public static double[] getRmsdMatrix(double[][] fixed, double[][] moved, double[] weight,
+			ExecutorService executor) {
+		int n = fixed.length;
+		int m = moved.length;
+		double[][] fixedTrans = negatedCentroids(fixed);
+		double[][] movedTrans = negatedCentroids(moved);
+		if ((long) n * m > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The RMSD matrix of " + n + " x " + m
+					+ " point sets is larger than the maximum array length");
+		double[] rmsds = new double[n * m];
+
+		if (executor == null || (long) n * m <= PAIRS_PER_TASK) {
+			calcRows(fixed, fixedTrans, moved, movedTrans, weight, 0, n, false, rmsds);
+			return rmsds;
+		}
+
+		int rowsPerTask = Math.max(1, PAIRS_PER_TASK / Math.max(1, m));
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int from = 0; from < n; from += rowsPerTask) {
+			int rowStart = from;
+			int rowEnd = Math.min(from + rowsPerTask, n);
+			tasks.add(() -> {
+				calcRows(fixed, fixedTrans, moved, movedTrans, weight, rowStart, rowEnd, false, rmsds);
+				return null;
+			});
+		}
+		invokeAll(executor, tasks);
+		return rmsds;
+	}
+
+	private static double[][] negatedCentroids(double[][] coords) {
+		double[][] trans = new double[coords.length][];
+		for (int i = 0; i < coords.length; i++) {
+			trans[i] = SuperPositionQCP.negatedCentroid(coords[i], new double[3]);
+		}
+		return trans;
+	}
+
+	/**
+	 * Calculates the rows from (inclusive) to to (exclusive) of an RMSD
+	 * matrix, condensed or full, with a single workspace.
+	 */
+	private static void calcRows(double[][] fixed, double[][] fixedTrans, double[][] moved, double[][] movedTrans,
+			double[] weight, int from, int to, boolean condensed, double[] rmsds) {
+		SuperPositionQCP qcp = new SuperPositionQCP(false);
+		int n = fixed.length;
+		for (int i = from; i < to; i++) {
+			if (condensed) {
+				int pos = i == n - 1 ? 0 : condensedIndex(n, i, i + 1);
+				for (int j = i + 1; j < n; j++) {
+					rmsds[pos++] = qcp.calcRmsd(moved[j], movedTrans[j], fixed[i], fixedTrans[i], weight);
+				}
+			} else {
+				for (int j = 0; j < moved.length; j++) {
+					rmsds[i * moved.length + j] = qcp.calcRmsd(moved[j], movedTrans[j], fixed[i], fixedTrans[i], weight);
+				}
+			}
+		}
+	}
+
+	private static void invokeAll(ExecutorService executor, List<Callable<Void>> tasks) {
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while calculating superpositions", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Error while calculating superpositions", e.getCause());
+		}
+	}
+}
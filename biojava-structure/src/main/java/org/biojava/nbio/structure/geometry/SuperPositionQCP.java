@@ -21,6 +21,8 @@
 
 package org.biojava.nbio.structure.geometry;
 
+import java.util.Arrays;
+
 import javax.vecmath.Matrix3d;
 import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3d;
@@ -120,10 +122,9 @@ public final class SuperPositionQCP extends SuperPositionAbstract {
 	private double[] weight;
 	private double wsum;
 
-	private Point3d[] xref;
-	private Point3d[] yref;
-	private Point3d xtrans;
-	private Point3d ytrans;
+	// the negated centroids of x and y
+	private final double[] xtrans = new double[3];
+	private final double[] ytrans = new double[3];
 
 	private double e0;
 	private Matrix3d rotmat = new Matrix3d();
@@ -177,6 +178,7 @@ public final class SuperPositionQCP extends SuperPositionAbstract {
 	private void set(Point3d[] x, Point3d[] y) {
 		this.x = x;
 		this.y = y;
+		this.weight = null;
 		rmsdCalculated = false;
 		transformationCalculated = false;
 	}
@@ -256,23 +258,74 @@ public final class SuperPositionQCP extends SuperPositionAbstract {
 	 */
 	private void calcRmsd(Point3d[] x, Point3d[] y) {
 		if (centered) {
-			innerProduct(y, x);
+			Arrays.fill(xtrans, 0);
+			Arrays.fill(ytrans, 0);
 		} else {
-			// translate to origin
-			xref = CalcPoint.clonePoint3dArray(x);
-			xtrans = CalcPoint.centroid(xref);
-			logger.debug("x centroid: " + xtrans);
-			xtrans.negate();
-			CalcPoint.translate(new Vector3d(xtrans), xref);
-
-			yref = CalcPoint.clonePoint3dArray(y);
-			ytrans = CalcPoint.centroid(yref);
-			logger.debug("y centroid: " + ytrans);
-			ytrans.negate();
-			CalcPoint.translate(new Vector3d(ytrans), yref);
-			innerProduct(yref, xref);
+			// translate to origin, on the fly without copying the points
+			negatedCentroidOfPoints(x, xtrans);
+			negatedCentroidOfPoints(y, ytrans);
 		}
+		innerProduct(y, ytrans, x, xtrans);
+		calcRmsd(wsum);
+	}
+
+	/**
+	 * Calculates the RMSD value for superposition of y onto x, given as packed
+	 * x,y,z coordinates, and with their negated centroids. Used as a workspace
+	 * by {@link SuperPositionBatch}.
+	 *
+	 * @return the RMSD
+	 */
+	double calcRmsd(double[] x, double[] xtrans, double[] y, double[] ytrans, double[] weight) {
+		if (x.length != y.length)
+			throw new IllegalArgumentException("Point arrays to superpose are of different lengths.");
+		this.x = null;
+		this.y = null;
+		this.weight = weight;
+		System.arraycopy(xtrans, 0, this.xtrans, 0, 3);
+		System.arraycopy(ytrans, 0, this.ytrans, 0, 3);
+		innerProduct(y, ytrans, x, xtrans);
 		calcRmsd(wsum);
+		rmsdCalculated = true;
+		transformationCalculated = false;
+		return rmsd;
+	}
+
+	private static void negatedCentroidOfPoints(Point3d[] points, double[] out) {
+		double cx = 0, cy = 0, cz = 0;
+		for (Point3d p : points) {
+			cx += p.x;
+			cy += p.y;
+			cz += p.z;
+		}
+		double f = 1.0 / points.length;
+		out[0] = -(f * cx);
+		out[1] = -(f * cy);
+		out[2] = -(f * cz);
+	}
+
+	/**
+	 * Calculates the negated centroid of packed x,y,z coordinates, the same way
+	 * as {@link CalcPoint#centroid(Point3d[])}.
+	 *
+	 * @param coords
+	 *            packed x,y,z coordinates
+	 * @param out
+	 *            array of length 3 to write the negated centroid to
+	 * @return out
+	 */
+	static double[] negatedCentroid(double[] coords, double[] out) {
+		double cx = 0, cy = 0, cz = 0;
+		for (int i = 0; i < coords.length; i += 3) {
+			cx += coords[i];
+			cy += coords[i + 1];
+			cz += coords[i + 2];
+		}
+		double f = 1.0 / (coords.length / 3);
+		out[0] = -(f * cx);
+		out[1] = -(f * cy);
+		out[2] = -(f * cz);
+		return out;
 	}
 
 	/**
@@ -291,16 +344,15 @@ public final class SuperPositionQCP extends SuperPositionAbstract {
 		// combine with x -> origin translation
 		Matrix4d trans = new Matrix4d();
 		trans.setIdentity();
-		trans.setTranslation(new Vector3d(xtrans));
+		trans.setTranslation(new Vector3d(xtrans[0], xtrans[1], xtrans[2]));
 		transformation.mul(transformation, trans);
 		// System.out.println("setting xtrans");
 		// System.out.println(transformation);
 
 		// combine with origin -> y translation
-		ytrans.negate();
 		Matrix4d transInverse = new Matrix4d();
 		transInverse.setIdentity();
-		transInverse.setTranslation(new Vector3d(ytrans));
+		transInverse.setTranslation(new Vector3d(-ytrans[0], -ytrans[1], -ytrans[2]));
 		transformation.mul(transInverse, transformation);
 		// System.out.println("setting ytrans");
 		// System.out.println(transformation);
@@ -309,78 +361,178 @@ public final class SuperPositionQCP extends SuperPositionAbstract {
 	/**
 	 * Calculates the inner product between two coordinate sets x and y
 	 * (optionally weighted, if weights set through
-	 * {@link #set(Point3d[], Point3d[], double[])}). It also calculates an
-	 * upper bound of the most positive root of the key matrix.
+	 * {@link #set(Point3d[], Point3d[], double[])}), after translating them by
+	 * the given vectors. It also calculates an upper bound of the most
+	 * positive root of the key matrix.
 	 * http://theobald.brandeis.edu/qcp/qcprot.c
 	 *
 	 * @param coords1
+	 * @param trans1
 	 * @param coords2
+	 * @param trans2
 	 * @return
 	 */
-	private void innerProduct(Point3d[] coords1, Point3d[] coords2) {
+	private void innerProduct(Point3d[] coords1, double[] trans1, Point3d[] coords2, double[] trans2) {
 		double x1, x2, y1, y2, z1, z2;
 		double g1 = 0.0, g2 = 0.0;
-
-		Sxx = 0;
-		Sxy = 0;
-		Sxz = 0;
-		Syx = 0;
-		Syy = 0;
-		Syz = 0;
-		Szx = 0;
-		Szy = 0;
-		Szz = 0;
+		double sxx = 0, sxy = 0, sxz = 0, syx = 0, syy = 0, syz = 0, szx = 0, szy = 0, szz = 0;
+		int length = coords1.length;
 
 		if (weight != null) {
 			wsum = 0;
-			for (int i = 0; i < coords1.length; i++) {
+			for (int i = 0; i < length; i++) {
+				double w = weight[i];
+				wsum += w;
 
-				wsum += weight[i];
+				double cx1 = coords1[i].x + trans1[0];
+				double cy1 = coords1[i].y + trans1[1];
+				double cz1 = coords1[i].z + trans1[2];
 
-				x1 = weight[i] * coords1[i].x;
-				y1 = weight[i] * coords1[i].y;
-				z1 = weight[i] * coords1[i].z;
+				x1 = w * cx1;
+				y1 = w * cy1;
+				z1 = w * cz1;
 
-				g1 += x1 * coords1[i].x + y1 * coords1[i].y + z1 * coords1[i].z;
+				g1 += x1 * cx1 + y1 * cy1 + z1 * cz1;
 
-				x2 = coords2[i].x;
-				y2 = coords2[i].y;
-				z2 = coords2[i].z;
+				x2 = coords2[i].x + trans2[0];
+				y2 = coords2[i].y + trans2[1];
+				z2 = coords2[i].z + trans2[2];
 
-				g2 += weight[i] * (x2 * x2 + y2 * y2 + z2 * z2);
+				g2 += w * (x2 * x2 + y2 * y2 + z2 * z2);
 
-				Sxx += (x1 * x2);
-				Sxy += (x1 * y2);
-				Sxz += (x1 * z2);
+				sxx += (x1 * x2);
+				sxy += (x1 * y2);
+				sxz += (x1 * z2);
 
-				Syx += (y1 * x2);
-				Syy += (y1 * y2);
-				Syz += (y1 * z2);
+				syx += (y1 * x2);
+				syy += (y1 * y2);
+				syz += (y1 * z2);
 
-				Szx += (z1 * x2);
-				Szy += (z1 * y2);
-				Szz += (z1 * z2);
+				szx += (z1 * x2);
+				szy += (z1 * y2);
+				szz += (z1 * z2);
 			}
 		} else {
-			for (int i = 0; i < coords1.length; i++) {
-				g1 += coords1[i].x * coords1[i].x + coords1[i].y * coords1[i].y + coords1[i].z * coords1[i].z;
-				g2 += coords2[i].x * coords2[i].x + coords2[i].y * coords2[i].y + coords2[i].z * coords2[i].z;
+			for (int i = 0; i < length; i++) {
+				x1 = coords1[i].x + trans1[0];
+				y1 = coords1[i].y + trans1[1];
+				z1 = coords1[i].z + trans1[2];
+				x2 = coords2[i].x + trans2[0];
+				y2 = coords2[i].y + trans2[1];
+				z2 = coords2[i].z + trans2[2];
+
+				g1 += x1 * x1 + y1 * y1 + z1 * z1;
+				g2 += x2 * x2 + y2 * y2 + z2 * z2;
+
+				sxx += x1 * x2;
+				sxy += x1 * y2;
+				sxz += x1 * z2;
+
+				syx += y1 * x2;
+				syy += y1 * y2;
+				syz += y1 * z2;
+
+				szx += z1 * x2;
+				szy += z1 * y2;
+				szz += z1 * z2;
+			}
+			wsum = length;
+		}
+
+		Sxx = sxx;
+		Sxy = sxy;
+		Sxz = sxz;
+		Syx = syx;
+		Syy = syy;
+		Syz = syz;
+		Szx = szx;
+		Szy = szy;
+		Szz = szz;
+
+		e0 = (g1 + g2) * 0.5;
+	}
+
+	/**
+	 * Calculates the inner product of packed x,y,z coordinates, see
+	 * {@link #innerProduct(Point3d[], double[], Point3d[], double[])}.
+	 */
+	private void innerProduct(double[] coords1, double[] trans1, double[] coords2, double[] trans2) {
+		double x1, x2, y1, y2, z1, z2;
+		double g1 = 0.0, g2 = 0.0;
+		double sxx = 0, sxy = 0, sxz = 0, syx = 0, syy = 0, syz = 0, szx = 0, szy = 0, szz = 0;
+		int length = coords1.length / 3;
+
+		if (weight != null) {
+			wsum = 0;
+			for (int i = 0; i < length; i++) {
+				double w = weight[i];
+				wsum += w;
+
+				double cx1 = coords1[3 * i] + trans1[0];
+				double cy1 = coords1[3 * i + 1] + trans1[1];
+				double cz1 = coords1[3 * i + 2] + trans1[2];
+
+				x1 = w * cx1;
+				y1 = w * cy1;
+				z1 = w * cz1;
+
+				g1 += x1 * cx1 + y1 * cy1 + z1 * cz1;
+
+				x2 = coords2[3 * i] + trans2[0];
+				y2 = coords2[3 * i + 1] + trans2[1];
+				z2 = coords2[3 * i + 2] + trans2[2];
+
+				g2 += w * (x2 * x2 + y2 * y2 + z2 * z2);
 
-				Sxx += coords1[i].x * coords2[i].x;
-				Sxy += coords1[i].x * coords2[i].y;
-				Sxz += coords1[i].x * coords2[i].z;
+				sxx += (x1 * x2);
+				sxy += (x1 * y2);
+				sxz += (x1 * z2);
 
-				Syx += coords1[i].y * coords2[i].x;
-				Syy += coords1[i].y * coords2[i].y;
-				Syz += coords1[i].y * coords2[i].z;
+				syx += (y1 * x2);
+				syy += (y1 * y2);
+				syz += (y1 * z2);
 
-				Szx += coords1[i].z * coords2[i].x;
-				Szy += coords1[i].z * coords2[i].y;
-				Szz += coords1[i].z * coords2[i].z;
+				szx += (z1 * x2);
+				szy += (z1 * y2);
+				szz += (z1 * z2);
 			}
-			wsum = coords1.length;
+		} else {
+			for (int i = 0; i < length; i++) {
+				x1 = coords1[3 * i] + trans1[0];
+				y1 = coords1[3 * i + 1] + trans1[1];
+				z1 = coords1[3 * i + 2] + trans1[2];
+				x2 = coords2[3 * i] + trans2[0];
+				y2 = coords2[3 * i + 1] + trans2[1];
+				z2 = coords2[3 * i + 2] + trans2[2];
+
+				g1 += x1 * x1 + y1 * y1 + z1 * z1;
+				g2 += x2 * x2 + y2 * y2 + z2 * z2;
+
+				sxx += x1 * x2;
+				sxy += x1 * y2;
+				sxz += x1 * z2;
+
+				syx += y1 * x2;
+				syy += y1 * y2;
+				syz += y1 * z2;
+
+				szx += z1 * x2;
+				szy += z1 * y2;
+				szz += z1 * z2;
+			}
+			wsum = length;
 		}
 
+		Sxx = sxx;
+		Sxy = sxy;
+		Sxz = sxz;
+		Syx = syx;
+		Syy = syy;
+		Syz = syz;
+		Szx = szx;
+		Szy = szy;
+		Szz = szz;
+
 		e0 = (g1 + g2) * 0.5;
 	}
 
@@ -442,9 +594,9 @@ public final class SuperPositionQCP extends SuperPositionAbstract {
 		}
 
 		if (i == 50) {
-			logger.warn(String.format("More than %d iterations needed!", i));
+			logger.warn("More than {} iterations needed!", i);
 		} else {
-			logger.info(String.format("%d iterations needed!", i));
+			logger.debug("{} iterations needed!", i);
 		}
 
 		/*
@@ -595,6 +747,88 @@ public final class SuperPositionQCP extends SuperPositionAbstract {
 		return getRmsd();
 	}
 
+	/**
+	 * Calculates the RMSD of the superposition of two point sets given as
+	 * packed x,y,z coordinates, e.g. obtained with
+	 * {@link SuperPositionBatch#toCoordArray(Point3d[])}. Like all methods of
+	 * this class it doesn't copy the input coordinates, so that a single
+	 * instance can be reused as workspace for many calculations.
+	 *
+	 * @param fixed
+	 *            packed coordinates of the reference point set
+	 * @param moved
+	 *            packed coordinates of the point set to superpose
+	 * @return RMSD
+	 * @since 6.0.6
+	 */
+	public double getRmsd(double[] fixed, double[] moved) {
+		return getWeightedRmsd(fixed, moved, null);
+	}
+
+	/**
+	 * Calculates the weighted RMSD of the superposition of two point sets
+	 * given as packed x,y,z coordinates.
+	 *
+	 * @param fixed
+	 *            packed coordinates of the reference point set
+	 * @param moved
+	 *            packed coordinates of the point set to superpose
+	 * @param weight
+	 *            array of weigths for each equivalent point position, null
+	 *            for no weighting
+	 * @return weighted RMSD
+	 * @since 6.0.6
+	 */
+	public double getWeightedRmsd(double[] fixed, double[] moved, double[] weight) {
+		setPacked(moved, fixed, weight);
+		return rmsd;
+	}
+
+	/**
+	 * Superposes two point sets given as packed x,y,z coordinates.
+	 *
+	 * @param fixed
+	 *            packed coordinates of the reference point set
+	 * @param moved
+	 *            packed coordinates of the point set to superpose
+	 * @return transformation matrix to superpose moved onto fixed. The
+	 *         matrix is reused by subsequent calls of this instance
+	 * @since 6.0.6
+	 */
+	public Matrix4d superpose(double[] fixed, double[] moved) {
+		return weightedSuperpose(fixed, moved, null);
+	}
+
+	/**
+	 * Weighted superposition of two point sets given as packed x,y,z
+	 * coordinates.
+	 *
+	 * @param fixed
+	 *            packed coordinates of the reference point set
+	 * @param moved
+	 *            packed coordinates of the point set to superpose
+	 * @param weight
+	 *            array of weigths for each equivalent point position, null
+	 *            for no weighting
+	 * @return transformation matrix to superpose moved onto fixed. The
+	 *         matrix is reused by subsequent calls of this instance
+	 * @since 6.0.6
+	 */
+	public Matrix4d weightedSuperpose(double[] fixed, double[] moved, double[] weight) {
+		setPacked(moved, fixed, weight);
+		return superposeAfterRmsd();
+	}
+
+	private void setPacked(double[] x, double[] y, double[] weight) {
+		if (centered) {
+			Arrays.fill(xtrans, 0);
+			Arrays.fill(ytrans, 0);
+			calcRmsd(x, xtrans, y, ytrans, weight);
+		} else {
+			calcRmsd(x, negatedCentroid(x, xtrans), y, negatedCentroid(y, ytrans), weight);
+		}
+	}
+
 	/**
 	 * The QCP method can be used as a two-step calculation: first compute the
 	 * RMSD (fast) and then compute the superposition.
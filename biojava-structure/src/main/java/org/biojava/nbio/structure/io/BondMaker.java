@@ -22,10 +22,13 @@
  */
 package org.biojava.nbio.structure.io;
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.*;
 import org.biojava.nbio.structure.chem.ChemComp;
 import org.biojava.nbio.structure.chem.ChemCompBond;
 import org.biojava.nbio.structure.chem.ChemCompGroupFactory;
+import org.biojava.nbio.structure.contact.Contact;
+import org.biojava.nbio.structure.contact.Grid;
 import org.biojava.nbio.structure.io.util.PDBTemporaryStorageUtils.LinkRecord;
 import org.rcsb.cif.model.ValueKind;
 import org.rcsb.cif.schema.mm.StructConn;
@@ -35,9 +38,12 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Adds polymer bonds for peptides and nucleotides based on distance cutoffs and
@@ -79,6 +85,19 @@ public class BondMaker {
 	 */
 	private static final double MAX_NUCLEOTIDE_BOND_LENGTH = 2.1;
 
+	/**
+	 * Tolerance added to the sum of covalent radii when inferring bonds from distances
+	 */
+	private static final double COVALENT_BOND_TOLERANCE = 0.4;
+	/**
+	 * Atoms closer than this are considered overlapping (e.g. bad alt locs), not bonded
+	 */
+	private static final double MIN_BOND_LENGTH = 0.4;
+	/**
+	 * Below this number of atoms in a model, bond tables are built in the calling thread only
+	 */
+	private static final int MIN_ATOMS_FOR_PARALLEL = 10000;
+
 	private final Structure structure;
 	private final FileParsingParameters params;
 
@@ -107,6 +126,193 @@ public class BondMaker {
 		trimBondLists();
 	}
 
+	/**
+	 * Perceives the bonds of one model into a compact {@link BondTable} instead of
+	 * {@link Bond} objects attached to every atom. The table contains:
+	 * <li>
+	 * peptide and nucleotide bonds: inferred from sequence and distances
+	 * </li>
+	 * <li>
+	 * intra-group (residue) bonds: read from the chemical component dictionary or,
+	 * for groups whose component defines no bonds (e.g. unknown ligands), inferred
+	 * from covalent radii, using a {@link Grid} to find close atom pairs
+	 * </li>
+	 * The table covers only these intra-chain bonds: unlike {@link #makeBonds()} followed by
+	 * {@link #formBondsFromStructConn(StructConn)}, {@link #formDisulfideBonds(List)} or
+	 * {@link #formLinkRecordBond(LinkRecord)}, it does not contain the bonds of struct_conn,
+	 * SSBOND or LINK records, e.g. disulfide bridges or bonds between chains.
+	 * Atom indices refer to {@link StructureTools#getAllAtomArray(Structure, int)} for the model.
+	 * Only the main atoms of groups are considered, alt loc groups are not.
+	 * Chains are processed in parallel for large structures, with as many threads as processors.
+	 * @param modelNr the model index
+	 * @return the bond table of the model
+	 * @see #makeBondTable(int, int)
+	 * @since 6.0.6
+	 */
+	public BondTable makeBondTable(int modelNr) {
+		return makeBondTable(modelNr, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Perceives the bonds of one model into a compact {@link BondTable}, see {@link #makeBondTable(int)}.
+	 * Chains are processed in parallel for large structures with {@link ConcurrencyTools#invokeAll(List, int)},
+	 * so this can also be called from the tasks of an enclosing parallel calculation.
+	 * @param modelNr the model index
+	 * @param nThreads the number of threads, 1 to process the chains sequentially
+	 * @return the bond table of the model
+	 * @since 6.0.6
+	 */
+	public BondTable makeBondTable(int modelNr, int nThreads) {
+		List<Chain> chains = structure.getModel(modelNr);
+		int[] atomOffsets = new int[chains.size() + 1];
+		for (int i = 0; i < chains.size(); i++) {
+			int atoms = 0;
+			for (Group g : chains.get(i).getAtomGroups()) {
+				atoms += g.size();
+			}
+			atomOffsets[i + 1] = atomOffsets[i] + atoms;
+		}
+		int totalAtoms = atomOffsets[chains.size()];
+
+		List<Callable<BondTable>> tasks = new ArrayList<>(chains.size());
+		for (Chain chain : chains) {
+			tasks.add(() -> makeBondTable(chain));
+		}
+		List<BondTable> chainTables;
+		try {
+			chainTables = ConcurrencyTools.invokeAll(tasks, totalAtoms >= MIN_ATOMS_FOR_PARALLEL ? nThreads : 1);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not make bonds", e.getCause());
+		}
+
+		int totalBonds = 0;
+		for (BondTable t : chainTables) {
+			totalBonds += t.size();
+		}
+		BondTable table = new BondTable(totalAtoms, totalBonds);
+		for (int i = 0; i < chains.size(); i++) {
+			table.addAll(chainTables.get(i), atomOffsets[i]);
+		}
+		return table;
+	}
+
+	/**
+	 * Bond table of a single chain, with atom indices local to the chain
+	 */
+	private BondTable makeBondTable(Chain chain) {
+		List<Group> groups = chain.getAtomGroups();
+		Map<Group, Integer> groupOffsets = new IdentityHashMap<>(groups.size());
+		int atoms = 0;
+		for (Group g : groups) {
+			groupOffsets.put(g, atoms);
+			atoms += g.size();
+		}
+		// typically a bit more than one bond per atom
+		BondTable table = new BondTable(atoms, atoms + atoms / 8);
+
+		List<Group> seqResGroups = chain.getSeqResGroups();
+		for (int i = 0; i < seqResGroups.size() - 1; i++) {
+			Group tail = seqResGroups.get(i);
+			Group head = seqResGroups.get(i + 1);
+			Integer tailOffset = groupOffsets.get(tail);
+			Integer headOffset = groupOffsets.get(head);
+			// groups without atom information are not part of the atom groups
+			if (tailOffset == null || headOffset == null) {
+				continue;
+			}
+			if (tail instanceof AminoAcidImpl && head instanceof AminoAcidImpl) {
+				addBondWithinDistance(table, tail, tailOffset, "C", head, headOffset, "N", MAX_PEPTIDE_BOND_LENGTH);
+			} else if (tail instanceof NucleotideImpl && head instanceof NucleotideImpl) {
+				addBondWithinDistance(table, head, headOffset, "P", tail, tailOffset, "O3'", MAX_NUCLEOTIDE_BOND_LENGTH);
+			}
+		}
+
+		for (Group group : groups) {
+			if (group.getResidueNumber() == null || group.size() < 2) {
+				continue;
+			}
+			int offset = groupOffsets.get(group);
+			ChemComp chemComp = group.getChemComp();
+			if (chemComp == null) {
+				chemComp = ChemCompGroupFactory.getChemComp(group.getPDBName());
+			}
+			if (chemComp == null || chemComp.getBonds() == null || chemComp.getBonds().isEmpty()) {
+				addBondsByDistance(table, group, offset);
+				continue;
+			}
+			for (ChemCompBond chemCompBond : chemComp.getBonds()) {
+				int a1 = getAtomPosition(group, chemCompBond.getAtomId1());
+				int a2 = getAtomPosition(group, chemCompBond.getAtomId2());
+				if (a1 >= 0 && a2 >= 0) {
+					table.add(offset + a1, offset + a2, chemCompBond.getNumericalBondOrder());
+				}
+			}
+		}
+		return table;
+	}
+
+	private static void addBondWithinDistance(BondTable table, Group g1, int offset1, String name1,
+			Group g2, int offset2, String name2, double maxAllowedLength) {
+		int a1 = getAtomPosition(g1, name1);
+		int a2 = getAtomPosition(g2, name2);
+		if (a1 < 0 || a2 < 0) {
+			return;
+		}
+		if (Calc.getDistance(g1.getAtom(a1), g2.getAtom(a2)) < maxAllowedLength) {
+			table.add(offset1 + a1, offset2 + a2, 1);
+		}
+	}
+
+	/**
+	 * Infers single bonds between atoms of a group that are closer than the sum of
+	 * their covalent radii plus a tolerance.
+	 */
+	private static void addBondsByDistance(BondTable table, Group group, int offset) {
+		Atom[] atoms = group.getAtoms().toArray(new Atom[0]);
+		double maxRadius = 0;
+		for (Atom atom : atoms) {
+			maxRadius = Math.max(maxRadius, atom.getElement().getCovalentRadius());
+		}
+		if (maxRadius == 0) {
+			return;
+		}
+		Grid grid = new Grid(2 * maxRadius + COVALENT_BOND_TOLERANCE);
+		grid.addAtoms(atoms);
+		for (Contact contact : grid.getIndicesContacts()) {
+			Atom a = atoms[contact.getI()];
+			Atom b = atoms[contact.getJ()];
+			double maxLength = a.getElement().getCovalentRadius() + b.getElement().getCovalentRadius() + COVALENT_BOND_TOLERANCE;
+			if (contact.getDistance() > MIN_BOND_LENGTH && contact.getDistance() < maxLength) {
+				logger.debug("Inferring bond between atoms {} and {} of group {} from distance {}",
+						a.getName(), b.getName(), group.getPDBName(), contact.getDistance());
+				table.add(offset + contact.getI(), offset + contact.getJ(), 1);
+			}
+		}
+	}
+
+	/**
+	 * Position of the atom with given name in the atom list of the group, considering
+	 * deuterated hydrogens as in {@link #getAtoms(Group, String)}; -1 if not found.
+	 */
+	private static int getAtomPosition(Group group, String name) {
+		List<Atom> atoms = group.getAtoms();
+		for (int i = 0; i < atoms.size(); i++) {
+			if (atoms.get(i).getName().equals(name)) {
+				return i;
+			}
+		}
+		if (name.startsWith("H")) {
+			String deuteriumName = name.replaceFirst("H", "D");
+			for (int i = 0; i < atoms.size(); i++) {
+				Atom a = atoms.get(i);
+				if (a.getName().equals(deuteriumName) && a.getElement() == Element.D) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
 	private void formPeptideBonds() {
 		for (int modelInd=0; modelInd<structure.nrModels(); modelInd++){
 			for (Chain chain : structure.getChains(modelInd)) {
@@ -155,6 +155,8 @@ public abstract class LocalPDBDirectory implements StructureIOFile {
 
 	private FileParsingParameters params;
 
+	private ParsedStructureStore parsedStructureStore;
+
 	private ObsoleteBehavior obsoleteBehavior;
 	private FetchBehavior fetchBehavior;
 
@@ -251,6 +253,27 @@ public abstract class LocalPDBDirectory implements StructureIOFile {
 		return params;
 	}
 
+	/**
+	 * Returns the store of already parsed structures consulted by
+	 * {@link #getStructureById(PdbId)}, or null if none is used (the default).
+	 * @return the store or null
+	 * @since 6.0.6
+	 */
+	public ParsedStructureStore getParsedStructureStore() {
+		return parsedStructureStore;
+	}
+
+	/**
+	 * Set a store of already parsed structures. {@link #getStructureById(PdbId)} will
+	 * then load structures from the store when it holds an entry for the current local
+	 * file and parsing parameters, and add newly parsed structures to it.
+	 * @param parsedStructureStore the store, or null to always parse
+	 * @since 6.0.6
+	 */
+	public void setParsedStructureStore(ParsedStructureStore parsedStructureStore) {
+		this.parsedStructureStore = parsedStructureStore;
+	}
+
 	/**
 	 * <b>[Optional]</b> This method changes the behavior when obsolete entries
 	 * are requested. Current behaviors are:
@@ -345,6 +368,10 @@ public abstract class LocalPDBDirectory implements StructureIOFile {
 	 */
 	@Override
 	public Structure getStructureById(PdbId pdbId) throws IOException {
+		if (parsedStructureStore != null) {
+			File file = getExistingFile(pdbId);
+			return parsedStructureStore.getStructure(pdbId, file, params, this::getStructure);
+		}
 		InputStream inStream = getInputStream(pdbId);
 		return getStructure(inStream);
 	}
@@ -366,12 +393,7 @@ public abstract class LocalPDBDirectory implements StructureIOFile {
 	 */
 	protected InputStream getInputStream(PdbId pdbId) throws IOException{
 
-		// Check existing
-		File file = downloadStructure(pdbId);
-
-		if(!file.exists()) {
-			throw new IOException("Structure "+pdbId+" not found and unable to download.");
-		}
+		File file = getExistingFile(pdbId);
 
 		InputStreamProvider isp = new InputStreamProvider();
 
@@ -380,6 +402,22 @@ public abstract class LocalPDBDirectory implements StructureIOFile {
 		return inputStream;
 	}
 
+	/**
+	 * Load or download the specified structure and return its local file.
+	 * @param pdbId
+	 * @return the local file, which is guaranteed to exist
+	 * @throws IOException if the file is not available locally and can't be downloaded
+	 */
+	protected File getExistingFile(PdbId pdbId) throws IOException {
+		// Check existing
+		File file = downloadStructure(pdbId);
+
+		if(!file.exists()) {
+			throw new IOException("Structure "+pdbId+" not found and unable to download.");
+		}
+		return file;
+	}
+
 	/**
 	 * Download a structure, but don't parse it yet or store it in memory.
 	 *
@@ -72,6 +72,7 @@ import org.biojava.nbio.structure.StructureImpl;
 import org.biojava.nbio.structure.StructureTools;
 import org.biojava.nbio.structure.chem.ChemCompAtom;
 import org.biojava.nbio.structure.chem.ChemCompGroupFactory;
+import org.biojava.nbio.structure.io.util.FixedWidthNumberParser;
 import org.biojava.nbio.structure.io.util.PDBTemporaryStorageUtils.LinkRecord;
 import org.biojava.nbio.structure.secstruc.SecStrucInfo;
 import org.biojava.nbio.structure.secstruc.SecStrucType;
@@ -1653,15 +1654,23 @@ public class PDBFileParser  {
 			return;
 
 		// let's first get the chain name which will serve to identify if we are starting a new molecule
-		String chainName      = line.substring(21,22);
+		// the fixed-width fields are read in place and the Strings of the current chain/group are
+		// reused while they match, so that a typical ATOM line creates no intermediate Strings
+		char chainChar = line.charAt(21);
 
-		if (chainName.equals(" ")) {
+		if (chainChar == ' ') {
 			blankChainIdsPresent = true;
 		}
 
-		if (currentChain!=null && !currentChain.getName().equals(chainName)) {
-			// new chain name: another molecule coming
-			startOfMolecule = true;
+		String chainName;
+		if (currentChain != null && isSingleChar(currentChain.getName(), chainChar)) {
+			chainName = currentChain.getName();
+		} else {
+			chainName = String.valueOf(chainChar);
+			if (currentChain != null) {
+				// new chain name: another molecule coming
+				startOfMolecule = true;
+			}
 		}
 
 		if (startOfMolecule) {
@@ -1693,12 +1702,20 @@ public class PDBFileParser  {
 
 		// let's get the residue number and see if we need to start a new group
 
-		String groupCode3     = line.substring(17,20).trim();
-		String resNum  = line.substring(22,26).trim();
-		Character iCode = line.substring(26,27).charAt(0);
+		String groupCode3 = currentGroup == null ? null : currentGroup.getPDBName();
+		if (groupCode3 == null || !fieldEquals(line, 17, 20, groupCode3)) {
+			groupCode3 = line.substring(17,20).trim();
+		}
+		int resNum = FixedWidthNumberParser.parseInt(line, 22, 26);
+		Character iCode = line.charAt(26);
 		if ( iCode == ' ')
 			iCode = null;
-		ResidueNumber residueNumber = new ResidueNumber(chainName, Integer.valueOf(resNum), iCode);
+
+		// a new molecule always gets its own ResidueNumber instance, never one shared with the previous group
+		ResidueNumber residueNumber = currentGroup == null || startOfMolecule ? null : currentGroup.getResidueNumber();
+		if (residueNumber == null || !isSameResidue(residueNumber, chainName, resNum, iCode)) {
+			residueNumber = new ResidueNumber(chainName, resNum, iCode);
+		}
 
 		//recordName      groupCode3
 		//|                |    resNum
@@ -1709,11 +1726,12 @@ public class PDBFileParser  {
 
 		Character aminoCode1 = StructureTools.get1LetterCode(groupCode3);
 
-		String recordName     = line.substring (0, 6).trim ();
-
 		boolean isHetAtomInFile = false;
+		String recordName = "ATOM";
+
+		if (line.startsWith("HETATM")) {
+			recordName = "HETATM";
 
-		if (recordName.equals("HETATM") ){
 			// HETATOM RECORDS are treated slightly differently
 			// some modified amino acids that we want to treat as amino acids
 			// can be found as HETATOM records
@@ -1738,12 +1756,12 @@ public class PDBFileParser  {
 		startOfMolecule = false;
 
 
-		Character altLoc   = line.substring (16, 17).charAt(0);
+		Character altLoc   = line.charAt(16);
 		Group altGroup = null;
 
 
 		// check if residue number is the same ...
-		if ( ! residueNumber.equals(currentGroup.getResidueNumber())) {
+		if ( residueNumber != currentGroup.getResidueNumber() && ! residueNumber.equals(currentGroup.getResidueNumber())) {
 
 			currentChain.addGroup(currentGroup);
 			currentGroup.trimToSize();
@@ -1799,19 +1817,19 @@ public class PDBFileParser  {
 		//ATOM    112  CA  ASP   112      37.613  26.621  33.571     0     0
 
 
-		String fullname = line.substring (12, 16);
-
 		// check for CA only if requested
 		if ( parseCAonly ){
 			// yes , user wants to get CA only
 			// only parse CA atoms...
-			if (! fullname.equals(" CA ")){
+			if (! line.startsWith(" CA ", 12)){
 				//System.out.println("ignoring " + line);
 				atomCount--;
 				return;
 			}
 		}
 
+		String fullname = line.substring (12, 16);
+
 		if ( params.getAcceptedAtomNames() != null) {
 
 			boolean found = false;
@@ -1830,16 +1848,16 @@ public class PDBFileParser  {
 		}
 		// create new atom
 
-		int pdbnumber = Integer.parseInt (line.substring (6, 11).trim ());
+		int pdbnumber = FixedWidthNumberParser.parseInt(line, 6, 11);
 		AtomImpl atom = new AtomImpl() ;
 		atom.setPDBserial(pdbnumber) ;
 
 		atom.setAltLoc(altLoc);
 		atom.setName(fullname.trim());
 
-		double x = Double.parseDouble (line.substring (30, 38).trim());
-		double y = Double.parseDouble (line.substring (38, 46).trim());
-		double z = Double.parseDouble (line.substring (46, 54).trim());
+		double x = FixedWidthNumberParser.parseDouble(line, 30, 38);
+		double y = FixedWidthNumberParser.parseDouble(line, 38, 46);
+		double z = FixedWidthNumberParser.parseDouble(line, 46, 54);
 
 		double[] coords = new double[3];
 		coords[0] = x ;
@@ -1851,14 +1869,14 @@ public class PDBFileParser  {
 		if ( line.length() > 59 ) {
 			try {
 				// occu and tempf are sometimes not used :-/
-				occu = Float.parseFloat (line.substring (54, 60).trim());
+				occu = FixedWidthNumberParser.parseFloat(line, 54, 60);
 			}  catch (NumberFormatException e){}
 		}
 
 		float tempf = 0.0f;
 		if ( line.length() > 65) {
 			try {
-				tempf = Float.parseFloat (line.substring (60, 66).trim());
+				tempf = FixedWidthNumberParser.parseFloat(line, 60, 66);
 			}  catch (NumberFormatException e){}
 		}
 
@@ -1946,6 +1964,34 @@ public class PDBFileParser  {
 	}
 
 
+	/**
+	 * Whether the given name is exactly the single character c
+	 */
+	private static boolean isSingleChar(String name, char c) {
+		return name.length() == 1 && name.charAt(0) == c;
+	}
+
+	/**
+	 * Whether the blank-trimmed columns [start,end) of line equal value
+	 */
+	private static boolean fieldEquals(String line, int start, int end, String value) {
+		int i = start;
+		int j = end;
+		while (i < j && line.charAt(i) == ' ') i++;
+		while (j > i && line.charAt(j - 1) == ' ') j--;
+		return j - i == value.length() && line.regionMatches(i, value, 0, j - i);
+	}
+
+	/**
+	 * Whether the given residue number has the chain name, sequence number and insertion code
+	 */
+	private static boolean isSameResidue(ResidueNumber residueNumber, String chainName, int resNum, Character iCode) {
+		Integer seqNum = residueNumber.getSeqNum();
+		return seqNum != null && seqNum == resNum
+				&& chainName.equals(residueNumber.getChainName())
+				&& (iCode == null ? residueNumber.getInsCode() == null : iCode.equals(residueNumber.getInsCode()));
+	}
+
 	private Group getCorrectAltLocGroup( Character altLoc,
 			String recordName, Character aminoCode1, String groupCode3) {
 
@@ -2657,61 +2703,83 @@ public class PDBFileParser  {
 				continue;
 			}
 
-			String recordName = null;
-			if (line.length()<6)
-				recordName = line.trim();
-			else
-				recordName = line.substring (0, 6).trim ();
+			String recordName = getRecordName(line);
 
 			try {
-				if (recordName.equals("ATOM"))
+				switch (recordName) {
+				case "ATOM":
+				case "HETATM":
 					pdb_ATOM_Handler(line);
-				else if (recordName.equals("SEQRES"))
+					break;
+				case "SEQRES":
 					pdb_SEQRES_Handler(line);
-				else if (recordName.equals("HETATM"))
-					pdb_ATOM_Handler(line);
-				else if (recordName.equals("MODEL"))
+					break;
+				case "MODEL":
 					pdb_MODEL_Handler(line);
-				else if (recordName.equals("TER"))
+					break;
+				case "TER":
 					pdb_TER_Handler();
-				else if (recordName.equals("HEADER"))
+					break;
+				case "HEADER":
 					pdb_HEADER_Handler(line);
-				else if (recordName.equals("AUTHOR"))
+					break;
+				case "AUTHOR":
 					pdb_AUTHOR_Handler(line);
-				else if (recordName.equals("TITLE"))
+					break;
+				case "TITLE":
 					pdb_TITLE_Handler(line);
-				else if (recordName.equals("SOURCE"))
+					break;
+				case "SOURCE":
 					sourceLines.add(line); //pdb_SOURCE_Handler
-				else if (recordName.equals("COMPND"))
+					break;
+				case "COMPND":
 					compndLines.add(line); //pdb_COMPND_Handler
-				else if (recordName.equals("KEYWDS"))
+					break;
+				case "KEYWDS":
 					keywordsLines.add(line);
-				else if (recordName.equals("JRNL"))
+					break;
+				case "JRNL":
 					pdb_JRNL_Handler(line);
-				else if (recordName.equals("EXPDTA"))
+					break;
+				case "EXPDTA":
 					pdb_EXPDTA_Handler(line);
-				else if (recordName.equals("CRYST1"))
+					break;
+				case "CRYST1":
 					pdb_CRYST1_Handler(line);
-				else if (recordName.startsWith("MTRIX"))
-					pdb_MTRIXn_Handler(line);
-				else if (recordName.equals("REMARK"))
+					break;
+				case "REMARK":
 					pdb_REMARK_Handler(line);
-				else if (recordName.equals("CONECT"))
+					break;
+				case "CONECT":
 					pdb_CONECT_Handler(line);
-				else if (recordName.equals("REVDAT"))
+					break;
+				case "REVDAT":
 					pdb_REVDAT_Handler(line);
-				else if (recordName.equals("DBREF"))
+					break;
+				case "DBREF":
 					pdb_DBREF_Handler(line);
-				else if (recordName.equals("SITE"))
+					break;
+				case "SITE":
 					pdb_SITE_Handler(line);
-				else if (recordName.equals("SSBOND"))
+					break;
+				case "SSBOND":
 					pdb_SSBOND_Handler(line);
-				else if (recordName.equals("LINK"))
+					break;
+				case "LINK":
 					pdb_LINK_Handler(line);
-				else if ( params.isParseSecStruc()) {
-					if ( recordName.equals("HELIX") ) pdb_HELIX_Handler (  line ) ;
-					else if (recordName.equals("SHEET")) pdb_SHEET_Handler(line ) ;
-					else if (recordName.equals("TURN")) pdb_TURN_Handler(   line ) ;
+					break;
+				case "HELIX":
+					if (params.isParseSecStruc()) pdb_HELIX_Handler(line);
+					break;
+				case "SHEET":
+					if (params.isParseSecStruc()) pdb_SHEET_Handler(line);
+					break;
+				case "TURN":
+					if (params.isParseSecStruc()) pdb_TURN_Handler(line);
+					break;
+				default:
+					if (recordName.startsWith("MTRIX"))
+						pdb_MTRIXn_Handler(line);
 				}
 			} catch (StringIndexOutOfBoundsException | NullPointerException ex) {
 				logger.info("Unable to parse [" + line + "]");
@@ -2743,6 +2811,20 @@ public class PDBFileParser  {
 			}
 
 
+	/**
+	 * Get the trimmed record name (columns 1-6) of a line. The names of coordinate
+	 * records, by far the most frequent ones, are returned without creating a substring.
+	 */
+	private static String getRecordName(String line) {
+		if (line.startsWith("ATOM  "))
+			return "ATOM";
+		if (line.startsWith("HETATM"))
+			return "HETATM";
+		if (line.length() < 6)
+			return line.trim();
+		return line.substring(0, 6).trim();
+	}
+
 	/**
 	 * Add the charges to the Structure
 	 */
@@ -0,0 +1,339 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.biojava.nbio.structure.PdbId;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.io.mmtf.MmtfActions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An on-disk store of already parsed structures. Parsing a structure file
+ * (including bond creation, entity finding and bioassembly parsing as requested by
+ * the {@link FileParsingParameters}) is done once, after which the result is kept
+ * in the compact MMTF encoding and decoded directly on subsequent loads.
+ * <p>
+ * Entries are keyed by PDB id, by the size and modification time of the source
+ * file (and optionally its checksum, see {@link #setUseChecksum(boolean)}) and by
+ * the parsing parameters that influence the result, so that a re-downloaded
+ * (e.g. remediated) file or different parameters transparently trigger a new parse.
+ * The entries of different parameters are kept side by side, and entries are never
+ * removed by a write: outdated entries are removed with {@link #evict(long, long)},
+ * e.g. periodically or at startup, which removes the least recently used entries.
+ * Writes are atomic, so a store directory can be shared by several threads or processes.
+ * <p>
+ * Note that the content is limited to what MMTF can represent, e.g. journal and
+ * author information of the header are not kept. So that the content does not depend
+ * on whether the structure was already stored, {@link #getStructure} also returns the
+ * structure decoded from MMTF when it parses the source file.
+ *
+ * @see LocalPDBDirectory#setParsedStructureStore(ParsedStructureStore)
+ * @see org.biojava.nbio.structure.align.util.AtomCache#setParsedStructureStore(ParsedStructureStore)
+ * @since 6.0.6
+ */
+public class ParsedStructureStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(ParsedStructureStore.class);
+
+	private static final String EXTENSION = ".mmtf";
+
+	private final Path directory;
+
+	private volatile boolean useChecksum = false;
+
+	/**
+	 * Parses a structure file when the store has no valid entry for it.
+	 */
+	@FunctionalInterface
+	public interface StructureLoader {
+		Structure load(File file) throws IOException;
+	}
+
+	/**
+	 * Creates a store in the given directory, creating the directory if needed.
+	 * @param directory where to keep the parsed structures
+	 * @throws IOException if the directory can't be created
+	 */
+	public ParsedStructureStore(Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+	}
+
+	/**
+	 * @return the directory of this store
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return whether the keys contain a checksum of the source files
+	 */
+	public boolean isUseChecksum() {
+		return useChecksum;
+	}
+
+	/**
+	 * Whether the keys contain a CRC32 checksum of the source files, in addition to
+	 * their size and modification time. This detects source files replaced with their
+	 * modification time preserved, but reads every source file completely on every
+	 * lookup. Defaults to false. Entries stored with a different setting are not found.
+	 * @param useChecksum true to checksum the source files
+	 */
+	public void setUseChecksum(boolean useChecksum) {
+		this.useChecksum = useChecksum;
+	}
+
+	/**
+	 * Returns the stored structure for the given source file, or parses the file with
+	 * the given loader and stores the result. In both cases, the structure is the one
+	 * decoded from the stored MMTF data, unless storing failed.
+	 * @param pdbId the PDB id of the structure
+	 * @param source the structure file that the stored entry must correspond to
+	 * @param params the parameters used for parsing
+	 * @param loader parses the source file in case of a store miss
+	 * @return the structure
+	 * @throws IOException if the source file can't be read or parsed
+	 */
+	public Structure getStructure(PdbId pdbId, File source, FileParsingParameters params, StructureLoader loader)
+			throws IOException {
+		String key = getKey(pdbId, source, params, useChecksum);
+		Structure structure = read(pdbId, key);
+		if (structure != null) {
+			return structure;
+		}
+		structure = loader.load(source);
+		byte[] data = write(pdbId, key, structure);
+		if (data == null) {
+			return structure;
+		}
+		return MmtfActions.readFromInputStream(new ByteArrayInputStream(data));
+	}
+
+	/**
+	 * Get the stored structure for the given source file.
+	 * @param pdbId the PDB id of the structure
+	 * @param source the structure file that the stored entry must correspond to
+	 * @param params the parameters used for parsing
+	 * @return the structure or null if there is no valid entry
+	 * @throws IOException if the source file can't be read
+	 */
+	public Structure get(PdbId pdbId, File source, FileParsingParameters params) throws IOException {
+		return read(pdbId, getKey(pdbId, source, params, useChecksum));
+	}
+
+	/**
+	 * Store a structure parsed from the given source file, replacing any previous
+	 * entry for the same source file and parameters.
+	 * @param pdbId the PDB id of the structure
+	 * @param source the structure file that the structure was parsed from
+	 * @param params the parameters used for parsing
+	 * @param structure the parsed structure
+	 * @throws IOException if the source file can't be read
+	 */
+	public void put(PdbId pdbId, File source, FileParsingParameters params, Structure structure) throws IOException {
+		write(pdbId, getKey(pdbId, source, params, useChecksum), structure);
+	}
+
+	/**
+	 * Remove all entries of the given PDB id.
+	 * @param pdbId the PDB id
+	 * @return true if an entry was removed
+	 * @throws IOException if deletion fails
+	 */
+	public boolean remove(PdbId pdbId) throws IOException {
+		boolean removed = false;
+		String prefix = pdbId.getId().toLowerCase(Locale.ROOT) + "-";
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, prefix + "*" + EXTENSION)) {
+			for (Path entry : entries) {
+				removed |= Files.deleteIfExists(entry);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Remove the entries that were not used for longer than the given age, then the least
+	 * recently used entries until the store is not larger than the given size. An entry is
+	 * used when it is written or read.
+	 * @param maxAgeMillis the maximum time since the last use of an entry, in milliseconds,
+	 * or {@link Long#MAX_VALUE} to remove no entry by age
+	 * @param maxSize the maximum total size of the entries, in bytes, or {@link Long#MAX_VALUE}
+	 * to remove no entry by size
+	 * @return the number of removed entries
+	 * @throws IOException if listing or deleting the entries fails
+	 */
+	public int evict(long maxAgeMillis, long maxSize) throws IOException {
+		List<Path> files = new ArrayList<>();
+		Map<Path, Long> lastUse = new HashMap<>();
+		Map<Path, Long> sizes = new HashMap<>();
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+			for (Path entry : entries) {
+				try {
+					BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+					files.add(entry);
+					lastUse.put(entry, attributes.lastModifiedTime().toMillis());
+					sizes.put(entry, attributes.size());
+				} catch (NoSuchFileException e) {
+					// removed concurrently
+				}
+			}
+		}
+		// most recently used first
+		files.sort(Comparator.comparing(lastUse::get, Comparator.reverseOrder()));
+
+		long now = System.currentTimeMillis();
+		long total = 0;
+		int removed = 0;
+		for (Path file : files) {
+			total += sizes.get(file);
+			if (now - lastUse.get(file) > maxAgeMillis || total > maxSize) {
+				if (Files.deleteIfExists(file)) {
+					removed++;
+				}
+				total -= sizes.get(file);
+			}
+		}
+		logger.debug("Evicted {} entries from parsed structure store {}", removed, directory);
+		return removed;
+	}
+
+	private Structure read(PdbId pdbId, String key) {
+		Path file = directory.resolve(key + EXTENSION);
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try {
+			logger.debug("Loading {} from parsed structure store {}", pdbId, file);
+			Structure structure;
+			try (InputStream in = Files.newInputStream(file)) {
+				structure = MmtfActions.readFromInputStream(in);
+			}
+			touch(file);
+			return structure;
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Could not read stored structure {}, it will be parsed again: {}", file, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the MMTF encoding of the structure.
+	 * @return the written MMTF data, or null if the structure could not be stored
+	 */
+	private byte[] write(PdbId pdbId, String key, Structure structure) {
+		Path file = directory.resolve(key + EXTENSION);
+		Path tmp = null;
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			MmtfActions.writeToOutputStream(structure, out);
+			byte[] data = out.toByteArray();
+			tmp = Files.createTempFile(directory, key, ".tmp");
+			Files.write(tmp, data);
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return data;
+		} catch (IOException | RuntimeException e) {
+			// the store is only an optimisation, a failed write must not fail the parsing
+			logger.warn("Could not add {} to parsed structure store {}: {}", pdbId, directory, e.getMessage());
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (IOException ex) {
+					logger.debug("Could not delete temporary file {}", tmp);
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Marks an entry as used, for {@link #evict(long, long)}.
+	 */
+	private static void touch(Path file) {
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			logger.debug("Could not update the last use of {}: {}", file, e.getMessage());
+		}
+	}
+
+	/**
+	 * The key is made of the PDB id, the size and modification time of the source file,
+	 * optionally its CRC32 checksum, and a hash of the parsing parameters.
+	 */
+	private static String getKey(PdbId pdbId, File source, FileParsingParameters params, boolean useChecksum)
+			throws IOException {
+		Path path = source.toPath();
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		String id = pdbId.getId().toLowerCase(Locale.ROOT);
+		int paramsHash = getParametersHash(params);
+		long size = attributes.size();
+		long modified = attributes.lastModifiedTime().toMillis();
+		if (!useChecksum) {
+			return String.format("%s-%x-%x-%08x", id, size, modified, paramsHash);
+		}
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(path)) {
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				crc.update(buffer, 0, n);
+			}
+		}
+		return String.format("%s-%x-%x-%08x-%08x", id, size, modified, crc.getValue(), paramsHash);
+	}
+
+	private static int getParametersHash(FileParsingParameters params) {
+		return Arrays.hashCode(new Object[] {
+				params.isHeaderOnly(),
+				params.isParseCAOnly(),
+				params.isAlignSeqRes(),
+				params.isParseSecStruc(),
+				params.isParseBioAssembly(),
+				params.shouldCreateAtomBonds(),
+				params.shouldCreateAtomCharges(),
+				params.getMaxAtoms(),
+				params.getAtomCaThreshold(),
+				Arrays.hashCode(params.getAcceptedAtomNames())
+		});
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.io.util;
+
+/**
+ * <b>Internal use only. Do not use this class.</b>
+ *
+ * Parses numbers out of fixed-width columns (e.g. of PDB ATOM records) in place,
+ * without creating substrings. Plain decimals of the form {@code [-+]ddd.ddd}
+ * are decoded directly; anything else (exponents, NaN, ...) is handed to the JDK
+ * parsers, so the results and the exceptions thrown are the same as for
+ * {@code Double.parseDouble(line.substring(start, end).trim())} and friends.
+ * <p>
+ * The fast path is exact: a mantissa below 2<sup>53</sup> divided by an exactly
+ * representable power of ten is correctly rounded, as is the JDK result.
+ *
+ * @since 6.0.6
+ */
+public final class FixedWidthNumberParser {
+
+	private static final double[] POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private static final float[] POW10F = {
+		1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+	};
+
+	/** largest mantissa for which the double fast path is exact: 2^53 */
+	private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+	/** largest mantissa for which the float fast path is exact: 2^24 */
+	private static final long MAX_EXACT_FLOAT = 1L << 24;
+
+	/** returned by {@link #parseDecimal} when the fast path does not apply */
+	private static final long NO_FAST_PATH = Long.MIN_VALUE;
+
+	private FixedWidthNumberParser() {
+	}
+
+	/**
+	 * Parse a double from the columns {@code [start, end)} of the given line,
+	 * ignoring leading and trailing blanks.
+	 * @param line the line
+	 * @param start first column (inclusive)
+	 * @param end last column (exclusive)
+	 * @return the parsed value
+	 * @throws NumberFormatException if the field is not a number
+	 * @throws StringIndexOutOfBoundsException if the line is too short
+	 */
+	public static double parseDouble(String line, int start, int end) {
+		checkBounds(line, start, end);
+		long packed = parseDecimal(line, start, end, MAX_EXACT_DOUBLE, POW10.length - 1);
+		if (packed == NO_FAST_PATH) {
+			return Double.parseDouble(line.substring(start, end).trim());
+		}
+		long mantissa = packed >> 5;
+		int scale = (int) (packed & 0x1f);
+		double value = scale == 0 ? mantissa : mantissa / POW10[scale];
+		return isNegative(line, start, end) ? -value : value;
+	}
+
+	/**
+	 * Parse a float from the columns {@code [start, end)} of the given line,
+	 * ignoring leading and trailing blanks.
+	 * @param line the line
+	 * @param start first column (inclusive)
+	 * @param end last column (exclusive)
+	 * @return the parsed value
+	 * @throws NumberFormatException if the field is not a number
+	 * @throws StringIndexOutOfBoundsException if the line is too short
+	 */
+	public static float parseFloat(String line, int start, int end) {
+		checkBounds(line, start, end);
+		long packed = parseDecimal(line, start, end, MAX_EXACT_FLOAT, POW10F.length - 1);
+		if (packed == NO_FAST_PATH) {
+			return Float.parseFloat(line.substring(start, end).trim());
+		}
+		float mantissa = packed >> 5;
+		int scale = (int) (packed & 0x1f);
+		float value = scale == 0 ? mantissa : mantissa / POW10F[scale];
+		return isNegative(line, start, end) ? -value : value;
+	}
+
+	/**
+	 * Parse an int from the columns {@code [start, end)} of the given line,
+	 * ignoring leading and trailing blanks.
+	 * @param line the line
+	 * @param start first column (inclusive)
+	 * @param end last column (exclusive)
+	 * @return the parsed value
+	 * @throws NumberFormatException if the field is not an integer
+	 * @throws StringIndexOutOfBoundsException if the line is too short
+	 */
+	public static int parseInt(String line, int start, int end) {
+		checkBounds(line, start, end);
+		int i = start;
+		int j = end;
+		while (i < j && line.charAt(i) <= ' ') i++;
+		while (j > i && line.charAt(j - 1) <= ' ') j--;
+
+		boolean negative = false;
+		int k = i;
+		if (k < j && (line.charAt(k) == '-' || line.charAt(k) == '+')) {
+			negative = line.charAt(k) == '-';
+			k++;
+		}
+		// at most 9 digits can't overflow an int
+		if (k == j || j - k > 9) {
+			return Integer.parseInt(line.substring(i, j));
+		}
+		int value = 0;
+		for (; k < j; k++) {
+			int d = line.charAt(k) - '0';
+			if (d < 0 || d > 9) {
+				return Integer.parseInt(line.substring(i, j));
+			}
+			value = value * 10 + d;
+		}
+		return negative ? -value : value;
+	}
+
+	private static void checkBounds(String line, int start, int end) {
+		if (start < 0 || end > line.length() || start > end) {
+			throw new StringIndexOutOfBoundsException("Columns " + start + "-" + end
+					+ " out of range for line of length " + line.length());
+		}
+	}
+
+	private static boolean isNegative(String line, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = line.charAt(i);
+			if (c > ' ') {
+				return c == '-';
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Decode a plain decimal into its unsigned mantissa and number of fraction
+	 * digits, packed as {@code mantissa << 5 | scale}.
+	 * @return the packed value or {@link #NO_FAST_PATH}
+	 */
+	private static long parseDecimal(String line, int start, int end, long maxMantissa, int maxScale) {
+		int i = start;
+		int j = end;
+		while (i < j && line.charAt(i) <= ' ') i++;
+		while (j > i && line.charAt(j - 1) <= ' ') j--;
+		if (i < j && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+			i++;
+		}
+		if (i == j) {
+			return NO_FAST_PATH;
+		}
+
+		long mantissa = 0;
+		int scale = -1;
+		int digits = 0;
+		for (; i < j; i++) {
+			char c = line.charAt(i);
+			if (c >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (scale >= 0) {
+					scale++;
+				}
+				if (mantissa > maxMantissa) {
+					return NO_FAST_PATH;
+				}
+			} else if (c == '.' && scale < 0) {
+				scale = 0;
+			} else {
+				return NO_FAST_PATH;
+			}
+		}
+		if (digits == 0) {
+			return NO_FAST_PATH;
+		}
+		if (scale < 0) {
+			scale = 0;
+		}
+		if (scale > maxScale) {
+			return NO_FAST_PATH;
+		}
+		return mantissa << 5 | scale;
+	}
+}
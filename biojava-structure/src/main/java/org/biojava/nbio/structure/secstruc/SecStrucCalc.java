@@ -20,22 +20,17 @@
  */
 package org.biojava.nbio.structure.secstruc;
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.*;
-import org.biojava.nbio.structure.contact.AtomContact;
-import org.biojava.nbio.structure.contact.AtomContactSet;
-import org.biojava.nbio.structure.contact.Grid;
-import org.biojava.nbio.structure.contact.Pair;
+import org.biojava.nbio.structure.contact.SpatialIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Calculate and assign the secondary structure (SS) to the
@@ -48,6 +43,13 @@ import java.util.Map;
  * <a href="http://www.cmbi.kun.nl/gv/dssp/dssp.pdf">dssp.pdf</a>.
  * Some parts are also taken from: T.E.Creighton, Proteins -
  * Structure and Molecular Properties, 2nd Edition, Freeman 1994.
+ * <p>
+ * The calculation works on flat arrays of backbone coordinates and
+ * per-residue H-bond tables. The {@link SecStrucState} objects are only
+ * created by {@link #calculate(Structure, boolean)}; use
+ * {@link #calculateTypes(Structure)} if only the SS types are needed.
+ * With more than one thread, models are calculated in parallel, and so
+ * are the H-bond energies of blocks of residues of a single model.
  *
  * @author Andreas Prlic
  * @author Aleix Lafita
@@ -95,15 +97,58 @@ public class SecStrucCalc {
 	 */
 	public static final double Q = -27888.0;
 
+	/** Number of residues per task of the parallel H-bond calculation */
+	private static final int RESIDUES_PER_TASK = 256;
+
+	/**
+	 * Coordinates per residue in the backbone array, with the offsets
+	 * of the N, CA, C, O and (calculated) H atoms
+	 */
+	private static final int STRIDE = 15;
+	private static final int N = 0;
+	private static final int CA = 3;
+	private static final int C = 6;
+	private static final int O = 9;
+	private static final int H = 12;
+
+	private final int nThreads;
+
 	// Three lists
 	private SecStrucGroup[] groups;
 	private List<Ladder> ladders;
 	private List<BetaBridge> bridges;
 	private Atom[] atoms;
-	// Added by Anthony - to speed up intergroup calculations
-	private AtomContactSet contactSet;
-	private Map<ResidueNumber, Integer> indResMap;
+
+	// Primitive per-residue state of the model being calculated
+	private int length;
+	private double[] backbone;
+	private boolean[] proline;
+	// CA contacts (i,j) with j >= i+3 that can form a bridge, as i*length+j
+	private long[] bridgeCandidates;
+	// accept1, accept2, donor1 and donor2 of every residue
+	private int[] hbondPartners;
+	private double[] hbondEnergies;
+	private char[] turns;
+	private SecStrucType[] types;
+	// only created if the full SecStrucState detail is calculated
+	private SecStrucState[] states;
+
 	public SecStrucCalc(){
+		this(1);
+	}
+
+	/**
+	 * Creates a secondary structure calculator that uses the given number
+	 * of threads: the models of a multi-model structure are calculated in
+	 * parallel, and the H-bond energies of a single model are calculated in
+	 * parallel blocks of residues.
+	 *
+	 * @param nThreads the number of threads, 1 or less to calculate
+	 * 			everything in the calling thread
+	 * @since 6.0.6
+	 */
+	public SecStrucCalc(int nThreads){
+		this.nThreads = nThreads;
 		ladders = new ArrayList<Ladder>();
 		bridges = new ArrayList<BetaBridge>();
 	}
@@ -121,61 +166,247 @@ public class SecStrucCalc {
 			throws StructureException {
 
 		List<SecStrucState> secstruc = new ArrayList<SecStrucState>();
+
+		if (nThreads > 1 && s.nrModels() > 1) {
+			List<SecStrucCalc> models = calculateModels(s, true);
+			for (SecStrucCalc model : models) {
+				addStates(model.groups, assign, secstruc);
+			}
+			// Keep the last model for the output methods
+			SecStrucCalc last = models.get(models.size() - 1);
+			groups = last.groups;
+			atoms = last.atoms;
+			ladders = last.ladders;
+			bridges = last.bridges;
+			return secstruc;
+		}
+
 		for(int i=0; i<s.nrModels(); i++) {
-			// Reinitialise the global vars
-			ladders = new ArrayList<Ladder>();
-			bridges = new ArrayList<BetaBridge>();
-			groups = initGroupArray(s, i);
-			// Initialise the contact set for this structure
-			initContactSet();
-			if (groups.length < 5) {
-				// not enough groups to do anything
-				throw new StructureException("Not enough backbone groups in the"
-						+ " Structure to calculate the secondary structure ("
-						+ groups.length+" given, minimum 5)" );
+			calculateModel(getBackboneGroups(s, i), true, nThreads);
+			addStates(groups, assign, secstruc);
+		}
+		return secstruc;
+	}
+
+	/**
+	 * Predicts the secondary structure of a model of this Structure object,
+	 * using a DSSP implementation, without creating {@link SecStrucState}
+	 * objects. This is much faster than {@link #calculate(Structure, boolean)}
+	 * when only the SS type of the residues is needed, e.g. to annotate large
+	 * sets of structures or the frames of a trajectory.
+	 *
+	 * @param s Structure to predict the SS
+	 * @param modelNr the model of the structure
+	 * @return the {@link SecStrucType#type} character of every residue
+	 * 			returned by {@link #getBackboneGroups(Structure, int)}
+	 * @throws StructureException if the model has less than 5 residues
+	 * @since 6.0.6
+	 */
+	public char[] calculateTypes(Structure s, int modelNr)
+			throws StructureException {
+
+		calculateModel(getBackboneGroups(s, modelNr), false, nThreads);
+		return getTypes();
+	}
+
+	/**
+	 * Predicts the secondary structure of all models of this Structure
+	 * object, as {@link #calculateTypes(Structure, int)}. The models are
+	 * calculated in parallel if more than one thread was requested.
+	 *
+	 * @param s Structure to predict the SS
+	 * @return for every model, the {@link SecStrucType#type} character of
+	 * 			every residue returned by
+	 * 			{@link #getBackboneGroups(Structure, int)}
+	 * @throws StructureException if a model has less than 5 residues
+	 * @since 6.0.6
+	 */
+	public char[][] calculateTypes(Structure s) throws StructureException {
+
+		char[][] result = new char[s.nrModels()][];
+		if (nThreads > 1 && s.nrModels() > 1) {
+			List<SecStrucCalc> models = calculateModels(s, false);
+			for (int i = 0; i < result.length; i++) {
+				result[i] = models.get(i).getTypes();
+			}
+		} else {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = calculateTypes(s, i);
 			}
+		}
+		return result;
+	}
 
-			calculateHAtoms();
-			calculateHBonds();
-			calculateDihedralAngles();
-			calculateTurns();
-			buildHelices();
-			detectBends();
-			detectStrands();
-
-			for (SecStrucGroup sg : groups){
-				SecStrucState ss = (SecStrucState)
-						sg.getProperty(Group.SEC_STRUC);
-				// Add to return list and assign to original if flag is true
-				secstruc.add(ss);
-				if (assign) sg.getOriginal().setProperty(Group.SEC_STRUC, ss);
+	/**
+	 * Returns the groups of a model that are considered for the secondary
+	 * structure calculation: the amino acids with N, CA, C and O atoms,
+	 * in the order of the chains.
+	 *
+	 * @param s the Structure
+	 * @param modelNr the model of the structure
+	 * @return the groups, in the order of the SS calculation results
+	 * @since 6.0.6
+	 */
+	public static List<Group> getBackboneGroups(Structure s, int modelNr) {
+		List<Group> groupList = new ArrayList<Group>();
+		for (Chain c : s.getChains(modelNr)){
+			for (Group g : c.getAtomGroups()){
+				//We can also calc secstruc if it is a modified amino acid
+				if (g.hasAminoAtoms()
+						&& g.getAtom(StructureTools.N_ATOM_NAME) != null
+						&& g.getAtom(StructureTools.CA_ATOM_NAME) != null
+						&& g.getAtom(StructureTools.C_ATOM_NAME) != null
+						&& g.getAtom(StructureTools.O_ATOM_NAME) != null) {
+					groupList.add(g);
+				}
 			}
 		}
-		return secstruc;
+		return groupList;
 	}
 
 	/**
-	 * Function to generate the contact sets
+	 * Calculates every model in a separate single-threaded calculator,
+	 * in parallel.
 	 */
-	private void initContactSet() {
-
-		// Initialise an array of atoms
-		atoms = new Atom[groups.length];
-		// Remake this local var
-		indResMap = new HashMap<>();
-		for (int i=0 ; i < groups.length ; i++){
-			SecStrucGroup one = groups[i];
-			indResMap.put(one.getResidueNumber(), i);
-			atoms[i] = one.getCA();
+	private List<SecStrucCalc> calculateModels(Structure s, boolean detailed)
+			throws StructureException {
+
+		List<SecStrucCalc> models = new ArrayList<SecStrucCalc>();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < s.nrModels(); i++) {
+			SecStrucCalc model = new SecStrucCalc(1);
+			List<Group> backboneGroups = getBackboneGroups(s, i);
+			models.add(model);
+			tasks.add(() -> {
+				model.calculateModel(backboneGroups, detailed, 1);
+				return null;
+			});
+		}
+
+		try {
+			ConcurrencyTools.invokeAll(tasks, nThreads);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof StructureException) {
+				throw (StructureException) e.getCause();
+			}
+			throw new IllegalStateException("Error while calculating secondary structure", e.getCause());
+		}
+		return models;
+	}
+
+	/**
+	 * Runs the DSSP steps on one model. If detailed is true, the
+	 * SecStrucGroup and SecStrucState objects are created, otherwise only
+	 * the primitive per-residue arrays are filled.
+	 */
+	private void calculateModel(List<Group> backboneGroups, boolean detailed,
+			int nThreads) throws StructureException {
+
+		// Reinitialise the global vars
+		ladders = new ArrayList<Ladder>();
+		bridges = new ArrayList<BetaBridge>();
+		initBackbone(backboneGroups, detailed);
+		if (length < 5) {
+			// not enough groups to do anything
+			throw new StructureException("Not enough backbone groups in the"
+					+ " Structure to calculate the secondary structure ("
+					+ length+" given, minimum 5)" );
 		}
-		Grid grid = new Grid(CA_MIN_DIST);
-		if(atoms.length==0){
-			contactSet = new AtomContactSet(CA_MIN_DIST);
+
+		calculateHAtoms();
+		calculateHBonds(nThreads);
+		if (detailed) calculateDihedralAngles();
+		calculateTurns();
+		buildHelices();
+		detectBends();
+		detectStrands();
+		if (detailed) updateStates();
+	}
+
+	private static void addStates(SecStrucGroup[] groups, boolean assign,
+			List<SecStrucState> secstruc) {
+		for (SecStrucGroup sg : groups){
+			SecStrucState ss = (SecStrucState)
+					sg.getProperty(Group.SEC_STRUC);
+			// Add to return list and assign to original if flag is true
+			secstruc.add(ss);
+			if (assign) sg.getOriginal().setProperty(Group.SEC_STRUC, ss);
 		}
-		else{
-			grid.addAtoms(atoms);
-			contactSet = grid.getAtomContacts();
+	}
+
+	private char[] getTypes() {
+		char[] result = new char[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = types[i].type;
 		}
+		return result;
+	}
+
+	/**
+	 * Initialise the flat backbone coordinates and the per-residue arrays
+	 * of the model, and the SecStrucGroups if the full detail is required.
+	 */
+	private void initBackbone(List<Group> backboneGroups, boolean detailed) {
+
+		length = backboneGroups.size();
+		backbone = new double[STRIDE * length];
+		proline = new boolean[length];
+		hbondPartners = new int[4 * length];
+		hbondEnergies = new double[4 * length];
+		turns = new char[3 * length];
+		Arrays.fill(turns, ' ');
+		types = new SecStrucType[length];
+		Arrays.fill(types, SecStrucType.coil);
+
+		for (int i = 0; i < length; i++) {
+			Group g = backboneGroups.get(i);
+			int offset = STRIDE * i;
+			setCoords(g.getAtom(StructureTools.N_ATOM_NAME), offset + N);
+			setCoords(g.getAtom(StructureTools.CA_ATOM_NAME), offset + CA);
+			setCoords(g.getAtom(StructureTools.C_ATOM_NAME), offset + C);
+			setCoords(g.getAtom(StructureTools.O_ATOM_NAME), offset + O);
+			proline[i] = g.getPDBName().equals("PRO");
+		}
+
+		if (detailed) {
+			groups = initGroupArray(backboneGroups);
+			atoms = new Atom[length];
+			states = new SecStrucState[length];
+			for (int i = 0; i < length; i++) {
+				atoms[i] = groups[i].getCA();
+				states[i] = getSecStrucState(i);
+			}
+		} else {
+			states = null;
+		}
+	}
+
+	private void setCoords(Atom a, int offset) {
+		backbone[offset] = a.getX();
+		backbone[offset + 1] = a.getY();
+		backbone[offset + 2] = a.getZ();
+	}
+
+	/**
+	 * Copy the results of the primitive arrays to the SecStrucStates.
+	 */
+	private void updateStates() {
+		for (int i = 0; i < length; i++) {
+			SecStrucState state = states[i];
+			state.setType(types[i]);
+			System.arraycopy(turns, 3 * i, state.getTurn(), 0, 3);
+			state.setAccept1(getHBond(4 * i));
+			state.setAccept2(getHBond(4 * i + 1));
+			state.setDonor1(getHBond(4 * i + 2));
+			state.setDonor2(getHBond(4 * i + 3));
+		}
+	}
+
+	private HBond getHBond(int slot) {
+		HBond bond = new HBond();
+		bond.setEnergy(hbondEnergies[slot]);
+		bond.setPartner(hbondPartners[slot]);
+		return bond;
 	}
 
 	/**
@@ -238,14 +469,12 @@ public class SecStrucCalc {
 
 			for (int lcount = ladder.from; lcount <= ladder.to; lcount++) {
 
-				SecStrucState state = getSecStrucState(lcount);
-				SecStrucType stype = state.getType();
+				SecStrucType stype = types[lcount];
 
 				int diff = ladder.from - lcount;
 				int l2count = ladder.lfrom - diff ;
 
-				SecStrucState state2 = getSecStrucState(l2count);
-				SecStrucType stype2 = state2.getType();
+				SecStrucType stype2 = types[l2count];
 
 				if ( ladder.from != ladder.to ) {
 					setSecStrucType(lcount, SecStrucType.extended);
@@ -359,11 +588,13 @@ public class SecStrucCalc {
 
 		BetaBridge bridge = new BetaBridge(i,j,btype);
 
-		boolean b1 = getSecStrucState(i).addBridge(bridge);
-		boolean b2 = getSecStrucState(j).addBridge(bridge);
+		if (states != null) {
+			boolean b1 = states[i].addBridge(bridge);
+			boolean b2 = states[j].addBridge(bridge);
 
-		if (!b1 && !b2)
-			logger.warn("Ignoring Bridge between residues {} and {}. DSSP assignment might differ.", i, j);
+			if (!b1 && !b2)
+				logger.warn("Ignoring Bridge between residues {} and {}. DSSP assignment might differ.", i, j);
+		}
 
 		bridges.add(bridge);
 	}
@@ -419,80 +650,13 @@ public class SecStrucCalc {
 	 * Antiparallel Bridge(i,j) =: [Hbond(i,j) and Hbond(j,i)]
 	 * 								or [Hbond(i-1,j+1) and Hbond(j-1,i+1)]
 	 *
-	 * Optimised to use the contact set
+	 * Optimised to use the sorted CA contacts of the H-bond calculation
 	 */
 	private void findBridges() {
-		// Get the interator of contacts
-		Iterator<AtomContact> myIter = contactSet.iterator();
-		List<Pair<Integer>> outList = new ArrayList<Pair<Integer>>();
-
-		// Now iterate through this
-		while(myIter.hasNext()){
-			// Get the next atom contact
-			AtomContact ac = myIter.next();
-			Group g1 = ac.getPair().getFirst().getGroup();
-			Group g2 = ac.getPair().getSecond().getGroup();
-			// Get the indices
-			int i = indResMap.get(g1.getResidueNumber());
-			int j = indResMap.get(g2.getResidueNumber());
-			// If i>j switch them over
-			if(i>j){
-				// Switch them over
-				int old = i;
-				i = j;
-				j = old;
-			}
-			// Only these
-			if(j<i+3){
-				continue;
-			}
-			// If it's the first
-			if(i==0){
-				continue;
-			}
-			if(j==0){
-				continue;
-			}
-			// If it's the last
-			if(i==groups.length-1){
-				continue;
-			}
-			if(j==groups.length-1){
-				continue;
-			}
 
-			Pair<Integer> thisPair = new Pair<Integer>(i,j);
-			outList.add(thisPair);
-		}
-		//
-		Collections.sort(outList, new Comparator<Pair<Integer>>() {
-			@Override
-			public int compare(Pair<Integer> o1, Pair<Integer> o2) {
-				if(o1.getFirst()<o2.getFirst()){
-					return -1;
-				}
-				else if(o1.getFirst()>o2.getFirst()){
-					return +1;
-				}
-				else{
-					if(o1.getSecond()<o2.getSecond()){
-						return -1;
-					}
-					else if(o1.getSecond()>o2.getSecond()){
-						return 1;
-					}
-					else{
-						return 0;
-					}
-				}
-			}
-		});
-
-
-
-		for(Pair<Integer> p: outList){
-			int i = p.getFirst();
-			int j = p.getSecond();
+		for (long candidate : bridgeCandidates) {
+			int i = (int) (candidate / length);
+			int j = (int) (candidate % length);
 			BridgeType btype = null;
 			// Now do the bonding
 			if ((isBonded(i-1,j) && isBonded(j,i+1)) ||
@@ -507,53 +671,64 @@ public class SecStrucCalc {
 				registerBridge(i, j, btype);
 			}
 		}
-
-
 	}
 
 	private void detectBends() {
 
-		for (int i = 2 ; i < groups.length-2 ;i++){
+		for (int i = 2 ; i < length-2 ;i++){
 
 			//Check if all atoms form peptide bonds (backbone discontinuity)
 			boolean bonded = true;
 			for (int k=0; k<4; k++){
 				int index = i+k-2;
-				Atom C = groups[index].getC();
-				Atom N = groups[index+1].getN();
 				//Peptide bond C-N
-				if (Calc.getDistance(C, N) > MAX_PEPTIDE_BOND_LENGTH){
+				if (distance(STRIDE*index + C, STRIDE*(index+1) + N) > MAX_PEPTIDE_BOND_LENGTH){
 					bonded = false;
 					break;
 				}
 			}
 			if (!bonded) continue;
 
-			SecStrucGroup im2 = groups[i-2];
-			SecStrucGroup g = groups[i];
-			SecStrucGroup ip2 = groups[i+2];
-
-			Atom caim2 = im2.getCA();
-			Atom cag   = g.getCA();
-			Atom caip2 = ip2.getCA();
+			int caim2 = STRIDE*(i-2) + CA;
+			int cag   = STRIDE*i + CA;
+			int caip2 = STRIDE*(i+2) + CA;
 
 			//Create vectors ( Ca i to Ca i-2 ) ; ( Ca i to CA i + 2 )
-			Atom caminus2 = Calc.subtract(caim2,cag);
-			Atom caplus2  = Calc.subtract(cag,caip2);
-
-			double angle = Calc.angle(caminus2, caplus2);
-
-			SecStrucState state = getSecStrucState(i);
-			state.setKappa((float) angle);
+			double ax = backbone[caim2] - backbone[cag];
+			double ay = backbone[caim2+1] - backbone[cag+1];
+			double az = backbone[caim2+2] - backbone[cag+2];
+			double bx = backbone[cag] - backbone[caip2];
+			double by = backbone[cag+1] - backbone[caip2+1];
+			double bz = backbone[cag+2] - backbone[caip2+2];
+
+			// Same arithmetic as Calc.angle
+			double cos = (ax*bx + ay*by + az*bz) /
+					(Math.sqrt(ax*ax + ay*ay + az*az) * Math.sqrt(bx*bx + by*by + bz*bz));
+			if (cos < -1.0) cos = -1.0;
+			if (cos > 1.0) cos = 1.0;
+			double angle = Math.toDegrees(Math.acos(cos));
+
+			if (states != null) states[i].setKappa((float) angle);
 
 			//Angles = 360 should be discarded
 			if (angle > 70.0 && angle < 359.99) {
 				setSecStrucType(i, SecStrucType.bend);
-				state.setBend(true);
+				if (states != null) states[i].setBend(true);
 			}
 		}
 	}
 
+	/**
+	 * Distance between two atoms of the backbone array, given by the
+	 * offsets of their coordinates.
+	 */
+	private double distance(int a, int b) {
+		double x = backbone[a] - backbone[b];
+		double y = backbone[a+1] - backbone[b+1];
+		double z = backbone[a+2] - backbone[b+2];
+		return Math.sqrt(x * x + y * y + z * z);
+	}
+
 	private void calculateDihedralAngles()  {
 
 		// dihedral angles
@@ -704,122 +879,158 @@ public class SecStrucCalc {
 		}
 	}
 
-	private static SecStrucGroup[] initGroupArray(Structure s, int modelId) {
-		List<SecStrucGroup> groupList = new ArrayList<SecStrucGroup>();
-		//
-		for ( Chain c : s.getChains(modelId)){
-
-			for (Group g : c.getAtomGroups()){
-
-				//We can also calc secstruc if it is a modified amino acid
-				if ( g.hasAminoAtoms()) {
-
-					SecStrucGroup sg = new SecStrucGroup();
-					sg.setResidueNumber(g.getResidueNumber());
-					sg.setPDBFlag(true);
-					sg.setPDBName(g.getPDBName());
-					sg.setChain(g.getChain());
-
-					Atom N = g.getAtom(StructureTools.N_ATOM_NAME);
-					Atom CA =  g.getAtom(StructureTools.CA_ATOM_NAME);
-					Atom C = g.getAtom(StructureTools.C_ATOM_NAME);
-					Atom O =  g.getAtom(StructureTools.O_ATOM_NAME);
-					if ( N == null || CA == null || C == null || O == null)
-						continue;
-
-					sg.setN((Atom)   N.clone());
-					sg.setCA((Atom) CA.clone());
-					sg.setC((Atom)   C.clone());
-					sg.setO((Atom)  O.clone());
-					sg.setOriginal(g);
-
-					SecStrucState state = new SecStrucState(sg,
-							SecStrucInfo.BIOJAVA_ASSIGNMENT,
-							SecStrucType.coil);
-
-					sg.setProperty(Group.SEC_STRUC, state);
-					groupList.add(sg);
-				}
-			}
-
+	private static SecStrucGroup[] initGroupArray(List<Group> backboneGroups) {
+		SecStrucGroup[] groupArray = new SecStrucGroup[backboneGroups.size()];
+		for (int i = 0; i < groupArray.length; i++) {
+
+			Group g = backboneGroups.get(i);
+			SecStrucGroup sg = new SecStrucGroup();
+			sg.setResidueNumber(g.getResidueNumber());
+			sg.setPDBFlag(true);
+			sg.setPDBName(g.getPDBName());
+			sg.setChain(g.getChain());
+
+			sg.setN((Atom)  g.getAtom(StructureTools.N_ATOM_NAME).clone());
+			sg.setCA((Atom) g.getAtom(StructureTools.CA_ATOM_NAME).clone());
+			sg.setC((Atom)  g.getAtom(StructureTools.C_ATOM_NAME).clone());
+			sg.setO((Atom)  g.getAtom(StructureTools.O_ATOM_NAME).clone());
+			sg.setOriginal(g);
+
+			SecStrucState state = new SecStrucState(sg,
+					SecStrucInfo.BIOJAVA_ASSIGNMENT,
+					SecStrucType.coil);
+
+			sg.setProperty(Group.SEC_STRUC, state);
+			groupArray[i] = sg;
 		}
-		return groupList.toArray(new SecStrucGroup[groupList.size()]);
+		return groupArray;
 	}
 
 	/**
 	 * Calculate the coordinates of the H atoms. They are usually
 	 * missing in the PDB files as only few experimental methods allow
 	 * to resolve their location.
+	 * <p>
+	 * The H of a residue is placed at 1 &aring; from its N, in the
+	 * direction of the O to C vector of the previous residue.
 	 */
-	private void calculateHAtoms() throws StructureException {
+	private void calculateHAtoms() {
 
-		for ( int i = 0 ; i < groups.length-1  ; i++) {
+		for ( int i = 0 ; i < length-1  ; i++) {
 
-			SecStrucGroup a  = groups[i];
-			SecStrucGroup b  = groups[i+1];
+			int a = STRIDE * i;
+			int b = STRIDE * (i+1);
 
-			if ( !b.hasAtom("H") ) {
-				//Atom H = calc_H(a.getC(), b.getN(), b.getCA());
-				Atom H = calcSimple_H(a.getC(), a.getO(), b.getN());
-				b.setH(H);
+			double hx = backbone[a+C] - backbone[a+O];
+			double hy = backbone[a+C+1] - backbone[a+O+1];
+			double hz = backbone[a+C+2] - backbone[a+O+2];
+			double dist = distance(a+O, a+C);
+
+			backbone[b+H] = backbone[b+N] + hx / dist;
+			backbone[b+H+1] = backbone[b+N+1] + hy / dist;
+			backbone[b+H+2] = backbone[b+N+2] + hz / dist;
+
+			if (states != null) {
+				Atom h = new AtomImpl();
+				h.setName("H");
+				h.setX(backbone[b+H]);
+				h.setY(backbone[b+H+1]);
+				h.setZ(backbone[b+H+2]);
+				groups[i+1].setH(h);
 			}
 		}
 	}
 
-
-
 	/**
 	 * Calculate the HBonds between different groups.
 	 * see Creighton page 147 f
-	 * Modified to use only the contact map
+	 * <p>
+	 * Only pairs of residues with CA atoms closer than
+	 * {@link #CA_MIN_DIST} are considered. The energies are calculated in
+	 * blocks of residues, in parallel if nThreads is above 1, and then
+	 * tracked in the order of the blocks, so that the result does not
+	 * depend on the number of threads.
 	 */
-	private void calculateHBonds() {
-		/**
-		 * More efficient method for calculating C-Alpha pairs
-		 */
-		if (groups.length < 5) return;
-		Iterator<AtomContact> otu = contactSet.iterator();
-		while(otu.hasNext()){
-			AtomContact ac = otu.next();
-			Pair<Atom> pair = ac.getPair();
-			Group g1 = pair.getFirst().getGroup();
-			Group g2 = pair.getSecond().getGroup();
-			// Now I need to get the index of the Group in the list groups
-			int i = indResMap.get(g1.getResidueNumber());
-			int j = indResMap.get(g2.getResidueNumber());
-			// Now check this
-			checkAddHBond(i,j);
-			//"backwards" hbonds are not allowed
-			if (j!=(i+1)) checkAddHBond(j,i);
-		}
-	}
+	private void calculateHBonds(int nThreads) {
 
-	private void checkAddHBond(int i, int j){
-
-		SecStrucGroup one = groups[i];
-
-		if (one.getPDBName().equals("PRO")){
-			logger.debug("Ignore: PRO {}", one.getResidueNumber());
-			return;
+		double[] caCoords = new double[3 * length];
+		for (int i = 0; i < length; i++) {
+			System.arraycopy(backbone, STRIDE * i + CA, caCoords, 3 * i, 3);
 		}
-		if (!one.hasAtom("H")) {
-			logger.debug("Residue {} has no H",one.getResidueNumber());
-			return;
+		SpatialIndex index = new SpatialIndex(caCoords, CA_MIN_DIST);
+
+		List<HBondPairs> blocks = new ArrayList<HBondPairs>();
+		if (nThreads <= 1 || length <= RESIDUES_PER_TASK) {
+			HBondPairs pairs = new HBondPairs();
+			index.forEachContact(CA_MIN_DIST, pairs);
+			blocks.add(pairs);
+		} else {
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (int from = 0; from < length; from += RESIDUES_PER_TASK) {
+				int blockStart = from;
+				int blockEnd = Math.min(from + RESIDUES_PER_TASK, length);
+				HBondPairs pairs = new HBondPairs();
+				blocks.add(pairs);
+				tasks.add(() -> {
+					index.forEachContact(blockStart, blockEnd, CA_MIN_DIST, pairs);
+					return null;
+				});
+			}
+			try {
+				ConcurrencyTools.invokeAll(tasks, nThreads);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Error while calculating H-bonds", e.getCause());
+			}
 		}
 
-		SecStrucGroup two = groups[j];
-
-		double energy = 0;
-
-		try {
-			energy = calculateHBondEnergy(one,two);
-		} catch (Exception e){
-			logger.warn("Energy calculation failed", e);
-			return;
+		int candidates = 0;
+		long[] bridgePairs = new long[64];
+		for (HBondPairs pairs : blocks) {
+			for (int k = 0; k < pairs.size; k++) {
+				int i = pairs.is[k];
+				int j = pairs.js[k];
+				trackHBondEnergy(i, j, pairs.forward[k]);
+				trackHBondEnergy(j, i, pairs.backward[k]);
+
+				// The first and last residues cannot form bridges
+				if (j >= i+3 && i != 0 && j != length-1) {
+					if (candidates == bridgePairs.length)
+						bridgePairs = Arrays.copyOf(bridgePairs, 2 * candidates);
+					bridgePairs[candidates++] = (long) i * length + j;
+				}
+			}
 		}
-		logger.debug("Energy between positions ({},{}): ",i,j,energy);
+		bridgeCandidates = Arrays.copyOf(bridgePairs, candidates);
+		Arrays.sort(bridgeCandidates);
+	}
 
-		trackHBondEnergy(i,j,energy);
+	/**
+	 * Collects the CA contacts of a block of residues with the H-bond
+	 * energies in both directions, in primitive arrays.
+	 */
+	private class HBondPairs implements SpatialIndex.PairVisitor {
+		int[] is = new int[1024];
+		int[] js = new int[1024];
+		// energy of NH of i to CO of j, and of NH of j to CO of i
+		double[] forward = new double[1024];
+		double[] backward = new double[1024];
+		int size;
+
+		@Override
+		public void visit(int i, int j, double distance) {
+			if (size == is.length) {
+				is = Arrays.copyOf(is, 2 * size);
+				js = Arrays.copyOf(js, 2 * size);
+				forward = Arrays.copyOf(forward, 2 * size);
+				backward = Arrays.copyOf(backward, 2 * size);
+			}
+			is[size] = i;
+			js[size] = j;
+			forward[size] = calculateHBondEnergy(i, j);
+			//"backwards" hbonds are not allowed
+			backward[size] = j != i+1 ? calculateHBondEnergy(j, i) : Double.NaN;
+			size++;
+		}
 	}
 
 	/**
@@ -833,24 +1044,23 @@ public class SecStrucCalc {
 	 * 2.5-3.2 &aring; as "moderate, mostly electrostatic",
 	 * 3.2-4.0 &aring; as "weak, electrostatic".
 	 * Energies are given as 40-14, 15-4, and <4 kcal/mol respectively.
+	 *
+	 * @param i the residue of the NH
+	 * @param j the residue of the CO
+	 * @return the energy, or NaN if the NH of i can not form H-bonds
+	 * 			(a proline or the first residue, which has no H)
 	 */
-	private static double calculateHBondEnergy(SecStrucGroup one,
-			SecStrucGroup two) {
+	private double calculateHBondEnergy(int i, int j) {
 
-		Atom N = one.getN();
-		Atom H = one.getH();
+		if (i == 0 || proline[i]) return Double.NaN;
 
-		Atom O = two.getO();
-		Atom C = two.getC();
+		int one = STRIDE * i;
+		int two = STRIDE * j;
 
-		double dno = Calc.getDistance(O,N);
-		double dhc = Calc.getDistance(C,H);
-		double dho = Calc.getDistance(O,H);
-		double dnc = Calc.getDistance(C,N);
-
-		logger.debug(" cccc: {} {} {} {} O ({})..N ({}):{}  |  ho:{} - hc:{} + nc:{} - no:{}",
-				one.getResidueNumber(),one.getPDBName(),two.getResidueNumber(),two.getPDBName(),
-				O.getPDBserial(),N.getPDBserial(),dno,dho,dhc,dnc,dno);
+		double dno = distance(two+O, one+N);
+		double dhc = distance(two+C, one+H);
+		double dho = distance(two+O, one+H);
+		double dnc = distance(two+C, one+N);
 
 		//there seems to be a contact!
 		if ( (dno < MINDIST) || (dhc < MINDIST) ||
@@ -863,8 +1073,6 @@ public class SecStrucCalc {
 
 		double energy = e1 + e2;
 
-		logger.debug(" N ({}) O({}): {} : {} ",N.getPDBserial(),O.getPDBserial(),(float) dno,energy);
-
 		//Avoid too strong energy
 		if (energy > HBONDLOWENERGY) return energy;
 
@@ -872,66 +1080,36 @@ public class SecStrucCalc {
 	}
 
 	/**
-	 * Store Hbonds in the Groups.
+	 * Store Hbonds in the primitive per-residue arrays.
 	 * DSSP allows two HBonds per aminoacids to allow bifurcated bonds.
 	 */
-	private  void trackHBondEnergy(int i, int j, double energy) {
-
-		if (groups[i].getPDBName().equals("PRO")) {
-			logger.debug("Ignore: PRO {}",groups[i].getResidueNumber());
-			return;
-		}
-
-		SecStrucState stateOne = getSecStrucState(i);
-		SecStrucState stateTwo = getSecStrucState(j);
+	private void trackHBondEnergy(int i, int j, double energy) {
 
-		double acc1e = stateOne.getAccept1().getEnergy();
-		double acc2e = stateOne.getAccept2().getEnergy();
-
-		double don1e = stateTwo.getDonor1().getEnergy();
-		double don2e = stateTwo.getDonor2().getEnergy();
+		//No H-bond from PRO, the first residue or backwards
+		if (Double.isNaN(energy)) return;
 
 		//Acceptor: N-H-->O
-		if (energy < acc1e) {
-			logger.debug("{} < {}",energy,acc1e);
-			stateOne.setAccept2(stateOne.getAccept1());
-
-			HBond bond = new HBond();
-			bond.setEnergy(energy);
-			bond.setPartner(j);
-
-			stateOne.setAccept1(bond);
-
-		} else if ( energy < acc2e ) {
-			logger.debug("{} < {}",energy,acc2e);
-
-			HBond bond = new HBond();
-			bond.setEnergy(energy);
-			bond.setPartner(j);
-
-			stateOne.setAccept2(bond);
+		int acc = 4 * i;
+		if (energy < hbondEnergies[acc]) {
+			hbondEnergies[acc+1] = hbondEnergies[acc];
+			hbondPartners[acc+1] = hbondPartners[acc];
+			hbondEnergies[acc] = energy;
+			hbondPartners[acc] = j;
+		} else if (energy < hbondEnergies[acc+1]) {
+			hbondEnergies[acc+1] = energy;
+			hbondPartners[acc+1] = j;
 		}
 
-
 		//The other side of the bond: donor O-->N-H
-		if (energy <  don1e) {
-			logger.debug("{} < {}",energy,don1e);
-			stateTwo.setDonor2(stateTwo.getDonor1());
-
-			HBond bond = new HBond();
-			bond.setEnergy(energy);
-			bond.setPartner(i);
-
-			stateTwo.setDonor1(bond);
-
-		} else if ( energy < don2e ) {
-			logger.debug("{} < {}",energy,don2e);
-
-			HBond bond = new HBond();
-			bond.setEnergy(energy);
-			bond.setPartner(i);
-
-			stateTwo.setDonor2(bond);
+		int don = 4 * j + 2;
+		if (energy < hbondEnergies[don]) {
+			hbondEnergies[don+1] = hbondEnergies[don];
+			hbondPartners[don+1] = hbondPartners[don];
+			hbondEnergies[don] = energy;
+			hbondPartners[don] = i;
+		} else if (energy < hbondEnergies[don+1]) {
+			hbondEnergies[don+1] = energy;
+			hbondPartners[don+1] = i;
 		}
 	}
 
@@ -940,21 +1118,20 @@ public class SecStrucCalc {
 	 */
 	private void calculateTurns(){
 
-		for (int i = 0 ; i< groups.length; i++){
+		for (int i = 0 ; i< length; i++){
 			for (int turn = 3; turn <= 5; turn++) {
 
-				if (i+turn >= groups.length) continue;
+				if (i+turn >= length) continue;
 
 				//Check for H bond from NH(i+n) to CO(i)
 				if (isBonded(i, i+turn)) {
 					logger.debug("Turn at ({},{}) turn {}",i,(i+turn),turn);
-					getSecStrucState(i).setTurn('>', turn);
-					getSecStrucState(i+turn).setTurn('<', turn);
+					setTurn(i, '>', turn);
+					setTurn(i+turn, '<', turn);
 					//Bracketed residues get the helix number
 					for (int j=i+1; j<i+turn; j++){
-						Integer t = turn;
-						char helix = t.toString().charAt(0);
-						getSecStrucState(j).setTurn(helix, turn);
+						char helix = (char) ('0' + turn);
+						setTurn(j, helix, turn);
 					}
 				}
 			}
@@ -974,24 +1151,14 @@ public class SecStrucCalc {
 	 */
 	private boolean isBonded(int i, int j) {
 
-		SecStrucState one = getSecStrucState(i);
-		SecStrucState two = getSecStrucState(j);
-
-		double don1e = one.getDonor1().getEnergy();
-		double don2e = one.getDonor2().getEnergy();
-		double acc1e = two.getAccept1().getEnergy();
-		double acc2e = two.getAccept2().getEnergy();
-
-		int don1p = one.getDonor1().getPartner();
-		int don2p = one.getDonor2().getPartner();
-		int acc1p = two.getAccept1().getPartner();
-		int acc2p = two.getAccept2().getPartner();
+		int don = 4 * i + 2;
+		int acc = 4 * j;
 
 		//Either donor from i is j, or accept from j is i
-		boolean hbond = (don1p == j && don1e < HBONDHIGHENERGY) ||
-				(don2p == j && don2e < HBONDHIGHENERGY) ||
-				(acc1p == i && acc1e < HBONDHIGHENERGY) ||
-				(acc2p == i && acc2e < HBONDHIGHENERGY);
+		boolean hbond = (hbondPartners[don] == j && hbondEnergies[don] < HBONDHIGHENERGY) ||
+				(hbondPartners[don+1] == j && hbondEnergies[don+1] < HBONDHIGHENERGY) ||
+				(hbondPartners[acc] == i && hbondEnergies[acc] < HBONDHIGHENERGY) ||
+				(hbondPartners[acc+1] == i && hbondEnergies[acc+1] < HBONDHIGHENERGY);
 
 		if (hbond){
 			logger.debug("*** H-bond from CO of {} to NH of {}", i, j);
@@ -1000,6 +1167,23 @@ public class SecStrucCalc {
 		return false ;
 	}
 
+	/**
+	 * Set a turn symbol of a residue, with the same rules as
+	 * {@link SecStrucState#setTurn(char, int)}.
+	 */
+	private void setTurn(int pos, char c, int t) {
+		int k = 3 * pos + t - 3;
+		if (turns[k] == 'X')
+			return;
+		else if (turns[k] == '<' && c == '>' || turns[k] == '>'
+				&& c == '<') {
+			turns[k] = 'X';
+		} else if (turns[k] == '<' || turns[k] == '>')
+			return;
+		else
+			turns[k] = c;
+	}
+
 	/**
 	 * Use unit vectors NC and NCalpha Add them. Calc unit vector and
 	 * substract it from N.
@@ -1032,23 +1216,6 @@ public class SecStrucCalc {
 
 	}
 
-	private static Atom calcSimple_H(Atom c, Atom o, Atom n)  {
-
-		Atom h = Calc.subtract(c,o);
-		double dist = Calc.getDistance(o,c);
-		//System.out.println(dist);
-		double x = n.getX() + h.getX() / dist;
-		double y = n.getY() + h.getY() / dist;
-		double z = n.getZ() + h.getZ() / dist;
-
-		h.setX(x);
-		h.setY(y);
-		h.setZ(z);
-
-		h.setName("H");
-		return h;
-	}
-
 	private void buildHelices(){
 
 		//Alpha-helix (i+4), 3-10-helix (i+3), Pi-helix (i+5)
@@ -1064,13 +1231,12 @@ public class SecStrucCalc {
 		SecStrucType type = SecStrucType.turn;
 
 		for (int idx = 0; idx < 3; idx++) {
-			for (int i = 0; i < groups.length-1; i++) {
+			for (int i = 0; i < length-1; i++) {
 
-				SecStrucState state = getSecStrucState(i);
-				char[] turn = state.getTurn();
+				char turn = turns[3*i + idx];
 
 				//Any turn opening matters
-				if (turn[idx] == '>' || turn[idx] == 'X') {
+				if (turn == '>' || turn == 'X') {
 					//Mark following n residues as turn
 					for (int k=1; k<idx+3; k++){
 						setSecStrucType(i+k, type);
@@ -1103,17 +1269,14 @@ public class SecStrucCalc {
 		int idx = n - 3;
 		logger.debug("Set helix {} {} {}", type, n, idx);
 
-		for (int i = 1; i < groups.length-n; i++) {
-
-			SecStrucState state = getSecStrucState(i);
-			SecStrucState previousState = getSecStrucState(i-1);
+		for (int i = 1; i < length-n; i++) {
 
 			//Check that no other helix was assgined to this range
-			if (state.getType().compareTo(type) < 0) continue;
-			if (getSecStrucState(i+1).getType().compareTo(type) < 0) continue;
+			if (types[i].compareTo(type) < 0) continue;
+			if (types[i+1].compareTo(type) < 0) continue;
 
-			char turn = state.getTurn()[idx];
-			char pturn = previousState.getTurn()[idx];
+			char turn = turns[3*i + idx];
+			char pturn = turns[3*(i-1) + idx];
 
 			//Two consecutive n-turns present to define a n-helix
 			if ((turn=='>' || turn=='X') && (pturn=='>' || pturn=='X')) {
@@ -1136,8 +1299,7 @@ public class SecStrucCalc {
 	 * @param type
 	 */
 	private void setSecStrucType(int pos, SecStrucType type){
-		SecStrucState ss = getSecStrucState(pos);
-		if (type.compareTo(ss.getType()) < 0) ss.setType(type);
+		if (type.compareTo(types[pos]) < 0) types[pos] = type;
 	}
 
 	private SecStrucState getSecStrucState(int pos){
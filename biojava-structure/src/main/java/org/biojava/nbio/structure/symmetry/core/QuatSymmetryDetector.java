@@ -22,6 +22,7 @@
  */
 package org.biojava.nbio.structure.symmetry.core;
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.Calc;
 import org.biojava.nbio.structure.Structure;
 import org.biojava.nbio.structure.cluster.*;
@@ -38,6 +39,12 @@ import org.jgrapht.Graph;
 
 import javax.vecmath.Point3d;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -127,6 +134,86 @@ public class QuatSymmetryDetector {
 		return calcQuatSymmetry(composition, symmParams);
 	}
 
+	/**
+	 * Calculate GLOBAL symmetry results of many structures, with the same
+	 * parameters. The structures are processed in parallel with the number of
+	 * threads of the {@link QuatSymmetryParameters}.
+	 *
+	 * @param structures
+	 *            protein chains of each structure will be extracted as
+	 *            {@link Subunit}
+	 * @param symmParams
+	 *            quaternary symmetry parameters
+	 * @param clusterParams
+	 *            subunit clustering parameters
+	 * @return GLOBAL quaternary structure symmetry results, in the order of
+	 *         the structures
+	 * @since 6.0.6
+	 */
+	public static List<QuatSymmetryResults> calcGlobalSymmetryBatch(
+			List<Structure> structures, QuatSymmetryParameters symmParams,
+			SubunitClustererParameters clusterParams) {
+		return calcBatch(structures, symmParams.getNThreads(),
+				s -> calcGlobalSymmetry(s, symmParams, clusterParams));
+	}
+
+	/**
+	 * Calculate LOCAL symmetry results of many structures, with the same
+	 * parameters. The structures are processed in parallel with the number of
+	 * threads of the {@link QuatSymmetryParameters}, and the local search of
+	 * each structure runs in a single thread.
+	 * <p>
+	 * The limits of the local search apply to each structure, except the time
+	 * limit, which is shared by the whole batch if it was set with
+	 * {@link QuatSymmetryParameters#useLocalTimeLimit(double)}.
+	 *
+	 * @param structures
+	 *            protein chains of each structure will be extracted as
+	 *            {@link Subunit}
+	 * @param symmParams
+	 *            quaternary symmetry parameters
+	 * @param clusterParams
+	 *            subunit clustering parameters
+	 * @return the List of LOCAL quaternary structure symmetry results of each
+	 *         structure, in the order of the structures
+	 * @since 6.0.6
+	 */
+	public static List<List<QuatSymmetryResults>> calcLocalSymmetriesBatch(
+			List<Structure> structures, QuatSymmetryParameters symmParams,
+			SubunitClustererParameters clusterParams) {
+		return calcBatch(structures, symmParams.getNThreads(),
+				s -> calcLocalSymmetries(
+						SubunitClusterer.cluster(s, clusterParams), symmParams, 1));
+	}
+
+	private static <T> List<T> calcBatch(List<Structure> structures,
+			int nThreads, Function<Structure, T> calculation) {
+
+		List<Callable<T>> tasks = new ArrayList<>(structures.size());
+		for (Structure structure : structures) {
+			tasks.add(() -> calculation.apply(structure));
+		}
+		try {
+			return ConcurrencyTools.invokeAll(tasks, nThreads);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static <T> T getResult(Future<T> future) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted during the symmetry calculation", e);
+		}
+	}
+
 
 	/**
 	 * Returns a List of LOCAL symmetry results. This means that a subset of the
@@ -188,6 +275,10 @@ public class QuatSymmetryDetector {
 	 * Determine local symmetry if global structure is: (1) asymmetric, C1; (2)
 	 * heteromeric (belongs to more than 1 subunit cluster); (3) more than 2
 	 * subunits (heteromers with just 2 chains cannot have local symmetry)
+	 * <p>
+	 * With more than one thread in the {@link QuatSymmetryParameters}, the
+	 * subsets of subunits are solved in parallel ahead of the search, which
+	 * returns the same results as with a single thread.
 	 *
 	 * @param globalComposition
 	 *            {@link Stoichiometry} object that contains global clustering results
@@ -198,6 +289,10 @@ public class QuatSymmetryDetector {
 	 */
 
 	public static List<QuatSymmetryResults> calcLocalSymmetries(Stoichiometry globalComposition, QuatSymmetryParameters symmParams) {
+		return calcLocalSymmetries(globalComposition, symmParams, symmParams.getNThreads());
+	}
+
+	private static List<QuatSymmetryResults> calcLocalSymmetries(Stoichiometry globalComposition, QuatSymmetryParameters symmParams, int nThreads) {
 
 		Set<Set<Integer>> knownCombinations = new HashSet<>();
 		List<SubunitCluster> clusters = globalComposition.getClusters();
@@ -226,24 +321,30 @@ public class QuatSymmetryDetector {
 						groupingBy(allSubunitClusterIds::get, Collectors.toList()));
 
 		List<QuatSymmetryResults> redundantSymmetries = new ArrayList<>();
-		// first, find symmetries for single clusters and their groups
-		// grouping is done based on symmetries found (i.e., no exhaustive permutation search is performed)
-		if (clusters.size()>1) {
-
-			List<QuatSymmetryResults> clusterSymmetries =
-					calcLocalSymmetriesCluster(nontrivialComposition, clusterIdToSubunitIds,symmParams, knownCombinations);
-			redundantSymmetries.addAll(clusterSymmetries);
+		LocalSymmetryCache cache = new LocalSymmetryCache(symmParams, knownCombinations, nThreads);
+		try {
+			// first, find symmetries for single clusters and their groups
+			// grouping is done based on symmetries found (i.e., no exhaustive permutation search is performed)
+			if (clusters.size()>1) {
+
+				List<QuatSymmetryResults> clusterSymmetries =
+						calcLocalSymmetriesCluster(nontrivialComposition, clusterIdToSubunitIds,symmParams, knownCombinations, cache);
+				redundantSymmetries.addAll(clusterSymmetries);
+			}
+			//find symmetries for groups based on connectivity of subunits
+			// disregarding initial clustering
+			List<QuatSymmetryResults> graphSymmetries = calcLocalSymmetriesGraph(nontrivialComposition,
+																				allSubunitClusterIds,
+																				clusterIdToSubunitIds,
+																				symmParams,
+																				knownCombinations,
+																				graph,
+																				cache);
+
+			redundantSymmetries.addAll(graphSymmetries);
+		} finally {
+			cache.close();
 		}
-		//find symmetries for groups based on connectivity of subunits
-		// disregarding initial clustering
-		List<QuatSymmetryResults> graphSymmetries = calcLocalSymmetriesGraph(nontrivialComposition,
-																			allSubunitClusterIds,
-																			clusterIdToSubunitIds,
-																			symmParams,
-																			knownCombinations,
-																			graph);
-
-		redundantSymmetries.addAll(graphSymmetries);
 
 		// find symmetries which are not superseded by any other symmetry
 		// e.g., we have global stoichiometry of A3B3C,
@@ -306,14 +407,19 @@ public class QuatSymmetryDetector {
 	private static List<QuatSymmetryResults> calcLocalSymmetriesCluster(Stoichiometry nontrivialComposition,
 	                                                                    Map<Integer, List<Integer>> clusterIdToSubunitIds,
 	                                                                    QuatSymmetryParameters symmParams,
-	                                                                    Set<Set<Integer>> knownCombinations) {
+	                                                                    Set<Set<Integer>> knownCombinations,
+	                                                                    LocalSymmetryCache cache) {
 
 		List<QuatSymmetryResults> clusterSymmetries = new ArrayList<>();
 
+		for (int i=0;i<nontrivialComposition.numberOfComponents();i++) {
+			cache.submit(new HashSet<>(clusterIdToSubunitIds.get(i)), nontrivialComposition.getComponent(i));
+		}
+
 		// find solutions for single clusters first
 		for (int i=0;i<nontrivialComposition.numberOfComponents();i++) {
 			QuatSymmetryResults localResult =
-					calcQuatSymmetry(nontrivialComposition.getComponent(i),symmParams);
+					cache.get(new HashSet<>(clusterIdToSubunitIds.get(i)), nontrivialComposition.getComponent(i));
 
 			if(localResult!=null && !localResult.getSymmetry().equals("C1")) {
 				localResult.setLocal(true);
@@ -370,7 +476,8 @@ public class QuatSymmetryDetector {
 	                                                                  final Map<Integer, List<Integer>> clusterIdToSubunitIds,
 	                                                                  QuatSymmetryParameters symmParams,
 	                                                                  Set<Set<Integer>> knownCombinations,
-	                                                                  Graph<Integer, DefaultEdge> graph) {
+	                                                                  Graph<Integer, DefaultEdge> graph,
+	                                                                  LocalSymmetryCache cache) {
 
 		List<QuatSymmetryResults> localSymmetries = new ArrayList<>();
 
@@ -379,18 +486,15 @@ public class QuatSymmetryDetector {
 			return localSymmetries;
 		}
 		// extract components of a (sub-)graph
-		CliqueMinimalSeparatorDecomposition<Integer, DefaultEdge> cmsd =
-				new CliqueMinimalSeparatorDecomposition<>(graph);
-
-		// only consider components with more than 1 vertex (subunit)
-		Set<Set<Integer>> graphComponents =
-				cmsd.getAtoms().stream().
-					filter(component -> component.size()>1).
-					collect(Collectors.toSet());
+		Set<Set<Integer>> graphComponents = cache.getGraphComponents(graph);
 
 		//do not go into what has already been explored
 		graphComponents.removeAll(knownCombinations);
 
+		for (Set<Integer> graphComponent: graphComponents) {
+			submitGraphComponent(globalComposition, allSubunitClusterIds, clusterIdToSubunitIds, graphComponent, cache);
+		}
+
 		for (Set<Integer> graphComponent: graphComponents) {
 			knownCombinations.add(graphComponent);
 
@@ -416,7 +520,7 @@ public class QuatSymmetryDetector {
 				}
 			}
 
-			QuatSymmetryResults localResult = calcQuatSymmetry(localStoichiometry,symmParams);
+			QuatSymmetryResults localResult = cache.get(usedSubunitIdsSet, localStoichiometry);
 			if(localResult!=null && !localResult.getSymmetry().equals("C1")) {
 				localResult.setLocal(true);
 				localSymmetries.add(localResult);
@@ -428,6 +532,23 @@ public class QuatSymmetryDetector {
 				continue;
 			}
 
+			if (cache.isParallel()) {
+				// solve the components of all the pruned sub-graphs ahead of the recursion
+				for (Integer removeSubunitId: usedSubunitIds) {
+					Set<Integer> prunedGraphVertices = new HashSet<>(usedSubunitIds);
+					prunedGraphVertices.remove(removeSubunitId);
+					if (knownCombinations.contains(prunedGraphVertices)) {
+						continue;
+					}
+					Graph<Integer, DefaultEdge> subGraph = new AsSubgraph<>(graph,prunedGraphVertices);
+					for (Set<Integer> subComponent: cache.getGraphComponents(subGraph)) {
+						if (!knownCombinations.contains(subComponent)) {
+							submitGraphComponent(globalComposition, allSubunitClusterIds, clusterIdToSubunitIds, subComponent, cache);
+						}
+					}
+				}
+			}
+
 			for (Integer removeSubunitId: usedSubunitIds) {
 				// try removing subunits one by one and decompose the sub-graph recursively
 				Set<Integer> prunedGraphVertices = new HashSet<>(usedSubunitIds);
@@ -444,7 +565,8 @@ public class QuatSymmetryDetector {
 																						clusterIdToSubunitIds,
 																						symmParams,
 																						knownCombinations,
-																						subGraph);
+																						subGraph,
+																						cache);
 				localSymmetries.addAll(localSubSymmetries);
 			}
 
@@ -453,6 +575,27 @@ public class QuatSymmetryDetector {
 		return localSymmetries;
 	}
 
+	/**
+	 * Starts solving the subunits of a graph component in the background, as
+	 * {@link #calcLocalSymmetriesGraph} will solve them.
+	 */
+	private static void submitGraphComponent(Stoichiometry globalComposition,
+	                                         List<Integer> allSubunitClusterIds,
+	                                         Map<Integer, List<Integer>> clusterIdToSubunitIds,
+	                                         Set<Integer> graphComponent,
+	                                         LocalSymmetryCache cache) {
+		if (!cache.isParallel()) {
+			return;
+		}
+		List<Integer> usedSubunitIds = new ArrayList<>(graphComponent);
+		Collections.sort(usedSubunitIds);
+		Stoichiometry localStoichiometry =
+				trimSubunitClusters(globalComposition, allSubunitClusterIds, clusterIdToSubunitIds, usedSubunitIds);
+		if (localStoichiometry.numberOfComponents() > 0) {
+			cache.submit(new HashSet<>(usedSubunitIds), localStoichiometry);
+		}
+	}
+
 	private static Stoichiometry trimSubunitClusters(Stoichiometry globalComposition,
 	                                                        List<Integer> allSubunitClusterIds,
 	                                                        Map<Integer, List<Integer>> clusterIdToSubunitIds,
@@ -494,6 +637,94 @@ public class QuatSymmetryDetector {
 	}
 
 
+	/**
+	 * The symmetry results and graph decompositions of the subsets of
+	 * subunits explored by one local symmetry search, keyed by the ids of the
+	 * subunits, so that no subset is solved twice.
+	 * <p>
+	 * With more than one thread, the search submits the subsets before it
+	 * needs them, and they are solved in parallel within the limits of the
+	 * {@link QuatSymmetryParameters}. The search itself stays sequential, so
+	 * that the explored subsets and the results do not depend on the number of
+	 * threads. Only the search thread calls the methods of this class.
+	 */
+	private static class LocalSymmetryCache {
+
+		private final QuatSymmetryParameters symmParams;
+		private final Set<Set<Integer>> knownCombinations;
+		private final ForkJoinPool pool;
+		private final Map<Set<Integer>, Future<QuatSymmetryResults>> results = new HashMap<>();
+		private final Map<Set<Integer>, List<Set<Integer>>> graphComponents = new HashMap<>();
+		private volatile boolean closed = false;
+
+		LocalSymmetryCache(QuatSymmetryParameters symmParams,
+				Set<Set<Integer>> knownCombinations, int nThreads) {
+			this.symmParams = symmParams;
+			this.knownCombinations = knownCombinations;
+			this.pool = nThreads > 1 ? ConcurrencyTools.getForkJoinPool(nThreads) : null;
+		}
+
+		boolean isParallel() {
+			return pool != null;
+		}
+
+		/**
+		 * Starts solving a subset of subunits in the background, unless it is
+		 * known or the search is over its limits.
+		 */
+		void submit(Set<Integer> subunitIds, Stoichiometry composition) {
+			if (pool == null || results.containsKey(subunitIds)
+					|| symmParams.isLocalLimitsExceeded(knownCombinations)) {
+				return;
+			}
+			results.put(subunitIds, pool.submit(
+					() -> closed ? null : calcQuatSymmetry(composition, symmParams)));
+		}
+
+		/**
+		 * The symmetry of a subset of subunits, solved now if it was not
+		 * submitted before.
+		 */
+		QuatSymmetryResults get(Set<Integer> subunitIds, Stoichiometry composition) {
+			Future<QuatSymmetryResults> future = results.get(subunitIds);
+			if (future == null) {
+				QuatSymmetryResults result = calcQuatSymmetry(composition, symmParams);
+				results.put(new HashSet<>(subunitIds), CompletableFuture.completedFuture(result));
+				return result;
+			}
+			return getResult(future);
+		}
+
+		/**
+		 * The components with more than 1 vertex (subunit) of the clique
+		 * minimal separator decomposition of a (sub-)graph.
+		 *
+		 * @return a new modifiable Set
+		 */
+		Set<Set<Integer>> getGraphComponents(Graph<Integer, DefaultEdge> graph) {
+			List<Set<Integer>> components = graphComponents.computeIfAbsent(
+					new HashSet<>(graph.vertexSet()), v -> {
+						CliqueMinimalSeparatorDecomposition<Integer, DefaultEdge> cmsd =
+								new CliqueMinimalSeparatorDecomposition<>(graph);
+						return cmsd.getAtoms().stream().
+								filter(component -> component.size()>1).
+								collect(Collectors.toList());
+					});
+			return components.stream().collect(Collectors.toSet());
+		}
+
+		/**
+		 * Cancels the subsets that were submitted but are not needed anymore.
+		 * The pool is shared and stays open.
+		 */
+		void close() {
+			closed = true;
+			for (Future<QuatSymmetryResults> future : results.values()) {
+				future.cancel(false);
+			}
+		}
+	}
+
 	private static QuatSymmetryResults calcQuatSymmetry(Stoichiometry composition, QuatSymmetryParameters parameters) {
 
 		QuatSymmetrySubunits subunits = new QuatSymmetrySubunits(composition.getClusters());
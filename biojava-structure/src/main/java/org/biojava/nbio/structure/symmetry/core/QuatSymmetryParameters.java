@@ -60,6 +60,8 @@ public class QuatSymmetryParameters implements Serializable {
 
 	private boolean onTheFly = true;
 
+	private int nThreads = 1;
+
 	/**
 	 * @return the rmsdThreshold
 	 */
@@ -202,6 +204,32 @@ public class QuatSymmetryParameters implements Serializable {
 		this.onTheFly = useJmolBioAssemblies;
 	}
 
+	/**
+	 * The number of threads used by the local symmetry search, or by the
+	 * batch methods of {@link QuatSymmetryDetector}.
+	 *
+	 * @return nThreads
+	 * @since 6.0.6
+	 */
+	public int getNThreads() {
+		return nThreads;
+	}
+
+	/**
+	 * The number of threads used by the local symmetry search, or by the
+	 * batch methods of {@link QuatSymmetryDetector}. With more than one
+	 * thread, the subsets of subunits that the local search is about to
+	 * explore are solved in advance and in parallel; the results are the same
+	 * as with a single thread. Default: 1
+	 *
+	 * @param nThreads
+	 *            the number of threads
+	 * @since 6.0.6
+	 */
+	public void setNThreads(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
 	@Override
 	public String toString() {
 		return "QuatSymmetryParameters [rmsdThreshold=" + rmsdThreshold
@@ -213,7 +241,7 @@ public class QuatSymmetryParameters implements Serializable {
 				+ ", maximumLocalCombinations=" + maximumLocalCombinations
 				+ ", localTimeStart=" + localTimeStart
 				+ ", localTimeLimit=" + localTimeLimit + ", onTheFly="
-				+ onTheFly + "]";
+				+ onTheFly + ", nThreads=" + nThreads + "]";
 	}
 
 }
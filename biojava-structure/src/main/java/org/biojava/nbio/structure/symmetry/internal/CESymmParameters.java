@@ -50,6 +50,7 @@ public class CESymmParameters extends CeParameters {
 	private double distanceCutoff;
 	private boolean gaps;
 	private int optimizationSteps;
+	private int optimizationChains;
 
 	public static enum OrderDetectorMethod {
 		SEQUENCE_FUNCTION, GRAPH_COMPONENT, ANGLE, USER_INPUT;
@@ -106,6 +107,7 @@ public class CESymmParameters extends CeParameters {
 		this.distanceCutoff = o.distanceCutoff;
 		this.gaps = o.gaps;
 		this.optimizationSteps = o.optimizationSteps;
+		this.optimizationChains = o.optimizationChains;
 
 		this.winSize = o.winSize;
 		this.rmsdThr = o.rmsdThr;
@@ -140,6 +142,7 @@ public class CESymmParameters extends CeParameters {
 		distanceCutoff = 7.0;
 		gaps = true;
 		optimizationSteps = 0;
+		optimizationChains = 1;
 	}
 
 	@Override
@@ -237,6 +240,10 @@ public class CESymmParameters extends CeParameters {
 		params.add("Optimization Steps: maximum number of optimization steps:"
 				+ " 0 means calculated automatically with the alignment length.");
 
+		// optimization chains
+		params.add("Optimization Chains: number of Monte Carlo chains of the "
+				+ "optimization, run in parallel with different random numbers.");
+
 		return params;
 	}
 
@@ -258,6 +265,7 @@ public class CESymmParameters extends CeParameters {
 		params.add("DistanceCutoff");
 		params.add("Gaps");
 		params.add("OptimizationSteps");
+		params.add("OptimizationChains");
 		return params;
 	}
 
@@ -279,6 +287,7 @@ public class CESymmParameters extends CeParameters {
 		params.add("Distance Cutoff");
 		params.add("Internal Gaps");
 		params.add("Optimization Steps");
+		params.add("Optimization Chains");
 		return params;
 	}
 
@@ -301,6 +310,7 @@ public class CESymmParameters extends CeParameters {
 		params.add(Double.class);
 		params.add(Boolean.class);
 		params.add(Integer.class);
+		params.add(Integer.class);
 		return params;
 	}
 
@@ -433,6 +443,24 @@ public class CESymmParameters extends CeParameters {
 		this.optimizationSteps = optimizationSteps;
 	}
 
+	/**
+	 * @return the number of Monte Carlo chains of the optimization
+	 * @since 6.0.6
+	 */
+	public int getOptimizationChains() {
+		return optimizationChains;
+	}
+
+	/**
+	 * @param optimizationChains
+	 *            the number of Monte Carlo chains of the optimization, run in
+	 *            parallel with different random numbers. Default: 1
+	 * @since 6.0.6
+	 */
+	public void setOptimizationChains(Integer optimizationChains) {
+		this.optimizationChains = optimizationChains;
+	}
+
 	@Override
 	public String toString() {
 		return "CESymmParameters [maxSymmOrder=" + maxSymmOrder
@@ -445,7 +473,8 @@ public class CESymmParameters extends CeParameters {
 				+ refinedScoreThreshold + ", sseThreshold=" + sseThreshold
 				+ ", minCoreLength=" + minCoreLength + ", distanceCutoff="
 				+ distanceCutoff + ", gaps=" + gaps + ", optimizationSteps="
-				+ optimizationSteps + "]";
+				+ optimizationSteps + ", optimizationChains="
+				+ optimizationChains + "]";
 	}
 
 }
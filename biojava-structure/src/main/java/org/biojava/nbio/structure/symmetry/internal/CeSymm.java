@@ -390,8 +390,7 @@ public class CeSymm {
 			// Optimize the global alignment freely once more (final step)
 			if (params.getOptimization() && result.getSymmLevels() > 1) {
 				try {
-					SymmOptimizer optimizer = new SymmOptimizer(result);
-					MultipleAlignment optimized = optimizer.optimize();
+					MultipleAlignment optimized = SymmOptimizer.optimize(result);
 					// Set the optimized MultipleAlignment and the axes
 					result.setMultipleAlignment(optimized);
 				} catch (RefinerFailedException e) {
@@ -424,9 +423,7 @@ public class CeSymm {
 			// STEP 5: symmetry alignment optimization
 			if (result.getParams().getOptimization()) {
 				try {
-					MultipleAlignment msa = result.getMultipleAlignment();
-					SymmOptimizer optimizer = new SymmOptimizer(result);
-					msa = optimizer.optimize();
+					MultipleAlignment msa = SymmOptimizer.optimize(result);
 					result.setMultipleAlignment(msa);
 				} catch (RefinerFailedException e) {
 					logger.debug("Optimization failed:" + e.getMessage());
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
 
 import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.StructureException;
@@ -33,6 +34,7 @@ import org.biojava.nbio.structure.align.multiple.Block;
 import org.biojava.nbio.structure.align.multiple.MultipleAlignment;
 import org.biojava.nbio.structure.align.multiple.MultipleAlignmentEnsemble;
 import org.biojava.nbio.structure.align.multiple.util.MultipleAlignmentScorer;
+import org.biojava.nbio.structure.align.multiple.mc.MonteCarloChains;
 import org.biojava.nbio.structure.align.multiple.util.MultipleAlignmentTools;
 import org.biojava.nbio.structure.jama.Matrix;
 import org.biojava.nbio.structure.symmetry.utils.SymmetryTools;
@@ -52,6 +54,8 @@ import org.slf4j.LoggerFactory;
  * modification of the algorithm improves convergence and running time.
  * <p>
  * Use call method to parallelize optimizations, or use optimize method instead.
+ * {@link #optimize(CeSymmResult)} runs {@link CESymmParameters#getOptimizationChains()}
+ * Monte Carlo chains in parallel and keeps the best alignment.
  * Because gaps are allowed in the repeats, a {@link MultipleAlignment} format
  * is returned.
  *
@@ -59,7 +63,7 @@ import org.slf4j.LoggerFactory;
  * @since 4.1.1
  *
  */
-public class SymmOptimizer {
+public class SymmOptimizer implements MonteCarloChains.Chain<SymmOptimizer> {
 
 	private static final Logger logger = LoggerFactory
 			.getLogger(SymmOptimizer.class);
@@ -90,6 +94,15 @@ public class SymmOptimizer {
 	private List<Integer> freePool; // residues not aligned
 	private double mcScore; // alignment score to optimize
 
+	// Optimization state and optimal alignment of the trajectory
+	private int step; // number of the next step
+	private int conv; // steps without an alignment improvement
+	private int stepsToConverge;
+	private long initialTime;
+	private List<List<Integer>> optBlock;
+	private List<Integer> optFreePool;
+	private double optScore;
+
 	// Variables that store the history of the optimization - slower if on
 	private static final boolean history = false;
 	private static final int saveStep = 100;
@@ -111,9 +124,32 @@ public class SymmOptimizer {
 	 * @throws StructureException
 	 */
 	public SymmOptimizer(CeSymmResult symmResult) {
+		this(symmResult, 0, symmResult.getAxes());
+	}
+
+	/**
+	 * Constructor of one of the chains of a parallel optimization. Each chain
+	 * uses its own random numbers, see
+	 * {@link MonteCarloChains#getRandom(long, int)}; chain 0 is the same as the
+	 * single optimization. Each chain updates its own copy of the symmetry
+	 * axes of the result.
+	 *
+	 * @param symmResult
+	 *            CeSymmResult with all the information
+	 * @param chain
+	 *            the index of the chain
+	 * @since 6.0.6
+	 */
+	public SymmOptimizer(CeSymmResult symmResult, int chain) {
+		this(symmResult, chain, symmResult.getAxes() == null ? null
+				: new SymmetryAxes(symmResult.getAxes()));
+	}
 
-		this.axes = symmResult.getAxes();
-		this.rnd = new Random(symmResult.getParams().getRndSeed());
+	private SymmOptimizer(CeSymmResult symmResult, int chain,
+			SymmetryAxes axes) {
+
+		this.axes = axes;
+		this.rnd = MonteCarloChains.getRandom(symmResult.getParams().getRndSeed(), chain);
 		this.Lmin = symmResult.getParams().getMinCoreLength();
 		this.dCutoff = symmResult.getParams().getDistanceCutoff();
 
@@ -175,6 +211,111 @@ public class SymmOptimizer {
 		updateMultipleAlignment();
 		mcScore = MultipleAlignmentScorer.getMCScore(msa, Gopen, Gextend,
 				dCutoff);
+
+		// Save the optimal alignment
+		saveOptimal();
+
+		step = 1;
+		conv = 0;
+		stepsToConverge = Math.max(maxIter / 50, 1000);
+		initialTime = System.nanoTime()/1000000;
+	}
+
+	/**
+	 * Optimizes the alignment of a CeSymmResult with
+	 * {@link CESymmParameters#getOptimizationChains()} Monte Carlo chains run
+	 * in parallel, and returns the best optimized alignment. With a single
+	 * chain it is the same as {@link #optimize()}. The chains optimize their
+	 * own copies of the symmetry axes, and the axes of the best chain are set
+	 * to the result.
+	 *
+	 * @param symmResult
+	 *            CeSymmResult with all the information
+	 * @return the optimized MultipleAlignment with the highest MC score
+	 * @throws StructureException
+	 * @throws RefinerFailedException
+	 *             if the alignment is not symmetric or too short.
+	 * @since 6.0.6
+	 */
+	public static MultipleAlignment optimize(CeSymmResult symmResult)
+			throws StructureException, RefinerFailedException {
+
+		int nChains = symmResult.getParams().getOptimizationChains();
+		if (nChains <= 1)
+			return new SymmOptimizer(symmResult).optimize();
+
+		List<SymmOptimizer> chains = new ArrayList<SymmOptimizer>();
+		for (int c = 0; c < nChains; c++)
+			chains.add(new SymmOptimizer(symmResult, c));
+
+		try {
+			// the rounds are as long as the steps to converge
+			int roundSteps = Math.max(chains.get(0).maxIter / 50, 1000);
+			int nThreads = Math.min(nChains,
+					Runtime.getRuntime().availableProcessors());
+			SymmOptimizer best = MonteCarloChains.run(chains, roundSteps,
+					nThreads);
+			MultipleAlignment msa = best.finish();
+			symmResult.setAxes(best.axes);
+			return msa;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RefinerFailedException)
+				throw (RefinerFailedException) e.getCause();
+			if (e.getCause() instanceof StructureException)
+				throw (StructureException) e.getCause();
+			throw new StructureException(e.getCause());
+		}
+	}
+
+	@Override
+	public boolean advance(int steps) throws StructureException,
+			RefinerFailedException {
+		if (block == null)
+			initialize();
+		return run(steps);
+	}
+
+	/**
+	 * The MC score of the optimal alignment of the trajectory.
+	 */
+	@Override
+	public double getScore() {
+		return optScore;
+	}
+
+	@Override
+	public void restartFrom(SymmOptimizer other) {
+		block = copyBlock(other.block);
+		freePool = new ArrayList<Integer>(other.freePool);
+		length = other.length;
+		repeatCore = other.repeatCore;
+		mcScore = other.mcScore;
+		optBlock = copyBlock(other.optBlock);
+		optFreePool = new ArrayList<Integer>(other.optFreePool);
+		optScore = other.optScore;
+		conv = 0;
+	}
+
+	private static List<List<Integer>> copyBlock(List<List<Integer>> block) {
+		List<List<Integer>> copy = new ArrayList<List<Integer>>();
+		for (List<Integer> b : block)
+			copy.add(new ArrayList<Integer>(b));
+		return copy;
+	}
+
+	/**
+	 * Stores the current alignment as the optimal one.
+	 */
+	private void saveOptimal() {
+		optBlock = new ArrayList<List<Integer>>();
+		optFreePool = new ArrayList<Integer>();
+		optFreePool.addAll(freePool);
+		for (int k = 0; k < order; k++) {
+			List<Integer> b = new ArrayList<Integer>();
+			b.addAll(block.get(k));
+			optBlock.add(b);
+		}
+		optScore = mcScore;
 	}
 
 	/**
@@ -194,24 +335,21 @@ public class SymmOptimizer {
 			RefinerFailedException {
 
 		initialize();
+		run(Integer.MAX_VALUE);
+		return finish();
+	}
 
-		// Save the optimal alignment
-		List<List<Integer>> optBlock = new ArrayList<List<Integer>>();
-		List<Integer> optFreePool = new ArrayList<Integer>();
-		optFreePool.addAll(freePool);
-		for (int k = 0; k < order; k++) {
-			List<Integer> b = new ArrayList<Integer>();
-			b.addAll(block.get(k));
-			optBlock.add(b);
-		}
-		double optScore = mcScore;
-
-		int conv = 0; // Number of steps without an alignment improvement
-		int i = 1;
-		int stepsToConverge = Math.max(maxIter / 50, 1000);
-		long initialTime = System.nanoTime()/1000000;
+	/**
+	 * Runs at most the given number of steps of the optimization.
+	 *
+	 * @return true if the optimization has converged or reached the maximum
+	 *         number of steps
+	 */
+	private boolean run(int steps) throws StructureException,
+			RefinerFailedException {
 
-		while (i < maxIter && conv < stepsToConverge) {
+		for (int s = 0; s < steps && step < maxIter
+				&& conv < stepsToConverge; s++) {
 
 			// Save the state of the system
 			List<List<Integer>> lastBlock = new ArrayList<List<Integer>>();
@@ -258,7 +396,7 @@ public class SymmOptimizer {
 			if (AS < 0) {
 
 				// Probability of accepting bad move
-				prob = probabilityFunction(AS, i, maxIter);
+				prob = probabilityFunction(AS, step, maxIter);
 				double p = rnd.nextDouble();
 
 				// Reject the move
@@ -276,24 +414,15 @@ public class SymmOptimizer {
 			} else
 				conv = 0; // if positive change
 
-			logger.debug(i + ": --prob: " + prob + ", --score: " + AS
+			logger.debug(step + ": --prob: " + prob + ", --score: " + AS
 					+ ", --conv: " + conv);
 
 			// Store as the optimal alignment if better
-			if (mcScore > optScore) {
-				optBlock = new ArrayList<List<Integer>>();
-				optFreePool = new ArrayList<Integer>();
-				optFreePool.addAll(freePool);
-				for (int k = 0; k < order; k++) {
-					List<Integer> b = new ArrayList<Integer>();
-					b.addAll(block.get(k));
-					optBlock.add(b);
-				}
-				optScore = mcScore;
-			}
+			if (mcScore > optScore)
+				saveOptimal();
 
 			if (history) {
-				if (i % saveStep == 1) {
+				if (step % saveStep == 1) {
 					// Get the correct superposition again
 					updateMultipleAlignment();
 
@@ -306,8 +435,16 @@ public class SymmOptimizer {
 				}
 			}
 
-			i++;
+			step++;
 		}
+		return step >= maxIter || conv >= stepsToConverge;
+	}
+
+	/**
+	 * Superimposes and scores the optimal alignment of the trajectory.
+	 */
+	private MultipleAlignment finish() throws StructureException,
+			RefinerFailedException {
 
 		// Use the optimal alignment of the trajectory
 		block = optBlock;
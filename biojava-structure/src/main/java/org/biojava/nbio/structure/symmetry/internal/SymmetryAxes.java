@@ -195,6 +195,21 @@ public class SymmetryAxes {
 		axes = new ArrayList<>();
 	}
 
+	/**
+	 * Copy constructor. The axes and their operators are copied, so that
+	 * updating the copy does not change the original.
+	 *
+	 * @param other the axes to copy
+	 * @since 6.0.6
+	 */
+	public SymmetryAxes(SymmetryAxes other){
+		axes = new ArrayList<>(other.axes.size());
+		for (Axis axis : other.axes) {
+			axes.add(new Axis(new Matrix4d(axis.getOperator()), axis.getOrder(),
+					axis.getSymmType(), axis.getLevel(), axis.getFirstRepeat()));
+		}
+	}
+
 	/**
 	 * Adds a new axis of symmetry to the bottom level of the tree
 	 *
@@ -21,6 +21,7 @@
 package org.biojava.nbio.structure.xtal;
 
 
+import org.biojava.nbio.core.util.ConcurrencyTools;
 import org.biojava.nbio.structure.*;
 import org.biojava.nbio.structure.contact.AtomContactSet;
 import org.biojava.nbio.structure.contact.StructureInterface;
@@ -32,6 +33,8 @@ import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3i;
 import javax.vecmath.Vector3d;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 
 /**
@@ -89,12 +92,60 @@ public class CrystalBuilder {
 
 	private int numCells;
 
-	private ArrayList<CrystalTransform> visitedCrystalTransforms;
+	private Map<TransformKey,List<CrystalTransform>> visitedCrystalTransforms;
 	private Map<String,Map<Matrix4d,StructureInterface>> visitedNcsChainPairs = null;
 
 	private boolean searchBeyondAU;
 	private Matrix4d[] ops;
 
+	private int numThreads = 1;
+	private InterfaceSearchMetrics lastSearchMetrics;
+
+	/**
+	 * A chain pair of the original AU and a symmetry mate that needs contacts to be calculated.
+	 */
+	private static class ChainPair {
+		final int i;
+		final int j;
+		/** the transformation of chain j, null for the identity */
+		final Matrix4d mJCryst;
+		final CrystalTransform tt;
+
+		ChainPair(int i, int j, Matrix4d mJCryst, CrystalTransform tt) {
+			this.i = i;
+			this.j = j;
+			this.mJCryst = mJCryst;
+			this.tt = tt;
+		}
+	}
+
+	/**
+	 * Hash key of a transformation matrix in crystal coordinates, rounding the elements so that
+	 * equal matrices get equal keys despite numerical noise. Elements of crystal transformations are
+	 * integers or simple fractions like 1/3, far from the rounding boundaries.
+	 */
+	private static class TransformKey {
+		private final long[] elements = new long[12];
+
+		TransformKey(Matrix4d m) {
+			for (int row = 0; row < 3; row++) {
+				for (int col = 0; col < 4; col++) {
+					elements[4 * row + col] = Math.round(m.getElement(row, col) * 1000);
+				}
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof TransformKey && Arrays.equals(elements, ((TransformKey) o).elements);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(elements);
+		}
+	}
+
 	/**
 	 * Special constructor for NCS-aware CrystalBuilder.
 	 * The output list of interfaces will be pre-clustered by NCS-equivalence.
@@ -183,8 +234,27 @@ public class CrystalBuilder {
 		this.numCells = numCells;
 	}
 
+	/**
+	 * Set the number of threads used to calculate the contacts of candidate chain pairs.
+	 * Default is 1, which runs the search in the calling thread only.
+	 * @param numThreads the number of threads
+	 * @since 6.0.6
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Returns the counters and timings of the last call to {@link #getUniqueInterfaces(double)}.
+	 * @return the metrics or null if no search was done yet
+	 * @since 6.0.6
+	 */
+	public InterfaceSearchMetrics getLastSearchMetrics() {
+		return lastSearchMetrics;
+	}
+
 	private void initialiseVisited() {
-		visitedCrystalTransforms = new ArrayList<>();
+		visitedCrystalTransforms = new HashMap<>();
 		if(this.hasNcsOps()) {
 			visitedNcsChainPairs = new HashMap<>();
 		}
@@ -248,23 +318,20 @@ public class CrystalBuilder {
 	/**
 	 * Calculate interfaces between original asymmetric unit and neighboring
 	 * whole unit cells, including the original full unit cell i.e. i=0,j=0,k=0
+	 * <p>
+	 * The operators and chain pairs to compare are enumerated first, applying all short-cuts, then the
+	 * contacts of the candidate chain pairs are calculated in parallel. The interfaces are finally added
+	 * in the order of enumeration, so that the result does not depend on the number of threads.
 	 * @param set
 	 * @param cutoff
 	 */
 	private void calcInterfacesCrystal(StructureInterfaceList set, double cutoff) {
 
-
-		// initialising debugging vars
-		long start = -1;
-		long end = -1;
-		int trialCount = 0;
-		int skippedRedundant = 0;
-		int skippedAUsNoOverlap = 0;
-		int skippedChainsNoOverlap = 0;
-		int skippedSelfEquivalent = 0;
+		InterfaceSearchMetrics metrics = new InterfaceSearchMetrics();
+		long start = System.currentTimeMillis();
 
 		// The bounding boxes of all AUs of the unit cell
-		UnitCellBoundingBox bbGrid = new UnitCellBoundingBox(numOperatorsSg, numPolyChainsAu);;
+		UnitCellBoundingBox bbGrid = new UnitCellBoundingBox(numOperatorsSg, numPolyChainsAu);
 		// we calculate all the bounds of each of the asym units, those will then be reused and translated
 		bbGrid.setBbs(structure, ops, INCLUDE_HETATOMS);
 
@@ -272,11 +339,7 @@ public class CrystalBuilder {
 		// if not crystallographic there's no search to do in other cells, only chains within "AU" will be checked
 		if (!searchBeyondAU) numCells = 0;
 
-		boolean verbose = logger.isDebugEnabled();
-
-		if (verbose) {
-			trialCount = 0;
-			start= System.currentTimeMillis();
+		if (logger.isDebugEnabled()) {
 			int neighbors = (2*numCells+1)*(2*numCells+1)*(2*numCells+1)-1;
 			int auTrials = (numPolyChainsAu*(numPolyChainsAu-1))/2;
 			int trials = numPolyChainsAu*numOperatorsSg*numPolyChainsAu*neighbors;
@@ -288,7 +351,7 @@ public class CrystalBuilder {
 			logger.debug("Total trials: "+(auTrials+trials));
 		}
 
-		List<Chain> polyChains = structure.getPolyChains();
+		List<ChainPair> candidates = new ArrayList<>();
 
 		for (int a=-numCells;a<=numCells;a++) {
 			for (int b=-numCells;b<=numCells;b++) {
@@ -308,7 +371,7 @@ public class CrystalBuilder {
 						// short-cut strategies
 						// 1) we skip first of all if the bounding boxes of the AUs don't overlap
 						if (!bbGrid.getAuBoundingBox(0).overlaps(bbGridTrans.getAuBoundingBox(n), cutoff)) {
-							skippedAUsNoOverlap++;
+							metrics.skippedAUsNoOverlap++;
 							continue;
 						}
 
@@ -316,7 +379,7 @@ public class CrystalBuilder {
 						CrystalTransform tt = new CrystalTransform(this.crystallographicInfo.getSpaceGroup(), n);
 						tt.translate(trans);
 						if (isRedundantTransform(tt)) {
-							skippedRedundant++;
+							metrics.skippedRedundant++;
 							continue;
 						}
 						addVisitedTransform(tt);
@@ -332,19 +395,20 @@ public class CrystalBuilder {
 							selfEquivalent = true;
 						}
 
-						StringBuilder builder = null;
-						if (verbose) builder = new StringBuilder(String.valueOf(tt)).append(" ");
+						Matrix4d mJCryst = null;
+						if (n!=0 || a!=0 || b!=0 || c!=0) {
+							mJCryst = new Matrix4d(ops[n]);
+							translate(mJCryst, transOrth);
+						}
 
 						// Now that we know that boxes overlap and operator is not redundant, we have to go to the details
-						int contactsFound = 0;
-
 						for (int j=0;j<numPolyChainsAu;j++) {
 
 							for (int i=0;i<numPolyChainsAu;i++) { // we only have to compare the original asymmetric unit to every full cell around
 
 								if(selfEquivalent && (j>i)) {
 									// in case of self equivalency of the operator we can safely skip half of the matrix
-									skippedSelfEquivalent++;
+									metrics.skippedSelfEquivalent++;
 									continue;
 								}
 								// special case of original AU, we don't compare a chain to itself
@@ -352,66 +416,78 @@ public class CrystalBuilder {
 
 								// before calculating the AtomContactSet we check for overlap, then we save putting atoms into the grid
 								if (!bbGrid.getChainBoundingBox(0,i).overlaps(bbGridTrans.getChainBoundingBox(n,j),cutoff)) {
-									skippedChainsNoOverlap++;
-									if (verbose) {
-										builder.append(".");
-									}
+									metrics.skippedChainsNoOverlap++;
 									continue;
 								}
 
-								trialCount++;
-
 								// finally we've gone through all short-cuts and the 2 chains seem to be close enough:
-								// we do the calculation of contacts
-								Chain chaini = polyChains.get(i);
-								Chain chainj = polyChains.get(j);
-
-								if (n!=0 || a!=0 || b!=0 || c!=0) {
-									Matrix4d mJCryst = new Matrix4d(ops[n]);
-									translate(mJCryst, transOrth);
-									chainj = (Chain)chainj.clone();
-									Calc.transform(chainj,mJCryst);
-								}
-
-								StructureInterface interf = calcContacts(chaini, chainj, cutoff, tt, builder);
-								if (interf == null) {
-									continue;
-								}
-
-								contactsFound++;
-								if(this.hasNcsOps()) {
-									StructureInterface interfNcsRef = findNcsRef(interf);
-									set.addNcsEquivalent(interf,interfNcsRef);
-								} else {
-									set.add(interf);
-								}
+								// the contacts will be calculated
+								candidates.add(new ChainPair(i, j, mJCryst, tt));
 							}
 						}
-
-						if( verbose ) {
-							if (a==0 && b==0 && c==0 && n==0)
-								builder.append(" "+contactsFound+"("+(numPolyChainsAu*(numPolyChainsAu-1))/2+")");
-							else if (selfEquivalent)
-								builder.append(" "+contactsFound+"("+(numPolyChainsAu*(numPolyChainsAu+1))/2+")");
-							else
-								builder.append(" "+contactsFound+"("+numPolyChainsAu*numPolyChainsAu+")");
-
-							logger.debug(builder.toString());
-						}
 					}
 				}
 			}
 		}
 
-		end = System.currentTimeMillis();
-		logger.debug("\n"+trialCount+" chain-chain clash trials done. Time "+(end-start)/1000+"s");
-		logger.debug("  skipped (not overlapping AUs)       : "+skippedAUsNoOverlap);
-		logger.debug("  skipped (not overlapping chains)    : "+skippedChainsNoOverlap);
-		logger.debug("  skipped (sym redundant op pairs)    : "+skippedRedundant);
-		logger.debug("  skipped (sym redundant self op)     : "+skippedSelfEquivalent);
-		logger.debug("Found "+set.size()+" interfaces.");
+		metrics.trials = candidates.size();
+		metrics.planningTimeMillis = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		StructureInterface[] interfaces = calcContacts(structure.getPolyChains(), candidates, cutoff, metrics);
+		metrics.contactsTimeMillis = System.currentTimeMillis() - start;
+
+		// the NCS bookkeeping depends on the order in which interfaces are seen: we add them in enumeration order
+		for (StructureInterface interf : interfaces) {
+			if (interf == null) {
+				continue;
+			}
+
+			metrics.interfacesFound++;
+			if(this.hasNcsOps()) {
+				StructureInterface interfNcsRef = findNcsRef(interf);
+				set.addNcsEquivalent(interf,interfNcsRef);
+			} else {
+				set.add(interf);
+			}
+		}
+
+		lastSearchMetrics = metrics;
+		logger.debug("{}", metrics);
 	}
 
+	/**
+	 * Calculates the contacts of all candidate chain pairs, in parallel if more than 1 thread is set.
+	 * @return the interfaces in the order of the candidates, null for pairs without contacts
+	 */
+	private StructureInterface[] calcContacts(List<Chain> polyChains, List<ChainPair> candidates, double cutoff,
+			InterfaceSearchMetrics metrics) {
+
+		List<Callable<StructureInterface>> tasks = new ArrayList<>(candidates.size());
+		for (ChainPair pair : candidates) {
+			tasks.add(() -> calcContacts(polyChains, pair, cutoff));
+		}
+
+		metrics.threads = Math.max(1, Math.min(numThreads, candidates.size()));
+		try {
+			return ConcurrencyTools.invokeAll(tasks, numThreads).toArray(new StructureInterface[0]);
+		} catch (ExecutionException e) {
+			// calcContacts throws only unchecked exceptions, which are rethrown as they are
+			throw new IllegalStateException("Error while calculating interfaces", e.getCause());
+		}
+	}
+
+	private StructureInterface calcContacts(List<Chain> polyChains, ChainPair pair, double cutoff) {
+		Chain chaini = polyChains.get(pair.i);
+		Chain chainj = polyChains.get(pair.j);
+
+		if (pair.mJCryst != null) {
+			chainj = (Chain)chainj.clone();
+			Calc.transform(chainj,pair.mJCryst);
+		}
+
+		return calcContacts(chaini, chainj, cutoff, pair.tt);
+	}
 
 	/**
 	 * Checks whether given interface is NCS-redundant, i.e., an identical interface between NCS copies of
@@ -496,12 +572,11 @@ public class CrystalBuilder {
 		return matchInterface;
 	}
 
-	private StructureInterface calcContacts(Chain chaini, Chain chainj, double cutoff, CrystalTransform tt, StringBuilder builder) {
+	private StructureInterface calcContacts(Chain chaini, Chain chainj, double cutoff, CrystalTransform tt) {
 		// note that we don't consider hydrogens when calculating contacts
 		AtomContactSet graph = StructureTools.getAtomsInContact(chaini, chainj, cutoff, INCLUDE_HETATOMS);
 
 		if (graph.size()>0) {
-			if (builder != null) builder.append("x");
 
 			CrystalTransform transf = new CrystalTransform(this.crystallographicInfo.getSpaceGroup());
 			StructureInterface interf = new StructureInterface(
@@ -513,13 +588,18 @@ public class CrystalBuilder {
 			return interf;
 
 		} else {
-			if (builder != null) builder.append("o");
 			return null;
 		}
 	}
 
+	/**
+	 * Adds a transform to the visited ones, indexed by the key of its inverse: that is the key
+	 * its symmetry redundant partner will be looked up with.
+	 */
 	private void addVisitedTransform(CrystalTransform tt) {
-		visitedCrystalTransforms.add(tt);
+		Matrix4d inverse = new Matrix4d(tt.getMatTransform());
+		inverse.invert();
+		visitedCrystalTransforms.computeIfAbsent(new TransformKey(inverse), k -> new ArrayList<>(1)).add(tt);
 	}
 
 	/**
@@ -531,7 +611,12 @@ public class CrystalBuilder {
 	 */
 	private boolean isRedundantTransform(CrystalTransform tt) {
 
-		Iterator<CrystalTransform> it = visitedCrystalTransforms.iterator();
+		List<CrystalTransform> candidates = visitedCrystalTransforms.get(new TransformKey(tt.getMatTransform()));
+		if (candidates == null) {
+			return false;
+		}
+
+		Iterator<CrystalTransform> it = candidates.iterator();
 		while (it.hasNext()) {
 			CrystalTransform v = it.next();
 
@@ -0,0 +1,119 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.xtal;
+
+/**
+ * Counters and timings of an interface search of {@link CrystalBuilder}, telling
+ * how many chain pairs were actually compared and how many were skipped by each
+ * of the short-cuts.
+ *
+ * @see CrystalBuilder#getLastSearchMetrics()
+ * @since 6.0.6
+ */
+public class InterfaceSearchMetrics {
+
+	int trials;
+	int skippedAUsNoOverlap;
+	int skippedChainsNoOverlap;
+	int skippedRedundant;
+	int skippedSelfEquivalent;
+	int interfacesFound;
+	int threads;
+	long planningTimeMillis;
+	long contactsTimeMillis;
+
+	InterfaceSearchMetrics() {
+	}
+
+	/**
+	 * @return the number of chain pairs for which atom contacts were calculated
+	 */
+	public int getTrials() {
+		return trials;
+	}
+
+	/**
+	 * @return the number of operators skipped because the bounding boxes of the asymmetric units don't overlap
+	 */
+	public int getSkippedAUsNoOverlap() {
+		return skippedAUsNoOverlap;
+	}
+
+	/**
+	 * @return the number of chain pairs skipped because the bounding boxes of the chains don't overlap
+	 */
+	public int getSkippedChainsNoOverlap() {
+		return skippedChainsNoOverlap;
+	}
+
+	/**
+	 * @return the number of operators skipped because their symmetry equivalent was already searched
+	 */
+	public int getSkippedRedundant() {
+		return skippedRedundant;
+	}
+
+	/**
+	 * @return the number of chain pairs skipped because the operator is equivalent to itself
+	 */
+	public int getSkippedSelfEquivalent() {
+		return skippedSelfEquivalent;
+	}
+
+	/**
+	 * @return the number of interfaces found, including NCS-equivalent ones
+	 */
+	public int getInterfacesFound() {
+		return interfacesFound;
+	}
+
+	/**
+	 * @return the number of threads used to calculate the contacts
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return the time in milliseconds taken to enumerate the operators and chain pairs to compare
+	 */
+	public long getPlanningTimeMillis() {
+		return planningTimeMillis;
+	}
+
+	/**
+	 * @return the time in milliseconds taken to calculate the contacts of all chain pairs
+	 */
+	public long getContactsTimeMillis() {
+		return contactsTimeMillis;
+	}
+
+	@Override
+	public String toString() {
+		return trials + " chain-chain clash trials done with " + threads + " threads. "
+				+ "Time: planning " + planningTimeMillis + " ms, contacts " + contactsTimeMillis + " ms. "
+				+ "Skipped: " + skippedAUsNoOverlap + " not overlapping AUs, "
+				+ skippedChainsNoOverlap + " not overlapping chains, "
+				+ skippedRedundant + " sym redundant op pairs, "
+				+ skippedSelfEquivalent + " sym redundant self op. "
+				+ "Found " + interfacesFound + " interfaces.";
+	}
+}
@@ -27,6 +27,7 @@ import java.util.List;
 import org.biojava.nbio.structure.align.util.AtomCache;
 import org.biojava.nbio.structure.chem.ChemCompGroupFactory;
 import org.biojava.nbio.structure.chem.DownloadChemCompProvider;
+import org.biojava.nbio.structure.io.BondMaker;
 import org.biojava.nbio.structure.io.FileParsingParameters;
 import org.biojava.nbio.structure.io.StructureFiletype;
 import org.junit.BeforeClass;
@@ -343,4 +344,29 @@ public class TestBond {
 		}
 	}
 
+	/**
+	 * The bonds of a bond table are a subset of the bonds formed on the atoms (which also
+	 * include struct_conn and alt loc bonds)
+	 */
+	@Test
+	public void testBondTable() throws IOException, StructureException {
+		Structure s = StructureIO.getStructure("4hhb");
+		Atom[] atoms = StructureTools.getAllAtomArray(s, 0);
+		BondTable table = new BondMaker(s, cache.getFileParsingParams()).makeBondTable(0);
+
+		assertEquals(atoms.length, table.getAtomCount());
+		assertTrue(table.size() > atoms.length);
+		for (int i = 0; i < table.size(); i++) {
+			Atom a = atoms[table.getAtomIndexA(i)];
+			Atom b = atoms[table.getAtomIndexB(i)];
+			assertTrue(a + " - " + b, areBonded(a, b));
+		}
+
+		BondTable sequential = new BondMaker(s, cache.getFileParsingParams()).makeBondTable(0, 1);
+		assertEquals(table.size(), sequential.size());
+		for (int i = 0; i < table.size(); i++) {
+			assertEquals(table.getAtomIndexA(i), sequential.getAtomIndexA(i));
+			assertEquals(table.getAtomIndexB(i), sequential.getAtomIndexB(i));
+		}
+	}
 }
@@ -0,0 +1,83 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestBondTable {
+
+	@Test
+	public void testAdjacency() {
+		BondTable table = new BondTable(4, 1);
+		table.add(0, 1, 1);
+		table.add(1, 2, 2);
+		table.add(1, 3, 1);
+
+		assertEquals(3, table.size());
+		assertEquals(2, table.getBondOrder(1));
+		assertEquals(3, table.getBondCount(1));
+		assertArrayEquals(new int[] {0, 2, 3}, table.getBondedAtoms(1));
+		assertArrayEquals(new int[] {1}, table.getBonds(2));
+		assertEquals(1, table.getBondCount(0));
+
+		// adjacency is rebuilt after modification
+		table.add(2, 3, 1);
+		assertArrayEquals(new int[] {1, 3}, table.getBondedAtoms(2));
+	}
+
+	@Test
+	public void testAddAllWithOffset() {
+		BondTable chain = new BondTable(2);
+		chain.add(0, 1, 1);
+		BondTable table = new BondTable(5);
+		table.addAll(chain, 3);
+		assertEquals(3, table.getAtomIndexA(0));
+		assertEquals(4, table.getAtomIndexB(0));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testAtomIndexOutOfRange() {
+		new BondTable(2).add(0, 2, 1);
+	}
+
+	@Test
+	public void testToBonds() {
+		Atom[] atoms = {new AtomImpl(), new AtomImpl()};
+		BondTable table = new BondTable(2);
+		table.add(0, 1, 2);
+
+		List<Bond> detached = table.toBonds(atoms, false);
+		assertEquals(1, detached.size());
+		assertNull(atoms[0].getBonds());
+
+		List<Bond> bonds = table.toBonds(atoms, true);
+		assertSame(atoms[1], bonds.get(0).getAtomB());
+		assertEquals(2, bonds.get(0).getBondOrder());
+		assertEquals(1, atoms[0].getBonds().size());
+	}
+}
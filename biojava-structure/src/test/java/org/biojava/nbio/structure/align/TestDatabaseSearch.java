@@ -0,0 +1,153 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.align.ce.CeMain;
+import org.biojava.nbio.structure.align.util.AtomCache;
+import org.biojava.nbio.structure.align.util.CaArrayStore;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of a {@link DatabaseSearch} of a chain of hemoglobin against all
+ * its chains, stored in a {@link CaArrayStore}.
+ */
+public class TestDatabaseSearch {
+
+	private Structure structure;
+	private CaArrayStore database;
+
+	@Before
+	public void setUp() throws IOException {
+		structure = new PDBFileParser().parsePDBFile(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/4hhb.pdb.gz")));
+		database = new CaArrayStore();
+		for (Chain chain : structure.getPolyChains()) {
+			database.add("4hhb." + chain.getName(), StructureTools.getRepresentativeAtomArray(chain), "hemoglobin");
+		}
+	}
+
+	@Test
+	public void testStore() {
+		assertEquals(4, database.size());
+		Atom[] ca = StructureTools.getRepresentativeAtomArray(structure.getPolyChains().get(1));
+		int index = database.indexOf("4hhb.B");
+		Atom[] view = database.getAtoms(index);
+		assertEquals(ca.length, view.length);
+		for (int i = 0; i < ca.length; i++) {
+			assertArrayEquals(ca[i].getCoords(), view[i].getCoords(), 0);
+			assertEquals(ca[i].getName(), view[i].getName());
+			assertEquals(ca[i].getGroup().getPDBName(), view[i].getGroup().getPDBName());
+			assertEquals(ca[i].getGroup().getResidueNumber(), view[i].getGroup().getResidueNumber());
+			assertEquals("B", view[i].getGroup().getChain().getName());
+		}
+		// a new copy every time
+		assertNotSame(view[0], database.getAtoms(index)[0]);
+		// named after the entry, for the names of the alignments
+		assertEquals("4hhb.B", view[0].getGroup().getChain().getStructure().getName());
+
+		// hemoglobin is mostly helical
+		CaArrayStore.Descriptor descriptor = database.getDescriptor(index);
+		assertEquals(ca.length, descriptor.getLength());
+		assertTrue(descriptor.getHelixFraction() > 0.4);
+		assertTrue(descriptor.getStrandFraction() < 0.1);
+	}
+
+	@Test
+	public void testWriteRead() throws IOException, StructureException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		database.write(out);
+		// data after the store is not consumed
+		out.write(42);
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		CaArrayStore copy = CaArrayStore.read(in);
+		assertEquals(42, in.read());
+
+		assertEquals(database.size(), copy.size());
+		for (int index = 0; index < database.size(); index++) {
+			assertEquals(database.getName(index), copy.getName(index));
+			assertEquals(database.getDescription(index), copy.getDescription(index));
+			assertEquals(database.getSequence(index), copy.getSequence(index));
+			assertArrayEquals(database.getCoords(index), copy.getCoords(index), 0);
+			Atom[] expected = database.getAtoms(index);
+			Atom[] actual = copy.getAtoms(index);
+			assertEquals(expected.length, actual.length);
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals(expected[i].getName(), actual[i].getName());
+				assertEquals(expected[i].getElement(), actual[i].getElement());
+				assertEquals(expected[i].getGroup().getPDBName(), actual[i].getGroup().getPDBName());
+				assertEquals(expected[i].getGroup().getResidueNumber(), actual[i].getGroup().getResidueNumber());
+				assertEquals(expected[i].getGroup().getChain().getId(), actual[i].getGroup().getChain().getId());
+			}
+		}
+		assertTrue(copy.getSequence(copy.indexOf("4hhb.A")).startsWith("VLSPADKTNVKAAW"));
+
+		// the cache serves the atoms from the store, without loading the structure
+		AtomCache cache = new AtomCache();
+		cache.setCaArrayStore(copy);
+		Atom[] ca = cache.getRepresentativeAtoms("4hhb.B");
+		assertEquals(copy.getLength(copy.indexOf("4hhb.B")), ca.length);
+		assertEquals("B", ca[0].getGroup().getChain().getName());
+	}
+
+	@Test
+	public void testSearch() throws IOException {
+		Atom[] query = StructureTools.getRepresentativeAtomArray(structure.getPolyChains().get(0));
+		DatabaseSearch search = new DatabaseSearch(database, CeMain.algorithmName, null);
+		search.setNThreads(2);
+
+		List<DatabaseSearch.Hit> hits = search.search(query, "4hhb.A");
+		assertEquals(4, hits.size());
+		// the chain itself, then the other alpha chain
+		assertEquals("4hhb.A", hits.get(0).getName());
+		assertEquals(1.0, hits.get(0).getTMScore(), 0.01);
+		assertEquals("4hhb.C", hits.get(1).getName());
+		for (int i = 1; i < hits.size(); i++) {
+			assertTrue(hits.get(i - 1).getTMScore() >= hits.get(i).getTMScore());
+		}
+
+		// the same hits sequentially, keeping only the best ones
+		search.setNThreads(1);
+		search.setMaxResults(2);
+		StringWriter out = new StringWriter();
+		assertEquals(2, search.search(query, "4hhb.A", out));
+		assertEquals(hits.get(0).getResult() + hits.get(1).getResult(), out.toString());
+
+		// the beta chains are longer
+		search.setMinLengthRatio(1.0);
+		assertEquals(2, search.getCandidates(new CaArrayStore.Descriptor(query)).size());
+	}
+}
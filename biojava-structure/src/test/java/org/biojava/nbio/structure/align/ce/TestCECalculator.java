@@ -0,0 +1,112 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.ce;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the fragment distance matrix of {@link CECalculator} against the
+ * cell by cell sum of the original CE implementation.
+ */
+public class TestCECalculator {
+
+	private static double[][] randomDistances(int n, long seed) {
+		Random random = new Random(seed);
+		double[][] dist = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				dist[i][j] = dist[j][i] = random.nextDouble() * 30;
+			}
+		}
+		return dist;
+	}
+
+	private static double[][] sumOfDistances(double[][] dist1, double[][] dist2, int winSize, int winSizeComb1) {
+		int nse1 = dist1.length;
+		int nse2 = dist2.length;
+		double[][] mat = new double[nse1][nse2];
+		for (int ise1 = 0; ise1 < nse1; ise1++) {
+			for (int ise2 = 0; ise2 < nse2; ise2++) {
+				mat[ise1][ise2] = -1.0;
+				if (ise1 > nse1 - winSize || ise2 > nse2 - winSize)
+					continue;
+				double d = 0.0;
+				for (int is1 = 0; is1 < winSize - 2; is1++)
+					for (int is2 = is1 + 2; is2 < winSize; is2++)
+						d += Math.abs(dist1[ise1 + is1][ise1 + is2] - dist2[ise2 + is1][ise2 + is2]);
+				mat[ise1][ise2] = d / winSizeComb1;
+			}
+		}
+		return mat;
+	}
+
+	@Test
+	public void testInitSumOfDistances() {
+		double[][] dist1 = randomDistances(150, 1);
+		double[][] dist2 = randomDistances(97, 2);
+
+		CECalculator calculator = new CECalculator(new CeParameters());
+		calculator.setDist1(dist1);
+		calculator.setDist2(dist2);
+
+		for (int winSize : new int[] { 3, 8, 12 }) {
+			int winSizeComb1 = (winSize - 1) * (winSize - 2) / 2;
+			double[][] expected = sumOfDistances(dist1, dist2, winSize, winSizeComb1);
+			for (int nThreads : new int[] { 1, 3 }) {
+				calculator.setNThreads(nThreads);
+				double[][] mat = calculator.initSumOfDistances(150, 97, winSize, winSizeComb1, null, null);
+				for (int i = 0; i < expected.length; i++) {
+					// identical, not only within rounding
+					assertArrayEquals(expected[i], mat[i], 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The fragment distances to a duplicated chain, as in CE-CP, are the same
+	 * when only the first copy is calculated.
+	 */
+	@Test
+	public void testDuplicatedSumOfDistances() {
+		double[][] dist1 = randomDistances(150, 1);
+		double[][] single = randomDistances(60, 3);
+		double[][] dist2 = new double[120][120];
+		for (int i = 0; i < 120; i++) {
+			for (int j = 0; j < 120; j++)
+				dist2[i][j] = single[i % 60][j % 60];
+		}
+
+		int winSize = 8;
+		int winSizeComb1 = (winSize - 1) * (winSize - 2) / 2;
+		double[][] expected = sumOfDistances(dist1, dist2, winSize, winSizeComb1);
+		for (int nThreads : new int[] { 1, 3 }) {
+			double[][] mat = CECalculator.sumOfDistances(dist1, dist2, 150, 120,
+					winSize, winSizeComb1, 60, nThreads);
+			for (int i = 0; i < expected.length; i++)
+				assertArrayEquals(expected[i], mat[i], 0);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.fatcat.calc;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Calc;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.align.fatcat.FatCatRigid;
+import org.biojava.nbio.structure.align.model.AFP;
+import org.biojava.nbio.structure.align.model.AFPChain;
+import org.biojava.nbio.structure.geometry.SuperPositions;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.junit.Test;
+
+/**
+ * Test the AFP extraction of {@link AFPCalculator} against an exhaustive
+ * search, with one and several threads.
+ */
+public class TestAFPCalculator {
+
+	@Test
+	public void testExtractAFPChains() throws IOException, StructureException {
+		Structure structure = new PDBFileParser().parsePDBFile(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/4hhb.pdb.gz")));
+		Atom[] ca1 = StructureTools.getRepresentativeAtomArray(structure.getPolyChains().get(0));
+		Atom[] ca2 = StructureTools.getRepresentativeAtomArray(structure.getPolyChains().get(1));
+
+		FatCatParameters params = new FatCatParameters();
+		AFPChain sequential = new AFPChain(FatCatRigid.algorithmName);
+		AFPCalculator.extractAFPChains(params, sequential, ca1, ca2);
+		List<AFP> afps = sequential.getAfpSet();
+
+		// every fragment pair that passes the filters and the RMSD cutoff
+		int fragLen = params.getFragLen();
+		int minLen = Math.min(ca1.length, ca2.length);
+		int n = 0;
+		for (int p1 = 0; p1 < ca1.length - fragLen; p1++) {
+			for (int p2 = 0; p2 < ca2.length - fragLen; p2++) {
+				double end2end = Calc.getDistance(ca1[p1], ca1[p1 + fragLen - 1])
+						- Calc.getDistance(ca2[p2], ca2[p2 + fragLen - 1]);
+				if (Math.abs(end2end) > params.getDisFilter())
+					continue;
+				int context = Math.min(p1, p2) + fragLen
+						+ Math.min(ca1.length - p1 - fragLen + 1, ca2.length - p2 - fragLen + 1);
+				if (context < (int) (0.3 * minLen))
+					continue;
+				double rmsd = SuperPositions.getRmsd(
+						Calc.atomsToPoints(Arrays.copyOfRange(ca1, p1, p1 + fragLen)),
+						Calc.atomsToPoints(Arrays.copyOfRange(ca2, p2, p2 + fragLen)));
+				if (rmsd >= params.getRmsdCut())
+					continue;
+				AFP afp = afps.get(n++);
+				assertEquals(p1, afp.getP1());
+				assertEquals(p2, afp.getP2());
+				assertEquals(rmsd, afp.getRmsd(), 0);
+			}
+		}
+		assertEquals(n, afps.size());
+		assertTrue(n > 0);
+
+		// the same AFPs in parallel
+		params.setNThreads(3);
+		AFPChain parallel = new AFPChain(FatCatRigid.algorithmName);
+		AFPCalculator.extractAFPChains(params, parallel, ca1, ca2);
+		assertEquals(afps.size(), parallel.getAfpSet().size());
+		for (int a = 0; a < afps.size(); a++) {
+			AFP expected = afps.get(a);
+			AFP actual = parallel.getAfpSet().get(a);
+			assertEquals(expected.getP1(), actual.getP1());
+			assertEquals(expected.getP2(), actual.getP2());
+			assertEquals(expected.getScore(), actual.getScore(), 0);
+		}
+	}
+}
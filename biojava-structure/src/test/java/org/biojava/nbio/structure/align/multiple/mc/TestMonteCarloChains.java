@@ -0,0 +1,130 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.multiple.mc;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+/**
+ * Test the parallel chains of {@link MonteCarloChains} with a random walk
+ * that maximizes a function of one variable.
+ */
+public class TestMonteCarloChains {
+
+	/**
+	 * Random walk on the integers towards the maximum of -|x-100|, accepting
+	 * only improvements.
+	 */
+	private static class Walk implements MonteCarloChains.Chain<Walk> {
+		private final Random rnd;
+		private final int convergenceSteps;
+		private int x = 0;
+		private int conv = 0;
+
+		Walk(long seed, int chain, int convergenceSteps) {
+			this.rnd = MonteCarloChains.getRandom(seed, chain);
+			this.convergenceSteps = convergenceSteps;
+		}
+
+		@Override
+		public boolean advance(int steps) {
+			for (int s = 0; s < steps && conv < convergenceSteps; s++) {
+				int next = x + rnd.nextInt(7) - 3;
+				if (-Math.abs(next - 100) > getScore()) {
+					x = next;
+					conv = 0;
+				} else
+					conv++;
+			}
+			return conv >= convergenceSteps;
+		}
+
+		@Override
+		public double getScore() {
+			return -Math.abs(x - 100);
+		}
+
+		@Override
+		public void restartFrom(Walk other) {
+			x = other.x;
+			conv = 0;
+		}
+	}
+
+	private static List<Walk> walks(int n, int convergenceSteps) {
+		List<Walk> walks = new ArrayList<>();
+		for (int c = 0; c < n; c++)
+			walks.add(new Walk(7, c, convergenceSteps));
+		return walks;
+	}
+
+	@Test
+	public void testRandomStreams() {
+		Random single = new Random(7);
+		Random first = MonteCarloChains.getRandom(7, 0);
+		for (int i = 0; i < 10; i++)
+			assertEquals(single.nextLong(), first.nextLong());
+
+		// the same stream for the same chain, different ones for other chains
+		assertEquals(MonteCarloChains.getRandom(7, 2).nextLong(),
+				MonteCarloChains.getRandom(7, 2).nextLong());
+		assertNotEquals(MonteCarloChains.getRandom(7, 1).nextLong(),
+				MonteCarloChains.getRandom(7, 2).nextLong());
+	}
+
+	@Test
+	public void testRun() throws ExecutionException {
+		Walk best = MonteCarloChains.run(walks(4, 50), 10, 1);
+		assertEquals(0, best.getScore(), 0);
+
+		// the result does not depend on the number of threads
+		List<Walk> sequential = walks(4, 20);
+		List<Walk> parallel = walks(4, 20);
+		Walk expected = MonteCarloChains.run(sequential, 5, 1);
+		Walk actual = MonteCarloChains.run(parallel, 5, 4);
+		assertEquals(sequential.indexOf(expected), parallel.indexOf(actual));
+		for (int c = 0; c < sequential.size(); c++)
+			assertEquals(sequential.get(c).x, parallel.get(c).x);
+	}
+
+	@Test
+	public void testFailedChain() throws ExecutionException {
+		List<Walk> chains = walks(2, 50);
+		chains.add(new Walk(7, 2, 50) {
+			@Override
+			public boolean advance(int steps) {
+				throw new IllegalStateException("bug");
+			}
+		});
+		try {
+			MonteCarloChains.run(chains, 10, 2);
+			fail("Runtime exceptions must not be hidden");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("bug"));
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.multiple.mc;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.StructureIdentifier;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.align.StructureAlignmentFactory;
+import org.biojava.nbio.structure.align.ce.CeMain;
+import org.biojava.nbio.structure.align.client.StructureName;
+import org.biojava.nbio.structure.align.multiple.MultipleAlignment;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.junit.Test;
+
+/**
+ * Test the reuse of the pairwise alignments of {@link MultipleMcMain} with a
+ * {@link PairwiseAlignmentCache} and a shared executor.
+ */
+public class TestMultipleMcMain {
+
+	@Test
+	public void testAlignmentCache() throws IOException, StructureException {
+		Structure structure = new PDBFileParser().parsePDBFile(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/4hhb.pdb.gz")));
+		List<Atom[]> atomArrays = new ArrayList<>();
+		List<StructureIdentifier> identifiers = new ArrayList<>();
+		for (Chain chain : structure.getPolyChains()) {
+			atomArrays.add(StructureTools.getRepresentativeAtomArray(chain));
+			identifiers.add(new StructureName("4HHB." + chain.getName()));
+		}
+
+		PairwiseAlignmentCache cache = new PairwiseAlignmentCache();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			MultipleMcMain first = newAligner(executor, cache, identifiers);
+			MultipleAlignment expected = first.align(atomArrays);
+			assertEquals(6, first.getPairsTotal());
+			assertEquals(6, first.getPairsDone());
+			assertEquals(0, first.getCacheHits());
+			assertEquals(6, cache.size());
+			assertEquals(identifiers, expected.getEnsemble().getStructureIdentifiers());
+
+			// all the pairs come from the cache, the executor is still usable
+			MultipleMcMain second = newAligner(executor, cache, identifiers);
+			MultipleAlignment actual = second.align(atomArrays);
+			assertEquals(6, second.getPairsDone());
+			assertEquals(6, second.getCacheHits());
+			assertFalse(executor.isShutdown());
+			assertEquals(expected.getCoreLength(), actual.getCoreLength());
+			assertEquals(expected.getBlocks().size(), actual.getBlocks().size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static MultipleMcMain newAligner(ExecutorService executor,
+			PairwiseAlignmentCache cache, List<StructureIdentifier> identifiers)
+			throws StructureException {
+		MultipleMcMain aligner = new MultipleMcMain(
+				StructureAlignmentFactory.getAlgorithm(CeMain.algorithmName));
+		MultipleMcParameters params = (MultipleMcParameters) aligner.getParameters();
+		params.setRandomSeed(0);
+		aligner.setParameters(params);
+		aligner.setExecutor(executor);
+		aligner.setAlignmentCache(cache);
+		aligner.setStructureIdentifiers(identifiers);
+		return aligner;
+	}
+}
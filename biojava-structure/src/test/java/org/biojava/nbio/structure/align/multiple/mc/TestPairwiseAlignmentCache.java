@@ -0,0 +1,80 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.multiple.mc;
+
+import static org.junit.Assert.*;
+
+import org.biojava.nbio.structure.align.ce.CeMain;
+import org.biojava.nbio.structure.align.ce.CeParameters;
+import org.biojava.nbio.structure.align.model.AFPChain;
+import org.biojava.nbio.structure.jama.Matrix;
+import org.junit.Test;
+
+/**
+ * Test the bounds, the stored content and the algorithm keys of a
+ * {@link PairwiseAlignmentCache}.
+ */
+public class TestPairwiseAlignmentCache {
+
+	@Test
+	public void testMatricesDropped() {
+		PairwiseAlignmentCache cache = new PairwiseAlignmentCache();
+		AFPChain afp = new AFPChain(CeMain.algorithmName);
+		afp.setDistanceMatrix(new Matrix(10, 10));
+		afp.setDisTable1(new Matrix(10, 10));
+		afp.setDisTable2(new Matrix(10, 10));
+
+		cache.put("CE", "A", "B", afp);
+		AFPChain cached = cache.get("CE", "A", "B");
+		assertSame(afp, cached);
+		assertNull(cached.getDistanceMatrix());
+		assertNull(cached.getDisTable1());
+		assertNull(cached.getDisTable2());
+		assertNull(cache.get("CE", "B", "A"));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() {
+		PairwiseAlignmentCache cache = new PairwiseAlignmentCache(2);
+		cache.put("CE", "A", "B", new AFPChain(CeMain.algorithmName));
+		cache.put("CE", "A", "C", new AFPChain(CeMain.algorithmName));
+		assertNotNull(cache.get("CE", "A", "B"));
+
+		cache.put("CE", "A", "D", new AFPChain(CeMain.algorithmName));
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("CE", "A", "B"));
+		assertNull(cache.get("CE", "A", "C"));
+		assertNotNull(cache.get("CE", "A", "D"));
+	}
+
+	@Test
+	public void testAlgorithmKey() {
+		CeMain ce = new CeMain();
+		String key = PairwiseAlignmentCache.getAlgorithmKey(ce);
+		assertNotNull(key);
+		assertTrue(key.startsWith(CeMain.algorithmName));
+		assertEquals(key, PairwiseAlignmentCache.getAlgorithmKey(new CeMain()));
+
+		CeParameters params = (CeParameters) ce.getParameters();
+		params.setWinSize(params.getWinSize() + 1);
+		assertNotEquals(key, PairwiseAlignmentCache.getAlgorithmKey(ce));
+	}
+}
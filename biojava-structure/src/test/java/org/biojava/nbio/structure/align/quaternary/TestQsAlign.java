@@ -0,0 +1,108 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.align.quaternary;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import javax.vecmath.AxisAngle4d;
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+import org.biojava.nbio.structure.Calc;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.cluster.SubunitClustererParameters;
+import org.biojava.nbio.structure.geometry.CalcPoint;
+import org.biojava.nbio.structure.geometry.SuperPositions;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.junit.Test;
+
+/**
+ * Test the incremental superposition and the seed evaluation of
+ * {@link QsAlign}.
+ */
+public class TestQsAlign {
+
+	/**
+	 * Adding points in several steps gives the same superposition as all the
+	 * points at once.
+	 */
+	@Test
+	public void testIncrementalSuperposition() {
+		Random random = new Random(0);
+		Point3d[] fixed = new Point3d[90];
+		for (int i = 0; i < fixed.length; i++) {
+			fixed[i] = new Point3d(100 + 20 * random.nextGaussian(),
+					-50 + 20 * random.nextGaussian(), 20 * random.nextGaussian());
+		}
+		Matrix4d rotation = new Matrix4d();
+		rotation.set(new AxisAngle4d(1, 2, 3, 1.2));
+		rotation.setTranslation(new Vector3d(30, -10, 5));
+		Point3d[] moved = CalcPoint.clonePoint3dArray(fixed);
+		CalcPoint.transform(rotation, moved);
+		for (Point3d p : moved)
+			p.add(new Point3d(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()));
+
+		IncrementalSuperposition superposition = new IncrementalSuperposition();
+		for (int i = 0; i < fixed.length; i += 30) {
+			superposition.add(Arrays.copyOfRange(fixed, i, i + 30),
+					Arrays.copyOfRange(moved, i, i + 30));
+		}
+		assertEquals(fixed.length, superposition.size());
+
+		Matrix4d expected = SuperPositions.superpose(fixed, moved);
+		assertTrue(expected.epsilonEquals(superposition.getTransformation(), 1e-6));
+	}
+
+	/**
+	 * Hemoglobin against a rotated copy of itself, with one and several
+	 * threads.
+	 */
+	@Test
+	public void testIdentity() throws IOException, StructureException {
+		Structure s1 = new PDBFileParser().parsePDBFile(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/4hhb.pdb.gz")));
+		Structure s2 = s1.clone();
+		Matrix4d rotation = new Matrix4d();
+		rotation.set(new AxisAngle4d(0, 0, 1, 2.0));
+		Calc.transform(StructureTools.getAllAtomArray(s2), rotation);
+
+		SubunitClustererParameters clusterParams = new SubunitClustererParameters();
+		QsAlignParameters alignParams = new QsAlignParameters();
+		QsAlignResult sequential = QsAlign.align(s1, s2, clusterParams, alignParams);
+
+		assertEquals(4, sequential.length());
+		assertEquals(QsRelation.EQUIVALENT, sequential.getRelation());
+		assertEquals(0.0, sequential.getRmsd(), 0.01);
+
+		alignParams.setNThreads(2);
+		QsAlignResult parallel = QsAlign.align(s1, s2, clusterParams, alignParams);
+		assertEquals(sequential.getSubunitMap(), parallel.getSubunitMap());
+		assertEquals(sequential.getRmsd(), parallel.getRmsd(), 1e-6);
+	}
+}
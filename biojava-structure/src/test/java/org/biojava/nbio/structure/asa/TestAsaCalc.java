@@ -38,6 +38,9 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Testing of Accessible Surface Area calculations
@@ -259,6 +262,38 @@ public class TestAsaCalc {
 		assertEquals(0, allNbsSh[0].length);
 	}
 
+	@Test
+	public void testParallelAsaCalc() {
+
+		// a random cluster of atoms, large enough to be split in many chunks
+		Random random = new Random(42);
+		Atom[] atoms = new Atom[2000];
+		for (int i = 0; i < atoms.length; i++) {
+			atoms[i] = getAtom(random.nextDouble() * 40, random.nextDouble() * 40, random.nextDouble() * 40);
+		}
+
+		double[] expected = new AsaCalculator(atoms, AsaCalculator.DEFAULT_PROBE_SIZE, 100, 1).calculateAsas();
+
+		double[] asas = new AsaCalculator(atoms, AsaCalculator.DEFAULT_PROBE_SIZE, 100, 4).calculateAsas();
+		assertArrayEquals(expected, asas, 0.0);
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			AsaCalculator asaCalc = new AsaCalculator(atoms, AsaCalculator.DEFAULT_PROBE_SIZE, 100, 1);
+			assertArrayEquals(expected, asaCalc.calculateAsas(executor), 0.0);
+			// the executor can be reused
+			assertArrayEquals(expected, asaCalc.calculateAsas(executor), 0.0);
+		} finally {
+			executor.shutdown();
+		}
+
+		double total = 0;
+		for (double asa : expected) {
+			total += asa;
+		}
+		assertTrue(total > 0);
+	}
+
 	private Atom getAtom(double x, double y, double z) {
 		Atom atom = new AtomImpl();
 		AminoAcidImpl g = new AminoAcidImpl();
@@ -0,0 +1,176 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.chem;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestChemCompCache {
+
+	/**
+	 * A provider that counts its calls and returns null for "UNK".
+	 */
+	private static class CountingProvider implements ChemCompProvider {
+		final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public ChemComp getChemComp(String recordName) {
+			calls.incrementAndGet();
+			if (recordName.equals("UNK")) {
+				return null;
+			}
+			ChemComp cc = ChemComp.getEmptyChemComp();
+			cc.setId(recordName);
+			return cc;
+		}
+	}
+
+	@Test
+	public void testCachesResultsAndNulls() {
+		CountingProvider provider = new CountingProvider();
+		ChemCompCache cache = new ChemCompCache(10);
+
+		ChemComp ala = cache.get("ALA", provider);
+		assertEquals("ALA", ala.getId());
+		assertSame(ala, cache.get("ALA", provider));
+		assertNull(cache.get("UNK", provider));
+		assertNull(cache.get("UNK", provider));
+		assertEquals(2, provider.calls.get());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		cache.get("ALA", provider);
+		assertEquals(3, provider.calls.get());
+	}
+
+	@Test
+	public void testBounded() {
+		CountingProvider provider = new CountingProvider();
+		ChemCompCache cache = new ChemCompCache(5);
+
+		for (int i = 0; i < 20; i++) {
+			cache.get("C" + i, provider);
+		}
+		assertEquals(5, cache.size());
+
+		// the most recent entries are kept, the oldest are evicted
+		cache.get("C19", provider);
+		assertEquals(20, provider.calls.get());
+		cache.get("C0", provider);
+		assertEquals(21, provider.calls.get());
+	}
+
+	@Test
+	public void testConcurrentLoadsOnce() throws Exception {
+		CountingProvider provider = new CountingProvider();
+		ChemCompCache cache = new ChemCompCache(100);
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<ChemComp>> results = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				String id = "C" + (i % 10);
+				results.add(pool.submit(() -> cache.get(id, provider)));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals("C" + (i % 10), results.get(i).get().getId());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(10, provider.calls.get());
+	}
+
+	@Test
+	public void testFailuresNotCached() {
+		ChemCompCache cache = new ChemCompCache(10);
+		try {
+			cache.get("ALA", recordName -> {
+				throw new IllegalStateException("provider failure");
+			});
+			fail("Expected the provider exception");
+		} catch (IllegalStateException e) {
+			assertEquals("provider failure", e.getMessage());
+		}
+		assertEquals("ALA", cache.get("ALA", new CountingProvider()).getId());
+	}
+
+	/**
+	 * A failed load doesn't leave an eviction entry that later evicts the reloaded component
+	 */
+	@Test
+	public void testFailuresNotQueued() {
+		CountingProvider provider = new CountingProvider();
+		ChemCompCache cache = new ChemCompCache(2);
+		try {
+			cache.get("C0", recordName -> {
+				throw new IllegalStateException("provider failure");
+			});
+			fail("Expected the provider exception");
+		} catch (IllegalStateException e) {
+			assertEquals("provider failure", e.getMessage());
+		}
+
+		cache.get("C0", provider);
+		cache.get("C1", provider);
+		cache.get("C2", provider);
+		assertEquals(2, cache.size());
+		assertEquals(3, provider.calls.get());
+
+		// C0 was evicted, its reload is kept
+		cache.get("C0", provider);
+		assertEquals(4, provider.calls.get());
+		cache.get("C0", provider);
+		assertEquals(4, provider.calls.get());
+		assertEquals(2, cache.size());
+	}
+
+	/**
+	 * A component that is used often is not evicted by the many components loaded after it
+	 */
+	@Test
+	public void testLeastRecentlyUsedEvicted() {
+		CountingProvider provider = new CountingProvider();
+		ChemCompCache cache = new ChemCompCache(3);
+
+		cache.get("HOH", provider);
+		for (int i = 0; i < 20; i++) {
+			cache.get("C" + i, provider);
+			assertEquals("HOH", cache.get("HOH", provider).getId());
+		}
+		assertEquals(3, cache.size());
+		assertEquals(21, provider.calls.get());
+
+		// the least recently used of the others was evicted
+		cache.get("C19", provider);
+		assertEquals(21, provider.calls.get());
+		cache.get("C17", provider);
+		assertEquals(22, provider.calls.get());
+	}
+}
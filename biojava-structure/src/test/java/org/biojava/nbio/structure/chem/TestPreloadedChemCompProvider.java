@@ -0,0 +1,88 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.chem;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestPreloadedChemCompProvider {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Concatenate some of the definitions shipped with biojava into a components file.
+	 */
+	private File writeComponentsFile(String... ids) throws IOException {
+		File file = folder.newFile("components.cif.gz");
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+			for (String id : ids) {
+				try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/chemcomp/" + id + ".cif.gz"))) {
+					byte[] buf = new byte[4096];
+					int n;
+					while ((n = in.read(buf)) > 0) {
+						out.write(buf, 0, n);
+					}
+				}
+			}
+		}
+		return file;
+	}
+
+	@Test
+	public void testGetChemComp() throws IOException {
+		PreloadedChemCompProvider provider = new PreloadedChemCompProvider(writeComponentsFile("ALA", "GLY", "HOH"), null);
+		assertEquals(3, provider.size());
+		assertTrue(provider.contains("gly"));
+		assertFalse(provider.contains("ATP"));
+
+		ReducedChemCompProvider reduced = new ReducedChemCompProvider();
+		for (String id : new String[] {"ALA", "GLY", "HOH"}) {
+			ChemComp cc = provider.getChemComp(id);
+			ChemComp expected = reduced.getChemComp(id);
+			assertEquals(expected.getId(), cc.getId());
+			assertEquals(expected.getName(), cc.getName());
+			assertEquals(expected.getAtoms().size(), cc.getAtoms().size());
+			assertEquals(expected.getBonds().size(), cc.getBonds().size());
+		}
+
+		assertNull(provider.getChemComp("ATP"));
+	}
+
+	@Test
+	public void testFallback() throws IOException {
+		PreloadedChemCompProvider provider = new PreloadedChemCompProvider(writeComponentsFile("ALA"));
+		ChemComp cc = provider.getChemComp("XYZ");
+		assertNotNull(cc);
+		assertEquals("XYZ", cc.getId());
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.cluster;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.biojava.nbio.structure.AminoAcidImpl;
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.AtomImpl;
+import org.biojava.nbio.structure.Group;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.symmetry.core.Stoichiometry;
+import org.junit.Test;
+
+/**
+ * Test the sequence prefilter and the parallel clustering of
+ * {@link SubunitClusterer}.
+ */
+public class TestSubunitClusterer {
+
+	private static final String[] RESIDUES = { "ALA", "GLY", "LEU", "SER",
+			"LYS", "GLU", "VAL", "THR", "ASP", "PHE" };
+
+	@Test
+	public void testCanBeSimilarInSequence() {
+		SubunitClustererParameters params = new SubunitClustererParameters();
+		params.setSequenceIdentityThreshold(0.95);
+		params.setSequenceCoverageThreshold(0.9);
+
+		String ala = repeat('A', 100);
+		// no residue in common
+		assertFalse(SubunitClusterer.canBeSimilarInSequence(ala, repeat('G', 100), params));
+		// too short to cover the longer sequence
+		assertFalse(SubunitClusterer.canBeSimilarInSequence(ala, repeat('A', 80), params));
+		// 91 identities out of at least 90 aligned pairs
+		assertTrue(SubunitClusterer.canBeSimilarInSequence(ala, repeat('G', 9) + repeat('A', 91), params));
+		// 85 identities out of at least 90 aligned pairs
+		assertFalse(SubunitClusterer.canBeSimilarInSequence(ala, repeat('G', 15) + repeat('A', 85), params));
+
+		// global identity is normalised by at least the longer length
+		params = new SubunitClustererParameters(true);
+		params.setSequenceIdentityThreshold(0.9);
+		assertTrue(SubunitClusterer.canBeSimilarInSequence(ala, repeat('A', 95), params));
+		assertFalse(SubunitClusterer.canBeSimilarInSequence(ala, repeat('A', 80), params));
+	}
+
+	/**
+	 * The clusters are the same with one or more threads.
+	 */
+	@Test
+	public void testParallelClustering() {
+		Random random = new Random(42);
+		List<Subunit> subunits = new ArrayList<>();
+		for (int family = 0; family < 4; family++) {
+			String[] sequence = new String[60 + 20 * family];
+			for (int i = 0; i < sequence.length; i++)
+				sequence[i] = RESIDUES[random.nextInt(RESIDUES.length)];
+			for (int copy = 0; copy < 5; copy++) {
+				String[] mutant = sequence.clone();
+				// the even copies are identical, the odd ones have a few mutations
+				if (copy % 2 == 1) {
+					for (int m = 0; m < sequence.length / 20; m++)
+						mutant[random.nextInt(mutant.length)] = RESIDUES[random.nextInt(RESIDUES.length)];
+				}
+				subunits.add(new Subunit(mockAtomArray(mutant),
+						family + "." + copy, null, null));
+			}
+		}
+
+		SubunitClustererParameters params = new SubunitClustererParameters();
+		params.setClustererMethod(SubunitClustererMethod.SEQUENCE);
+		params.setSequenceIdentityThreshold(0.9);
+		Stoichiometry sequential = SubunitClusterer.cluster(subunits, params);
+
+		params.setNThreads(3);
+		Stoichiometry parallel = SubunitClusterer.cluster(subunits, params);
+
+		assertEquals(4, sequential.getClusters().size());
+		assertEquals(sequential.getClusters().size(), parallel.getClusters().size());
+		for (int c = 0; c < sequential.getClusters().size(); c++) {
+			SubunitCluster expected = sequential.getClusters().get(c);
+			SubunitCluster actual = parallel.getClusters().get(c);
+			assertEquals(5, expected.size());
+			assertEquals(expected.getSubunits(), actual.getSubunits());
+			assertEquals(expected.length(), actual.length());
+		}
+	}
+
+	private static String repeat(char c, int n) {
+		StringBuilder builder = new StringBuilder(n);
+		for (int i = 0; i < n; i++)
+			builder.append(c);
+		return builder.toString();
+	}
+
+	private static Atom[] mockAtomArray(String[] residues) {
+		Atom[] atoms = new Atom[residues.length];
+		for (int i = 0; i < residues.length; i++) {
+			Group g = new AminoAcidImpl();
+			g.setPDBName(residues[i]);
+			Atom a = new AtomImpl();
+			a.setName(StructureTools.CA_ATOM_NAME);
+			g.addAtom(a);
+			atoms[i] = a;
+		}
+		return atoms;
+	}
+}
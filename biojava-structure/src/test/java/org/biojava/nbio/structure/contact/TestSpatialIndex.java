@@ -0,0 +1,226 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.contact;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link SpatialIndex} against brute force calculations.
+ */
+public class TestSpatialIndex {
+
+	private static double[] randomCoords(int n, double extent, long seed) {
+		Random random = new Random(seed);
+		double[] coords = new double[3 * n];
+		for (int i = 0; i < coords.length; i++) {
+			coords[i] = random.nextDouble() * extent - extent / 2;
+		}
+		return coords;
+	}
+
+	private static double distance(double[] a, int i, double[] b, int j) {
+		double dx = a[3*i] - b[3*j];
+		double dy = a[3*i+1] - b[3*j+1];
+		double dz = a[3*i+2] - b[3*j+2];
+		return Math.sqrt(dx*dx + dy*dy + dz*dz);
+	}
+
+	@Test
+	public void testNeighbors() {
+		double[] coords = randomCoords(1000, 40, 1);
+		double[] queries = randomCoords(100, 50, 2);
+		SpatialIndex index = new SpatialIndex(coords, 5);
+		assertEquals(1000, index.size());
+
+		int[] found = new int[1000];
+		double[] dists = new double[1000];
+		// radii smaller and larger than the cell size
+		for (double radius : new double[] {3, 5, 12}) {
+			for (int q = 0; q < 100; q++) {
+				Set<Integer> expected = new HashSet<>();
+				for (int i = 0; i < 1000; i++) {
+					if (distance(queries, q, coords, i) < radius) expected.add(i);
+				}
+				int n = index.getNeighbors(queries[3*q], queries[3*q+1], queries[3*q+2], radius, found, dists);
+				Set<Integer> actual = new HashSet<>();
+				for (int k = 0; k < n; k++) {
+					actual.add(found[k]);
+					assertEquals(distance(queries, q, coords, found[k]), dists[k], 0);
+				}
+				assertEquals(expected, actual);
+				assertEquals(!expected.isEmpty(), index.hasNeighbor(queries[3*q], queries[3*q+1], queries[3*q+2], radius));
+			}
+		}
+	}
+
+	@Test
+	public void testContacts() {
+		double[] coords = randomCoords(800, 30, 3);
+		double cutoff = 4.5;
+		SpatialIndex index = new SpatialIndex(coords, cutoff);
+
+		Set<String> expected = new HashSet<>();
+		for (int i = 0; i < 800; i++) {
+			for (int j = i + 1; j < 800; j++) {
+				if (distance(coords, i, coords, j) < cutoff) expected.add(i + "-" + j);
+			}
+		}
+		Set<String> actual = new HashSet<>();
+		for (Contact contact : index.getContacts(cutoff)) {
+			assertTrue(contact.getI() < contact.getJ());
+			assertTrue(actual.add(contact.getI() + "-" + contact.getJ()));
+		}
+		assertEquals(expected, actual);
+
+		// same as the grid
+		Set<String> fromGrid = new HashSet<>();
+		Grid grid = new Grid(cutoff);
+		Point3d[] points = new Point3d[800];
+		for (int i = 0; i < 800; i++) {
+			points[i] = new Point3d(coords[3*i], coords[3*i+1], coords[3*i+2]);
+		}
+		grid.addCoords(points);
+		for (Contact contact : grid.getIndicesContacts()) {
+			fromGrid.add(contact.getI() + "-" + contact.getJ());
+		}
+		assertEquals(expected, fromGrid);
+	}
+
+	@Test
+	public void testContactsBetweenIndices() {
+		double[] coords1 = randomCoords(300, 30, 4);
+		double[] coords2 = randomCoords(400, 30, 5);
+		double cutoff = 5;
+		SpatialIndex index1 = new SpatialIndex(coords1, cutoff);
+		SpatialIndex index2 = new SpatialIndex(coords2, cutoff);
+
+		Set<String> expected = new HashSet<>();
+		for (int i = 0; i < 300; i++) {
+			for (int j = 0; j < 400; j++) {
+				if (distance(coords1, i, coords2, j) < cutoff) expected.add(i + "-" + j);
+			}
+		}
+		Set<String> actual = new HashSet<>();
+		for (Contact contact : index1.getContacts(index2, cutoff)) {
+			actual.add(contact.getI() + "-" + contact.getJ());
+		}
+		assertEquals(expected, actual);
+		assertEquals(!expected.isEmpty(), index1.hasAnyContact(index2, cutoff));
+	}
+
+	@Test
+	public void testNearest() {
+		double[] coords = randomCoords(500, 40, 6);
+		double[] queries = randomCoords(50, 80, 7);
+		SpatialIndex index = new SpatialIndex(coords, 4);
+
+		int k = 7;
+		int[] found = new int[k];
+		double[] dists = new double[k];
+		for (int q = 0; q < 50; q++) {
+			double[] all = new double[500];
+			for (int i = 0; i < 500; i++) {
+				all[i] = distance(queries, q, coords, i);
+			}
+			double[] sorted = all.clone();
+			Arrays.sort(sorted);
+
+			assertEquals(k, index.getNearest(queries[3*q], queries[3*q+1], queries[3*q+2], k, found, dists));
+			for (int n = 0; n < k; n++) {
+				assertEquals(sorted[n], dists[n], 0);
+				assertEquals(all[found[n]], dists[n], 0);
+			}
+		}
+
+		// fewer points than requested
+		SpatialIndex small = new SpatialIndex(new double[] {0, 0, 0, 1, 1, 1}, 4);
+		assertEquals(2, small.getNearest(10, 0, 0, k, found, dists));
+		assertEquals(1, found[0]);
+		assertEquals(0, found[1]);
+	}
+
+	@Test
+	public void testTransformed() {
+		double[] coords = randomCoords(400, 30, 8);
+		double cutoff = 6;
+		SpatialIndex index = new SpatialIndex(coords, cutoff);
+
+		// a rotation by 90 degrees around z plus a translation
+		Matrix4d m = new Matrix4d(
+				0, -1, 0, 10,
+				1, 0, 0, -5,
+				0, 0, 1, 3,
+				0, 0, 0, 1);
+		SpatialIndex mate = index.transform(m);
+		assertTrue(mate.isTransformed());
+
+		double[] transformed = new double[coords.length];
+		double[] out = new double[3];
+		for (int i = 0; i < 400; i++) {
+			mate.getCoords(i, out);
+			assertEquals(-coords[3*i+1] + 10, out[0], 1e-9);
+			assertEquals(coords[3*i] - 5, out[1], 1e-9);
+			assertEquals(coords[3*i+2] + 3, out[2], 1e-9);
+			System.arraycopy(out, 0, transformed, 3*i, 3);
+		}
+
+		// contacts of the original with the symmetry mate
+		Set<String> expected = new HashSet<>();
+		for (int i = 0; i < 400; i++) {
+			for (int j = 0; j < 400; j++) {
+				if (distance(coords, i, transformed, j) < cutoff) expected.add(i + "-" + j);
+			}
+		}
+		Set<String> actual = new HashSet<>();
+		List<Contact> contacts = index.getContacts(mate, cutoff);
+		for (Contact contact : contacts) {
+			actual.add(contact.getI() + "-" + contact.getJ());
+			assertEquals(distance(coords, contact.getI(), transformed, contact.getJ()), contact.getDistance(), 1e-9);
+		}
+		assertEquals(expected, actual);
+
+		Set<String> reversed = new HashSet<>();
+		for (Contact contact : mate.getContacts(index, cutoff)) {
+			reversed.add(contact.getJ() + "-" + contact.getI());
+		}
+		assertEquals(expected, reversed);
+	}
+
+	@Test
+	public void testEmpty() {
+		SpatialIndex index = new SpatialIndex(new double[0], 5);
+		assertEquals(0, index.size());
+		assertFalse(index.hasNeighbor(0, 0, 0, 5));
+		assertTrue(index.getContacts(5).isEmpty());
+		assertEquals(0, index.getNearest(0, 0, 0, 1, new int[1], new double[1]));
+	}
+}
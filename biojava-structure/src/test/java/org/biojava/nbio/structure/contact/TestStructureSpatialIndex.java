@@ -0,0 +1,131 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.contact;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.vecmath.Vector3d;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Calc;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.Group;
+import org.biojava.nbio.structure.ResidueNumber;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.junit.Test;
+
+/**
+ * Tests of the queries of {@link StructureSpatialIndex} against the
+ * equivalent methods of {@link StructureTools}.
+ */
+public class TestStructureSpatialIndex {
+
+	private Structure load() throws IOException {
+		return new PDBFileParser().parsePDBFile(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/4hhb.pdb.gz")));
+	}
+
+	private static List<Group> getAllGroups(Structure s) {
+		List<Group> groups = new ArrayList<>();
+		for (Chain chain : s.getChains()) {
+			groups.addAll(chain.getAtomGroups());
+		}
+		return groups;
+	}
+
+	@Test
+	public void testGroupsWithinShell() throws IOException {
+		Structure s = load();
+		StructureSpatialIndex index = new StructureSpatialIndex(s);
+		List<Group> ligands = StructureTools.filterLigands(getAllGroups(s));
+		assertFalse(ligands.isEmpty());
+
+		List<Set<Group>> batch = index.getGroupsWithinShell(ligands, 5, false, 2);
+		for (int i = 0; i < ligands.size(); i++) {
+			Group ligand = ligands.get(i);
+			for (boolean includeWater : new boolean[] { false, true }) {
+				Set<Group> expected = StructureTools.getGroupsWithinShell(s, ligand, 5, includeWater);
+				Set<Group> actual = index.getGroupsWithinShell(ligand, 5, includeWater);
+				// same groups, in the same order
+				assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+			}
+			assertEquals(new ArrayList<>(StructureTools.getGroupsWithinShell(s, ligand, 5, false)),
+					new ArrayList<>(batch.get(i)));
+		}
+	}
+
+	@Test
+	public void testGroupDistancesWithinShell() throws IOException {
+		Structure s = load();
+		StructureSpatialIndex index = new StructureSpatialIndex(s);
+		Group heme = StructureTools.filterLigands(getAllGroups(s)).get(0);
+		Atom centroid = Calc.getCentroid(heme.getAtoms().toArray(new Atom[0]));
+		Set<ResidueNumber> exclude = Collections.singleton(heme.getResidueNumber());
+
+		for (boolean average : new boolean[] { false, true }) {
+			Map<Group, Double> expected = StructureTools.getGroupDistancesWithinShell(s, centroid, exclude, 8, true, average);
+			Map<Group, Double> actual = index.getGroupDistancesWithinShell(centroid, exclude, 8, true, average);
+			assertFalse(expected.isEmpty());
+			assertEquals(expected.keySet(), actual.keySet());
+			for (Map.Entry<Group, Double> entry : expected.entrySet()) {
+				assertTrue(entry.getValue() <= 8);
+				assertEquals(entry.getValue(), actual.get(entry.getKey()), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testLigandsByProximity() throws IOException {
+		Structure s = load();
+		StructureSpatialIndex index = new StructureSpatialIndex(s);
+		Atom[] query = StructureTools.getAtomCAArray(s.getChainByIndex(0));
+		for (double cutoff : new double[] { 3, 5, 10 }) {
+			List<Group> expected = StructureTools.getLigandsByProximity(getAllGroups(s), query, cutoff);
+			assertEquals(expected, index.getLigandsByProximity(query, cutoff));
+		}
+	}
+
+	@Test
+	public void testStale() throws IOException {
+		Structure s = load();
+		StructureSpatialIndex index = new StructureSpatialIndex(s);
+		assertFalse(index.isStale());
+
+		Calc.translate(s, new Vector3d(10, 0, 0));
+		assertTrue(index.isStale());
+		StructureSpatialIndex moved = new StructureSpatialIndex(s);
+		assertFalse(moved.isStale());
+
+		Group ligand = StructureTools.filterLigands(getAllGroups(s)).get(0);
+		assertEquals(new ArrayList<>(StructureTools.getGroupsWithinShell(s, ligand, 5, false)),
+				new ArrayList<>(moved.getGroupsWithinShell(ligand, 5, false)));
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.ensemble;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureException;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.biojava.nbio.structure.secstruc.SecStrucCalc;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link StructureEnsemble} and of the frame-streaming calculations
+ * of {@link EnsembleCalc} against brute force calculations.
+ */
+public class TestStructureEnsemble {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Structure load() throws IOException {
+		return new PDBFileParser().parsePDBFile(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/4hhb.pdb.gz")));
+	}
+
+	/**
+	 * An ensemble of the topology plus noisy copies, the second one rotated
+	 * by 90 degrees around z.
+	 */
+	private StructureEnsemble createEnsemble(Structure s, int nFrames) throws StructureException {
+		StructureEnsemble ensemble = StructureEnsemble.fromModels(s, false);
+		float[] first = ensemble.getFrame(0, new float[3 * ensemble.getAtomCount()]);
+		Random random = new Random(1);
+		for (int f = 1; f < nFrames; f++) {
+			float[] frame = new float[first.length];
+			for (int i = 0; i < first.length; i += 3) {
+				float x = first[i] + (float) (random.nextGaussian() * 0.2);
+				float y = first[i + 1] + (float) (random.nextGaussian() * 0.2);
+				frame[i] = f == 1 ? -y : x;
+				frame[i + 1] = f == 1 ? x : y;
+				frame[i + 2] = first[i + 2] + (float) (random.nextGaussian() * 0.2);
+			}
+			ensemble.addFrame(frame);
+		}
+		return ensemble;
+	}
+
+	@Test
+	public void testWriteAndMap() throws IOException, StructureException {
+		Structure s = load();
+		StructureEnsemble ensemble = createEnsemble(s, 5);
+		assertEquals(5, ensemble.getFrameCount());
+		assertFalse(ensemble.isMapped());
+
+		Path file = folder.newFile("4hhb.frames").toPath();
+		ensemble.writeFrames(file);
+		StructureEnsemble mapped = StructureEnsemble.map(s, file);
+		assertTrue(mapped.isMapped());
+		assertEquals(ensemble.getAtomCount(), mapped.getAtomCount());
+		assertEquals(5, mapped.getFrameCount());
+
+		float[] expected = new float[3 * ensemble.getAtomCount()];
+		float[] actual = new float[expected.length];
+		for (int f = 0; f < 5; f++) {
+			assertArrayEquals(ensemble.getFrame(f, expected), mapped.getFrame(f, actual), 0);
+		}
+
+		mapped.applyFrame(3);
+		ensemble.getFrame(3, expected);
+		assertEquals(expected[0], mapped.getAtoms()[0].getX(), 0);
+		assertEquals(expected[expected.length - 1], mapped.getAtoms()[mapped.getAtomCount() - 1].getZ(), 0);
+	}
+
+	@Test
+	public void testFromModels() throws IOException, StructureException {
+		Structure s = load();
+		s.addModel(load().getChains());
+		StructureEnsemble ensemble = StructureEnsemble.fromModels(s, true);
+		assertEquals(2, ensemble.getFrameCount());
+		assertEquals(1, s.nrModels());
+
+		char[][] types = EnsembleCalc.getSecStrucTypes(ensemble, new SecStrucCalc());
+		assertArrayEquals(types[0], types[1]);
+	}
+
+	@Test
+	public void testGeometry() throws IOException, StructureException {
+		StructureEnsemble ensemble = createEnsemble(load(), 4);
+		int[] ca = EnsembleCalc.getAtomIndices(ensemble, "CA");
+		assertEquals(574, ca.length);
+
+		double[] rmsds = EnsembleCalc.getRmsds(ensemble, 0, ca);
+		assertEquals(0, rmsds[0], 1e-6);
+		for (int f = 1; f < 4; f++) {
+			// noise of 0.2 along each axis
+			assertEquals(0.2 * Math.sqrt(3), rmsds[f], 0.05);
+		}
+		double[] matrix = EnsembleCalc.getRmsdMatrix(ensemble, ca, 2);
+		assertEquals(6, matrix.length);
+		assertEquals(rmsds[2], matrix[1], 1e-6);
+
+		double[] rmsf = EnsembleCalc.getRmsf(ensemble, 0, ca);
+		assertEquals(ca.length, rmsf.length);
+		for (double r : rmsf) {
+			assertTrue(r < 1);
+		}
+
+		double[] centroids = EnsembleCalc.getCentroids(ensemble, ca);
+		double[] radii = EnsembleCalc.getRadiiOfGyration(ensemble, ca);
+		double[] frame = new double[3 * ensemble.getAtomCount()];
+		for (int f = 0; f < 4; f++) {
+			ensemble.getFrame(f, frame);
+			double x = 0, y = 0, z = 0;
+			for (int i : ca) {
+				x += frame[3 * i];
+				y += frame[3 * i + 1];
+				z += frame[3 * i + 2];
+			}
+			x /= ca.length;
+			y /= ca.length;
+			z /= ca.length;
+			assertEquals(x, centroids[3 * f], 1e-6);
+			assertEquals(y, centroids[3 * f + 1], 1e-6);
+			assertEquals(z, centroids[3 * f + 2], 1e-6);
+
+			double sumSq = 0;
+			for (int i : ca) {
+				double dx = frame[3 * i] - x;
+				double dy = frame[3 * i + 1] - y;
+				double dz = frame[3 * i + 2] - z;
+				sumSq += dx * dx + dy * dy + dz * dz;
+			}
+			assertEquals(Math.sqrt(sumSq / ca.length), radii[f], 1e-6);
+		}
+	}
+
+	@Test
+	public void testContactFrequencies() throws IOException, StructureException {
+		StructureEnsemble ensemble = createEnsemble(load(), 3);
+		int[] ca = EnsembleCalc.getAtomIndices(ensemble, "CA");
+		double cutoff = 8;
+		double[] frequencies = EnsembleCalc.getContactFrequencies(ensemble, ca, cutoff);
+
+		int n = ca.length;
+		int[] counts = new int[n * (n - 1) / 2];
+		double[] frame = new double[3 * ensemble.getAtomCount()];
+		for (int f = 0; f < 3; f++) {
+			ensemble.getFrame(f, frame);
+			int k = 0;
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n; j++, k++) {
+					double dx = frame[3 * ca[i]] - frame[3 * ca[j]];
+					double dy = frame[3 * ca[i] + 1] - frame[3 * ca[j] + 1];
+					double dz = frame[3 * ca[i] + 2] - frame[3 * ca[j] + 2];
+					if (Math.sqrt(dx * dx + dy * dy + dz * dz) < cutoff)
+						counts[k]++;
+				}
+			}
+		}
+		for (int k = 0; k < counts.length; k++) {
+			assertEquals(counts[k] / 3.0, frequencies[k], 1e-12);
+		}
+	}
+}
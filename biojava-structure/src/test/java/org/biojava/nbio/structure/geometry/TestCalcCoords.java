@@ -0,0 +1,134 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.geometry;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import javax.vecmath.AxisAngle4d;
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.AtomImpl;
+import org.biojava.nbio.structure.Calc;
+import org.biojava.nbio.structure.StructureException;
+import org.junit.Test;
+
+/**
+ * Test the packed coordinate kernels of {@link CalcCoords} against the
+ * equivalent methods on Atoms and Point3d.
+ *
+ * @since 6.0.6
+ */
+public class TestCalcCoords {
+
+	private static Atom[] randomAtoms(int n, long seed) {
+		Random random = new Random(seed);
+		Atom[] atoms = new Atom[n];
+		for (int i = 0; i < n; i++) {
+			atoms[i] = new AtomImpl();
+			atoms[i].setX(random.nextGaussian() * 10);
+			atoms[i].setY(random.nextGaussian() * 10);
+			atoms[i].setZ(random.nextGaussian() * 10);
+		}
+		return atoms;
+	}
+
+	@Test
+	public void testTransform() {
+		Atom[] atoms = randomAtoms(100, 1);
+		double[] coords = CalcCoords.toCoords(atoms);
+		// the points of the atoms are not copies
+		Point3d[] points = CalcPoint.clonePoint3dArray(Calc.atomsToPoints(atoms));
+
+		Matrix4d m = new Matrix4d();
+		m.set(new AxisAngle4d(0.3, -0.5, 0.8, 1.2));
+		m.setTranslation(new Vector3d(1.5, -2, 3));
+
+		CalcCoords.transform(m, coords);
+		CalcPoint.transform(m, points);
+		Calc.transform(atoms, m);
+		for (int i = 0; i < points.length; i++) {
+			assertEquals(points[i].x, coords[3 * i], 0);
+			assertEquals(points[i].y, coords[3 * i + 1], 0);
+			assertEquals(points[i].z, coords[3 * i + 2], 0);
+			assertEquals(points[i].x, atoms[i].getX(), 0);
+			assertEquals(points[i].y, atoms[i].getY(), 0);
+			assertEquals(points[i].z, atoms[i].getZ(), 0);
+		}
+
+		Atom[] copy = randomAtoms(100, 2);
+		CalcCoords.setCoords(coords, copy);
+		assertArrayEquals(coords, CalcCoords.toCoords(copy), 0);
+	}
+
+	@Test
+	public void testCentroid() {
+		Atom[] atoms = randomAtoms(50, 3);
+		double[] coords = CalcCoords.toCoords(atoms);
+
+		Atom centroid = Calc.getCentroid(atoms);
+		assertArrayEquals(centroid.getCoords(), CalcCoords.centroid(coords), 0);
+
+		CalcCoords.center(coords);
+		assertArrayEquals(new double[3], CalcCoords.centroid(coords), 1e-12);
+	}
+
+	@Test
+	public void testScores() throws StructureException {
+		Atom[] x = randomAtoms(80, 4);
+		Atom[] y = randomAtoms(80, 5);
+		double[] cx = CalcCoords.toCoords(x);
+		double[] cy = CalcCoords.toCoords(y);
+
+		assertEquals(CalcPoint.rmsd(Calc.atomsToPoints(x), Calc.atomsToPoints(y)), CalcCoords.rmsd(cx, cy), 0);
+		assertEquals(Calc.getTMScore(x, y, 100, 120, true), CalcCoords.getTMScore(cx, cy, 100, 120, true), 0);
+		assertEquals(Calc.getTMScore(x, y, 100, 120, false), CalcCoords.getTMScore(cx, cy, 100, 120, false), 0);
+
+		// radius of gyration of the points as the RMSD to their centroid
+		Atom[] centroid = new Atom[x.length];
+		Atom c = Calc.getCentroid(x);
+		for (int i = 0; i < x.length; i++) {
+			centroid[i] = c;
+		}
+		assertEquals(Calc.rmsd(x, centroid), CalcCoords.radiusOfGyration(cx), 1e-12);
+	}
+
+	@Test
+	public void testDistanceMatrix() {
+		Atom[] x = randomAtoms(30, 6);
+		Atom[] y = randomAtoms(20, 7);
+		double[][] self = CalcCoords.distanceMatrix(CalcCoords.toCoords(x));
+		double[][] cross = CalcCoords.distanceMatrix(CalcCoords.toCoords(x), CalcCoords.toCoords(y));
+		for (int i = 0; i < x.length; i++) {
+			assertEquals(0, self[i][i], 0);
+			for (int j = 0; j < x.length; j++) {
+				assertEquals(Calc.getDistance(x[i], x[j]), self[i][j], 0);
+			}
+			for (int j = 0; j < y.length; j++) {
+				assertEquals(Calc.getDistance(x[i], y[j]), cross[i][j], 0);
+			}
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.vecmath.Matrix4d;
+import javax.vecmath.Point3d;
+
+import org.junit.Test;
+
+/**
+ * Test the batch superpositions of {@link SuperPositionBatch} against single
+ * superpositions of {@link SuperPositionQCP}.
+ *
+ * @since 6.0.6
+ */
+public class TestSuperPositionBatch {
+
+	private static Point3d[][] randomPointSets(int sets, int points, long seed) {
+		Random random = new Random(seed);
+		Point3d[] base = new Point3d[points];
+		for (int i = 0; i < points; i++) {
+			base[i] = new Point3d(random.nextGaussian() * 10, random.nextGaussian() * 10, random.nextGaussian() * 10);
+		}
+		Point3d[][] result = new Point3d[sets][points];
+		for (int s = 0; s < sets; s++) {
+			for (int i = 0; i < points; i++) {
+				result[s][i] = new Point3d(base[i].x + random.nextGaussian() + s, base[i].y + random.nextGaussian(),
+						base[i].z + random.nextGaussian() - s);
+			}
+		}
+		return result;
+	}
+
+	private static double[][] pack(Point3d[][] sets) {
+		double[][] coords = new double[sets.length][];
+		for (int s = 0; s < sets.length; s++) {
+			coords[s] = SuperPositionBatch.toCoordArray(sets[s]);
+		}
+		return coords;
+	}
+
+	@Test
+	public void testPackedSameAsPoints() {
+		Point3d[][] sets = randomPointSets(2, 50, 1);
+		double[][] coords = pack(sets);
+		double[] weight = new double[50];
+		for (int i = 0; i < 50; i++) {
+			weight[i] = (i % 5 + 1) / 5.0;
+		}
+
+		SuperPositionQCP qcp = new SuperPositionQCP(false);
+		double rmsd = qcp.getRmsd(sets[0], sets[1]);
+		Matrix4d transform = new Matrix4d(qcp.superpose(sets[0], sets[1]));
+		double weightedRmsd = qcp.getWeightedRmsd(sets[0], sets[1], weight);
+
+		assertEquals(rmsd, qcp.getRmsd(coords[0], coords[1]), 0);
+		assertTrue(transform.epsilonEquals(qcp.superpose(coords[0], coords[1]), 0));
+		assertEquals(weightedRmsd, qcp.getWeightedRmsd(coords[0], coords[1], weight), 0);
+
+		// the weights of a previous call are not reused
+		assertEquals(rmsd, qcp.getRmsd(sets[0], sets[1]), 0);
+	}
+
+	@Test
+	public void testOneVsMany() {
+		Point3d[][] sets = randomPointSets(10, 40, 2);
+		double[][] coords = pack(sets);
+
+		double[] rmsds = new double[10];
+		Matrix4d[] transforms = SuperPositionBatch.superpose(coords[0], coords, null, rmsds);
+		assertArrayEquals(rmsds, SuperPositionBatch.getRmsds(coords[0], coords, null), 0);
+
+		SuperPositionQCP qcp = new SuperPositionQCP(false);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(qcp.getRmsd(sets[0], sets[i]), rmsds[i], 0);
+			assertTrue(qcp.superpose(sets[0], sets[i]).epsilonEquals(transforms[i], 0));
+		}
+		assertEquals(0, rmsds[0], 1e-6);
+	}
+
+	@Test
+	public void testRmsdMatrix() {
+		int n = 30;
+		Point3d[][] sets = randomPointSets(n, 25, 3);
+		double[][] coords = pack(sets);
+
+		double[] sequential = SuperPositionBatch.getRmsdMatrix(coords, null, 1);
+		double[] parallel = SuperPositionBatch.getRmsdMatrix(coords, null, 4);
+		assertEquals(n * (n - 1) / 2, sequential.length);
+		assertArrayEquals(sequential, parallel, 0);
+
+		SuperPositionQCP qcp = new SuperPositionQCP(false);
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				double expected = qcp.getRmsd(sets[i], sets[j]);
+				assertEquals(expected, sequential[SuperPositionBatch.condensedIndex(n, i, j)], 0);
+				assertEquals(expected, sequential[SuperPositionBatch.condensedIndex(n, j, i)], 0);
+			}
+		}
+
+		// rectangular matrix of many vs many
+		double[][] fixed = new double[5][];
+		System.arraycopy(coords, 0, fixed, 0, 5);
+		double[] full = SuperPositionBatch.getRmsdMatrix(fixed, coords, null, 4);
+		assertArrayEquals(full, SuperPositionBatch.getRmsdMatrix(fixed, coords, null, 1), 0);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			assertArrayEquals(full, SuperPositionBatch.getRmsdMatrix(fixed, coords, null, executor), 0);
+		} finally {
+			executor.shutdown();
+		}
+		for (int i = 0; i < 5; i++) {
+			for (int j = 0; j < n; j++) {
+				assertEquals(qcp.getRmsd(sets[i], sets[j]), full[i * n + j], 0);
+			}
+		}
+	}
+
+	/**
+	 * The length of a condensed matrix is computed without overflow, and too
+	 * many elements are reported instead of allocating a wrong length.
+	 */
+	@Test
+	public void testCondensedSize() {
+		assertEquals(0, SuperPositionBatch.condensedSize(0));
+		assertEquals(0, SuperPositionBatch.condensedSize(1));
+		assertEquals(10, SuperPositionBatch.condensedSize(5));
+		assertEquals(1073767311, SuperPositionBatch.condensedSize(46342));
+		assertEquals(2147450880, SuperPositionBatch.condensedSize(65536));
+		try {
+			SuperPositionBatch.condensedSize(65537);
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.biojava.nbio.structure.PdbId;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureTools;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link ParsedStructureStore}.
+ */
+public class TestParsedStructureStore {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+
+	@Test
+	public void testStoreAndReload() throws IOException {
+		File source = copyResource("/4hhb.cif.gz");
+		PdbId pdbId = new PdbId("4HHB");
+		FileParsingParameters params = new FileParsingParameters();
+		ParsedStructureStore store = new ParsedStructureStore(testFolder.newFolder("store").toPath());
+
+		assertNull(store.get(pdbId, source, params));
+
+		AtomicInteger parsed = new AtomicInteger();
+		ParsedStructureStore.StructureLoader loader = file -> {
+			parsed.incrementAndGet();
+			CifFileReader reader = new CifFileReader();
+			reader.setFileParsingParameters(params);
+			return reader.getStructure(file);
+		};
+		Structure first = store.getStructure(pdbId, source, params, loader);
+		Structure second = store.getStructure(pdbId, source, params, loader);
+
+		assertEquals(1, parsed.get());
+		assertNotNull(store.get(pdbId, source, params));
+		assertEquals(StructureTools.getAllAtomArray(first).length, StructureTools.getAllAtomArray(second).length);
+		assertEquals(first.getEntityInfos().size(), second.getEntityInfos().size());
+		// the parsed structure is also returned as stored, without the content MMTF can't keep
+		assertEquals(first.hasJournalArticle(), second.hasJournalArticle());
+
+		// different parameters don't use the stored entry
+		FileParsingParameters caOnly = new FileParsingParameters();
+		caOnly.setParseCAOnly(true);
+		assertNull(store.get(pdbId, source, caOnly));
+
+		// a replaced source file is parsed again
+		assertTrue(source.setLastModified(source.lastModified() - 60000));
+		assertNull(store.get(pdbId, source, params));
+
+		// entries with a checksum are separate
+		store.getStructure(pdbId, source, params, loader);
+		store.setUseChecksum(true);
+		assertNull(store.get(pdbId, source, params));
+		store.getStructure(pdbId, source, params, loader);
+		assertNotNull(store.get(pdbId, source, params));
+		assertEquals(3, parsed.get());
+
+		assertTrue(store.remove(pdbId));
+		assertNull(store.get(pdbId, source, params));
+	}
+
+	/**
+	 * Entries of different parameters are kept side by side until they are evicted
+	 */
+	@Test
+	public void testEvict() throws IOException {
+		File source = copyResource("/4hhb.cif.gz");
+		PdbId pdbId = new PdbId("4HHB");
+		FileParsingParameters params = new FileParsingParameters();
+		FileParsingParameters caOnly = new FileParsingParameters();
+		caOnly.setParseCAOnly(true);
+		ParsedStructureStore store = new ParsedStructureStore(testFolder.newFolder("store").toPath());
+
+		store.getStructure(pdbId, source, params, file -> parse(file, params));
+		store.getStructure(pdbId, source, caOnly, file -> parse(file, caOnly));
+		assertNotNull(store.get(pdbId, source, params));
+		assertNotNull(store.get(pdbId, source, caOnly));
+		assertEquals(0, store.evict(Long.MAX_VALUE, Long.MAX_VALUE));
+
+		// the entry unused for a day (the smaller CA only one) is removed by age
+		Path caOnlyEntry = null;
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(store.getDirectory())) {
+			for (Path entry : entries) {
+				if (caOnlyEntry == null || Files.size(entry) < Files.size(caOnlyEntry)) {
+					caOnlyEntry = entry;
+				}
+			}
+		}
+		Files.setLastModifiedTime(caOnlyEntry, FileTime.fromMillis(System.currentTimeMillis() - 86400000L));
+		assertEquals(1, store.evict(3600000L, Long.MAX_VALUE));
+		assertNull(store.get(pdbId, source, caOnly));
+		assertNotNull(store.get(pdbId, source, params));
+
+		assertEquals(1, store.evict(Long.MAX_VALUE, 0));
+		assertNull(store.get(pdbId, source, params));
+	}
+
+	private static Structure parse(File file, FileParsingParameters params) throws IOException {
+		CifFileReader reader = new CifFileReader();
+		reader.setFileParsingParameters(params);
+		return reader.getStructure(file);
+	}
+
+	private File copyResource(String name) throws IOException {
+		File file = testFolder.newFile(name.substring(1));
+		try (InputStream in = getClass().getResourceAsStream(name)) {
+			Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return file;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.io.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link FixedWidthNumberParser} gives exactly the results of the JDK parsers.
+ */
+public class TestFixedWidthNumberParser {
+
+	private static final String ATOM_LINE =
+			"ATOM   1964  N   ARG H 221A      5.963 -16.715  27.669  1.00 28.59           N  ";
+
+	@Test
+	public void testAtomLine() {
+		assertEquals(1964, FixedWidthNumberParser.parseInt(ATOM_LINE, 6, 11));
+		assertEquals(221, FixedWidthNumberParser.parseInt(ATOM_LINE, 22, 26));
+		assertEquals(5.963, FixedWidthNumberParser.parseDouble(ATOM_LINE, 30, 38), 0);
+		assertEquals(-16.715, FixedWidthNumberParser.parseDouble(ATOM_LINE, 38, 46), 0);
+		assertEquals(27.669, FixedWidthNumberParser.parseDouble(ATOM_LINE, 46, 54), 0);
+		assertEquals(1.0f, FixedWidthNumberParser.parseFloat(ATOM_LINE, 54, 60), 0);
+		assertEquals(28.59f, FixedWidthNumberParser.parseFloat(ATOM_LINE, 60, 66), 0);
+	}
+
+	@Test
+	public void testSameAsJdk() {
+		Random random = new Random(42);
+		for (int i = 0; i < 100000; i++) {
+			double v = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(6));
+			String field = String.format(Locale.US, "%10." + random.nextInt(5) + "f", v);
+			String line = "xx" + field + "yy";
+			int end = 2 + field.length();
+			assertEquals(field, Double.doubleToLongBits(Double.parseDouble(field.trim())),
+					Double.doubleToLongBits(FixedWidthNumberParser.parseDouble(line, 2, end)));
+			assertEquals(field, Float.floatToIntBits(Float.parseFloat(field.trim())),
+					Float.floatToIntBits(FixedWidthNumberParser.parseFloat(line, 2, end)));
+		}
+	}
+
+	@Test
+	public void testSlowPathFormats() {
+		assertEquals(1500.0, FixedWidthNumberParser.parseDouble("  1.5E3 ", 0, 8), 0);
+		assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(FixedWidthNumberParser.parseDouble(" -0.000", 0, 7)));
+		assertEquals(0.5, FixedWidthNumberParser.parseDouble("   .5 ", 0, 6), 0);
+		assertEquals(-2147483648, FixedWidthNumberParser.parseInt("-2147483648", 0, 11));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testBlankDouble() {
+		FixedWidthNumberParser.parseDouble("ATOM        ", 4, 12);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testIntOverflow() {
+		FixedWidthNumberParser.parseInt("99999999999", 0, 11);
+	}
+
+	@Test(expected = StringIndexOutOfBoundsException.class)
+	public void testShortLine() {
+		FixedWidthNumberParser.parseDouble("ATOM", 30, 38);
+	}
+}
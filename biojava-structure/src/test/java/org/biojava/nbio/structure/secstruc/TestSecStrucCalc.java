@@ -28,6 +28,7 @@ import java.util.zip.GZIPInputStream;
 import org.biojava.nbio.structure.Structure;
 import org.biojava.nbio.structure.StructureException;
 import org.biojava.nbio.structure.align.util.AtomCache;
+import org.biojava.nbio.structure.io.PDBFileParser;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -118,4 +119,43 @@ public class TestSecStrucCalc {
 					biojava.get(i), dssp.get(i));
 		}
 	}
+
+	/**
+	 * Test that the multi-threaded calculation of all models and the
+	 * calculation of the SS types only give the DSSP assignment.
+	 * @throws StructureException
+	 * @throws IOException
+	 */
+	@Test
+	public void testParallelTypesPred() throws StructureException, IOException {
+
+		PDBFileParser parser = new PDBFileParser();
+		Structure structure = parser.parsePDBFile(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/4hhb.pdb.gz")));
+		Structure structureTwo = parser.parsePDBFile(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/4hhb.pdb.gz")));
+		structure.addModel(structureTwo.getChains());
+
+		List<SecStrucState> dssp = DSSPParser.parseInputStream(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/org/biojava/nbio/structure/secstruc/4hhb.dssp.gz")),
+				structureTwo, false);
+
+		List<SecStrucState> biojava = new SecStrucCalc(4).calculate(structure, false);
+		assertEquals("SS assignment lengths do not match",
+				biojava.size(), 2 * dssp.size());
+
+		char[][] types = new SecStrucCalc(4).calculateTypes(structure);
+		assertEquals(2, types.length);
+
+		for (int m = 0; m < 2; m++) {
+			assertEquals(dssp.size(), types[m].length);
+			assertEquals(dssp.size(), SecStrucCalc.getBackboneGroups(structure, m).size());
+			for (int i=0; i<dssp.size(); i++){
+				assertEquals("SS assignment position "+(i+1)+" does not match",
+						dssp.get(i), biojava.get(m * dssp.size() + i));
+				assertEquals("SS type position "+(i+1)+" does not match",
+						dssp.get(i).getType().type.charValue(), types[m][i]);
+			}
+		}
+	}
 }
@@ -0,0 +1,119 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.symmetry.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.AtomImpl;
+import org.biojava.nbio.structure.Calc;
+import org.biojava.nbio.structure.Chain;
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.cluster.Subunit;
+import org.biojava.nbio.structure.cluster.SubunitClustererParameters;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the parallel local symmetry search and the batch methods of
+ * {@link QuatSymmetryDetector} with hemoglobin.
+ */
+public class TestQuatSymmetryDetector {
+
+	private Structure structure;
+
+	@Before
+	public void setUp() throws IOException {
+		structure = new PDBFileParser().parsePDBFile(new GZIPInputStream(
+				this.getClass().getResourceAsStream("/4hhb.pdb.gz")));
+	}
+
+	/**
+	 * Hemoglobin next to a distant copy of one alpha-beta dimer: the A2B2
+	 * tetramer has local C2 symmetry, found with one or more threads.
+	 */
+	@Test
+	public void testParallelLocalSymmetries() {
+		List<Subunit> subunits = new ArrayList<>();
+		for (Chain chain : structure.getPolyChains()) {
+			subunits.add(new Subunit(StructureTools.getRepresentativeAtomArray(chain),
+					chain.getName(), null, structure));
+		}
+		Atom shift = new AtomImpl();
+		shift.setCoords(new double[] { 100, 0, 0 });
+		for (int i = 0; i < 2; i++) {
+			Atom[] copy = StructureTools.cloneAtomArray(subunits.get(i).getRepresentativeAtoms());
+			Calc.shift(copy, shift);
+			subunits.add(new Subunit(copy, subunits.get(i).getName() + "'", null, null));
+		}
+
+		QuatSymmetryParameters symmParams = new QuatSymmetryParameters();
+		SubunitClustererParameters clusterParams = new SubunitClustererParameters();
+		List<QuatSymmetryResults> sequential = QuatSymmetryDetector
+				.calcLocalSymmetries(subunits, symmParams, clusterParams);
+
+		symmParams.setNThreads(3);
+		List<QuatSymmetryResults> parallel = QuatSymmetryDetector
+				.calcLocalSymmetries(subunits, symmParams, clusterParams);
+
+		assertTrue(sequential.stream().anyMatch(
+				r -> r.getSymmetry().equals("C2") && r.getSubunits().size() == 4));
+		assertEquals(sequential.size(), parallel.size());
+		for (int i = 0; i < sequential.size(); i++) {
+			assertEquals(sequential.get(i).getSymmetry(), parallel.get(i).getSymmetry());
+			assertEquals(sequential.get(i).getStoichiometry().toString(),
+					parallel.get(i).getStoichiometry().toString());
+			assertEquals(sequential.get(i).getSubunits(), parallel.get(i).getSubunits());
+			assertTrue(parallel.get(i).isLocal());
+		}
+	}
+
+	@Test
+	public void testBatch() {
+		QuatSymmetryParameters symmParams = new QuatSymmetryParameters();
+		symmParams.setNThreads(2);
+		SubunitClustererParameters clusterParams = new SubunitClustererParameters();
+		List<Structure> structures = Arrays.asList(structure, structure);
+
+		List<QuatSymmetryResults> global = QuatSymmetryDetector
+				.calcGlobalSymmetryBatch(structures, symmParams, clusterParams);
+		assertEquals(2, global.size());
+		for (QuatSymmetryResults result : global) {
+			assertEquals("C2", result.getSymmetry());
+			assertEquals(4, result.getSubunits().size());
+		}
+
+		List<List<QuatSymmetryResults>> local = QuatSymmetryDetector
+				.calcLocalSymmetriesBatch(structures, symmParams, clusterParams);
+		assertEquals(2, local.size());
+		assertEquals(QuatSymmetryDetector.calcLocalSymmetries(structure,
+				symmParams, clusterParams).size(), local.get(0).size());
+		assertEquals(local.get(0).size(), local.get(1).size());
+	}
+}
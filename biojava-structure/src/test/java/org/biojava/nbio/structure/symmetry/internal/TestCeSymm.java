@@ -28,6 +28,7 @@ import org.biojava.nbio.structure.Atom;
 import org.biojava.nbio.structure.Structure;
 import org.biojava.nbio.structure.StructureException;
 import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.align.multiple.util.MultipleAlignmentScorer;
 import org.biojava.nbio.structure.symmetry.internal.CeSymm;
 import org.junit.Test;
 
@@ -58,4 +59,29 @@ public class TestCeSymm {
 			assertEquals(result.getNumRepeats(), orders[i]);
 		}
 	}
+
+	/**
+	 * The optimization with parallel Monte Carlo chains finds the same order.
+	 */
+	@Test
+	public void testOptimizationChains() throws IOException, StructureException {
+
+		Structure s = StructureTools.getStructure("1hiv.A");
+		Atom[] atoms = StructureTools.getRepresentativeAtomArray(s);
+
+		CESymmParameters params = new CESymmParameters();
+		params.setRndSeed(0);
+		params.setOptimizationChains(3);
+		CeSymmResult result = CeSymm.analyze(atoms, params);
+
+		assertTrue(result.isSignificant());
+		assertEquals(2, result.getNumRepeats());
+
+		// the chains do not share state, the result is reproducible
+		CeSymmResult again = CeSymm.analyze(atoms, params);
+		assertEquals(result.getMultipleAlignment().getScore(MultipleAlignmentScorer.MC_SCORE),
+				again.getMultipleAlignment().getScore(MultipleAlignmentScorer.MC_SCORE));
+		assertEquals(result.getAxes().getElementaryAxes(),
+				again.getAxes().getElementaryAxes());
+	}
 }
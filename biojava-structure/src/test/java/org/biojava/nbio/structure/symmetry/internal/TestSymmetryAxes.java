@@ -324,4 +324,28 @@ public class TestSymmetryAxes {
 		axisNum++;
 	}
 
+
+	/**
+	 * Updating a copy of the axes does not change the original.
+	 */
+	@Test
+	public void testCopy() {
+		SymmetryAxes axes = new SymmetryAxes();
+		Matrix4d r90 = new Matrix4d();
+		r90.set(new AxisAngle4d(0, 0, 1, -Math.PI/2));
+		axes.addAxis(r90, 4, SymmetryType.CLOSED);
+
+		SymmetryAxes copy = new SymmetryAxes(axes);
+		assertEquals(axes.getRepeatTransform(1), copy.getRepeatTransform(1));
+		assertEquals(axes.getRepeatRelation(0), copy.getRepeatRelation(0));
+
+		// the operators are copied, not shared
+		copy.getElementaryAxesObjects().get(0).getOperator().setElement(0, 3, 5);
+		assertEquals(r90, axes.getElementaryAxes().get(0));
+
+		Matrix4d r180 = new Matrix4d();
+		r180.set(new AxisAngle4d(0, 0, 1, Math.PI));
+		copy.updateAxis(0, r180);
+		assertEquals(r90, axes.getElementaryAxes().get(0));
+	}
 }
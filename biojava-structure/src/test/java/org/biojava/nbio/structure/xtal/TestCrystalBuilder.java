@@ -0,0 +1,76 @@
+/*
+ *                    BioJava development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ * see:
+ *
+ *      http://www.gnu.org/copyleft/lesser.html
+ *
+ * Copyright for this code is held jointly by the individual
+ * authors.  These should be listed in @author doc comments.
+ *
+ * For more information on the BioJava project and its aims,
+ * or to join the biojava-l mailing list, visit the home page
+ * at:
+ *
+ *      http://www.biojava.org/
+ *
+ */
+package org.biojava.nbio.structure.xtal;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.biojava.nbio.structure.Structure;
+import org.biojava.nbio.structure.contact.StructureInterface;
+import org.biojava.nbio.structure.contact.StructureInterfaceList;
+import org.biojava.nbio.structure.io.cif.CifStructureConverter;
+import org.junit.Test;
+
+public class TestCrystalBuilder {
+
+	/**
+	 * The parallel interface search must give the same interfaces, in the same order, as the sequential one.
+	 */
+	@Test
+	public void testParallelSearch() throws IOException {
+
+		Structure s = CifStructureConverter.fromInputStream(
+				getClass().getResourceAsStream("/org/biojava/nbio/structure/io/mmcif/1stp_v5.cif"));
+		assertTrue(s.isCrystallographic());
+
+		CrystalBuilder sequential = new CrystalBuilder(s);
+		sequential.setNumThreads(1);
+		StructureInterfaceList expected = sequential.getUniqueInterfaces(5.5);
+
+		CrystalBuilder parallel = new CrystalBuilder(s);
+		parallel.setNumThreads(4);
+		StructureInterfaceList interfaces = parallel.getUniqueInterfaces(5.5);
+
+		assertTrue(expected.size() > 0);
+		assertEquals(expected.size(), interfaces.size());
+		for (int i = 0; i < expected.size(); i++) {
+			StructureInterface e = expected.getList().get(i);
+			StructureInterface interf = interfaces.getList().get(i);
+			assertEquals(e.getMoleculeIds().getFirst(), interf.getMoleculeIds().getFirst());
+			assertEquals(e.getMoleculeIds().getSecond(), interf.getMoleculeIds().getSecond());
+			assertEquals(e.getTransforms().getSecond().toString(), interf.getTransforms().getSecond().toString());
+			assertEquals(e.getContacts().size(), interf.getContacts().size());
+		}
+
+		InterfaceSearchMetrics metricsSeq = sequential.getLastSearchMetrics();
+		InterfaceSearchMetrics metrics = parallel.getLastSearchMetrics();
+		assertEquals(1, metricsSeq.getThreads());
+		assertEquals(expected.size(), metricsSeq.getInterfacesFound());
+		assertEquals(metricsSeq.getTrials(), metrics.getTrials());
+		assertEquals(metricsSeq.getSkippedAUsNoOverlap(), metrics.getSkippedAUsNoOverlap());
+		assertEquals(metricsSeq.getSkippedChainsNoOverlap(), metrics.getSkippedChainsNoOverlap());
+		assertEquals(metricsSeq.getSkippedRedundant(), metrics.getSkippedRedundant());
+		assertEquals(metricsSeq.getInterfacesFound(), metrics.getInterfacesFound());
+		assertTrue(metrics.getTrials() >= metrics.getInterfacesFound());
+		assertTrue(metrics.getSkippedRedundant() > 0);
+	}
+}
@@ -25,6 +25,7 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +42,7 @@ import org.biojava.nbio.structure.contact.StructureInterfaceCluster;
 import org.biojava.nbio.structure.contact.StructureInterfaceList;
 import org.biojava.nbio.structure.io.FileParsingParameters;
 import org.biojava.nbio.structure.io.PDBFileParser;
+import org.biojava.nbio.structure.io.cif.CifStructureConverter;
 import org.junit.Test;
 
 import javax.vecmath.Matrix4d;
@@ -217,6 +219,49 @@ public class TestInterfaceClustering {
 
 	}
 
+	/**
+	 * The bit set contact overlap scores must be the same as the pairwise scores of the interfaces.
+	 */
+	@Test
+	public void testContactOverlapScores() throws IOException {
+
+		InputStream inStream = new GZIPInputStream(this.getClass().getResourceAsStream("/org/biojava/nbio/structure/io/3c5f_raw.pdb.gz"));
+
+		PDBFileParser pdbpars = new PDBFileParser();
+		FileParsingParameters params = new FileParsingParameters();
+		params.setAlignSeqRes(true);
+		pdbpars.setFileParsingParameters(params);
+
+		Structure s = pdbpars.parsePDBFile(inStream) ;
+
+		CrystalBuilder cb = new CrystalBuilder(s);
+		StructureInterfaceList interfaces = cb.getUniqueInterfaces(5.5);
+		int n = interfaces.size();
+		assertTrue(n > 1);
+
+		double[][] sequential = interfaces.getContactOverlapScores(1);
+		double[][] parallel = interfaces.getContactOverlapScores(4);
+
+		for (int i=0;i<n;i++) {
+			assertArrayEquals(sequential[i], parallel[i], 0);
+			for (int j=i+1;j<n;j++) {
+				StructureInterface iInterf = interfaces.getList().get(i);
+				StructureInterface jInterf = interfaces.getList().get(j);
+				double expected = Math.max(iInterf.getContactOverlapScore(jInterf, false),
+						iInterf.getContactOverlapScore(jInterf, true));
+				assertEquals("Score of interfaces " + i + " and " + j, expected, sequential[i][j], 0);
+			}
+		}
+
+		List<StructureInterfaceCluster> clusters = interfaces.getClusters(StructureInterfaceList.DEFAULT_CONTACT_OVERLAP_SCORE_CLUSTER_CUTOFF, 4);
+		int members = 0;
+		for (StructureInterfaceCluster cluster : clusters) {
+			members += cluster.getMembers().size();
+			assertTrue(cluster.getAverageScore() > 0);
+		}
+		assertEquals(n, members);
+	}
+
 	// This doesn't work yet, since for raw files without a SEQRES, the seqres groups are not populated. Instead
 	// in that case Compound.getAlignedResIndex() returns residue numbers as given (without insertion codes) and
 	// thus in general residues will not be correctly aligned between different chains of same entity. This breaks
@@ -272,4 +317,33 @@ public class TestInterfaceClustering {
 
 
 	}
+
+	/**
+	 * The incremental ASA calculation must give the same interface areas as the full calculation.
+	 */
+	@Test
+	public void testIncrementalAsas() throws IOException {
+
+		Structure s = CifStructureConverter.fromInputStream(new GZIPInputStream(getClass().getResourceAsStream("/4hhb.cif.gz")));
+
+		StructureInterfaceList full = new CrystalBuilder(s).getUniqueInterfaces(5.5);
+		full.calcAsas(100, 1, 0);
+
+		StructureInterfaceList incremental = new CrystalBuilder(s).getUniqueInterfaces(5.5);
+		incremental.calcAsas(100, 2, 0, true);
+
+		assertEquals(full.size(), incremental.size());
+		assertTrue(full.size() > 0);
+
+		// interfaces are sorted by area, compare the sorted areas in case of near ties
+		double[] fullAreas = new double[full.size()];
+		double[] incrementalAreas = new double[incremental.size()];
+		for (int i = 0; i < full.size(); i++) {
+			fullAreas[i] = full.get(i + 1).getTotalArea();
+			incrementalAreas[i] = incremental.get(i + 1).getTotalArea();
+		}
+		Arrays.sort(fullAreas);
+		Arrays.sort(incrementalAreas);
+		assertArrayEquals(fullAreas, incrementalAreas, 0.01);
+	}
 }